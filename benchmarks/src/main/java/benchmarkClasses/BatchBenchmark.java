@@ -0,0 +1,58 @@
+/**
+ * Adding entities as one batch against adding them one at a time, as the bulk endpoints
+ * and a client looping over POST would. Each operation adds batchSize entities either way,
+ * so the two scores compare directly.
+ * Author: Rifa
+ * IIT no: 20220701
+ */
+package benchmarkClasses;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class BatchBenchmark {
+
+    @Param({"100", "1000"})
+    public int batchSize;
+
+    @Benchmark
+    public List<Object> addBatch(Dataset data, ThreadIds thread) {
+        List<Object> batch = newEntities(data, thread);
+        data.ops.addAll(batch);
+        return batch;
+    }
+
+    @Benchmark
+    public List<Object> addOneByOne(Dataset data, ThreadIds thread) {
+        List<Object> batch = newEntities(data, thread);
+        for (Object entity : batch) {
+            data.ops.add(entity);
+        }
+        return batch;
+    }
+
+    private List<Object> newEntities(Dataset data, ThreadIds thread) {
+        List<Object> batch = new ArrayList<>(batchSize);
+        for (int i = 0; i < batchSize; i++) {
+            batch.add(data.ops.create(thread.next++));
+        }
+        return batch;
+    }
+}
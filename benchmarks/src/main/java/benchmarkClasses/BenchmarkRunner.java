@@ -0,0 +1,45 @@
+/**
+ * Runs the benchmarks once per thread count and writes each run's results as JSON, for
+ * comparing runs before and after a change (for example with a JMH results visualizer).
+ *
+ *   java -cp target/benchmarks.jar benchmarkClasses.BenchmarkRunner [JMH options]
+ *
+ * Any JMH option can be given, such as a benchmark pattern or -p dao=patients; the thread
+ * counts come from -Dhealth.bench.threads (default 1,4,8) and the results go to
+ * -Dhealth.bench.results (default "results"), one file per thread count.
+ * Author: Rifa
+ * IIT no: 20220701
+ */
+package benchmarkClasses;
+
+import java.io.File;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+public final class BenchmarkRunner {
+
+    private BenchmarkRunner() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions commandLine = new CommandLineOptions(args);
+        File resultsDir = new File(System.getProperty("health.bench.results", "results"));
+        if (!resultsDir.isDirectory() && !resultsDir.mkdirs()) {
+            throw new IllegalStateException("Cannot create results directory " + resultsDir);
+        }
+        for (String threads : System.getProperty("health.bench.threads", "1,4,8").split(",")) {
+            File result = new File(resultsDir, "threads-" + threads.trim() + ".json");
+            Options options = new OptionsBuilder()
+                    .parent(commandLine)
+                    .threads(Integer.parseInt(threads.trim()))
+                    .resultFormat(ResultFormatType.JSON)
+                    .result(result.getPath())
+                    .build();
+            new Runner(options).run();
+            System.out.println("Results written to " + result);
+        }
+    }
+}
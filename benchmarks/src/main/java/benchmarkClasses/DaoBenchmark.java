@@ -0,0 +1,67 @@
+/**
+ * Throughput of each DAO operation on its own, for every DAO and dataset size.
+ *
+ * Narrow a run with JMH's own options, for example
+ *   java -jar target/benchmarks.jar DaoBenchmark.getById -p dao=patients -p size=100000 -t 4
+ * Author: Rifa
+ * IIT no: 20220701
+ */
+package benchmarkClasses;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class DaoBenchmark {
+
+    @Benchmark
+    public Object add(Dataset data, ThreadIds thread) {
+        Object entity = data.ops.create(thread.next++);
+        data.ops.add(entity);
+        return entity;
+    }
+
+    @Benchmark
+    public Object getById(Dataset data, ThreadIds thread) {
+        return data.ops.get(thread.random());
+    }
+
+    @Benchmark
+    public void update(Dataset data, ThreadIds thread) {
+        int id = thread.random();
+        data.ops.update(id, data.ops.create(id));
+    }
+
+    // Delete an entity and put it back, so the dataset keeps its size
+    @Benchmark
+    public void delete(Dataset data, ThreadIds thread) {
+        int id = thread.random();
+        Object entity = data.ops.get(id);
+        data.ops.delete(id);
+        data.ops.restore(entity);
+    }
+
+    @Benchmark
+    public boolean exists(Dataset data, ThreadIds thread) {
+        return data.ops.exists(thread.random());
+    }
+
+    // One pass over all entities; the score is passes per millisecond
+    @Benchmark
+    public void iterate(Dataset data, Blackhole blackhole) {
+        for (Object entity : data.ops.all()) {
+            blackhole.consume(entity);
+        }
+    }
+}
@@ -0,0 +1,234 @@
+/**
+ * The operations of one DAO behind a common interface, so every benchmark runs against
+ * every DAO by name. Entities are built the way a request would build them: clinical
+ * entities refer to patients and doctors from a pool added when the dataset is loaded.
+ * Author: Rifa
+ * IIT no: 20220701
+ */
+package benchmarkClasses;
+
+import daoClasses.AppointmentDAO;
+import daoClasses.BillingDAO;
+import daoClasses.DoctorDAO;
+import daoClasses.MedicalRecordDAO;
+import daoClasses.Page;
+import daoClasses.PatientDAO;
+import daoClasses.PersonDAO;
+import daoClasses.PrescriptionDAO;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import modelClasses.Appointment;
+import modelClasses.Billing;
+import modelClasses.Doctor;
+import modelClasses.MedicalRecord;
+import modelClasses.Patient;
+import modelClasses.Person;
+import modelClasses.Prescription;
+
+abstract class DaoOps<T> {
+
+    // Names accepted by forName(), as used for the "dao" benchmark parameter
+    static final List<String> NAMES = Arrays.asList(
+            "persons", "patients", "doctors", "appointments", "bills", "prescriptions", "medicalRecords");
+
+    // Patients and doctors the clinical entities refer to
+    private static final int REFERENCE_POOL = 1000;
+
+    private static Patient[] patients;
+    private static Doctor[] doctors;
+
+    /**
+     * Look up the operations of a DAO.
+     * @param name DAO name, one of NAMES
+     * @return The operations, typed for the benchmarks that treat all DAOs alike
+     */
+    @SuppressWarnings("unchecked")
+    static DaoOps<Object> forName(String name) {
+        DaoOps<?> ops;
+        switch (name) {
+            case "persons": ops = new Persons(); break;
+            case "patients": ops = new Patients(); break;
+            case "doctors": ops = new Doctors(); break;
+            case "appointments": ops = new Appointments(); break;
+            case "bills": ops = new Bills(); break;
+            case "prescriptions": ops = new Prescriptions(); break;
+            case "medicalRecords": ops = new MedicalRecords(); break;
+            default: throw new IllegalArgumentException("Unknown DAO " + name + ", expected one of " + NAMES);
+        }
+        if (ops.needsReferences()) {
+            addReferences();
+        }
+        return (DaoOps<Object>) ops;
+    }
+
+    // Add the pool of patients and doctors once per JVM; a fork runs one benchmark, so one dataset
+    private static synchronized void addReferences() {
+        if (patients != null) {
+            return;
+        }
+        List<Patient> newPatients = new ArrayList<>(REFERENCE_POOL);
+        List<Doctor> newDoctors = new ArrayList<>(REFERENCE_POOL);
+        for (int i = 0; i < REFERENCE_POOL; i++) {
+            newPatients.add(new Patient(0, "Patient " + i, "077" + i, "Colombo", "None", "Stable"));
+            newDoctors.add(new Doctor(0, "Doctor " + i, "071" + i, "Kandy", "General"));
+        }
+        PatientDAO.addPatients(newPatients);
+        DoctorDAO.addDoctors(newDoctors);
+        patients = newPatients.toArray(new Patient[0]);
+        doctors = newDoctors.toArray(new Doctor[0]);
+    }
+
+    static Patient patient(int n) {
+        return patients[Math.floorMod(n, patients.length)];
+    }
+
+    static Doctor doctor(int n) {
+        return doctors[Math.floorMod(n * 31, doctors.length)];
+    }
+
+    // True if the entities refer to patients and doctors
+    boolean needsReferences() {
+        return false;
+    }
+
+    // Build a new, valid entity; n varies its content
+    abstract T create(int n);
+
+    abstract void add(T entity);
+
+    // Add new entities as one batch
+    abstract void addAll(List<T> entities);
+
+    // Put a removed entity back under its own ID
+    abstract void restore(T entity);
+
+    abstract int idOf(T entity);
+
+    abstract T get(int id);
+
+    abstract void update(int id, T entity);
+
+    abstract void delete(int id);
+
+    abstract boolean exists(int id);
+
+    // All entities, for full iteration
+    abstract Collection<T> all();
+
+    // Entities with IDs above a cursor, in ID order
+    abstract Page<T> page(int after, int limit);
+
+    private static final class Persons extends DaoOps<Person> {
+        Person create(int n) { return new Person(0, "Person " + n, "070" + n, "Galle"); }
+        void add(Person entity) { PersonDAO.addPerson(entity); }
+        void addAll(List<Person> entities) { PersonDAO.addPersons(entities); }
+        void restore(Person entity) { PersonDAO.importPersons(Collections.singletonList(entity)); }
+        int idOf(Person entity) { return entity.getId(); }
+        Person get(int id) { return PersonDAO.getPersonById(id); }
+        void update(int id, Person entity) { PersonDAO.updatePerson(id, entity); }
+        void delete(int id) { PersonDAO.deletePerson(id); }
+        boolean exists(int id) { return PersonDAO.personExists(id); }
+        Collection<Person> all() { return PersonDAO.getPersons(); }
+        Page<Person> page(int after, int limit) { return PersonDAO.getPersonsPage(after, limit); }
+    }
+
+    private static final class Patients extends DaoOps<Patient> {
+        Patient create(int n) { return new Patient(0, "Patient " + n, "077" + n, "Colombo", "None", "Stable"); }
+        void add(Patient entity) { PatientDAO.addPatient(entity); }
+        void addAll(List<Patient> entities) { PatientDAO.addPatients(entities); }
+        void restore(Patient entity) { PatientDAO.importPatients(Collections.singletonList(entity)); }
+        int idOf(Patient entity) { return entity.getId(); }
+        Patient get(int id) { return PatientDAO.getPatientById(id); }
+        void update(int id, Patient entity) { PatientDAO.updatePatient(id, entity); }
+        void delete(int id) { PatientDAO.deletePatient(id); }
+        boolean exists(int id) { return PatientDAO.patientExists(id); }
+        Collection<Patient> all() { return PatientDAO.getPatients(); }
+        Page<Patient> page(int after, int limit) { return PatientDAO.getPatientsPage(after, limit); }
+    }
+
+    private static final class Doctors extends DaoOps<Doctor> {
+        Doctor create(int n) { return new Doctor(0, "Doctor " + n, "071" + n, "Kandy", "General"); }
+        void add(Doctor entity) { DoctorDAO.addDoctor(entity); }
+        void addAll(List<Doctor> entities) { DoctorDAO.addDoctors(entities); }
+        void restore(Doctor entity) { DoctorDAO.importDoctors(Collections.singletonList(entity)); }
+        int idOf(Doctor entity) { return entity.getId(); }
+        Doctor get(int id) { return DoctorDAO.getDoctorById(id); }
+        void update(int id, Doctor entity) { DoctorDAO.updateDoctor(id, entity); }
+        void delete(int id) { DoctorDAO.deleteDoctor(id); }
+        boolean exists(int id) { return DoctorDAO.doctorExists(id); }
+        Collection<Doctor> all() { return DoctorDAO.getDoctors(); }
+        Page<Doctor> page(int after, int limit) { return DoctorDAO.getDoctorsPage(after, limit); }
+    }
+
+    private static final class Appointments extends DaoOps<Appointment> {
+        boolean needsReferences() { return true; }
+        Appointment create(int n) {
+            // Spread over a year of days and the hours of a working day, so the time indexes see real keys
+            String date = LocalDate.of(2024, 1, 1).plusDays(Math.floorMod(n, 365)).toString();
+            String time = String.format("%02d:%02d", 8 + Math.floorMod(n, 10), Math.floorMod(n, 4) * 15);
+            return new Appointment(0, date, time, patient(n), doctor(n));
+        }
+        void add(Appointment entity) { AppointmentDAO.addAppointment(entity); }
+        void addAll(List<Appointment> entities) { AppointmentDAO.addAppointments(entities); }
+        void restore(Appointment entity) { AppointmentDAO.importAppointments(Collections.singletonList(entity)); }
+        int idOf(Appointment entity) { return entity.getAppointmentNo(); }
+        Appointment get(int id) { return AppointmentDAO.getAppointmentById(id); }
+        void update(int id, Appointment entity) { AppointmentDAO.updateAppointment(id, entity); }
+        void delete(int id) { AppointmentDAO.deleteAppointment(id); }
+        boolean exists(int id) { return AppointmentDAO.appointmentExists(id); }
+        Collection<Appointment> all() { return AppointmentDAO.getAppointments(); }
+        Page<Appointment> page(int after, int limit) { return AppointmentDAO.getAppointmentsPage(after, limit); }
+    }
+
+    private static final class Bills extends DaoOps<Billing> {
+        boolean needsReferences() { return true; }
+        // refID is replaced by the DAO, but validation wants it set
+        Billing create(int n) { return new Billing(1, patient(n), doctor(n), 1000 + Math.floorMod(n, 5000), n % 3 == 0); }
+        void add(Billing entity) { BillingDAO.addBill(entity); }
+        void addAll(List<Billing> entities) { BillingDAO.addBills(entities); }
+        void restore(Billing entity) { BillingDAO.importBills(Collections.singletonList(entity)); }
+        int idOf(Billing entity) { return entity.getRefID(); }
+        Billing get(int id) { return BillingDAO.getBillById(id); }
+        void update(int id, Billing entity) { BillingDAO.updateBill(id, entity); }
+        void delete(int id) { BillingDAO.deleteBill(id); }
+        boolean exists(int id) { return BillingDAO.billExists(id); }
+        Collection<Billing> all() { return BillingDAO.getBills(); }
+        Page<Billing> page(int after, int limit) { return BillingDAO.getBillsPage(after, limit); }
+    }
+
+    private static final class Prescriptions extends DaoOps<Prescription> {
+        boolean needsReferences() { return true; }
+        Prescription create(int n) {
+            return new Prescription(1, patient(n), doctor(n), "Paracetamol", "500mg", "After meals", 1 + Math.floorMod(n, 14));
+        }
+        void add(Prescription entity) { PrescriptionDAO.addPrescription(entity); }
+        void addAll(List<Prescription> entities) { PrescriptionDAO.addPrescriptions(entities); }
+        void restore(Prescription entity) { PrescriptionDAO.importPrescriptions(Collections.singletonList(entity)); }
+        int idOf(Prescription entity) { return entity.getPrescriptionId(); }
+        Prescription get(int id) { return PrescriptionDAO.getPrescriptionById(id); }
+        void update(int id, Prescription entity) { PrescriptionDAO.updatePrescription(id, entity); }
+        void delete(int id) { PrescriptionDAO.deletePrescription(id); }
+        boolean exists(int id) { return PrescriptionDAO.prescriptionExists(id); }
+        Collection<Prescription> all() { return PrescriptionDAO.getPrescriptions(); }
+        Page<Prescription> page(int after, int limit) { return PrescriptionDAO.getPrescriptionsPage(after, limit); }
+    }
+
+    private static final class MedicalRecords extends DaoOps<MedicalRecord> {
+        boolean needsReferences() { return true; }
+        MedicalRecord create(int n) { return new MedicalRecord(0, patient(n), "Diagnosis " + n, "Rest"); }
+        void add(MedicalRecord entity) { MedicalRecordDAO.addMedicalRecord(entity); }
+        void addAll(List<MedicalRecord> entities) { MedicalRecordDAO.addMedicalRecords(entities); }
+        void restore(MedicalRecord entity) { MedicalRecordDAO.importMedicalRecords(Collections.singletonList(entity)); }
+        int idOf(MedicalRecord entity) { return entity.getRecordId(); }
+        MedicalRecord get(int id) { return MedicalRecordDAO.getMedicalRecordById(id); }
+        void update(int id, MedicalRecord entity) { MedicalRecordDAO.updateMedicalRecord(id, entity); }
+        void delete(int id) { MedicalRecordDAO.deleteMedicalRecord(id); }
+        boolean exists(int id) { return MedicalRecordDAO.recordExists(id); }
+        Collection<MedicalRecord> all() { return MedicalRecordDAO.getMedicalRecords(); }
+        Page<MedicalRecord> page(int after, int limit) { return MedicalRecordDAO.getMedicalRecordsPage(after, limit); }
+    }
+}
@@ -0,0 +1,73 @@
+/**
+ * A DAO loaded with a number of entities, shared by all benchmark threads.
+ *
+ * Each iteration starts from the loaded dataset: entities added by the iteration (IDs above
+ * the last loaded one) are deleted again afterwards, so add benchmarks do not grow the store
+ * from one iteration to the next.
+ * Author: Rifa
+ * IIT no: 20220701
+ */
+package benchmarkClasses;
+
+import daoClasses.Page;
+import java.util.ArrayList;
+import java.util.List;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+@State(Scope.Benchmark)
+public class Dataset {
+
+    // Entities added per batch while loading
+    private static final int LOAD_BATCH = 10_000;
+
+    @Param({"persons", "patients", "doctors", "appointments", "bills", "prescriptions", "medicalRecords"})
+    public String dao;
+
+    @Param({"1000", "100000"})
+    public int size;
+
+    DaoOps<Object> ops;
+    // IDs of the loaded entities, in the order they were added
+    int[] ids;
+    // Highest loaded ID; entities above it were added by the benchmark
+    int lastLoadedId;
+
+    @Setup(Level.Trial)
+    public void load() {
+        ops = DaoOps.forName(dao);
+        ids = new int[size];
+        int loaded = 0;
+        while (loaded < size) {
+            List<Object> batch = new ArrayList<>(Math.min(LOAD_BATCH, size - loaded));
+            for (int i = 0; i < LOAD_BATCH && loaded + i < size; i++) {
+                batch.add(ops.create(loaded + i));
+            }
+            ops.addAll(batch);
+            for (Object entity : batch) {
+                ids[loaded++] = ops.idOf(entity);
+            }
+        }
+        for (int id : ids) {
+            lastLoadedId = Math.max(lastLoadedId, id);
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void trim() {
+        // One pass over the added IDs, each page starting where the last one stopped
+        Page<Object> page;
+        int after = lastLoadedId;
+        do {
+            page = ops.page(after, LOAD_BATCH);
+            for (Object entity : page.getItems()) {
+                ops.delete(ops.idOf(entity));
+            }
+            after = page.getNextCursor();
+        } while (page.hasNext());
+    }
+}
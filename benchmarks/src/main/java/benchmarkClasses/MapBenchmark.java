@@ -0,0 +1,92 @@
+/**
+ * The int-keyed map inside EntityStore against the boxed HashMap it replaced, single-threaded,
+ * so a change to the map can be judged apart from the locking around it.
+ * MapFootprint compares the heap the maps take.
+ * Author: Rifa
+ * IIT no: 20220701
+ */
+package benchmarkClasses;
+
+import daoClasses.IntObjectMap;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class MapBenchmark {
+
+    @Param({"1000", "100000", "1000000", "10000000"})
+    public int size;
+
+    private final Object value = new Object();
+    private IntObjectMap<Object> intMap;
+    private HashMap<Integer, Object> hashMap;
+
+    @Setup(Level.Trial)
+    public void fill() {
+        intMap = new IntObjectMap<>();
+        hashMap = new HashMap<>();
+        for (int key = 1; key <= size; key++) {
+            intMap.put(key, value);
+            hashMap.put(key, value);
+        }
+    }
+
+    private int randomKey() {
+        return 1 + ThreadLocalRandom.current().nextInt(size);
+    }
+
+    @Benchmark
+    public Object intMapGet() {
+        return intMap.get(randomKey());
+    }
+
+    @Benchmark
+    public Object hashMapGet() {
+        return hashMap.get(randomKey());
+    }
+
+    // Replace an existing key, as an update does
+    @Benchmark
+    public Object intMapPut() {
+        return intMap.put(randomKey(), value);
+    }
+
+    @Benchmark
+    public Object hashMapPut() {
+        return hashMap.put(randomKey(), value);
+    }
+
+    @Benchmark
+    public void intMapIterate(Blackhole blackhole) {
+        for (Iterator<Object> values = intMap.values(); values.hasNext(); ) {
+            blackhole.consume(values.next());
+        }
+    }
+
+    @Benchmark
+    public void hashMapIterate(Blackhole blackhole) {
+        for (Object entity : hashMap.values()) {
+            blackhole.consume(entity);
+        }
+    }
+}
@@ -0,0 +1,88 @@
+/**
+ * Heap taken by the store's IntObjectMap against the boxed HashMap it replaced and a
+ * ConcurrentHashMap, at 1M and 10M entries. Each map is built on its own and measured as the
+ * growth of the used heap after garbage collection, keys included; every entry shares one
+ * value object, so only the map's own overhead is counted. JMH measures time, not space, so
+ * this is a plain program:
+ * java -Xmx4g -XX:+UseSerialGC -cp target/benchmarks.jar benchmarkClasses.MapFootprint [sizes...]
+ * Author: Rifa
+ * IIT no: 20220701
+ */
+package benchmarkClasses;
+
+import daoClasses.IntObjectMap;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.HashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.IntFunction;
+
+public final class MapFootprint {
+
+    private static final Object VALUE = new Object();
+    private static final MemoryMXBean MEMORY = ManagementFactory.getMemoryMXBean();
+
+    // Keeps the measured map reachable until its size has been read
+    private static Object retained;
+
+    private MapFootprint() {
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        int[] sizes = args.length > 0 ? new int[args.length] : new int[] {1_000_000, 10_000_000};
+        for (int i = 0; i < args.length; i++) {
+            sizes[i] = Integer.parseInt(args[i]);
+        }
+        System.out.printf("%-18s %12s %14s %12s%n", "map", "entries", "heap MB", "bytes/entry");
+        for (int size : sizes) {
+            print("IntObjectMap", size, measure(size, MapFootprint::intObjectMap));
+            print("HashMap", size, measure(size, MapFootprint::hashMap));
+            print("ConcurrentHashMap", size, measure(size, MapFootprint::concurrentHashMap));
+        }
+    }
+
+    private static Object intObjectMap(int size) {
+        IntObjectMap<Object> map = new IntObjectMap<>();
+        for (int key = 1; key <= size; key++) {
+            map.put(key, VALUE);
+        }
+        return map;
+    }
+
+    private static Object hashMap(int size) {
+        HashMap<Integer, Object> map = new HashMap<>();
+        for (int key = 1; key <= size; key++) {
+            map.put(key, VALUE);
+        }
+        return map;
+    }
+
+    private static Object concurrentHashMap(int size) {
+        ConcurrentHashMap<Integer, Object> map = new ConcurrentHashMap<>();
+        for (int key = 1; key <= size; key++) {
+            map.put(key, VALUE);
+        }
+        return map;
+    }
+
+    // Growth of the used heap, after collection, from building one map
+    private static long measure(int size, IntFunction<Object> build) throws InterruptedException {
+        long before = usedAfterGc();
+        retained = build.apply(size);
+        long after = usedAfterGc();
+        retained = null;
+        return after - before;
+    }
+
+    private static long usedAfterGc() throws InterruptedException {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(100);
+        }
+        return MEMORY.getHeapMemoryUsage().getUsed();
+    }
+
+    private static void print(String map, int size, long bytes) {
+        System.out.printf("%-18s %12d %14.1f %12.1f%n", map, size, bytes / 1048576.0, (double) bytes / size);
+    }
+}
@@ -0,0 +1,72 @@
+/**
+ * Cost of journaling writes to the write-ahead log under each fsync policy, as the
+ * latency of adding a patient. Run at several thread counts to see group commit at
+ * work: under per-batch, concurrent writers share their fsyncs.
+ *
+ * The log is written to a temporary directory, removed again after the trial, so the
+ * results depend on the disk that java.io.tmpdir is on.
+ * Author: Rifa
+ * IIT no: 20220701
+ */
+package benchmarkClasses;
+
+import configFiles.PersistenceConfig;
+import daoClasses.PatientDAO;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import modelClasses.Patient;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import persistenceClasses.FsyncPolicy;
+import persistenceClasses.Persistence;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PersistenceBenchmark {
+
+    @Param({"per-write", "per-batch", "per-interval"})
+    public String fsync;
+
+    private Path directory;
+
+    @Setup(Level.Trial)
+    public void start() throws IOException {
+        directory = Files.createTempDirectory("health-benchmark");
+        // No periodic snapshots, so only the log is measured
+        Persistence.start(new PersistenceConfig(true, directory, FsyncPolicy.fromString(fsync), 100, 0));
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() throws IOException {
+        Persistence.stop();
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public Patient addPatient() {
+        Patient patient = new Patient(0, "Patient", "0771234567", "Colombo", "None", "Stable");
+        PatientDAO.addPatient(patient);
+        return patient;
+    }
+}
@@ -0,0 +1,98 @@
+/**
+ * Writing a page of entities with a ?fields= projection against writing the same entities
+ * whole, through the shared mapper as the response writer does. Appointments project a
+ * field of their nested patient, so the cost of switching projections per property shows.
+ * Output goes to a stream that only counts, so the scores hold serialization alone.
+ * Author: Rifa
+ * IIT no: 20220701
+ */
+package benchmarkClasses;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import configFiles.FieldProjection;
+import configFiles.ObjectMapperProvider;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class ProjectionBenchmark {
+
+    private static final ObjectMapper MAPPER = ObjectMapperProvider.getMapper();
+
+    @Param({"patients", "appointments"})
+    public String dao;
+
+    // Entities in the written page
+    @Param({"100", "1000"})
+    public int size;
+
+    private List<Object> page;
+    private String fields;
+
+    @Setup
+    public void load() {
+        DaoOps<Object> ops = DaoOps.forName(dao);
+        List<Object> entities = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            entities.add(ops.create(i));
+        }
+        ops.addAll(entities);
+        page = new ArrayList<>(ops.page(0, size).getItems());
+        fields = "appointments".equals(dao) ? "appointmentNo,date,patient.name" : "id,name";
+    }
+
+    @Benchmark
+    public long full() throws IOException {
+        CountingStream out = new CountingStream();
+        MAPPER.writeValue(out, page);
+        return out.count;
+    }
+
+    // Parses the fields too, as every projected request does
+    @Benchmark
+    public long projected() throws IOException {
+        CountingStream out = new CountingStream();
+        FieldProjection.setCurrent(FieldProjection.parse(fields));
+        try {
+            MAPPER.writeValue(out, page);
+        } finally {
+            FieldProjection.setCurrent(null);
+        }
+        return out.count;
+    }
+
+    // Discards what is written, keeping only its length
+    private static final class CountingStream extends OutputStream {
+
+        private long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+}
@@ -0,0 +1,39 @@
+/**
+ * The share of the dataset's IDs one benchmark thread works on. The IDs are dealt out
+ * between the threads, so a thread that deletes and restores an entity never races
+ * with another thread doing the same to it.
+ * Author: Rifa
+ * IIT no: 20220701
+ */
+package benchmarkClasses;
+
+import java.util.concurrent.ThreadLocalRandom;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.ThreadParams;
+
+@State(Scope.Thread)
+public class ThreadIds {
+
+    private int[] ids;
+    // Counter for varying the content of new entities
+    int next;
+
+    @Setup(Level.Trial)
+    public void deal(Dataset data, ThreadParams thread) {
+        int threads = thread.getThreadCount();
+        int index = thread.getThreadIndex();
+        ids = new int[Math.max(1, (data.ids.length - index + threads - 1) / threads)];
+        for (int i = index, n = 0; i < data.ids.length; i += threads) {
+            ids[n++] = data.ids[i];
+        }
+        next = index * 1_000_000;
+    }
+
+    // One of this thread's IDs, picked at random
+    int random() {
+        return ids[ThreadLocalRandom.current().nextInt(ids.length)];
+    }
+}
@@ -0,0 +1,45 @@
+/**
+ * Reads and updates mixed in one stream of operations, as under real traffic: 90% reads
+ * (read-heavy), 50% (mixed) or 10% (write-heavy). Run at several thread counts, this shows
+ * how readers and writers of the same store get in each other's way.
+ * Author: Rifa
+ * IIT no: 20220701
+ */
+package benchmarkClasses;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class WorkloadBenchmark {
+
+    // Share of operations that are reads, in percent
+    @Param({"90", "50", "10"})
+    public int readPercent;
+
+    @Benchmark
+    public Object mixed(Dataset data, ThreadIds thread) {
+        int id = thread.random();
+        if (ThreadLocalRandom.current().nextInt(100) < readPercent) {
+            return data.ops.get(id);
+        }
+        Object entity = data.ops.create(id);
+        data.ops.update(id, entity);
+        return entity;
+    }
+}
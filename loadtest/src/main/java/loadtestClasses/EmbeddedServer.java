@@ -0,0 +1,87 @@
+/**
+ * The application served in-process from the JDK's HTTP server on the loopback interface,
+ * with the same ApplicationConfig as under Tomcat, so requests go through the real Jersey
+ * routing, Jackson serialization, filters and exception mappers.
+ * Author: Rifa
+ * IIT no: 20220701
+ */
+package loadtestClasses;
+
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import configFiles.ApplicationConfig;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.glassfish.jersey.jdkhttp.JdkHttpHandlerContainer;
+import org.glassfish.jersey.server.ContainerFactory;
+import org.glassfish.jersey.server.ResourceConfig;
+import org.glassfish.jersey.server.ServerProperties;
+
+final class EmbeddedServer implements AutoCloseable {
+
+    // Same path as the @ApplicationPath of ApplicationConfig
+    static final String CONTEXT_PATH = "/webresources";
+
+    private final HttpServer server;
+    private final JdkHttpHandlerContainer container;
+    private final ExecutorService workers;
+
+    private EmbeddedServer(HttpServer server, JdkHttpHandlerContainer container, ExecutorService workers) {
+        this.server = server;
+        this.container = container;
+        this.workers = workers;
+    }
+
+    /**
+     * Start the application on a free port.
+     * @param threads Request threads; the JDK server handles requests on its own thread otherwise
+     * @return The running server
+     */
+    static EmbeddedServer start(int threads) throws IOException {
+        // Without TCP_NODELAY the JDK server's separate header and body writes wait out the
+        // client's delayed ACK, adding about 40 ms to every response; read when the server is created
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+        JdkHttpHandlerContainer container = (JdkHttpHandlerContainer) ContainerFactory.createContainer(
+                HttpHandler.class, ResourceConfig.forApplication(new ApplicationConfig())
+                        // WADL needs JAXB, which is not on the classpath; it only logs a warning otherwise
+                        .property(ServerProperties.WADL_FEATURE_DISABLE, true));
+        HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 1024);
+        AtomicInteger threadIds = new AtomicInteger();
+        ExecutorService workers = Executors.newFixedThreadPool(threads, task -> {
+            Thread thread = new Thread(task, "http-" + threadIds.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.setExecutor(workers);
+        server.createContext(CONTEXT_PATH, container);
+        server.start();
+        return new EmbeddedServer(server, container, workers);
+    }
+
+    // Base URL of the application, such as http://127.0.0.1:41234/webresources
+    String getBaseUrl() {
+        InetSocketAddress address = server.getAddress();
+        return "http://" + address.getAddress().getHostAddress() + ":" + address.getPort() + CONTEXT_PATH;
+    }
+
+    // Stop accepting requests and shut the application down, which also closes the log if persistence is on
+    @Override
+    public void close() {
+        server.stop(0);
+        workers.shutdown();
+        try {
+            workers.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            // Shut the application down anyway and leave the interrupt to the caller
+            Thread.currentThread().interrupt();
+        }
+        container.getApplicationHandler().onShutdown(container);
+    }
+}
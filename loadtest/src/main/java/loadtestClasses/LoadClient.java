@@ -0,0 +1,85 @@
+/**
+ * One simulated client: sends a request, waits for the whole response, then sends the next
+ * (a closed loop, so the load adapts to the server rather than piling up). Requests sent
+ * during the warm-up are not recorded.
+ * Author: Rifa
+ * IIT no: 20220701
+ */
+package loadtestClasses;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.SplittableRandom;
+
+final class LoadClient implements Runnable {
+
+    private final String baseUrl;
+    private final Mix mix;
+    private final SeedData data;
+    private final SplittableRandom random;
+    private final long recordFromNanos;
+    private final long stopAtNanos;
+    private final LoadReport report;
+    private final byte[] buffer = new byte[8192];
+
+    LoadClient(String baseUrl, Mix mix, SeedData data, long seed, long recordFromNanos, long stopAtNanos,
+            LoadReport report) {
+        this.baseUrl = baseUrl;
+        this.mix = mix;
+        this.data = data;
+        this.random = new SplittableRandom(seed);
+        this.recordFromNanos = recordFromNanos;
+        this.stopAtNanos = stopAtNanos;
+        this.report = report;
+    }
+
+    @Override
+    public void run() {
+        long start;
+        while ((start = System.nanoTime()) < stopAtNanos) {
+            Operation operation = mix.pick(random);
+            String path = operation.path(data, random);
+            String body = operation.body(data, random);
+            int status;
+            try {
+                status = send(operation.getMethod(), path, body);
+            } catch (IOException e) {
+                // Counted as an error; the connection is dropped and the next request opens a new one
+                status = 0;
+            }
+            if (start >= recordFromNanos) {
+                report.record(operation, System.nanoTime() - start, status);
+            }
+        }
+    }
+
+    // Send one request and read the whole response, so the connection can be reused
+    private int send(String method, String path, String body) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(baseUrl + path).openConnection();
+        connection.setRequestMethod(method);
+        connection.setRequestProperty("Accept", "application/json");
+        if (body != null) {
+            byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+            connection.setDoOutput(true);
+            connection.setRequestProperty("Content-Type", "application/json");
+            connection.setFixedLengthStreamingMode(bytes.length);
+            try (OutputStream out = connection.getOutputStream()) {
+                out.write(bytes);
+            }
+        }
+        int status = connection.getResponseCode();
+        InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream();
+        if (in != null) {
+            try (InputStream response = in) {
+                while (response.read(buffer) != -1) {
+                    // Drain the body
+                }
+            }
+        }
+        return status;
+    }
+}
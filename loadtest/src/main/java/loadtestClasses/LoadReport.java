@@ -0,0 +1,130 @@
+/**
+ * Results of a load test: requests, errors, throughput and latency percentiles for each
+ * operation and overall. A report saved as JSON serves as the baseline of later runs,
+ * which regress when their throughput drops or their p99 latency rises past a tolerance.
+ * Author: Rifa
+ * IIT no: 20220701
+ */
+package loadtestClasses;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import metricsClasses.LatencyHistogram;
+
+final class LoadReport {
+
+    static final String TOTAL = "total";
+
+    private static final double[] PERCENTILES = {0.5, 0.9, 0.99, 0.999};
+    private static final String[] PERCENTILE_NAMES = {"p50Ms", "p90Ms", "p99Ms", "p999Ms"};
+
+    private final Map<Operation, Stats> byOperation = new EnumMap<>(Operation.class);
+    private final Stats total = new Stats();
+
+    LoadReport() {
+        for (Operation operation : Operation.values()) {
+            byOperation.put(operation, new Stats());
+        }
+    }
+
+    /**
+     * Record one request; any status other than 2xx, or no response at all, is an error.
+     * @param operation Operation of the request
+     * @param nanos Time from sending the request to reading the whole response
+     * @param status HTTP status, 0 if the request failed
+     */
+    void record(Operation operation, long nanos, int status) {
+        boolean error = status < 200 || status >= 300;
+        byOperation.get(operation).record(nanos, error);
+        total.record(nanos, error);
+    }
+
+    /**
+     * Summarize the results as maps, for printing and for JSON.
+     * @param seconds Length of the measured part of the run
+     * @return Summary by operation label, with the overall summary under "total"
+     */
+    Map<String, Map<String, Object>> summarize(double seconds) {
+        Map<String, Map<String, Object>> summary = new LinkedHashMap<>();
+        for (Map.Entry<Operation, Stats> entry : byOperation.entrySet()) {
+            if (entry.getValue().requests.sum() > 0) {
+                summary.put(entry.getKey().getLabel(), entry.getValue().summarize(seconds));
+            }
+        }
+        summary.put(TOTAL, total.summarize(seconds));
+        return summary;
+    }
+
+    /**
+     * Compare a run's summary with a baseline's.
+     * @param current Summary of this run
+     * @param baseline Summary of the baseline run
+     * @param tolerancePercent Allowed drop in throughput and rise in p99, in percent
+     * @return One line per regression, empty if the run is within tolerance
+     */
+    static List<String> compare(Map<String, Map<String, Object>> current, Map<String, Map<String, Object>> baseline,
+            double tolerancePercent) {
+        List<String> regressions = new ArrayList<>();
+        double tolerance = tolerancePercent / 100;
+        for (Map.Entry<String, Map<String, Object>> entry : baseline.entrySet()) {
+            Map<String, Object> now = current.get(entry.getKey());
+            if (now == null) {
+                continue;
+            }
+            double throughput = number(now, "throughput");
+            double baseThroughput = number(entry.getValue(), "throughput");
+            if (throughput < baseThroughput * (1 - tolerance)) {
+                regressions.add(String.format("%s: throughput %.1f/s, baseline %.1f/s",
+                        entry.getKey(), throughput, baseThroughput));
+            }
+            double p99 = number(now, "p99Ms");
+            double baseP99 = number(entry.getValue(), "p99Ms");
+            if (p99 > baseP99 * (1 + tolerance)) {
+                regressions.add(String.format("%s: p99 %.3f ms, baseline %.3f ms", entry.getKey(), p99, baseP99));
+            }
+        }
+        return regressions;
+    }
+
+    private static double number(Map<String, Object> summary, String key) {
+        Object value = summary.get(key);
+        return value instanceof Number ? ((Number) value).doubleValue() : 0;
+    }
+
+    // Counters of one operation, or of all
+    static final class Stats {
+
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final LongAdder requests = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+
+        void record(long nanos, boolean error) {
+            latency.record(nanos);
+            requests.increment();
+            if (error) {
+                errors.increment();
+            }
+        }
+
+        Map<String, Object> summarize(double seconds) {
+            LatencyHistogram.Snapshot snapshot = latency.snapshot();
+            Map<String, Object> summary = new LinkedHashMap<>();
+            summary.put("requests", requests.sum());
+            summary.put("errors", errors.sum());
+            summary.put("throughput", round(requests.sum() / seconds));
+            summary.put("meanMs", round(snapshot.getCount() > 0 ? snapshot.getSum() / 1e6 / snapshot.getCount() : 0));
+            for (int i = 0; i < PERCENTILES.length; i++) {
+                summary.put(PERCENTILE_NAMES[i], round(snapshot.getValue(PERCENTILES[i]) / 1e6));
+            }
+            return summary;
+        }
+
+        private static double round(double value) {
+            return Math.round(value * 1000) / 1000.0;
+        }
+    }
+}
@@ -0,0 +1,155 @@
+/**
+ * End-to-end load test: boots the application in-process, seeds it, then drives a mix of
+ * REST routes from many concurrent clients over HTTP and reports throughput and latency
+ * percentiles for each route.
+ *
+ * Usage: java -jar target/loadtest.jar [--option=value ...]
+ *   --clients=64            concurrent clients
+ *   --duration=30           measured seconds, after the warm-up
+ *   --warmup=10             seconds of unrecorded warm-up
+ *   --mix=mixed             read-heavy, mixed, write-heavy or e.g. readChart=70,listBills=30
+ *   --patients=10000        seeded patients, each with appointments, bills and a record
+ *   --doctors=200           seeded doctors
+ *   --serverThreads=N       request threads of the server (default 2 per processor)
+ *   --seed=42               seed of the data and the clients' choices
+ *   --report=FILE           write the results as JSON
+ *   --baseline=FILE         compare with a saved report; exit with 1 on a regression
+ *   --tolerance=10          allowed drop in throughput and rise in p99, in percent
+ *   --saveBaseline          write the results to the baseline file instead of comparing
+ * Runs exit with 1 as well when more than --maxErrorRate percent (default 1) of requests fail.
+ *
+ * Persistence is off unless -Dhealth.persistence.enabled=true is given, and the server logs
+ * at WARN (see logback.xml) so the console keeps up; both are costs a real deployment pays.
+ * Author: Rifa
+ * IIT no: 20220701
+ */
+package loadtestClasses;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import java.io.File;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+public final class LoadTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+
+    private LoadTest() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new LinkedHashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--")) {
+                System.err.println("Unexpected argument " + arg + "; options are given as --name=value");
+                System.exit(2);
+            }
+            int equals = arg.indexOf('=');
+            options.put(equals > 0 ? arg.substring(2, equals) : arg.substring(2), equals > 0 ? arg.substring(equals + 1) : "true");
+        }
+        int clients = Integer.parseInt(options.getOrDefault("clients", "64"));
+        int duration = Integer.parseInt(options.getOrDefault("duration", "30"));
+        int warmup = Integer.parseInt(options.getOrDefault("warmup", "10"));
+        Mix mix = Mix.parse(options.getOrDefault("mix", "mixed"));
+        int patients = Integer.parseInt(options.getOrDefault("patients", "10000"));
+        int doctors = Integer.parseInt(options.getOrDefault("doctors", "200"));
+        int serverThreads = Integer.parseInt(options.getOrDefault("serverThreads",
+                String.valueOf(2 * Runtime.getRuntime().availableProcessors())));
+        long seed = Long.parseLong(options.getOrDefault("seed", "42"));
+        double tolerance = Double.parseDouble(options.getOrDefault("tolerance", "10"));
+        double maxErrorRate = Double.parseDouble(options.getOrDefault("maxErrorRate", "1"));
+
+        // Keep a connection per client alive instead of the default 5
+        System.setProperty("http.maxConnections", String.valueOf(clients));
+        if (System.getProperty("health.persistence.enabled") == null) {
+            System.setProperty("health.persistence.enabled", "false");
+        }
+
+        Map<String, Map<String, Object>> results;
+        try (EmbeddedServer server = EmbeddedServer.start(serverThreads)) {
+            SeedData data = SeedData.load(patients, doctors, new SplittableRandom(seed));
+            System.out.printf("Serving %s with %d threads; %d clients, mix %s, %ds warm-up, %ds measured%n",
+                    server.getBaseUrl(), serverThreads, clients, mix, warmup, duration);
+            results = run(server.getBaseUrl(), mix, data, clients, warmup, duration, seed);
+        }
+        print(results);
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        Map<String, Object> settings = new LinkedHashMap<>();
+        settings.put("clients", clients);
+        settings.put("durationSeconds", duration);
+        settings.put("mix", mix.toString());
+        settings.put("patients", patients);
+        settings.put("doctors", doctors);
+        settings.put("serverThreads", serverThreads);
+        report.put("settings", settings);
+        report.put("results", results);
+        if (options.containsKey("report")) {
+            MAPPER.writeValue(new File(options.get("report")), report);
+        }
+
+        boolean failed = false;
+        Map<String, Object> total = results.get(LoadReport.TOTAL);
+        long requests = ((Number) total.get("requests")).longValue();
+        long errors = ((Number) total.get("errors")).longValue();
+        if (requests == 0 || errors * 100.0 / requests > maxErrorRate) {
+            System.out.printf("FAILED: %d of %d requests failed%n", errors, requests);
+            failed = true;
+        }
+        String baseline = options.get("baseline");
+        if (baseline != null && options.containsKey("saveBaseline") && !failed) {
+            MAPPER.writeValue(new File(baseline), report);
+            System.out.println("Saved baseline " + baseline);
+        } else if (baseline != null && !options.containsKey("saveBaseline")) {
+            List<String> regressions = LoadReport.compare(results, readResults(new File(baseline)), tolerance);
+            for (String regression : regressions) {
+                System.out.println("REGRESSION " + regression);
+            }
+            if (regressions.isEmpty()) {
+                System.out.printf("Within %.0f%% of baseline %s%n", tolerance, baseline);
+            }
+            failed |= !regressions.isEmpty();
+        }
+        System.exit(failed ? 1 : 0);
+    }
+
+    // Run the clients through the warm-up and the measured period
+    private static Map<String, Map<String, Object>> run(String baseUrl, Mix mix, SeedData data, int clients,
+            int warmup, int duration, long seed) throws InterruptedException {
+        LoadReport report = new LoadReport();
+        long recordFrom = System.nanoTime() + TimeUnit.SECONDS.toNanos(warmup);
+        long stopAt = recordFrom + TimeUnit.SECONDS.toNanos(duration);
+        Thread[] threads = new Thread[clients];
+        for (int i = 0; i < clients; i++) {
+            threads[i] = new Thread(new LoadClient(baseUrl, mix, data, seed + 1 + i, recordFrom, stopAt, report),
+                    "client-" + i);
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        return report.summarize(duration);
+    }
+
+    static Map<String, Map<String, Object>> readResults(File file) throws IOException {
+        Map<String, Object> saved = MAPPER.readValue(file, new TypeReference<Map<String, Object>>() { });
+        return MAPPER.convertValue(saved.get("results"), new TypeReference<Map<String, Map<String, Object>>>() { });
+    }
+
+    private static void print(Map<String, Map<String, Object>> results) {
+        System.out.printf("%-16s %10s %8s %10s %9s %9s %9s %9s %9s%n",
+                "operation", "requests", "errors", "req/s", "mean ms", "p50 ms", "p90 ms", "p99 ms", "p999 ms");
+        for (Map.Entry<String, Map<String, Object>> entry : results.entrySet()) {
+            Map<String, Object> row = entry.getValue();
+            System.out.printf("%-16s %10d %8d %10.1f %9.3f %9.3f %9.3f %9.3f %9.3f%n", entry.getKey(),
+                    row.get("requests"), row.get("errors"), row.get("throughput"), row.get("meanMs"),
+                    row.get("p50Ms"), row.get("p90Ms"), row.get("p99Ms"), row.get("p999Ms"));
+        }
+    }
+}
@@ -0,0 +1,84 @@
+/**
+ * Weighted choice of operations for a load test, given as "readChart=60,listBills=30,..."
+ * or by one of the preset names: read-heavy, mixed and write-heavy.
+ * Author: Rifa
+ * IIT no: 20220701
+ */
+package loadtestClasses;
+
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+final class Mix {
+
+    private static final Map<String, String> PRESETS = new LinkedHashMap<>();
+
+    static {
+        PRESETS.put("read-heavy", "readChart=60,listBills=30,bookAppointment=8,createPatient=2");
+        PRESETS.put("mixed", "readChart=25,listBills=25,bookAppointment=25,createPatient=25");
+        PRESETS.put("write-heavy", "createPatient=40,bookAppointment=40,readChart=10,listBills=10");
+    }
+
+    private final String description;
+    private final Operation[] operations;
+    // Running totals of the weights, for picking with one random number
+    private final int[] cumulative;
+
+    private Mix(String description, Map<Operation, Integer> weights) {
+        this.description = description;
+        this.operations = weights.keySet().toArray(new Operation[0]);
+        this.cumulative = new int[operations.length];
+        int total = 0;
+        for (int i = 0; i < operations.length; i++) {
+            total += weights.get(operations[i]);
+            cumulative[i] = total;
+        }
+    }
+
+    /**
+     * Parse a mix.
+     * @param value Preset name, or comma-separated operation=weight pairs
+     * @return The mix
+     * @throws IllegalArgumentException If an operation or weight is not valid
+     */
+    static Mix parse(String value) {
+        String spec = PRESETS.getOrDefault(value, value);
+        Map<Operation, Integer> weights = new EnumMap<>(Operation.class);
+        for (String part : spec.split(",")) {
+            String[] pair = part.trim().split("=");
+            if (pair.length != 2) {
+                throw new IllegalArgumentException("Expected operation=weight in the mix, got " + part
+                        + " (or a preset: " + PRESETS.keySet() + ")");
+            }
+            int weight = Integer.parseInt(pair[1].trim());
+            if (weight < 0) {
+                throw new IllegalArgumentException("Weights must not be negative: " + part);
+            }
+            if (weight > 0) {
+                weights.merge(Operation.fromLabel(pair[0].trim()), weight, Integer::sum);
+            }
+        }
+        if (weights.isEmpty()) {
+            throw new IllegalArgumentException("The mix has no operations: " + value);
+        }
+        return new Mix(value.equals(spec) ? spec : value + " (" + spec + ")", weights);
+    }
+
+    // Pick an operation in proportion to its weight
+    Operation pick(SplittableRandom random) {
+        int ticket = random.nextInt(cumulative[cumulative.length - 1]);
+        for (int i = 0; i < cumulative.length; i++) {
+            if (ticket < cumulative[i]) {
+                return operations[i];
+            }
+        }
+        return operations[operations.length - 1];
+    }
+
+    @Override
+    public String toString() {
+        return description;
+    }
+}
@@ -0,0 +1,96 @@
+/**
+ * The REST routes a load test drives, each building its request from the seeded data.
+ * Author: Rifa
+ * IIT no: 20220701
+ */
+package loadtestClasses;
+
+import java.util.SplittableRandom;
+
+enum Operation {
+
+    CREATE_PATIENT("createPatient", "POST") {
+        @Override
+        String path(SeedData data, SplittableRandom random) {
+            return "/patients/add";
+        }
+
+        @Override
+        String body(SeedData data, SplittableRandom random) {
+            return "{\"name\":\"Load Patient\",\"contact\":\"077" + random.nextInt(10_000_000)
+                    + "\",\"address\":\"Colombo\",\"medicalHistory\":\"None\",\"healthStatus\":\"Stable\"}";
+        }
+    },
+
+    BOOK_APPOINTMENT("bookAppointment", "POST") {
+        @Override
+        String path(SeedData data, SplittableRandom random) {
+            return "/appointments/add";
+        }
+
+        @Override
+        String body(SeedData data, SplittableRandom random) {
+            return "{\"date\":\"" + SeedData.date(random) + "\",\"time\":\"" + SeedData.time(random)
+                    + "\",\"patient\":{\"id\":" + data.patient(random)
+                    + "},\"doctor\":{\"id\":" + data.doctor(random) + "}}";
+        }
+    },
+
+    READ_CHART("readChart", "GET") {
+        @Override
+        String path(SeedData data, SplittableRandom random) {
+            return "/patients/" + data.patient(random) + "/chart";
+        }
+    },
+
+    LIST_BILLS("listBills", "GET") {
+        @Override
+        String path(SeedData data, SplittableRandom random) {
+            return "/bills?patientId=" + data.patient(random);
+        }
+    };
+
+    // Name used in mixes and reports, such as "readChart"
+    private final String label;
+    private final String method;
+
+    Operation(String label, String method) {
+        this.label = label;
+        this.method = method;
+    }
+
+    String getLabel() {
+        return label;
+    }
+
+    String getMethod() {
+        return method;
+    }
+
+    // Path of a request below the application's base URL, with any query
+    abstract String path(SeedData data, SplittableRandom random);
+
+    // JSON body of a request, or null for none
+    String body(SeedData data, SplittableRandom random) {
+        return null;
+    }
+
+    /**
+     * Look up an operation by its label.
+     * @param label Label such as "readChart"
+     * @return The operation
+     * @throws IllegalArgumentException If no operation has the label
+     */
+    static Operation fromLabel(String label) {
+        for (Operation operation : values()) {
+            if (operation.label.equals(label)) {
+                return operation;
+            }
+        }
+        StringBuilder labels = new StringBuilder();
+        for (Operation operation : values()) {
+            labels.append(labels.length() > 0 ? ", " : "").append(operation.label);
+        }
+        throw new IllegalArgumentException("Unknown operation " + label + " (one of " + labels + ")");
+    }
+}
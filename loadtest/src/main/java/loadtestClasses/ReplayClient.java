@@ -0,0 +1,97 @@
+/**
+ * Replays one lane of a capture: sends its requests one after another, each no earlier
+ * than its arrival in the capture scaled by the speed, or as soon as the previous response
+ * is read when replaying at full speed. A request that falls behind its schedule is sent
+ * at once and the lag recorded.
+ * Author: Rifa
+ * IIT no: 20220701
+ */
+package loadtestClasses;
+
+import captureClasses.CapturedRequest;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.LockSupport;
+
+final class ReplayClient implements Runnable {
+
+    private final String baseUrl;
+    private final List<CapturedRequest> lane;
+    private final long firstOffsetMicros;
+    private final long startNanos;
+    private final double speed;
+    private final ReplayReport report;
+    private final byte[] buffer = new byte[8192];
+
+    /**
+     * @param baseUrl Base URL of the application, such as http://127.0.0.1:8080/webresources
+     * @param lane Requests to replay in order
+     * @param firstOffsetMicros Arrival of the capture's first request, replayed at startNanos
+     * @param startNanos System.nanoTime() the replay starts at
+     * @param speed Multiple of the captured pace, 0 for as fast as possible
+     * @param report Collects the results
+     */
+    ReplayClient(String baseUrl, List<CapturedRequest> lane, long firstOffsetMicros, long startNanos, double speed,
+            ReplayReport report) {
+        this.baseUrl = baseUrl;
+        this.lane = lane;
+        this.firstOffsetMicros = firstOffsetMicros;
+        this.startNanos = startNanos;
+        this.speed = speed;
+        this.report = report;
+    }
+
+    @Override
+    public void run() {
+        for (CapturedRequest request : lane) {
+            long start = System.nanoTime();
+            if (speed > 0) {
+                long due = startNanos + (long) ((request.getOffsetMicros() - firstOffsetMicros) * 1000 / speed);
+                while ((start = System.nanoTime()) < due) {
+                    LockSupport.parkNanos(due - start);
+                }
+                report.recordLag(start - due);
+            }
+            int status;
+            try {
+                status = send(request);
+            } catch (IOException e) {
+                // Counted as an error; the connection is dropped and the next request opens a new one
+                status = 0;
+            }
+            report.recordReplayed(request, System.nanoTime() - start, status);
+        }
+    }
+
+    // Send one request as captured and read the whole response, so the connection can be reused
+    private int send(CapturedRequest request) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(baseUrl + "/" + request.getPath()).openConnection();
+        connection.setRequestMethod(request.getMethod());
+        for (Map.Entry<String, String> header : request.getHeaders().entrySet()) {
+            connection.setRequestProperty(header.getKey(), header.getValue());
+        }
+        byte[] body = request.getBody();
+        if (body != null) {
+            connection.setDoOutput(true);
+            connection.setFixedLengthStreamingMode(body.length);
+            try (OutputStream out = connection.getOutputStream()) {
+                out.write(body);
+            }
+        }
+        int status = connection.getResponseCode();
+        InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream();
+        if (in != null) {
+            try (InputStream response = in) {
+                while (response.read(buffer) != -1) {
+                    // Drain the body
+                }
+            }
+        }
+        return status;
+    }
+}
@@ -0,0 +1,115 @@
+/**
+ * A capture log laid out for replay. Each client's requests are split into lanes, each
+ * replayed by one thread in capture order: a request goes to a lane whose previous request
+ * had finished when it arrived, or else to a new lane. So a client replays with the
+ * concurrency it had, and requests it sent one after another stay in that order.
+ * Requests that cannot be replayed (the body was left out of the capture, or the method
+ * is one HttpURLConnection cannot send) are skipped.
+ * Author: Rifa
+ * IIT no: 20220701
+ */
+package loadtestClasses;
+
+import captureClasses.CaptureReader;
+import captureClasses.CapturedRequest;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+final class ReplayPlan {
+
+    private static final Set<String> METHODS = new HashSet<>(Arrays.asList(
+            "GET", "POST", "PUT", "DELETE", "HEAD", "OPTIONS"));
+
+    private final List<CapturedRequest> requests;
+    private final List<List<CapturedRequest>> lanes;
+    private final long firstOffsetMicros;
+    private final long spanMicros;
+    private final int skipped;
+
+    private ReplayPlan(List<CapturedRequest> requests, List<List<CapturedRequest>> lanes, long firstOffsetMicros,
+            long spanMicros, int skipped) {
+        this.requests = requests;
+        this.lanes = lanes;
+        this.firstOffsetMicros = firstOffsetMicros;
+        this.spanMicros = spanMicros;
+        this.skipped = skipped;
+    }
+
+    // Read a capture log and split its requests into lanes
+    static ReplayPlan read(Path file) throws IOException {
+        List<CapturedRequest> requests = new ArrayList<>();
+        int skipped = 0;
+        try (CaptureReader reader = new CaptureReader(file)) {
+            CapturedRequest request;
+            while ((request = reader.next()) != null) {
+                if (request.isBodyOmitted() || !METHODS.contains(request.getMethod())) {
+                    skipped++;
+                } else {
+                    requests.add(request);
+                }
+            }
+        }
+        // The log is in order of completion; lanes are filled in order of arrival
+        requests.sort(Comparator.comparingLong(CapturedRequest::getOffsetMicros));
+
+        List<List<CapturedRequest>> lanes = new ArrayList<>();
+        Map<String, PriorityQueue<Lane>> byClient = new HashMap<>();
+        long first = requests.isEmpty() ? 0 : requests.get(0).getOffsetMicros();
+        long last = first;
+        for (CapturedRequest request : requests) {
+            PriorityQueue<Lane> clientLanes = byClient.computeIfAbsent(request.getClient(),
+                    key -> new PriorityQueue<>(Comparator.comparingLong((Lane lane) -> lane.endMicros)));
+            Lane lane = clientLanes.peek();
+            if (lane != null && lane.endMicros <= request.getOffsetMicros()) {
+                clientLanes.poll();
+            } else {
+                lane = new Lane();
+                lanes.add(lane.requests);
+            }
+            lane.requests.add(request);
+            lane.endMicros = request.getOffsetMicros() + request.getDurationMicros();
+            clientLanes.add(lane);
+            last = Math.max(last, lane.endMicros);
+        }
+        return new ReplayPlan(requests, lanes, first, last - first, skipped);
+    }
+
+    // Requests to replay, in order of arrival
+    List<CapturedRequest> getRequests() {
+        return requests;
+    }
+
+    List<List<CapturedRequest>> getLanes() {
+        return lanes;
+    }
+
+    // Arrival of the first request, which the replay starts at
+    long getFirstOffsetMicros() {
+        return firstOffsetMicros;
+    }
+
+    // Time from the first arrival to the last response of the capture
+    double getRecordedSeconds() {
+        return Math.max(spanMicros, 1) / 1e6;
+    }
+
+    int getSkipped() {
+        return skipped;
+    }
+
+    // Requests one thread replays one after another, and when its last one finished in the capture
+    private static final class Lane {
+
+        private final List<CapturedRequest> requests = new ArrayList<>();
+        private long endMicros;
+    }
+}
@@ -0,0 +1,145 @@
+/**
+ * Results of a replay next to those of the captured run, for each route and overall.
+ * Captured latencies are server times, from the request filter to the response filter;
+ * the replay's are the same server times when the replay captures them too (as it does
+ * in-process), and always also the client's, from sending a request to reading its response.
+ * A replayed request whose status differs from the captured one counts as a mismatch,
+ * a sign the replay did not start from the captured run's data.
+ * Author: Rifa
+ * IIT no: 20220701
+ */
+package loadtestClasses;
+
+import captureClasses.CapturedRequest;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+final class ReplayReport {
+
+    // Every route of the plan, added before the replay starts so threads only read the map
+    private final Map<String, Route> routes = new TreeMap<>();
+    private final Route total = new Route();
+    private final LongAccumulator maxLagNanos = new LongAccumulator(Math::max, 0);
+    private volatile boolean serverTimes;
+
+    // Record the captured run of the requests to be replayed
+    ReplayReport(List<CapturedRequest> requests) {
+        for (CapturedRequest request : requests) {
+            Route route = routes.computeIfAbsent(request.getRoute(), key -> new Route());
+            boolean error = isError(request.getStatus());
+            route.recorded.record(request.getDurationMicros() * 1000, error);
+            total.recorded.record(request.getDurationMicros() * 1000, error);
+        }
+    }
+
+    // How late a request was sent against its schedule
+    void recordLag(long nanos) {
+        maxLagNanos.accumulate(nanos);
+    }
+
+    /**
+     * Record one replayed request as the client saw it; no response at all is an error.
+     * @param request The captured request
+     * @param nanos Time from sending the request to reading the whole response
+     * @param status HTTP status of the replay, 0 if the request failed
+     */
+    void recordReplayed(CapturedRequest request, long nanos, int status) {
+        Route route = routes.get(request.getRoute());
+        route.client.record(nanos, isError(status));
+        total.client.record(nanos, isError(status));
+        if (status != request.getStatus()) {
+            route.mismatches.increment();
+            total.mismatches.increment();
+        }
+    }
+
+    // Record the server time of a replayed request, as captured by the server replayed against
+    void recordServer(CapturedRequest replayed) {
+        Route route = routes.get(replayed.getRoute());
+        if (route == null) {
+            return;
+        }
+        route.server.record(replayed.getDurationMicros() * 1000, isError(replayed.getStatus()));
+        total.server.record(replayed.getDurationMicros() * 1000, isError(replayed.getStatus()));
+        serverTimes = true;
+    }
+
+    // Whether the replayed latencies are server times rather than the client's
+    boolean hasServerTimes() {
+        return serverTimes;
+    }
+
+    double getMaxLagMillis() {
+        return maxLagNanos.get() / 1e6;
+    }
+
+    /**
+     * Summarize the captured run, by route with the overall summary under "total".
+     * @param seconds Length of the captured run
+     * @return The summary
+     */
+    Map<String, Map<String, Object>> recorded(double seconds) {
+        Map<String, Map<String, Object>> summary = new LinkedHashMap<>();
+        for (Map.Entry<String, Route> entry : routes.entrySet()) {
+            summary.put(entry.getKey(), entry.getValue().recorded.summarize(seconds));
+        }
+        summary.put(LoadReport.TOTAL, total.recorded.summarize(seconds));
+        return summary;
+    }
+
+    /**
+     * Summarize the replay, with server times if captured and client times otherwise,
+     * and the status mismatches of each route.
+     * @param seconds Length of the replay
+     * @return The summary, by route with the overall summary under "total"
+     */
+    Map<String, Map<String, Object>> replayed(double seconds) {
+        Map<String, Map<String, Object>> summary = new LinkedHashMap<>();
+        for (Map.Entry<String, Route> entry : routes.entrySet()) {
+            summary.put(entry.getKey(), entry.getValue().summarizeReplay(seconds, serverTimes));
+        }
+        summary.put(LoadReport.TOTAL, total.summarizeReplay(seconds, serverTimes));
+        return summary;
+    }
+
+    // Summarize the replay as the client saw it
+    Map<String, Map<String, Object>> client(double seconds) {
+        Map<String, Map<String, Object>> summary = new LinkedHashMap<>();
+        for (Map.Entry<String, Route> entry : routes.entrySet()) {
+            summary.put(entry.getKey(), entry.getValue().client.summarize(seconds));
+        }
+        summary.put(LoadReport.TOTAL, total.client.summarize(seconds));
+        return summary;
+    }
+
+    // Not Modified answers to If-None-Match are not errors
+    private static boolean isError(int status) {
+        return status < 200 || status >= 400;
+    }
+
+    // Counters of one route, or of all
+    private static final class Route {
+
+        private final LoadReport.Stats recorded = new LoadReport.Stats();
+        private final LoadReport.Stats client = new LoadReport.Stats();
+        private final LoadReport.Stats server = new LoadReport.Stats();
+        private final LongAdder mismatches = new LongAdder();
+
+        Map<String, Object> summarizeReplay(double seconds, boolean serverTimes) {
+            Map<String, Object> summary = (serverTimes ? server : client).summarize(seconds);
+            if (serverTimes) {
+                // Requests and errors as the client saw them, which includes any lost before reaching the server
+                Map<String, Object> seen = client.summarize(seconds);
+                summary.put("requests", seen.get("requests"));
+                summary.put("errors", seen.get("errors"));
+                summary.put("throughput", seen.get("throughput"));
+            }
+            summary.put("statusMismatches", mismatches.sum());
+            return summary;
+        }
+    }
+}
@@ -0,0 +1,246 @@
+/**
+ * Replays traffic captured from a server (see configFiles.CaptureFilter) against a local
+ * instance and reports how latency and throughput differ from the captured run.
+ *
+ * Usage: java -cp target/loadtest.jar loadtestClasses.ReplayTool --capture=FILE [--option=value ...]
+ *   --capture=FILE          capture log, written with -Dhealth.capture.file=FILE
+ *   --speed=1               multiple of the captured pace, or max to send as fast as the server answers
+ *   --url=URL               replay against a running instance, such as http://localhost:8080/HealthApplication/webresources
+ *   --data=DIR              in-process, start from a copy of this data directory (see below)
+ *   --serverThreads=N       in-process, request threads of the server (default 2 per processor)
+ *   --report=FILE           write the results as JSON
+ *   --baseline=FILE         compare with a saved replay report; exit with 1 on a regression
+ *   --tolerance=10          allowed drop in throughput and rise in p99, in percent
+ *   --saveBaseline          write the results to the baseline file instead of comparing
+ *   --maxMismatchRate=1     exit with 1 when more than this percent of statuses differ from the capture
+ *
+ * Without --url the application is started in-process and captures the replay itself, so
+ * latencies are compared as server times on both sides; with --url they are the client's,
+ * which include the network. Requests only answer as they did when the replay starts from
+ * the data the captured run started from: capture on a server started from a snapshot (such
+ * as one from generatorClasses.GeneratorTool) and replay with --data pointing at it. The
+ * directory is copied, so replays can be repeated. Regressions are judged against a baseline
+ * replay rather than the captured run, which ran on other hardware under other conditions.
+ * Author: Rifa
+ * IIT no: 20220701
+ */
+package loadtestClasses;
+
+import captureClasses.CaptureReader;
+import captureClasses.CapturedRequest;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+public final class ReplayTool {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+
+    private ReplayTool() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new LinkedHashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--")) {
+                System.err.println("Unexpected argument " + arg + "; options are given as --name=value");
+                System.exit(2);
+            }
+            int equals = arg.indexOf('=');
+            options.put(equals > 0 ? arg.substring(2, equals) : arg.substring(2), equals > 0 ? arg.substring(equals + 1) : "true");
+        }
+        if (!options.containsKey("capture")) {
+            System.err.println("Usage: ReplayTool --capture=FILE [--speed=1|N|max] [--url=URL] [--data=DIR] [--report=FILE]"
+                    + " [--baseline=FILE [--saveBaseline] [--tolerance=10]] [--maxMismatchRate=1]");
+            System.exit(2);
+        }
+        String speedOption = options.getOrDefault("speed", "1");
+        double speed = "max".equals(speedOption) ? 0 : Double.parseDouble(speedOption);
+        if (!"max".equals(speedOption) && speed <= 0) {
+            System.err.println("Speed must be a positive multiple or max");
+            System.exit(2);
+        }
+        int serverThreads = Integer.parseInt(options.getOrDefault("serverThreads",
+                String.valueOf(2 * Runtime.getRuntime().availableProcessors())));
+        double tolerance = Double.parseDouble(options.getOrDefault("tolerance", "10"));
+        double maxMismatchRate = Double.parseDouble(options.getOrDefault("maxMismatchRate", "1"));
+
+        ReplayPlan plan = ReplayPlan.read(Paths.get(options.get("capture")));
+        ReplayReport replay = new ReplayReport(plan.getRequests());
+        System.out.printf("Replaying %d requests (%d skipped) captured over %.1f s, on %d lanes at speed %s%n",
+                plan.getRequests().size(), plan.getSkipped(), plan.getRecordedSeconds(), plan.getLanes().size(),
+                speedOption);
+        // Keep a connection per lane alive instead of the default 5
+        System.setProperty("http.maxConnections", String.valueOf(Math.max(5, plan.getLanes().size())));
+
+        double seconds;
+        if (options.containsKey("url")) {
+            seconds = run(options.get("url"), plan, speed, replay);
+        } else {
+            seconds = runInProcess(options.get("data"), serverThreads, plan, speed, replay);
+        }
+
+        Map<String, Map<String, Object>> recorded = replay.recorded(plan.getRecordedSeconds());
+        Map<String, Map<String, Object>> results = replay.replayed(seconds);
+        print(recorded, results, speed, replay);
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        Map<String, Object> settings = new LinkedHashMap<>();
+        settings.put("capture", options.get("capture"));
+        settings.put("speed", speedOption);
+        settings.put("target", options.containsKey("url") ? options.get("url") : "in-process");
+        settings.put("lanes", plan.getLanes().size());
+        settings.put("skipped", plan.getSkipped());
+        settings.put("latency", replay.hasServerTimes() ? "server" : "client");
+        settings.put("recordedSeconds", plan.getRecordedSeconds());
+        settings.put("replaySeconds", seconds);
+        settings.put("maxLagMs", replay.getMaxLagMillis());
+        report.put("settings", settings);
+        report.put("recorded", recorded);
+        report.put("results", results);
+        report.put("client", replay.client(seconds));
+        if (options.containsKey("report")) {
+            MAPPER.writeValue(new File(options.get("report")), report);
+        }
+
+        boolean failed = false;
+        Map<String, Object> total = results.get(LoadReport.TOTAL);
+        long requests = ((Number) total.get("requests")).longValue();
+        long mismatches = ((Number) total.get("statusMismatches")).longValue();
+        if (requests == 0 || mismatches * 100.0 / requests > maxMismatchRate) {
+            System.out.printf("FAILED: %d of %d replayed statuses differ from the capture;"
+                    + " was the replay started from the captured run's data?%n", mismatches, requests);
+            failed = true;
+        }
+        String baseline = options.get("baseline");
+        if (baseline != null && options.containsKey("saveBaseline") && !failed) {
+            MAPPER.writeValue(new File(baseline), report);
+            System.out.println("Saved baseline " + baseline);
+        } else if (baseline != null && !options.containsKey("saveBaseline")) {
+            List<String> regressions = LoadReport.compare(results, LoadTest.readResults(new File(baseline)), tolerance);
+            for (String regression : regressions) {
+                System.out.println("REGRESSION " + regression);
+            }
+            if (regressions.isEmpty()) {
+                System.out.printf("Within %.0f%% of baseline %s%n", tolerance, baseline);
+            }
+            failed |= !regressions.isEmpty();
+        }
+        System.exit(failed ? 1 : 0);
+    }
+
+    // Replay against an in-process server that captures the replay's server times
+    private static double runInProcess(String dataDir, int serverThreads, ReplayPlan plan, double speed,
+            ReplayReport replay) throws Exception {
+        Path serverCapture = Files.createTempFile("replay-", ".capture");
+        Path dataCopy = null;
+        System.setProperty("health.capture.file", serverCapture.toString());
+        // Only the timing is needed, so bodies are not copied into the capture
+        System.setProperty("health.capture.maxBodyBytes", "0");
+        if (dataDir != null) {
+            dataCopy = copy(Paths.get(dataDir));
+            System.setProperty("health.persistence.enabled", "true");
+            System.setProperty("health.persistence.dir", dataCopy.toString());
+        } else if (System.getProperty("health.persistence.enabled") == null) {
+            System.setProperty("health.persistence.enabled", "false");
+        }
+        try {
+            double seconds;
+            try (EmbeddedServer server = EmbeddedServer.start(serverThreads)) {
+                seconds = run(server.getBaseUrl(), plan, speed, replay);
+            }
+            // Closing the server closed its capture
+            try (CaptureReader reader = new CaptureReader(serverCapture)) {
+                CapturedRequest request;
+                while ((request = reader.next()) != null) {
+                    replay.recordServer(request);
+                }
+            }
+            return seconds;
+        } finally {
+            Files.deleteIfExists(serverCapture);
+            if (dataCopy != null) {
+                delete(dataCopy);
+            }
+        }
+    }
+
+    // Replay every lane on its own thread; returns the length of the replay in seconds
+    private static double run(String baseUrl, ReplayPlan plan, double speed, ReplayReport replay)
+            throws InterruptedException {
+        List<List<CapturedRequest>> lanes = plan.getLanes();
+        long start = System.nanoTime();
+        Thread[] threads = new Thread[lanes.size()];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread(new ReplayClient(baseUrl, lanes.get(i), plan.getFirstOffsetMicros(), start, speed,
+                    replay), "lane-" + i);
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        return Math.max(System.nanoTime() - start, 1) / 1e9;
+    }
+
+    // Copy the files of a data directory to a new temporary one
+    private static Path copy(Path dataDir) throws IOException {
+        Path copy = Files.createTempDirectory("replay-data-");
+        try (Stream<Path> files = Files.list(dataDir)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                if (Files.isRegularFile(file)) {
+                    Files.copy(file, copy.resolve(file.getFileName()));
+                }
+            }
+        }
+        return copy;
+    }
+
+    private static void delete(Path dir) throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    // Captured and replayed side by side; throughput is compared with the captured pace times the speed
+    private static void print(Map<String, Map<String, Object>> recorded, Map<String, Map<String, Object>> results,
+            double speed, ReplayReport replay) {
+        System.out.printf("Latencies are %s times; throughput change is against the captured rate%s%n",
+                replay.hasServerTimes() ? "server" : "client", speed > 0 ? " times the speed" : "");
+        System.out.printf("%-40s %9s %11s %11s %8s %9s %9s %9s %9s %8s %10s%n", "route", "requests",
+                "capt req/s", "repl req/s", "change", "capt p50", "repl p50", "capt p99", "repl p99", "change",
+                "mismatch");
+        for (Map.Entry<String, Map<String, Object>> entry : results.entrySet()) {
+            Map<String, Object> before = recorded.get(entry.getKey());
+            Map<String, Object> after = entry.getValue();
+            double expected = number(before, "throughput") * (speed > 0 ? speed : 1);
+            System.out.printf("%-40s %9d %11.1f %11.1f %7.1f%% %9.3f %9.3f %9.3f %9.3f %7.1f%% %10d%n",
+                    entry.getKey(), after.get("requests"), number(before, "throughput"), number(after, "throughput"),
+                    change(expected, number(after, "throughput")), number(before, "p50Ms"), number(after, "p50Ms"),
+                    number(before, "p99Ms"), number(after, "p99Ms"),
+                    change(number(before, "p99Ms"), number(after, "p99Ms")), after.get("statusMismatches"));
+        }
+        if (speed > 0) {
+            System.out.printf("Requests were sent up to %.1f ms behind the captured schedule%n", replay.getMaxLagMillis());
+        }
+    }
+
+    private static double change(double before, double after) {
+        return before > 0 ? (after - before) * 100 / before : 0;
+    }
+
+    private static double number(Map<String, Object> summary, String key) {
+        Object value = summary.get(key);
+        return value instanceof Number ? ((Number) value).doubleValue() : 0;
+    }
+}
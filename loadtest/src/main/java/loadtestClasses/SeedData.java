@@ -0,0 +1,106 @@
+/**
+ * Patients and doctors a load test starts with, each patient with a few appointments,
+ * bills and medical records so charts and bill lists have content. Added through the
+ * DAOs before the server takes requests, so seeding does not count towards the run.
+ * Author: Rifa
+ * IIT no: 20220701
+ */
+package loadtestClasses;
+
+import daoClasses.AppointmentDAO;
+import daoClasses.BillingDAO;
+import daoClasses.DoctorDAO;
+import daoClasses.MedicalRecordDAO;
+import daoClasses.PatientDAO;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import modelClasses.Appointment;
+import modelClasses.Billing;
+import modelClasses.Doctor;
+import modelClasses.MedicalRecord;
+import modelClasses.Patient;
+
+final class SeedData {
+
+    // Entities of each kind added per patient
+    private static final int APPOINTMENTS_PER_PATIENT = 2;
+    private static final int BILLS_PER_PATIENT = 3;
+    private static final int RECORDS_PER_PATIENT = 1;
+
+    private static final LocalDate FIRST_DAY = LocalDate.of(2024, 1, 1);
+    private static final String[] SPECIALIZATIONS = {"General", "Cardiology", "Pediatrics", "Dermatology", "Neurology"};
+
+    private final int[] patientIds;
+    private final int[] doctorIds;
+
+    private SeedData(int[] patientIds, int[] doctorIds) {
+        this.patientIds = patientIds;
+        this.doctorIds = doctorIds;
+    }
+
+    /**
+     * Add the seed data to the DAOs.
+     * @param patients Number of patients
+     * @param doctors Number of doctors
+     * @param random Source of the varying content, seeded for repeatable runs
+     * @return IDs of the added patients and doctors
+     */
+    static SeedData load(int patients, int doctors, SplittableRandom random) {
+        List<Doctor> newDoctors = new ArrayList<>(doctors);
+        for (int i = 0; i < doctors; i++) {
+            newDoctors.add(new Doctor(0, "Doctor " + i, "071" + i, "Kandy",
+                    SPECIALIZATIONS[i % SPECIALIZATIONS.length]));
+        }
+        DoctorDAO.addDoctors(newDoctors);
+        List<Patient> newPatients = new ArrayList<>(patients);
+        for (int i = 0; i < patients; i++) {
+            newPatients.add(new Patient(0, "Patient " + i, "077" + i, "Colombo", "None", "Stable"));
+        }
+        PatientDAO.addPatients(newPatients);
+
+        List<Appointment> appointments = new ArrayList<>(patients * APPOINTMENTS_PER_PATIENT);
+        List<Billing> bills = new ArrayList<>(patients * BILLS_PER_PATIENT);
+        List<MedicalRecord> records = new ArrayList<>(patients * RECORDS_PER_PATIENT);
+        for (Patient patient : newPatients) {
+            for (int i = 0; i < APPOINTMENTS_PER_PATIENT; i++) {
+                appointments.add(new Appointment(0, date(random), time(random), patient,
+                        newDoctors.get(random.nextInt(doctors))));
+            }
+            for (int i = 0; i < BILLS_PER_PATIENT; i++) {
+                // refID is replaced by the DAO, but validation wants it set
+                bills.add(new Billing(1, patient, newDoctors.get(random.nextInt(doctors)),
+                        500 + random.nextInt(20_000), random.nextInt(3) > 0));
+            }
+            for (int i = 0; i < RECORDS_PER_PATIENT; i++) {
+                records.add(new MedicalRecord(0, patient, "Checkup", "Rest"));
+            }
+        }
+        AppointmentDAO.addAppointments(appointments);
+        BillingDAO.addBills(bills);
+        MedicalRecordDAO.addMedicalRecords(records);
+        return new SeedData(newPatients.stream().mapToInt(Patient::getId).toArray(),
+                newDoctors.stream().mapToInt(Doctor::getId).toArray());
+    }
+
+    // ID of a seeded patient, picked at random
+    int patient(SplittableRandom random) {
+        return patientIds[random.nextInt(patientIds.length)];
+    }
+
+    // ID of a seeded doctor, picked at random
+    int doctor(SplittableRandom random) {
+        return doctorIds[random.nextInt(doctorIds.length)];
+    }
+
+    // Day within a year, as the DAOs' time indexes read it
+    static String date(SplittableRandom random) {
+        return FIRST_DAY.plusDays(random.nextInt(365)).toString();
+    }
+
+    // Quarter hour of a working day
+    static String time(SplittableRandom random) {
+        return String.format("%02d:%02d", 8 + random.nextInt(10), random.nextInt(4) * 15);
+    }
+}
@@ -0,0 +1,192 @@
+/**
+ * Heap and latency of a whole-collection response, buffered (GET /patients/all) against
+ * streamed (GET /patients/all?stream=true), at 1M patients by default. Requests go through
+ * the in-process server, so Jersey's own buffering and the Jackson provider are included.
+ *
+ * For each response it reports the time to first byte and to the last byte, the bytes
+ * allocated by all threads while serving it, and the most heap still in use after any
+ * garbage collection during the response, over the heap in use before it. That last figure
+ * is what a response holds on to; it grows with the collection only if the body is buffered.
+ * It is 0 when no collection ran during the response, which the GC count shows.
+ *
+ * Usage: java -Xmx2g -cp target/loadtest.jar loadtestClasses.StreamingBenchmark [--option=value ...]
+ *   --entities=1000000      patients in the store
+ *   --warmup=1              unrecorded responses per mode
+ *   --rounds=3              recorded responses per mode
+ *   --report=FILE           write the results as JSON
+ * Author: Rifa
+ * IIT no: 20220701
+ */
+package loadtestClasses;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.sun.management.GarbageCollectionNotificationInfo;
+import generatorClasses.DatasetGenerator;
+import generatorClasses.GeneratorConfig;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.management.NotificationEmitter;
+import javax.management.openmbean.CompositeData;
+
+public final class StreamingBenchmark {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+    private static final String[] MODES = {"buffered", "streamed"};
+
+    // Most heap in use after a collection since the last reset
+    private static final AtomicLong PEAK_AFTER_GC = new AtomicLong();
+
+    private StreamingBenchmark() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new LinkedHashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--")) {
+                System.err.println("Unexpected argument " + arg + "; options are given as --name=value");
+                System.exit(2);
+            }
+            int equals = arg.indexOf('=');
+            options.put(equals > 0 ? arg.substring(2, equals) : arg.substring(2), equals > 0 ? arg.substring(equals + 1) : "true");
+        }
+        int entities = Integer.parseInt(options.getOrDefault("entities", "1000000"));
+        int warmup = Integer.parseInt(options.getOrDefault("warmup", "1"));
+        int rounds = Integer.parseInt(options.getOrDefault("rounds", "3"));
+
+        if (System.getProperty("health.persistence.enabled") == null) {
+            System.setProperty("health.persistence.enabled", "false");
+        }
+        watchCollections();
+
+        Map<String, Object> results = new LinkedHashMap<>();
+        try (EmbeddedServer server = EmbeddedServer.start(2)) {
+            new DatasetGenerator(new GeneratorConfig(entities, 1, 0, 0, 0, 0, 42,
+                    Runtime.getRuntime().availableProcessors())).populate();
+            System.out.printf("Serving %d patients from %s%n", entities, server.getBaseUrl());
+            System.out.printf("%-9s %9s %10s %10s %12s %6s %14s%n",
+                    "mode", "MB", "ttfb ms", "total ms", "alloc MB", "GCs", "peak live MB");
+            for (String mode : MODES) {
+                String url = server.getBaseUrl() + "/patients/all" + ("streamed".equals(mode) ? "?stream=true" : "");
+                for (int i = 0; i < warmup; i++) {
+                    fetch(url);
+                }
+                List<Map<String, Object>> runs = new ArrayList<>();
+                for (int i = 0; i < rounds; i++) {
+                    Map<String, Object> run = fetch(url);
+                    runs.add(run);
+                    System.out.printf("%-9s %9.1f %10.1f %10.1f %12.1f %6d %14.1f%n", mode, run.get("responseMB"),
+                            run.get("firstByteMs"), run.get("totalMs"), run.get("allocatedMB"), run.get("collections"),
+                            run.get("peakLiveMB"));
+                }
+                results.put(mode, runs);
+            }
+        }
+        if (options.containsKey("report")) {
+            Map<String, Object> report = new LinkedHashMap<>();
+            report.put("entities", entities);
+            report.put("results", results);
+            MAPPER.writeValue(new File(options.get("report")), report);
+        }
+        System.exit(0);
+    }
+
+    // Fetch one whole response and measure it
+    private static Map<String, Object> fetch(String url) throws IOException, InterruptedException {
+        System.gc();
+        Thread.sleep(100);
+        long baseline = heapUsed();
+        PEAK_AFTER_GC.set(baseline);
+        long allocatedBefore = allocatedBytes();
+        long collectionsBefore = collections();
+        byte[] buffer = new byte[64 * 1024];
+        long bytes = 0;
+        long start = System.nanoTime();
+        long firstByte = 0;
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        connection.setRequestProperty("Accept", "application/json");
+        try (InputStream in = connection.getInputStream()) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                if (firstByte == 0) {
+                    firstByte = System.nanoTime();
+                }
+                bytes += read;
+            }
+        }
+        long end = System.nanoTime();
+        Map<String, Object> run = new LinkedHashMap<>();
+        run.put("responseMB", round(bytes / 1048576.0));
+        run.put("firstByteMs", round((firstByte - start) / 1e6));
+        run.put("totalMs", round((end - start) / 1e6));
+        run.put("allocatedMB", round((allocatedBytes() - allocatedBefore) / 1048576.0));
+        run.put("collections", collections() - collectionsBefore);
+        run.put("peakLiveMB", round(Math.max(0, PEAK_AFTER_GC.get() - baseline) / 1048576.0));
+        return run;
+    }
+
+    // Track the heap in use after every collection, from the collectors' notifications
+    private static void watchCollections() {
+        Set<String> heapPools = new HashSet<>();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                heapPools.add(pool.getName());
+            }
+        }
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            ((NotificationEmitter) collector).addNotificationListener((notification, handback) -> {
+                if (!GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION.equals(notification.getType())) {
+                    return;
+                }
+                GarbageCollectionNotificationInfo info = GarbageCollectionNotificationInfo.from(
+                        (CompositeData) notification.getUserData());
+                long used = 0;
+                for (Map.Entry<String, MemoryUsage> pool : info.getGcInfo().getMemoryUsageAfterGc().entrySet()) {
+                    if (heapPools.contains(pool.getKey())) {
+                        used += pool.getValue().getUsed();
+                    }
+                }
+                PEAK_AFTER_GC.accumulateAndGet(used, Math::max);
+            }, null, null);
+        }
+    }
+
+    private static long collections() {
+        long count = 0;
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0, collector.getCollectionCount());
+        }
+        return count;
+    }
+
+    private static long heapUsed() {
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    // Bytes allocated so far by all live threads, the server's workers and this client
+    private static long allocatedBytes() {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long[] ids = threads.getAllThreadIds();
+        return Arrays.stream(threads.getThreadAllocatedBytes(ids)).filter(bytes -> bytes > 0).sum();
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 10) / 10.0;
+    }
+}
@@ -0,0 +1,132 @@
+/**
+ * Describes how rows of one kind of entity are imported: the class rows are read into,
+ * the DAO rule that validates them, which related patient and doctor they must refer
+ * to, and the DAO batch methods that write them.
+ * Author: Rifa
+ * IIT no: 20220701
+ */
+package bulkClasses;
+
+import daoClasses.AppointmentDAO;
+import daoClasses.BillingDAO;
+import daoClasses.DoctorDAO;
+import daoClasses.MedicalRecordDAO;
+import daoClasses.PatientDAO;
+import daoClasses.PersonDAO;
+import daoClasses.PrescriptionDAO;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.ToIntFunction;
+import modelClasses.Appointment;
+import modelClasses.Billing;
+import modelClasses.Doctor;
+import modelClasses.MedicalRecord;
+import modelClasses.Patient;
+import modelClasses.Person;
+import modelClasses.Prescription;
+
+public final class BulkEntity<T> {
+
+    // Importable entities by the path of their resource
+    private static final Map<String, BulkEntity<?>> ENTITIES = new LinkedHashMap<>();
+
+    static {
+        register(new BulkEntity<>("persons", Person.class, PersonDAO::isValidPerson, "Invalid data for person",
+                Person::getId, null, null, PersonDAO::addPersons, PersonDAO::importPersons));
+        register(new BulkEntity<>("patients", Patient.class, PatientDAO::isValidPatient, "Invalid data for patient",
+                Patient::getId, null, null, PatientDAO::addPatients, PatientDAO::importPatients));
+        register(new BulkEntity<>("doctors", Doctor.class, DoctorDAO::isValidDoctor, "Invalid data for doctor",
+                Doctor::getId, null, null, DoctorDAO::addDoctors, DoctorDAO::importDoctors));
+        register(new BulkEntity<>("appointments", Appointment.class, AppointmentDAO::isValidAppointment, "Invalid data for appointment",
+                Appointment::getAppointmentNo, Appointment::getPatientId, Appointment::getDoctorId,
+                AppointmentDAO::addAppointments, AppointmentDAO::importAppointments));
+        register(new BulkEntity<>("bills", Billing.class, BillingDAO::isValidBilling, "Invalid data for billing",
+                Billing::getRefID, Billing::getPatientId, Billing::getDoctorId,
+                BillingDAO::addBills, BillingDAO::importBills));
+        register(new BulkEntity<>("prescriptions", Prescription.class, PrescriptionDAO::isValidPrescription, "Invalid data for prescription",
+                Prescription::getPrescriptionId, Prescription::getPatientId, Prescription::getDoctorId,
+                PrescriptionDAO::addPrescriptions, PrescriptionDAO::importPrescriptions));
+        register(new BulkEntity<>("medicalRecords", MedicalRecord.class, MedicalRecordDAO::isValidRecord, "Invalid data for medical record",
+                MedicalRecord::getRecordId, MedicalRecord::getPatientId, null,
+                MedicalRecordDAO::addMedicalRecords, MedicalRecordDAO::importMedicalRecords));
+    }
+
+    private final String name;
+    private final Class<T> type;
+    private final Predicate<T> validator;
+    private final String invalidMessage;
+    private final ToIntFunction<T> id;
+    // Null when the entity does not refer to a patient or a doctor
+    private final ToIntFunction<T> patientId;
+    private final ToIntFunction<T> doctorId;
+    private final Consumer<List<T>> adder;
+    private final Function<List<T>, boolean[]> importer;
+
+    private BulkEntity(String name, Class<T> type, Predicate<T> validator, String invalidMessage,
+            ToIntFunction<T> id, ToIntFunction<T> patientId, ToIntFunction<T> doctorId,
+            Consumer<List<T>> adder, Function<List<T>, boolean[]> importer) {
+        this.name = name;
+        this.type = type;
+        this.validator = validator;
+        this.invalidMessage = invalidMessage;
+        this.id = id;
+        this.patientId = patientId;
+        this.doctorId = doctorId;
+        this.adder = adder;
+        this.importer = importer;
+    }
+
+    private static void register(BulkEntity<?> entity) {
+        ENTITIES.put(entity.name, entity);
+    }
+
+    /**
+     * Look up an importable entity.
+     * @param name Path of the entity's resource, such as patients or medicalRecords
+     * @return The entity, or null if it cannot be imported
+     */
+    public static BulkEntity<?> forName(String name) {
+        return ENTITIES.get(name);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    Class<T> type() {
+        return type;
+    }
+
+    // Reason a row fails the DAO rule, or null if it passes
+    String validate(T row) {
+        return row != null && validator.test(row) ? null : invalidMessage;
+    }
+
+    int idOf(T row) {
+        return id.applyAsInt(row);
+    }
+
+    // Patient the row refers to, or 0 if it refers to none
+    int patientIdOf(T row) {
+        return patientId != null ? patientId.applyAsInt(row) : 0;
+    }
+
+    // Doctor the row refers to, or 0 if it refers to none
+    int doctorIdOf(T row) {
+        return doctorId != null ? doctorId.applyAsInt(row) : 0;
+    }
+
+    // Add rows with newly generated IDs
+    void add(List<T> rows) {
+        adder.accept(rows);
+    }
+
+    // Add rows under their own IDs; False for each row whose ID was taken
+    boolean[] importWithIds(List<T> rows) {
+        return importer.apply(rows);
+    }
+}
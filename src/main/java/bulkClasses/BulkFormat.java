@@ -0,0 +1,44 @@
+/**
+ * Input formats accepted by bulk import.
+ * NDJSON holds one JSON object per line. CSV starts with a header row naming the
+ * properties of the columns, and quoted fields may contain commas, doubled quotes
+ * and line breaks.
+ * Author: Rifa
+ * IIT no: 20220701
+ */
+package bulkClasses;
+
+import javax.ws.rs.core.MediaType;
+
+public enum BulkFormat {
+
+    NDJSON("application/x-ndjson"),
+    CSV("text/csv");
+
+    private final String mediaType;
+
+    BulkFormat(String mediaType) {
+        this.mediaType = mediaType;
+    }
+
+    public String getMediaType() {
+        return mediaType;
+    }
+
+    /**
+     * Find the format of a request body.
+     * @param mediaType Content type of the body, parameters such as charset are ignored
+     * @return The format, or null if the content type is not a bulk format
+     */
+    public static BulkFormat forMediaType(MediaType mediaType) {
+        if (mediaType == null) {
+            return null;
+        }
+        for (BulkFormat format : values()) {
+            if (MediaType.valueOf(format.mediaType).isCompatible(mediaType)) {
+                return format;
+            }
+        }
+        return null;
+    }
+}
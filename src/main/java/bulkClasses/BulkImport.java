@@ -0,0 +1,469 @@
+/**
+ * One bulk import of NDJSON or CSV rows into a store, run as a three stage pipeline:
+ *
+ * 1. The calling thread reads the input and cuts it into chunks of raw records.
+ * 2. Worker threads parse the records of a chunk, check each row against the DAO rule,
+ *    and check the patients and doctors the chunk refers to, each distinct ID once.
+ * 3. A single writer thread gathers the accepted rows and writes them through the DAO
+ *    batch methods, so every write is one large store operation. The patients and doctors
+ *    of each write are checked again just before it, under their PersonLocks, so none of
+ *    them can be deleted between that check and the write.
+ *
+ * The stages are connected by bounded queues: when the writer falls behind the workers
+ * wait, and when the workers fall behind the reader stops consuming the input. Memory
+ * therefore stays bounded whatever the size of the input.
+ *
+ * Rows get new IDs, unless the import keeps IDs, in which case rows are stored under the
+ * IDs they carry (so references between imported files stay intact) and rows whose ID is
+ * taken are rejected. Rejected rows are counted, and the first ones are kept with their
+ * line number and reason. Progress is logged while the import runs and can be read at any
+ * time from getReport().
+ *
+ * Sizes come from system properties: health.bulk.workers (default one per processor),
+ * health.bulk.chunkRows (default 1000) and health.bulk.batchRows (default 10000).
+ * Author: Rifa
+ * IIT no: 20220701
+ */
+package bulkClasses;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import daoClasses.DoctorDAO;
+import daoClasses.PatientDAO;
+import daoClasses.PersonLocks;
+import java.io.BufferedReader;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntPredicate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public final class BulkImport {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(BulkImport.class);
+
+    public enum Status { RUNNING, COMPLETED, FAILED }
+
+    private static final int WORKERS = Integer.getInteger("health.bulk.workers", Runtime.getRuntime().availableProcessors());
+    private static final int CHUNK_ROWS = Integer.getInteger("health.bulk.chunkRows", 1000);
+    private static final int BATCH_ROWS = Integer.getInteger("health.bulk.batchRows", 10000);
+    // Rejected rows kept with their reason; the rest are only counted
+    private static final int MAX_REJECTS_KEPT = 100;
+    // Finished imports kept for their reports
+    private static final int MAX_JOBS_KEPT = 50;
+    private static final long PROGRESS_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(10);
+    private static final long POLL_MILLIS = 100;
+
+    private static final AtomicInteger jobIds = new AtomicInteger();
+    private static final Map<Integer, BulkImport> jobs = new LinkedHashMap<Integer, BulkImport>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, BulkImport> eldest) {
+            return size() > MAX_JOBS_KEPT && eldest.getValue().status != Status.RUNNING;
+        }
+    };
+
+    private final int id;
+    private final BulkEntity<?> entity;
+    private final BulkFormat format;
+    private final boolean keepIds;
+    private final long startNanos = System.nanoTime();
+
+    private final LongAdder rowsRead = new LongAdder();
+    private final LongAdder imported = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final List<Map<String, Object>> rejects = new ArrayList<>();
+    private volatile Status status = Status.RUNNING;
+    private volatile long elapsedNanos;
+    // First failure of any stage; the other stages stop once it is set
+    private volatile Throwable failure;
+
+    private BulkImport(BulkEntity<?> entity, BulkFormat format, boolean keepIds) {
+        this.id = jobIds.incrementAndGet();
+        this.entity = entity;
+        this.format = format;
+        this.keepIds = keepIds;
+    }
+
+    /**
+     * Register a new import, so its progress can be looked up while it runs.
+     * @param entity Entity the rows are imported into
+     * @param format Format of the input
+     * @param keepIds True to store rows under the IDs they carry, False to give them new IDs
+     * @return The import, ready to run
+     */
+    public static BulkImport create(BulkEntity<?> entity, BulkFormat format, boolean keepIds) {
+        BulkImport job = new BulkImport(entity, format, keepIds);
+        synchronized (jobs) {
+            jobs.put(job.id, job);
+        }
+        return job;
+    }
+
+    // Import with the given ID, or null if it is unknown or no longer kept
+    public static BulkImport get(int id) {
+        synchronized (jobs) {
+            return jobs.get(id);
+        }
+    }
+
+    // Reports of the running and recently finished imports, oldest first
+    public static List<Map<String, Object>> getReports() {
+        List<BulkImport> all;
+        synchronized (jobs) {
+            all = new ArrayList<>(jobs.values());
+        }
+        List<Map<String, Object>> reports = new ArrayList<>(all.size());
+        for (BulkImport job : all) {
+            reports.add(job.getReport());
+        }
+        return reports;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    /**
+     * Run the import, reading the input on the calling thread until it is used up.
+     * @param input Rows in the format of this import, as UTF-8
+     * @return The final report
+     */
+    public Map<String, Object> run(InputStream input) {
+        LOGGER.info("Bulk import {} of {} started ({}, {} workers, keepIds={})",
+                id, entity.getName(), format, WORKERS, keepIds);
+        try {
+            pipeline(entity, new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8)));
+        } catch (Exception e) {
+            fail(e instanceof ExecutionException ? e.getCause() : e);
+        }
+        elapsedNanos = System.nanoTime() - startNanos;
+        status = failure == null ? Status.COMPLETED : Status.FAILED;
+        if (failure == null) {
+            LOGGER.info("Bulk import {} of {} completed: {} rows read, {} imported, {} rejected in {} ms",
+                    id, entity.getName(), rowsRead.sum(), imported.sum(), rejected.sum(), elapsedNanos / 1_000_000);
+        } else {
+            LOGGER.error("Bulk import {} of {} failed after {} rows: {}",
+                    id, entity.getName(), rowsRead.sum(), failure.getMessage(), failure);
+        }
+        return getReport();
+    }
+
+    private <T> void pipeline(BulkEntity<T> entity, BufferedReader input) throws Exception {
+        RecordReader records = new RecordReader(input, format);
+        RowParser<T> parser;
+        if (format == BulkFormat.CSV) {
+            String header = records.next();
+            if (header == null) {
+                return;
+            }
+            parser = RowParser.csv(entity.type(), header);
+        } else {
+            parser = RowParser.ndjson(entity.type());
+        }
+
+        BlockingQueue<Chunk> chunks = new ArrayBlockingQueue<>(WORKERS * 2);
+        BlockingQueue<Rows<T>> accepted = new ArrayBlockingQueue<>(WORKERS * 2);
+        AtomicInteger liveWorkers = new AtomicInteger(WORKERS);
+        AtomicInteger threadNo = new AtomicInteger();
+        ExecutorService threads = Executors.newFixedThreadPool(WORKERS + 1, task -> {
+            Thread thread = new Thread(task, "bulk-import-" + id + "-" + threadNo.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            Future<?> writer = threads.submit(() -> write(entity, accepted));
+            for (int i = 0; i < WORKERS; i++) {
+                threads.submit(() -> check(entity, parser, chunks, accepted, liveWorkers));
+            }
+
+            Chunk chunk = new Chunk();
+            String record;
+            while (failure == null && (record = records.next()) != null) {
+                rowsRead.increment();
+                chunk.add(records.line(), record);
+                if (chunk.size == CHUNK_ROWS) {
+                    put(chunks, chunk);
+                    chunk = new Chunk();
+                }
+            }
+            if (chunk.size > 0) {
+                put(chunks, chunk);
+            }
+            for (int i = 0; i < WORKERS; i++) {
+                put(chunks, Chunk.END);
+            }
+            writer.get();
+        } finally {
+            threads.shutdownNow();
+        }
+    }
+
+    // Worker stage: parse and check chunks, then hand the accepted rows to the writer
+    private <T> void check(BulkEntity<T> entity, RowParser<T> parser, BlockingQueue<Chunk> chunks,
+            BlockingQueue<Rows<T>> accepted, AtomicInteger liveWorkers) {
+        try {
+            Chunk chunk;
+            while ((chunk = take(chunks)) != null && chunk != Chunk.END) {
+                Rows<T> rows = new Rows<>(chunk.size);
+                for (int i = 0; i < chunk.size; i++) {
+                    T row;
+                    String error;
+                    try {
+                        row = parser.parse(chunk.records[i]);
+                        error = entity.validate(row);
+                    } catch (JsonProcessingException e) {
+                        row = null;
+                        error = "Unreadable row: " + e.getOriginalMessage();
+                    } catch (Exception e) {
+                        row = null;
+                        error = "Unreadable row: " + e.getMessage();
+                    }
+                    if (error == null && keepIds && entity.idOf(row) <= 0) {
+                        error = "ID must be above 0 to keep it";
+                    }
+                    if (error != null) {
+                        reject(chunk.lines[i], error);
+                    } else {
+                        rows.add(chunk.lines[i], row);
+                    }
+                }
+                rows = checkReferences(entity, rows);
+                if (rows.size > 0) {
+                    put(accepted, rows);
+                }
+            }
+        } catch (Throwable e) {
+            fail(e);
+        } finally {
+            // The last worker to finish tells the writer there is nothing more to come
+            if (liveWorkers.decrementAndGet() == 0 && failure == null) {
+                try {
+                    put(accepted, Rows.end());
+                } catch (Throwable e) {
+                    fail(e);
+                }
+            }
+        }
+    }
+
+    // Reject the rows whose patient or doctor does not exist, looking up each distinct ID once
+    private <T> Rows<T> checkReferences(BulkEntity<T> entity, Rows<T> rows) {
+        Map<Integer, Boolean> patients = new HashMap<>();
+        Map<Integer, Boolean> doctors = new HashMap<>();
+        Rows<T> known = new Rows<>(rows.size);
+        for (int i = 0; i < rows.size; i++) {
+            T row = rows.rows.get(i);
+            int patientId = entity.patientIdOf(row);
+            int doctorId = entity.doctorIdOf(row);
+            if (patientId > 0 && !exists(patients, patientId, PatientDAO::patientExists)) {
+                reject(rows.lines[i], "Patient not found for ID: " + patientId);
+            } else if (doctorId > 0 && !exists(doctors, doctorId, DoctorDAO::doctorExists)) {
+                reject(rows.lines[i], "Doctor not found for ID: " + doctorId);
+            } else {
+                known.add(rows.lines[i], row);
+            }
+        }
+        return known;
+    }
+
+    private static boolean exists(Map<Integer, Boolean> known, int id, IntPredicate lookup) {
+        Boolean exists = known.get(id);
+        if (exists == null) {
+            exists = lookup.test(id);
+            known.put(id, exists);
+        }
+        return exists;
+    }
+
+    // Writer stage: gather accepted rows and write them in large batches
+    private <T> void write(BulkEntity<T> entity, BlockingQueue<Rows<T>> accepted) {
+        try {
+            List<Rows<T>> pending = new ArrayList<>();
+            int pendingRows = 0;
+            long lastProgress = System.nanoTime();
+            Rows<T> rows;
+            while ((rows = take(accepted)) != null && rows.rows != null) {
+                pending.add(rows);
+                pendingRows += rows.size;
+                if (pendingRows >= BATCH_ROWS) {
+                    flush(entity, pending, pendingRows);
+                    pending.clear();
+                    pendingRows = 0;
+                }
+                if (System.nanoTime() - lastProgress >= PROGRESS_INTERVAL_NANOS) {
+                    lastProgress = System.nanoTime();
+                    logProgress();
+                }
+            }
+            if (pendingRows > 0 && failure == null) {
+                flush(entity, pending, pendingRows);
+            }
+        } catch (Throwable e) {
+            fail(e);
+        }
+    }
+
+    // Store the gathered rows, checking their patients and doctors again where no delete can come between
+    private <T> void flush(BulkEntity<T> entity, List<Rows<T>> pending, int pendingRows) {
+        Rows<T> gathered = new Rows<>(pendingRows);
+        for (Rows<T> rows : pending) {
+            for (int j = 0; j < rows.size; j++) {
+                gathered.add(rows.lines[j], rows.rows.get(j));
+            }
+        }
+        PersonLocks.whileReferenced(() -> store(entity, checkReferences(entity, gathered)),
+                PersonLocks.idsOf(gathered.rows, entity::patientIdOf, entity::doctorIdOf));
+    }
+
+    private <T> void store(BulkEntity<T> entity, Rows<T> rows) {
+        if (rows.size == 0) {
+            return;
+        }
+        if (!keepIds) {
+            entity.add(rows.rows);
+            imported.add(rows.size);
+            return;
+        }
+        boolean[] inserted = entity.importWithIds(rows.rows);
+        for (int i = 0; i < rows.size; i++) {
+            if (inserted[i]) {
+                imported.increment();
+            } else {
+                reject(rows.lines[i], "ID " + entity.idOf(rows.rows.get(i)) + " already exists");
+            }
+        }
+    }
+
+    private void logProgress() {
+        long nanos = System.nanoTime() - startNanos;
+        LOGGER.info("Bulk import {} of {}: {} rows read, {} imported, {} rejected, {} rows/s",
+                id, entity.getName(), rowsRead.sum(), imported.sum(), rejected.sum(), rate(nanos));
+    }
+
+    private void reject(long line, String error) {
+        rejected.increment();
+        synchronized (rejects) {
+            if (rejects.size() < MAX_REJECTS_KEPT) {
+                Map<String, Object> reject = new LinkedHashMap<>();
+                reject.put("line", line);
+                reject.put("error", error);
+                rejects.add(reject);
+            }
+        }
+    }
+
+    private void fail(Throwable e) {
+        if (failure == null) {
+            failure = e;
+        }
+    }
+
+    // Put on a full queue waits for room, unless another stage has failed
+    private <E> void put(BlockingQueue<E> queue, E item) throws InterruptedException {
+        while (!queue.offer(item, POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+            if (failure != null) {
+                throw new IllegalStateException("Bulk import " + id + " stopped after a failure", failure);
+            }
+        }
+    }
+
+    // Take from an empty queue waits for an item, or returns null once another stage has failed
+    private <E> E take(BlockingQueue<E> queue) throws InterruptedException {
+        E item;
+        while ((item = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS)) == null) {
+            if (failure != null) {
+                return null;
+            }
+        }
+        return item;
+    }
+
+    // Rows processed per second, rejected ones included
+    private long rate(long nanos) {
+        return nanos > 0 ? (imported.sum() + rejected.sum()) * 1_000_000_000L / nanos : 0;
+    }
+
+    /**
+     * Report on the import so far.
+     * @return Status, row counts, throughput, the first rejected rows and any failure
+     */
+    public Map<String, Object> getReport() {
+        long nanos = status == Status.RUNNING ? System.nanoTime() - startNanos : elapsedNanos;
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("id", id);
+        report.put("entity", entity.getName());
+        report.put("format", format);
+        report.put("keepIds", keepIds);
+        report.put("status", status);
+        report.put("rowsRead", rowsRead.sum());
+        report.put("imported", imported.sum());
+        report.put("rejected", rejected.sum());
+        report.put("elapsedMs", nanos / 1_000_000);
+        report.put("rowsPerSecond", rate(nanos));
+        synchronized (rejects) {
+            report.put("rejects", new ArrayList<>(rejects));
+        }
+        if (failure != null) {
+            report.put("error", String.valueOf(failure.getMessage()));
+        }
+        return report;
+    }
+
+    // Raw records read together, with the line each one starts on
+    private static final class Chunk {
+        static final Chunk END = new Chunk();
+
+        final long[] lines = new long[CHUNK_ROWS];
+        final String[] records = new String[CHUNK_ROWS];
+        int size;
+
+        void add(long line, String record) {
+            lines[size] = line;
+            records[size++] = record;
+        }
+    }
+
+    // Accepted rows with the line each one came from; the end marker has no rows
+    private static final class Rows<T> {
+        final List<T> rows;
+        final long[] lines;
+        int size;
+
+        Rows(int capacity) {
+            this.rows = new ArrayList<>(capacity);
+            this.lines = new long[capacity];
+        }
+
+        private Rows() {
+            this.rows = null;
+            this.lines = null;
+        }
+
+        static <T> Rows<T> end() {
+            return new Rows<>();
+        }
+
+        void add(long line, T row) {
+            lines[size++] = line;
+            rows.add(row);
+        }
+    }
+}
@@ -0,0 +1,73 @@
+/**
+ * Splits bulk input into raw records without parsing them, so parsing can run on worker threads.
+ * A record is one line, except that a CSV record continues onto the next line while a
+ * quoted field is still open. Blank lines are skipped.
+ * Author: Rifa
+ * IIT no: 20220701
+ */
+package bulkClasses;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+
+final class RecordReader {
+
+    private final BufferedReader reader;
+    private final boolean csv;
+    // Number of lines read so far
+    private long lines;
+    // Line the last returned record started on
+    private long recordLine;
+
+    RecordReader(BufferedReader reader, BulkFormat format) {
+        this.reader = reader;
+        this.csv = format == BulkFormat.CSV;
+    }
+
+    /**
+     * Read the next record.
+     * @return The record, or null at the end of the input
+     * @throws IOException If the input cannot be read
+     */
+    String next() throws IOException {
+        String line;
+        do {
+            line = reader.readLine();
+            if (line == null) {
+                return null;
+            }
+            lines++;
+            // Drop a byte order mark in front of the first line
+            if (lines == 1 && !line.isEmpty() && line.charAt(0) == '\uFEFF') {
+                line = line.substring(1);
+            }
+        } while (line.trim().isEmpty());
+        recordLine = lines;
+        if (!csv || !openQuote(line, false)) {
+            return line;
+        }
+        StringBuilder record = new StringBuilder(line);
+        boolean open = true;
+        while (open && (line = reader.readLine()) != null) {
+            lines++;
+            record.append('\n').append(line);
+            open = openQuote(line, true);
+        }
+        return record.toString();
+    }
+
+    // Line number the last record started on, counting from 1
+    long line() {
+        return recordLine;
+    }
+
+    // Whether a quoted field is still open after a line; every quote, doubled or not, flips the state
+    private static boolean openQuote(String line, boolean open) {
+        for (int i = 0; i < line.length(); i++) {
+            if (line.charAt(i) == '"') {
+                open = !open;
+            }
+        }
+        return open;
+    }
+}
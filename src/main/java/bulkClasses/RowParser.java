@@ -0,0 +1,97 @@
+/**
+ * Turns raw bulk records into entities.
+ * Rows are read without a JSON view, so related patients and doctors may be given either
+ * as nested objects ({"patient": {"id": 7}}) or by ID (patientId), which suits flat CSV
+ * files. CSV values are read as text and converted to the property types; empty cells
+ * leave a property unset. Unknown properties make a row fail.
+ * Author: Rifa
+ * IIT no: 20220701
+ */
+package bulkClasses;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+final class RowParser<T> {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final ObjectReader reader;
+    // Column names of a CSV input, null for NDJSON
+    private final String[] columns;
+
+    private RowParser(Class<T> type, String[] columns) {
+        this.reader = MAPPER.readerFor(type);
+        this.columns = columns;
+    }
+
+    // Parser for NDJSON records
+    static <T> RowParser<T> ndjson(Class<T> type) {
+        return new RowParser<>(type, null);
+    }
+
+    // Parser for CSV records with the given header row
+    static <T> RowParser<T> csv(Class<T> type, String header) {
+        List<String> names = split(header);
+        for (int i = 0; i < names.size(); i++) {
+            names.set(i, names.get(i).trim());
+        }
+        return new RowParser<>(type, names.toArray(new String[0]));
+    }
+
+    /**
+     * Parse one record.
+     * @param record Raw record from a RecordReader
+     * @return The entity
+     * @throws IOException If the record is not a valid row
+     */
+    T parse(String record) throws IOException {
+        if (columns == null) {
+            return reader.readValue(record);
+        }
+        List<String> values = split(record);
+        if (values.size() != columns.length) {
+            throw new IOException("Expected " + columns.length + " fields but found " + values.size());
+        }
+        ObjectNode row = MAPPER.createObjectNode();
+        for (int i = 0; i < columns.length; i++) {
+            if (!values.get(i).isEmpty()) {
+                row.put(columns[i], values.get(i));
+            }
+        }
+        return reader.readValue(row);
+    }
+
+    // Split a CSV record into its fields, removing quotes and undoubling quotes inside them
+    static List<String> split(String record) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < record.length(); i++) {
+            char c = record.charAt(i);
+            if (quoted) {
+                if (c != '"') {
+                    field.append(c);
+                } else if (i + 1 < record.length() && record.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else {
+                    quoted = false;
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+}
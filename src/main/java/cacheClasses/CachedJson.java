@@ -0,0 +1,42 @@
+/**
+ * Response entity for a by-ID lookup whose JSON may be served from the ResponseCache.
+ * Author: Rifa
+ * IIT no: 20220701
+ */
+package cacheClasses;
+
+public class CachedJson {
+
+    private final String store;
+    private final int id;
+    // The entity followed by the nested entities its JSON includes
+    private final Object[] sources;
+
+    public CachedJson(String store, int id, Object entity, Object... related) {
+        this.store = store;
+        this.id = id;
+        this.sources = new Object[related.length + 1];
+        this.sources[0] = entity;
+        System.arraycopy(related, 0, this.sources, 1, related.length);
+    }
+
+    public String getStore() {
+        return store;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public Object getEntity() {
+        return sources[0];
+    }
+
+    public byte[] getCached() {
+        return ResponseCache.get(store, id, sources);
+    }
+
+    public void cache(byte[] json) {
+        ResponseCache.put(store, id, sources, json);
+    }
+}
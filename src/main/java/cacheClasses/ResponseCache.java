@@ -0,0 +1,228 @@
+/**
+ * Bounded cache of serialized JSON responses for by-ID lookups.
+ *
+ * Entries are keyed by store name and entity ID and hold the JSON bytes together with
+ * the objects they were serialized from (the entity and any nested patient or doctor).
+ * Stored entities are replaced rather than modified on update, so an entry is only
+ * served while every one of those objects is still the current one; a write racing
+ * with a read can therefore never serve stale bytes. The DAOs also invalidate entries
+ * on every write through a StoreIndex registered with their store, so stale entries do
+ * not linger and take up space.
+ *
+ * The cache is split into independently locked stripes, each an access-ordered
+ * LinkedHashMap that evicts its least recently used entries once its share of the
+ * byte budget is used up. The budget comes from the health.cache.maxBytes system
+ * property (default 64 MB, 0 disables the cache).
+ * Author: Rifa
+ * IIT no: 20220701
+ */
+package cacheClasses;
+
+import daoClasses.StoreIndex;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+public class ResponseCache {
+
+    private static final int STRIPES = 16;
+    // Rough per-entry overhead of the key, entry and map node, counted against the budget
+    private static final int ENTRY_OVERHEAD = 96;
+    private static final long DEFAULT_MAX_BYTES = 64L * 1024 * 1024;
+
+    private static final long maxBytes = Long.getLong("health.cache.maxBytes", DEFAULT_MAX_BYTES);
+    private static final Stripe[] stripes = new Stripe[STRIPES];
+
+    private static final LongAdder hits = new LongAdder();
+    private static final LongAdder misses = new LongAdder();
+    private static final LongAdder evictions = new LongAdder();
+    private static final LongAdder invalidations = new LongAdder();
+
+    static {
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe(maxBytes / STRIPES);
+        }
+    }
+
+    private ResponseCache() {
+    }
+
+    public static boolean isEnabled() {
+        return maxBytes > 0;
+    }
+
+    /**
+     * Look up the cached JSON of an entity.
+     * @param store Name of the store the entity lives in
+     * @param id ID of the entity
+     * @param sources Current entity followed by the current values of any nested entities
+     * @return The cached bytes, or null if there are none for exactly these objects
+     */
+    public static byte[] get(String store, int id, Object[] sources) {
+        if (!isEnabled()) {
+            return null;
+        }
+        Key key = new Key(store, id);
+        Stripe stripe = stripeFor(key);
+        Entry entry;
+        synchronized (stripe) {
+            entry = stripe.map.get(key);
+        }
+        if (entry != null && entry.matches(sources)) {
+            hits.increment();
+            return entry.json;
+        }
+        misses.increment();
+        return null;
+    }
+
+    /**
+     * Cache the JSON of an entity, evicting least recently used entries if over budget.
+     * @param store Name of the store the entity lives in
+     * @param id ID of the entity
+     * @param sources Entity followed by any nested entities the JSON was written from
+     * @param json Serialized entity
+     */
+    public static void put(String store, int id, Object[] sources, byte[] json) {
+        if (!isEnabled()) {
+            return;
+        }
+        Key key = new Key(store, id);
+        Entry entry = new Entry(sources, json);
+        Stripe stripe = stripeFor(key);
+        if (entry.size > stripe.maxBytes) {
+            return;
+        }
+        synchronized (stripe) {
+            Entry old = stripe.map.put(key, entry);
+            if (old != null) {
+                stripe.bytes -= old.size;
+            }
+            stripe.bytes += entry.size;
+            Iterator<Entry> eldest = stripe.map.values().iterator();
+            while (stripe.bytes > stripe.maxBytes && eldest.hasNext()) {
+                stripe.bytes -= eldest.next().size;
+                eldest.remove();
+                evictions.increment();
+            }
+        }
+    }
+
+    /**
+     * Drop the cached JSON of an entity.
+     * @param store Name of the store the entity lives in
+     * @param id ID of the entity
+     */
+    public static void invalidate(String store, int id) {
+        if (!isEnabled()) {
+            return;
+        }
+        Key key = new Key(store, id);
+        Stripe stripe = stripeFor(key);
+        synchronized (stripe) {
+            Entry old = stripe.map.remove(key);
+            if (old != null) {
+                stripe.bytes -= old.size;
+                invalidations.increment();
+            }
+        }
+    }
+
+    /**
+     * Index for a DAO to register with its store, dropping cached JSON on every write to it.
+     * @param store Name of the store
+     * @return Index that invalidates entries of that store
+     */
+    public static <T> StoreIndex<T> invalidator(String store) {
+        return (id, oldEntity, newEntity) -> {
+            if (oldEntity != null) {
+                invalidate(store, id);
+            }
+        };
+    }
+
+    // Hit, miss and eviction counters plus current size
+    public static Map<String, Long> getStats() {
+        long entries = 0;
+        long bytes = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                entries += stripe.map.size();
+                bytes += stripe.bytes;
+            }
+        }
+        Map<String, Long> stats = new LinkedHashMap<>();
+        stats.put("hits", hits.sum());
+        stats.put("misses", misses.sum());
+        stats.put("evictions", evictions.sum());
+        stats.put("invalidations", invalidations.sum());
+        stats.put("entries", entries);
+        stats.put("bytes", bytes);
+        stats.put("maxBytes", maxBytes);
+        return stats;
+    }
+
+    private static Stripe stripeFor(Key key) {
+        return stripes[(key.hashCode() >>> 16 ^ key.hashCode()) & (STRIPES - 1)];
+    }
+
+    private static final class Stripe {
+        final long maxBytes;
+        final LinkedHashMap<Key, Entry> map = new LinkedHashMap<>(64, 0.75f, true);
+        long bytes;
+
+        Stripe(long maxBytes) {
+            this.maxBytes = maxBytes;
+        }
+    }
+
+    private static final class Key {
+        final String store;
+        final int id;
+
+        Key(String store, int id) {
+            this.store = store;
+            this.id = id;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) other;
+            return id == key.id && store.equals(key.store);
+        }
+
+        @Override
+        public int hashCode() {
+            return store.hashCode() * 31 + id;
+        }
+    }
+
+    private static final class Entry {
+        final Object[] sources;
+        final byte[] json;
+        final long size;
+
+        Entry(Object[] sources, byte[] json) {
+            this.sources = sources.clone();
+            this.json = json;
+            this.size = json.length + ENTRY_OVERHEAD + 8L * sources.length;
+        }
+
+        // Same objects, not just equal ones: entities are replaced, never changed in place
+        boolean matches(Object[] current) {
+            if (current.length != sources.length) {
+                return false;
+            }
+            for (int i = 0; i < sources.length; i++) {
+                if (current[i] != sources[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
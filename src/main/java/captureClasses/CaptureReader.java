@@ -0,0 +1,139 @@
+/**
+ * Reads back a log written by CaptureWriter, one request at a time, in the order the
+ * requests completed. A record cut short at the end of the file, as left when the server
+ * was killed, ends the log.
+ * Author: Rifa
+ * IIT no: 20220701
+ */
+package captureClasses;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class CaptureReader implements Closeable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CaptureReader.class);
+
+    private final Path file;
+    private final DataInputStream in;
+    private final long startEpochMillis;
+    private final List<String> strings = new ArrayList<>();
+
+    public CaptureReader(Path file) throws IOException {
+        this.file = file;
+        this.in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16));
+        try {
+            if (in.readInt() != CaptureWriter.MAGIC) {
+                throw new IOException("Not a capture log: " + file);
+            }
+            int version = in.readUnsignedByte();
+            if (version != CaptureWriter.VERSION) {
+                throw new IOException("Unsupported capture log version " + version + ": " + file);
+            }
+            this.startEpochMillis = in.readLong();
+        } catch (IOException e) {
+            in.close();
+            throw e instanceof EOFException ? new IOException("Not a capture log: " + file, e) : e;
+        }
+    }
+
+    // Wall-clock time the capture started, in epoch millis
+    public long getStartEpochMillis() {
+        return startEpochMillis;
+    }
+
+    /**
+     * Read the next request.
+     * @return The request, or null at the end of the log
+     */
+    public CapturedRequest next() throws IOException {
+        try {
+            while (true) {
+                int tag = in.read();
+                if (tag == -1) {
+                    return null;
+                }
+                if (tag == CaptureWriter.TAG_STRING) {
+                    strings.add(new String(readBytes(), StandardCharsets.UTF_8));
+                } else if (tag == CaptureWriter.TAG_REQUEST) {
+                    return readRequest();
+                } else {
+                    throw new IOException("Corrupt capture log " + file + ": unknown record " + tag);
+                }
+            }
+        } catch (EOFException e) {
+            LOGGER.warn("Capture log {} ends in a partial record, which is skipped", file);
+            return null;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    private CapturedRequest readRequest() throws IOException {
+        long offset = readVarLong();
+        long duration = readVarLong();
+        String client = string();
+        String method = string();
+        String path = new String(readBytes(), StandardCharsets.UTF_8);
+        int status = (int) readVarLong();
+        long headerCount = readVarLong();
+        Map<String, String> headers = new LinkedHashMap<>();
+        for (long i = 0; i < headerCount; i++) {
+            String name = string();
+            headers.put(name, new String(readBytes(), StandardCharsets.UTF_8));
+        }
+        long body = readVarLong();
+        byte[] bytes = null;
+        if (body >= 2) {
+            bytes = new byte[(int) (body - 2)];
+            in.readFully(bytes);
+        }
+        return new CapturedRequest(offset, duration, client, method, path, status, headers, bytes,
+                body == CaptureWriter.BODY_OMITTED);
+    }
+
+    private String string() throws IOException {
+        long index = readVarLong();
+        if (index >= strings.size()) {
+            throw new IOException("Corrupt capture log " + file + ": unknown string " + index);
+        }
+        return strings.get((int) index);
+    }
+
+    private byte[] readBytes() throws IOException {
+        long length = readVarLong();
+        if (length > Integer.MAX_VALUE) {
+            throw new IOException("Corrupt capture log " + file + ": length " + length);
+        }
+        byte[] bytes = new byte[(int) length];
+        in.readFully(bytes);
+        return bytes;
+    }
+
+    private long readVarLong() throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Corrupt capture log " + file + ": varint too long");
+    }
+}
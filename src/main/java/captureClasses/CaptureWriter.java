@@ -0,0 +1,117 @@
+/**
+ * Writes captured requests to a compact binary log. Not thread-safe; TrafficCapture
+ * writes from a single thread.
+ *
+ * A log starts with [int magic "HCAP"][byte version][long start, epoch millis], followed
+ * by tagged records. A string record [byte 1][bytes] adds the next entry of the string
+ * table, which holds the clients, methods and header names so each is written once. A
+ * request record is [byte 2][offset][duration][client][method][bytes path][status]
+ * [header count]([name][bytes value])*[body]. Numbers are unsigned varints, strings
+ * referenced by their index in the table, and bytes are a varint length and the bytes.
+ * The body is 0 when there was none, 1 when it was omitted, or its length + 2 and the bytes.
+ * Author: Rifa
+ * IIT no: 20220701
+ */
+package captureClasses;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+public class CaptureWriter implements Closeable {
+
+    static final int MAGIC = 0x48434150; // "HCAP"
+    static final int VERSION = 1;
+    static final byte TAG_STRING = 1;
+    static final byte TAG_REQUEST = 2;
+    static final int BODY_NONE = 0;
+    static final int BODY_OMITTED = 1;
+
+    private final DataOutputStream out;
+    private final Map<String, Integer> strings = new HashMap<>();
+
+    /**
+     * Create the log, replacing any file at the path.
+     * @param file Path of the log
+     * @param startEpochMillis Wall-clock time the capture started, which request offsets count from
+     */
+    public CaptureWriter(Path file, long startEpochMillis) throws IOException {
+        this.out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), 1 << 16));
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+        out.writeLong(startEpochMillis);
+    }
+
+    // Append one request; it reaches the file when the buffer fills or on flush
+    public void write(CapturedRequest request) throws IOException {
+        int client = intern(request.getClient());
+        int method = intern(request.getMethod());
+        int[] names = new int[request.getHeaders().size()];
+        int i = 0;
+        for (String name : request.getHeaders().keySet()) {
+            names[i++] = intern(name);
+        }
+
+        out.writeByte(TAG_REQUEST);
+        writeVarLong(request.getOffsetMicros());
+        writeVarLong(request.getDurationMicros());
+        writeVarLong(client);
+        writeVarLong(method);
+        writeBytes(request.getPath().getBytes(StandardCharsets.UTF_8));
+        writeVarLong(request.getStatus());
+        writeVarLong(names.length);
+        i = 0;
+        for (String value : request.getHeaders().values()) {
+            writeVarLong(names[i++]);
+            writeBytes(value.getBytes(StandardCharsets.UTF_8));
+        }
+        if (request.isBodyOmitted()) {
+            writeVarLong(BODY_OMITTED);
+        } else if (request.getBody() == null) {
+            writeVarLong(BODY_NONE);
+        } else {
+            writeVarLong(request.getBody().length + 2L);
+            out.write(request.getBody());
+        }
+    }
+
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+
+    // Index of a string in the table, adding it with a string record the first time it is seen
+    private int intern(String value) throws IOException {
+        Integer index = strings.get(value);
+        if (index == null) {
+            index = strings.size();
+            strings.put(value, index);
+            out.writeByte(TAG_STRING);
+            writeBytes(value.getBytes(StandardCharsets.UTF_8));
+        }
+        return index;
+    }
+
+    private void writeBytes(byte[] bytes) throws IOException {
+        writeVarLong(bytes.length);
+        out.write(bytes);
+    }
+
+    private void writeVarLong(long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+}
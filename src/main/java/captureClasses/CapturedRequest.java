@@ -0,0 +1,109 @@
+/**
+ * One request as captured from live traffic: who sent it and when, what was asked,
+ * how long the server took and what it answered.
+ * Author: Rifa
+ * IIT no: 20220701
+ */
+package captureClasses;
+
+import java.util.Collections;
+import java.util.Map;
+
+public final class CapturedRequest {
+
+    private final long offsetMicros;
+    private final long durationMicros;
+    private final String client;
+    private final String method;
+    private final String path;
+    private final int status;
+    private final Map<String, String> headers;
+    private final byte[] body;
+    private final boolean bodyOmitted;
+
+    /**
+     * @param offsetMicros Arrival of the request, in microseconds since the capture started
+     * @param durationMicros Time from the request filter to the response filter, in microseconds
+     * @param client Key of the sending client, empty if it is not known
+     * @param method HTTP method
+     * @param path Path and query relative to the application, such as "patients/3?fields=name"
+     * @param status HTTP status of the response
+     * @param headers Headers that affect the response, such as Content-Type and If-Match
+     * @param body Request body, null if there was none or it was omitted
+     * @param bodyOmitted Whether the request had a body too large to capture
+     */
+    public CapturedRequest(long offsetMicros, long durationMicros, String client, String method, String path,
+            int status, Map<String, String> headers, byte[] body, boolean bodyOmitted) {
+        this.offsetMicros = offsetMicros;
+        this.durationMicros = durationMicros;
+        this.client = client;
+        this.method = method;
+        this.path = path;
+        this.status = status;
+        this.headers = Collections.unmodifiableMap(headers);
+        this.body = body;
+        this.bodyOmitted = bodyOmitted;
+    }
+
+    public long getOffsetMicros() {
+        return offsetMicros;
+    }
+
+    public long getDurationMicros() {
+        return durationMicros;
+    }
+
+    public String getClient() {
+        return client;
+    }
+
+    public String getMethod() {
+        return method;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    public Map<String, String> getHeaders() {
+        return headers;
+    }
+
+    public byte[] getBody() {
+        return body;
+    }
+
+    public boolean isBodyOmitted() {
+        return bodyOmitted;
+    }
+
+    /**
+     * Route of the request for grouping, the method and the path with numeric segments
+     * as {id} and without the query, such as "GET /patients/{id}/appointments".
+     * @return The route
+     */
+    public String getRoute() {
+        int query = path.indexOf('?');
+        String[] segments = (query >= 0 ? path.substring(0, query) : path).split("/");
+        StringBuilder route = new StringBuilder(method).append(' ');
+        for (String segment : segments) {
+            if (!segment.isEmpty()) {
+                route.append('/').append(isNumber(segment) ? "{id}" : segment);
+            }
+        }
+        return route.charAt(route.length() - 1) == ' ' ? route.append('/').toString() : route.toString();
+    }
+
+    private static boolean isNumber(String segment) {
+        for (int i = 0; i < segment.length(); i++) {
+            if (!Character.isDigit(segment.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,163 @@
+/**
+ * Starts and stops capturing live traffic to a log, for replay by the load test's
+ * ReplayTool. Request threads only queue what they saw; a single writer thread encodes
+ * and writes it, so capturing never waits on the disk. When the writer falls behind and
+ * the queue is full, requests are dropped from the capture rather than slowed down.
+ * Author: Rifa
+ * IIT no: 20220701
+ */
+package captureClasses;
+
+import configFiles.CaptureConfig;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class TrafficCapture {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TrafficCapture.class);
+
+    private static final int QUEUE_CAPACITY = 65536;
+
+    // Running capture, null while capturing is off
+    private static volatile Recorder recorder;
+
+    private TrafficCapture() {
+    }
+
+    /**
+     * Start capturing to the configured file. Does nothing if already started or no file is set.
+     * @param config Capture settings
+     */
+    public static synchronized void start(CaptureConfig config) {
+        if (recorder != null || !config.isEnabled()) {
+            return;
+        }
+        try {
+            recorder = new Recorder(config.getFile(), config.getMaxBodyBytes());
+            LOGGER.info("Capturing traffic to {}, bodies up to {} bytes", config.getFile(), config.getMaxBodyBytes());
+        } catch (IOException e) {
+            LOGGER.error("Failed to start traffic capture: {}", e.getMessage(), e);
+            throw new RuntimeException("Failed to start traffic capture", e);
+        }
+    }
+
+    // Write out the queued requests and close the log
+    public static synchronized void stop() {
+        Recorder stopping = recorder;
+        if (stopping == null) {
+            return;
+        }
+        recorder = null;
+        stopping.close();
+    }
+
+    public static boolean isRunning() {
+        return recorder != null;
+    }
+
+    // Largest request body kept in the capture, 0 if capturing is off
+    public static int getMaxBodyBytes() {
+        Recorder current = recorder;
+        return current != null ? current.maxBodyBytes : 0;
+    }
+
+    /**
+     * Queue a completed request for the log; dropped if capturing is off or the queue is full.
+     * @param startNanos System.nanoTime() when the request arrived
+     * @param endNanos System.nanoTime() when its response was ready
+     * @param client Key of the sending client, empty if it is not known
+     * @param method HTTP method
+     * @param path Path and query relative to the application
+     * @param status HTTP status of the response
+     * @param headers Headers that affect the response
+     * @param body Request body, null if there was none or it was omitted
+     * @param bodyOmitted Whether the body was too large to capture
+     */
+    public static void record(long startNanos, long endNanos, String client, String method, String path, int status,
+            Map<String, String> headers, byte[] body, boolean bodyOmitted) {
+        Recorder current = recorder;
+        if (current == null) {
+            return;
+        }
+        long offsetMicros = Math.max(0, startNanos - current.startNanos) / 1000;
+        CapturedRequest request = new CapturedRequest(offsetMicros, (endNanos - startNanos) / 1000, client, method,
+                path, status, headers, body, bodyOmitted);
+        if (!current.queue.offer(request)) {
+            current.dropped.incrementAndGet();
+        }
+    }
+
+    // An open log and the thread writing to it
+    private static final class Recorder {
+
+        private final Path file;
+        private final int maxBodyBytes;
+        private final long startNanos = System.nanoTime();
+        private final CaptureWriter writer;
+        private final BlockingQueue<CapturedRequest> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        private final AtomicLong dropped = new AtomicLong();
+        private final Thread thread;
+        private volatile boolean running = true;
+        private long written;
+
+        Recorder(Path file, int maxBodyBytes) throws IOException {
+            this.file = file;
+            this.maxBodyBytes = maxBodyBytes;
+            this.writer = new CaptureWriter(file, System.currentTimeMillis());
+            this.thread = new Thread(this::writeLoop, "capture-writer");
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        // Write queued requests until stopped, flushing whenever the queue runs dry
+        private void writeLoop() {
+            try {
+                while (running || !queue.isEmpty()) {
+                    CapturedRequest request = queue.poll(100, TimeUnit.MILLISECONDS);
+                    if (request == null) {
+                        writer.flush();
+                        continue;
+                    }
+                    writer.write(request);
+                    written++;
+                    if (queue.isEmpty()) {
+                        writer.flush();
+                    }
+                }
+            } catch (IOException e) {
+                LOGGER.error("Traffic capture to {} failed, capturing stops: {}", file, e.getMessage(), e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        void close() {
+            running = false;
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            try {
+                writer.close();
+            } catch (IOException e) {
+                LOGGER.error("Failed to close capture log {}: {}", file, e.getMessage(), e);
+            }
+            dropped.addAndGet(queue.size());
+            queue.clear();
+            if (dropped.get() > 0) {
+                LOGGER.warn("Captured {} requests to {}; dropped {} the writer could not keep up with",
+                        written, file, dropped.get());
+            } else {
+                LOGGER.info("Captured {} requests to {}", written, file);
+            }
+        }
+    }
+}
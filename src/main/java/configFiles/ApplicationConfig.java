@@ -28,13 +28,28 @@ public class ApplicationConfig extends Application {
      * If required, comment out calling this method in getClasses().
      */
     private void addRestResourceClasses(Set<Class<?>> resources) {
+        resources.add(configFiles.CachedJsonWriter.class);
+        resources.add(configFiles.CaptureFilter.class);
+        resources.add(configFiles.CaptureListener.class);
+        resources.add(configFiles.FieldsInterceptor.class);
+        resources.add(configFiles.MetricsFilter.class);
+        resources.add(configFiles.MetricsListener.class);
+        resources.add(configFiles.ObjectMapperProvider.class);
+        resources.add(configFiles.PersistenceListener.class);
         resources.add(exceptionClasses.AlreadyExistsExceptionMapper.class);
+        resources.add(exceptionClasses.ConflictExceptionMapper.class);
         resources.add(exceptionClasses.InvalidDataExceptionMapper.class);
         resources.add(exceptionClasses.NotFoundExceptionMapper.class);
+        resources.add(exceptionClasses.PreconditionFailedExceptionMapper.class);
         resources.add(resourceClasses.AppointmentResource.class);
         resources.add(resourceClasses.BillingResource.class);
+        resources.add(resourceClasses.BulkResource.class);
+        resources.add(resourceClasses.CacheResource.class);
+        resources.add(resourceClasses.CascadeResource.class);
         resources.add(resourceClasses.DoctorResource.class);
+        resources.add(resourceClasses.ExportResource.class);
         resources.add(resourceClasses.MedicalRecordResource.class);
+        resources.add(resourceClasses.MetricsResource.class);
         resources.add(resourceClasses.PatientResource.class);
         resources.add(resourceClasses.PersonResource.class);
         resources.add(resourceClasses.PrescriptionResource.class);
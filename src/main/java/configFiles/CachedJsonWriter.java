@@ -0,0 +1,50 @@
+/**
+ * Writes CachedJson responses: cached bytes when the cache has them, otherwise the entity
+ * serialized with the shared mapper, which is then cached. Responses trimmed with ?fields=
+ * are serialized directly and never cached.
+ * @author rifad
+ */
+package configFiles;
+
+import cacheClasses.CachedJson;
+import com.fasterxml.jackson.core.JsonGenerator;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.ext.MessageBodyWriter;
+import javax.ws.rs.ext.Provider;
+
+@Provider
+@Produces(MediaType.APPLICATION_JSON)
+public class CachedJsonWriter implements MessageBodyWriter<CachedJson> {
+
+    @Override
+    public boolean isWriteable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+        return CachedJson.class.isAssignableFrom(type);
+    }
+
+    @Override
+    public void writeTo(CachedJson response, Class<?> type, Type genericType, Annotation[] annotations,
+            MediaType mediaType, MultivaluedMap<String, Object> httpHeaders, OutputStream entityStream)
+            throws IOException {
+        if (FieldProjection.isActive()) {
+            ObjectMapperProvider.getMapper().writer()
+                    .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+                    .writeValue(entityStream, response.getEntity());
+            return;
+        }
+        byte[] json = response.getCached();
+        if (json == null) {
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream(512);
+            ObjectMapperProvider.getMapper().writeValue(buffer, response.getEntity());
+            json = buffer.toByteArray();
+            response.cache(json);
+        }
+        entityStream.write(json);
+    }
+}
@@ -0,0 +1,40 @@
+/**
+ * Settings for capturing live traffic, read from system properties:
+ * health.capture.file (capturing is off unless set) and
+ * health.capture.maxBodyBytes (default 1048576; larger bodies are left out of the capture).
+ * @author rifad
+ */
+package configFiles;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+public class CaptureConfig {
+
+    private final Path file;
+    private final int maxBodyBytes;
+
+    public CaptureConfig(Path file, int maxBodyBytes) {
+        this.file = file;
+        this.maxBodyBytes = maxBodyBytes;
+    }
+
+    // Build the settings from system properties, falling back to defaults
+    public static CaptureConfig fromSystemProperties() {
+        String file = System.getProperty("health.capture.file");
+        return new CaptureConfig(file != null && !file.isEmpty() ? Paths.get(file) : null,
+                Integer.getInteger("health.capture.maxBodyBytes", 1 << 20));
+    }
+
+    public boolean isEnabled() {
+        return file != null;
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    public int getMaxBodyBytes() {
+        return maxBodyBytes;
+    }
+}
@@ -0,0 +1,112 @@
+/**
+ * Captures each request while traffic capture is on (see captureClasses.TrafficCapture):
+ * its arrival, method, path, the headers that affect the response, its body and, from the
+ * response filter, its status and how long it took. The body is read here and handed on
+ * to the resource unchanged; one larger than the capture limit is streamed through and
+ * left out of the capture. Clients are told apart by an X-Client-Id header, or else by
+ * X-Forwarded-For; requests with neither are captured as one client.
+ * @author rifad
+ */
+package configFiles;
+
+import captureClasses.TrafficCapture;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.net.URI;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerRequestFilter;
+import javax.ws.rs.container.ContainerResponseContext;
+import javax.ws.rs.container.ContainerResponseFilter;
+import javax.ws.rs.container.PreMatching;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.UriInfo;
+import javax.ws.rs.ext.Provider;
+
+@Provider
+@PreMatching
+public class CaptureFilter implements ContainerRequestFilter, ContainerResponseFilter {
+
+    private static final String START_PROPERTY = CaptureFilter.class.getName() + ".start";
+    private static final String BODY_PROPERTY = CaptureFilter.class.getName() + ".body";
+    // Body property of a request whose body was too large to capture
+    private static final Object OMITTED = new Object();
+    // Headers replayed with the request, as they change what the server does
+    private static final String[] CAPTURED_HEADERS = {
+        HttpHeaders.CONTENT_TYPE, HttpHeaders.ACCEPT, HttpHeaders.IF_MATCH, HttpHeaders.IF_NONE_MATCH
+    };
+
+    @Override
+    public void filter(ContainerRequestContext request) throws IOException {
+        if (!TrafficCapture.isRunning()) {
+            return;
+        }
+        request.setProperty(START_PROPERTY, System.nanoTime());
+        if (!request.hasEntity()) {
+            return;
+        }
+        int maxBodyBytes = TrafficCapture.getMaxBodyBytes();
+        InputStream in = request.getEntityStream();
+        byte[] head = readUpTo(in, (int) Math.min(Integer.MAX_VALUE, maxBodyBytes + 1L));
+        if (head.length <= maxBodyBytes) {
+            request.setProperty(BODY_PROPERTY, head);
+            request.setEntityStream(new ByteArrayInputStream(head));
+        } else {
+            request.setProperty(BODY_PROPERTY, OMITTED);
+            request.setEntityStream(new SequenceInputStream(new ByteArrayInputStream(head), in));
+        }
+    }
+
+    @Override
+    public void filter(ContainerRequestContext request, ContainerResponseContext response) {
+        Object start = request.getProperty(START_PROPERTY);
+        if (start == null) {
+            return;
+        }
+        long end = System.nanoTime();
+        Object body = request.getProperty(BODY_PROPERTY);
+        Map<String, String> headers = new LinkedHashMap<>();
+        for (String name : CAPTURED_HEADERS) {
+            String value = request.getHeaderString(name);
+            if (value != null) {
+                headers.put(name, value);
+            }
+        }
+        TrafficCapture.record((Long) start, end, client(request), request.getMethod(), path(request.getUriInfo()),
+                response.getStatus(), headers, body instanceof byte[] ? (byte[]) body : null, body == OMITTED);
+    }
+
+    private static String client(ContainerRequestContext request) {
+        String client = request.getHeaderString("X-Client-Id");
+        if (client == null) {
+            client = request.getHeaderString("X-Forwarded-For");
+        }
+        return client != null ? client : "";
+    }
+
+    // Path and query relative to the application, such as "patients/3?fields=name"
+    private static String path(UriInfo uriInfo) {
+        URI requestUri = uriInfo.getRequestUri();
+        String base = uriInfo.getBaseUri().getRawPath();
+        String path = requestUri.getRawPath();
+        if (path.startsWith(base)) {
+            path = path.substring(base.length());
+        }
+        return requestUri.getRawQuery() != null ? path + "?" + requestUri.getRawQuery() : path;
+    }
+
+    // Read up to limit bytes, fewer only at the end of the stream
+    private static byte[] readUpTo(InputStream in, int limit) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(Math.min(limit, 8192));
+        byte[] buffer = new byte[8192];
+        int read;
+        while (out.size() < limit && (read = in.read(buffer, 0, Math.min(buffer.length, limit - out.size()))) != -1) {
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,36 @@
+/**
+ * Starts capturing traffic when the application starts, if configured (see CaptureConfig),
+ * and closes the capture log when it stops.
+ * @author rifad
+ */
+package configFiles;
+
+import captureClasses.TrafficCapture;
+import javax.ws.rs.ext.Provider;
+import org.glassfish.jersey.server.monitoring.ApplicationEvent;
+import org.glassfish.jersey.server.monitoring.ApplicationEventListener;
+import org.glassfish.jersey.server.monitoring.RequestEvent;
+import org.glassfish.jersey.server.monitoring.RequestEventListener;
+
+@Provider
+public class CaptureListener implements ApplicationEventListener {
+
+    @Override
+    public void onEvent(ApplicationEvent event) {
+        switch (event.getType()) {
+            case INITIALIZATION_START:
+                TrafficCapture.start(CaptureConfig.fromSystemProperties());
+                break;
+            case DESTROY_FINISHED:
+                TrafficCapture.stop();
+                break;
+            default:
+                break;
+        }
+    }
+
+    @Override
+    public RequestEventListener onRequest(RequestEvent requestEvent) {
+        return null;
+    }
+}
@@ -0,0 +1,122 @@
+/**
+ * Sparse field projection for response bodies, selected with ?fields=id,name,patient.name.
+ * The projection of the current response is kept in a thread local by FieldsInterceptor.
+ * Every bean property writer of the shared mapper is wrapped so that, while a projection
+ * is active, properties that were not asked for are skipped before their value is even
+ * read, which saves both response bytes and serialization time. Lists are transparent,
+ * so the projection applies to each element of a list response.
+ * @author rifad
+ */
+package configFiles;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.BeanDescription;
+import com.fasterxml.jackson.databind.SerializationConfig;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.BeanPropertyWriter;
+import com.fasterxml.jackson.databind.ser.BeanSerializerModifier;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class FieldProjection {
+
+    // Projection of the response being written on this thread; a mutable slot, so switching
+    // projections per property does not add and remove thread-local entries
+    private static final ThreadLocal<Slot> CURRENT = ThreadLocal.withInitial(Slot::new);
+
+    // Selected properties; a null value selects the whole property
+    private final Map<String, FieldProjection> children = new HashMap<>();
+
+    private FieldProjection() {
+    }
+
+    /**
+     * Parse a comma-separated list of dotted property paths.
+     * @param fields Value of the fields parameter, such as "id,patient.name"
+     * @return The projection, or null if no fields are given
+     */
+    public static FieldProjection parse(String fields) {
+        if (fields == null || fields.trim().isEmpty()) {
+            return null;
+        }
+        FieldProjection root = new FieldProjection();
+        for (String path : fields.split(",")) {
+            FieldProjection node = root;
+            String[] names = path.trim().split("\\.");
+            for (int i = 0; i < names.length && node != null; i++) {
+                String name = names[i].trim();
+                if (name.isEmpty()) {
+                    break;
+                }
+                boolean last = i == names.length - 1;
+                if (last) {
+                    // A whole property wins over any of its sub-paths
+                    node.children.put(name, null);
+                } else if (!node.children.containsKey(name) || node.children.get(name) != null) {
+                    node = node.children.computeIfAbsent(name, key -> new FieldProjection());
+                } else {
+                    node = null;
+                }
+            }
+        }
+        return root;
+    }
+
+    // Make a projection active for the response written on this thread, or clear it with null
+    public static void setCurrent(FieldProjection projection) {
+        CURRENT.get().projection = projection;
+    }
+
+    // Whether a projection is active for the response written on this thread
+    static boolean isActive() {
+        return CURRENT.get().projection != null;
+    }
+
+    // Serializer modifier that wraps every bean property with a projection check
+    static BeanSerializerModifier modifier() {
+        return new BeanSerializerModifier() {
+            @Override
+            public List<BeanPropertyWriter> changeProperties(SerializationConfig config,
+                    BeanDescription beanDesc, List<BeanPropertyWriter> beanProperties) {
+                for (int i = 0; i < beanProperties.size(); i++) {
+                    beanProperties.set(i, new ProjectedPropertyWriter(beanProperties.get(i)));
+                }
+                return beanProperties;
+            }
+        };
+    }
+
+    private static final class ProjectedPropertyWriter extends BeanPropertyWriter {
+
+        ProjectedPropertyWriter(BeanPropertyWriter base) {
+            super(base);
+        }
+
+        @Override
+        public void serializeAsField(Object bean, JsonGenerator gen, SerializerProvider prov) throws Exception {
+            Slot slot = CURRENT.get();
+            FieldProjection current = slot.projection;
+            if (current == null) {
+                super.serializeAsField(bean, gen, prov);
+                return;
+            }
+            if (!current.children.containsKey(getName())) {
+                return;
+            }
+            // Nested beans see the projection of this property, or everything if it was selected whole
+            slot.projection = current.children.get(getName());
+            try {
+                super.serializeAsField(bean, gen, prov);
+            } finally {
+                slot.projection = current;
+            }
+        }
+    }
+
+    private static final class Slot {
+
+        // Null when all fields are written
+        private FieldProjection projection;
+    }
+}
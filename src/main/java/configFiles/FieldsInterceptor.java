@@ -0,0 +1,35 @@
+/**
+ * Applies the ?fields= projection of a request while its response body is written.
+ * @author rifad
+ */
+package configFiles;
+
+import java.io.IOException;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.UriInfo;
+import javax.ws.rs.ext.Provider;
+import javax.ws.rs.ext.WriterInterceptor;
+import javax.ws.rs.ext.WriterInterceptorContext;
+
+@Provider
+public class FieldsInterceptor implements WriterInterceptor {
+
+    @Context
+    private UriInfo uriInfo;
+
+    @Override
+    public void aroundWriteTo(WriterInterceptorContext context) throws IOException, WebApplicationException {
+        FieldProjection projection = FieldProjection.parse(uriInfo.getQueryParameters().getFirst("fields"));
+        if (projection == null) {
+            context.proceed();
+            return;
+        }
+        FieldProjection.setCurrent(projection);
+        try {
+            context.proceed();
+        } finally {
+            FieldProjection.setCurrent(null);
+        }
+    }
+}
@@ -0,0 +1,64 @@
+/**
+ * Times every request from the request filter to the response filter and records it
+ * against its route, the resource method it matched (see metricsClasses.Metrics).
+ * Streamed bodies are written after the response filter, so their writing is not timed.
+ * @author rifad
+ */
+package configFiles;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerRequestFilter;
+import javax.ws.rs.container.ContainerResponseContext;
+import javax.ws.rs.container.ContainerResponseFilter;
+import javax.ws.rs.container.PreMatching;
+import javax.ws.rs.ext.Provider;
+import metricsClasses.Metrics;
+import org.glassfish.jersey.server.ExtendedUriInfo;
+import org.glassfish.jersey.server.model.Resource;
+import org.glassfish.jersey.server.model.ResourceMethod;
+
+@Provider
+@PreMatching
+public class MetricsFilter implements ContainerRequestFilter, ContainerResponseFilter {
+
+    private static final String START_PROPERTY = MetricsFilter.class.getName() + ".start";
+    // Key of the requests that matched no resource method
+    private static final Object UNMATCHED = new Object();
+
+    @Override
+    public void filter(ContainerRequestContext request) {
+        request.setProperty(START_PROPERTY, System.nanoTime());
+    }
+
+    @Override
+    public void filter(ContainerRequestContext request, ContainerResponseContext response) {
+        Object start = request.getProperty(START_PROPERTY);
+        if (start == null) {
+            return;
+        }
+        long nanos = System.nanoTime() - (Long) start;
+        ResourceMethod method = ((ExtendedUriInfo) request.getUriInfo()).getMatchedResourceMethod();
+        Metrics.Route route = method != null
+                ? Metrics.route(method, MetricsFilter::describe)
+                : Metrics.route(UNMATCHED, key -> new String[] {"*", "unmatched"});
+        route.record(nanos, response.getStatus());
+    }
+
+    // Method and path of a route, the path joined from the resource and its parents, such as "/patients/{id}"
+    private static String[] describe(ResourceMethod method) {
+        Deque<String> parts = new ArrayDeque<>();
+        for (Resource resource = method.getParent(); resource != null; resource = resource.getParent()) {
+            String path = resource.getPath();
+            if (path != null && !path.isEmpty() && !"/".equals(path)) {
+                parts.addFirst(path.startsWith("/") ? path.substring(1) : path);
+            }
+        }
+        StringBuilder path = new StringBuilder();
+        for (String part : parts) {
+            path.append('/').append(part.endsWith("/") ? part.substring(0, part.length() - 1) : part);
+        }
+        return new String[] {method.getHttpMethod(), path.length() > 0 ? path.toString() : "/"};
+    }
+}
@@ -0,0 +1,34 @@
+/**
+ * Counts the exceptions thrown while handling requests (see metricsClasses.Metrics).
+ * Exceptions are seen here whether or not their mapper runs: Jersey answers a
+ * WebApplicationException that carries an entity without calling its mapper.
+ * @author rifad
+ */
+package configFiles;
+
+import javax.ws.rs.ext.Provider;
+import metricsClasses.Metrics;
+import org.glassfish.jersey.server.monitoring.ApplicationEvent;
+import org.glassfish.jersey.server.monitoring.ApplicationEventListener;
+import org.glassfish.jersey.server.monitoring.RequestEvent;
+import org.glassfish.jersey.server.monitoring.RequestEventListener;
+
+@Provider
+public class MetricsListener implements ApplicationEventListener {
+
+    // Holds no state, so every request shares it
+    private static final RequestEventListener EXCEPTIONS = event -> {
+        if (event.getType() == RequestEvent.Type.ON_EXCEPTION) {
+            Metrics.countException(event.getException().getClass());
+        }
+    };
+
+    @Override
+    public void onEvent(ApplicationEvent event) {
+    }
+
+    @Override
+    public RequestEventListener onRequest(RequestEvent requestEvent) {
+        return EXCEPTIONS;
+    }
+}
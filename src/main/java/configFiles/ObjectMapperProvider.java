@@ -0,0 +1,38 @@
+/**
+ * Supplies the ObjectMapper Jersey uses for request and response bodies.
+ * Bodies are read and written through the Public view, so related patients and
+ * doctors appear as nested objects while their stored IDs stay internal.
+ * Property writers are wrapped by FieldProjection to support ?fields= on responses.
+ * @author rifad
+ */
+package configFiles;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import javax.ws.rs.ext.ContextResolver;
+import javax.ws.rs.ext.Provider;
+import modelClasses.Views;
+
+@Provider
+public class ObjectMapperProvider implements ContextResolver<ObjectMapper> {
+
+    private static final ObjectMapper MAPPER = createMapper();
+
+    // Shared mapper, also used by resources that write JSON themselves
+    public static ObjectMapper getMapper() {
+        return MAPPER;
+    }
+
+    @Override
+    public ObjectMapper getContext(Class<?> type) {
+        return MAPPER;
+    }
+
+    private static ObjectMapper createMapper() {
+        ObjectMapper mapper = new ObjectMapper();
+        mapper.registerModule(new SimpleModule("FieldProjection").setSerializerModifier(FieldProjection.modifier()));
+        mapper.setConfig(mapper.getSerializationConfig().withView(Views.Public.class));
+        mapper.setConfig(mapper.getDeserializationConfig().withView(Views.Public.class));
+        return mapper;
+    }
+}
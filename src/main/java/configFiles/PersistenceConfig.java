@@ -0,0 +1,62 @@
+/**
+ * Settings for persisting the entity stores, read from system properties:
+ * health.persistence.enabled (default true), health.persistence.dir,
+ * health.persistence.fsync (per-write, per-batch or per-interval, default per-batch)
+ * health.persistence.fsyncIntervalMs (default 100) and
+ * health.persistence.snapshotIntervalMinutes (default 15, 0 disables periodic snapshots).
+ * @author rifad
+ */
+package configFiles;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import persistenceClasses.FsyncPolicy;
+
+public class PersistenceConfig {
+
+    private final boolean enabled;
+    private final Path directory;
+    private final FsyncPolicy fsyncPolicy;
+    private final long fsyncIntervalMillis;
+    private final long snapshotIntervalMinutes;
+
+    public PersistenceConfig(boolean enabled, Path directory, FsyncPolicy fsyncPolicy, long fsyncIntervalMillis,
+            long snapshotIntervalMinutes) {
+        this.enabled = enabled;
+        this.directory = directory;
+        this.fsyncPolicy = fsyncPolicy;
+        this.fsyncIntervalMillis = fsyncIntervalMillis;
+        this.snapshotIntervalMinutes = snapshotIntervalMinutes;
+    }
+
+    // Build the settings from system properties, falling back to defaults
+    public static PersistenceConfig fromSystemProperties() {
+        String defaultDir = Paths.get(System.getProperty("user.home"), "HealthApplication", "data").toString();
+        return new PersistenceConfig(
+                Boolean.parseBoolean(System.getProperty("health.persistence.enabled", "true")),
+                Paths.get(System.getProperty("health.persistence.dir", defaultDir)),
+                FsyncPolicy.fromString(System.getProperty("health.persistence.fsync", "per-batch")),
+                Long.getLong("health.persistence.fsyncIntervalMs", 100L),
+                Long.getLong("health.persistence.snapshotIntervalMinutes", 15L));
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    public FsyncPolicy getFsyncPolicy() {
+        return fsyncPolicy;
+    }
+
+    public long getFsyncIntervalMillis() {
+        return fsyncIntervalMillis;
+    }
+
+    public long getSnapshotIntervalMinutes() {
+        return snapshotIntervalMinutes;
+    }
+}
@@ -0,0 +1,35 @@
+/**
+ * Restores the entity stores when the application starts and closes the log when it stops.
+ * @author rifad
+ */
+package configFiles;
+
+import javax.ws.rs.ext.Provider;
+import org.glassfish.jersey.server.monitoring.ApplicationEvent;
+import org.glassfish.jersey.server.monitoring.ApplicationEventListener;
+import org.glassfish.jersey.server.monitoring.RequestEvent;
+import org.glassfish.jersey.server.monitoring.RequestEventListener;
+import persistenceClasses.Persistence;
+
+@Provider
+public class PersistenceListener implements ApplicationEventListener {
+
+    @Override
+    public void onEvent(ApplicationEvent event) {
+        switch (event.getType()) {
+            case INITIALIZATION_START:
+                Persistence.start(PersistenceConfig.fromSystemProperties());
+                break;
+            case DESTROY_FINISHED:
+                Persistence.stop();
+                break;
+            default:
+                break;
+        }
+    }
+
+    @Override
+    public RequestEventListener onRequest(RequestEvent requestEvent) {
+        return null;
+    }
+}
@@ -6,11 +6,13 @@
  */
 package daoClasses;
 
+import cacheClasses.ResponseCache;
 import exceptionClasses.AlreadyExistsException;
 import exceptionClasses.NotFoundException;
+import exceptionClasses.PreconditionFailedException;
 import modelClasses.Appointment;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Collection;
+import java.util.List;
 import java.util.concurrent.atomic.AtomicInteger;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -19,34 +21,117 @@ public class AppointmentDAO {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(AppointmentDAO.class);
 
-    // Map to store appointments with appointment number as key
-    private static Map<Integer, Appointment> appointmentMap = new HashMap<>();
-    
     // Atomic integer to generate unique appointment IDs
-    private static AtomicInteger idCount = new AtomicInteger(100);
+    private static final AtomicInteger idCount = new AtomicInteger(100);
+
+    // Name of the store, also used to key its cached responses
+    public static final String STORE_NAME = "appointments";
+
+    // Store for appointments with appointment number as key
+    static final EntityStore<Appointment> appointmentStore = new EntityStore<>(STORE_NAME, idCount);
+    // Drop cached responses of appointments when they change
+    static {
+        appointmentStore.addIndex(ResponseCache.invalidator(STORE_NAME));
+    }
+
+    // Indexes of appointments by patient and by doctor, kept up to date by the store
+    static final IdIndex<Appointment> byPatient = appointmentStore.addIndex(new IdIndex<>(Appointment::getPatientId));
+    static final IdIndex<Appointment> byDoctor = appointmentStore.addIndex(new IdIndex<>(Appointment::getDoctorId));
+    // Index of appointments by start time, overall and per doctor
+    private static final TimeIndex<Appointment> byTime = appointmentStore.addIndex(
+            new TimeIndex<>(Appointment::getStartMinute, Appointment::getDoctorId));
+    // Index of appointments by start time per patient, read by the patient timeline
+    static final TimeIndex<Appointment> byPatientTime = appointmentStore.addIndex(
+            TimeIndex.perGroup(Timeline::startMinute, Appointment::getPatientId));
 
     // Method to generate a new unique appointment ID
     public static int generateId() {
         return idCount.incrementAndGet();
     }
 
+    // Method to reserve a block of consecutive IDs and return the first one
+    public static int generateIds(int count) {
+        return idCount.getAndAdd(count) + 1;
+    }
+
     // Method to retrieve all appointments
-    public static Map<Integer, Appointment> getAppointments() {
-        return appointmentMap;
+    public static Collection<Appointment> getAppointments() {
+        return appointmentStore.values();
+    }
+
+    // Method to retrieve a page of appointments in ascending ID order, starting after the given ID
+    public static Page<Appointment> getAppointmentsPage(int after, int limit) {
+        return appointmentStore.page(Appointment.class, after, limit);
+    }
+
+    // Method to retrieve the appointments of a patient, in ID order
+    public static List<Appointment> getAppointmentsByPatient(int patientId) {
+        return byPatient.find(appointmentStore, patientId);
+    }
+
+    // Method to retrieve the appointments of a doctor, in ID order
+    public static List<Appointment> getAppointmentsByDoctor(int doctorId) {
+        return byDoctor.find(appointmentStore, doctorId);
+    }
+
+    /**
+     * Retrieve the appointments starting in a time range, ordered by start time.
+     * Appointments whose date or time cannot be parsed are not included.
+     * @param from First minute of the range since the epoch, inclusive
+     * @param to Last minute of the range since the epoch, exclusive
+     * @param doctorId Doctor to restrict to, or 0 for all doctors
+     * @return Matching appointments
+     */
+    public static List<Appointment> getAppointmentsBetween(int from, int to, int doctorId) {
+        return byTime.find(appointmentStore, from, to, doctorId);
+    }
+
+    // Method to add a batch of validated appointments as one store operation, with IDs reserved in one block
+    public static void addAppointments(List<Appointment> appointments) {
+        try {
+            int firstId = generateIds(appointments.size());
+            int[] ids = new int[appointments.size()];
+            for (int i = 0; i < ids.length; i++) {
+                ids[i] = firstId + i;
+                appointments.get(i).setAppointmentNo(ids[i]);
+                appointments.get(i).setVersion(1);
+            }
+            boolean[] inserted = appointmentStore.insertAll(ids, appointments);
+            for (int i = 0; i < ids.length; i++) {
+                // An ID restored behind the counter's back is taken; add that one with a fresh ID
+                if (!inserted[i]) {
+                    addAppointment(appointments.get(i));
+                }
+            }
+            LOGGER.info("Added batch of {} appointments successfully", appointments.size());
+        } catch (Exception e) {
+            LOGGER.error("Failed to add batch of appointments: {}", e.getMessage(), e);
+            throw new RuntimeException("Failed to add batch of appointments", e);
+        }
+    }
+
+    // Method to import validated appointments that keep their own IDs; returns which were stored
+    public static boolean[] importAppointments(List<Appointment> appointments) {
+        int[] ids = new int[appointments.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = appointments.get(i).getAppointmentNo();
+            appointments.get(i).setVersion(1);
+        }
+        boolean[] inserted = appointmentStore.insertAll(ids, appointments);
+        LOGGER.info("Imported batch of {} appointments", appointments.size());
+        return inserted;
     }
 
     // Method to add a new appointment
     public static void addAppointment(Appointment appointment) {
         try {
-            // Generate a new appointment ID
-            int newId = generateId();
-            // Check if the appointment ID already exists
-            while (appointmentExists(newId)) {
+            // Generate appointment IDs until one is free, then add it to the store
+            appointment.setVersion(1);
+            int newId;
+            do {
                 newId = generateId();
-            }
-            // Set the appointment number and add it to the map
-            appointment.setAppointmentNo(newId);
-            appointmentMap.put(newId, appointment);
+                appointment.setAppointmentNo(newId);
+            } while (!appointmentStore.insert(newId, appointment));
             LOGGER.info("Added new appointment successfully: {}", appointment);
         } catch (AlreadyExistsException e) {
             LOGGER.error("Failed to add appointment: {}", e.getMessage(), e);
@@ -59,7 +144,7 @@ public class AppointmentDAO {
 
     // Method to retrieve an appointment by its ID
     public static Appointment getAppointmentById(int id) {
-        Appointment appointment = appointmentMap.get(id);
+        Appointment appointment = appointmentStore.get(id);
         if (appointment == null) {
             LOGGER.warn("Appointment not found for ID: {}", id);
             throw new NotFoundException("Appointment not found for ID: " + id);
@@ -67,17 +152,26 @@ public class AppointmentDAO {
         return appointment;
     }
 
+    // Method to retrieve many appointments by ID in one pass; IDs not found are returned as missing
+    public static Lookup<Appointment> getAppointmentsByIds(int[] ids) {
+        return appointmentStore.getAll(Appointment.class, ids);
+    }
+
     // Method to update an existing appointment
     public static void updateAppointment(int id, Appointment updatedAppointment) {
+        updateAppointment(id, updatedAppointment, Versioning.ANY_VERSION);
+    }
+
+    // Method to update an existing appointment if it is still at the expected version (0 for any version)
+    public static void updateAppointment(int id, Appointment updatedAppointment, long expectedVersion) {
         try {
-            if (appointmentExists(id)) {
-                // Set the appointment number and update it in the map
-                updatedAppointment.setAppointmentNo(id);
-                appointmentMap.put(id, updatedAppointment);
+            // Set the appointment number and update it in the store if it exists
+            updatedAppointment.setAppointmentNo(id);
+            if (Versioning.replace(appointmentStore, id, updatedAppointment, current -> true, expectedVersion)) {
                 LOGGER.info("Successfully updated appointment no: {}", id);
             }
-        } catch (NotFoundException e) {
-            LOGGER.warn("Appointment not found for ID: {} during update", id);
+        } catch (NotFoundException | PreconditionFailedException e) {
+            LOGGER.warn("Failed to update appointment no {}: {}", id, e.getMessage());
             throw e;
         } catch (Exception e) {
             LOGGER.error("Failed to update appointment: {}", e.getMessage(), e);
@@ -88,11 +182,10 @@ public class AppointmentDAO {
     // Method to delete an appointment by its ID
     public static void deleteAppointment(int id) {
         try {
-            if (!appointmentExists(id)) {
+            // Remove the appointment from the store if it exists
+            if (appointmentStore.remove(id) == null) {
                 throw new NotFoundException("Appointment not found for ID: " + id);
             }
-            // Remove the appointment from the map
-            appointmentMap.remove(id);
             LOGGER.info("Successfully deleted appointment no: {}", id);
         } catch (NotFoundException e) {
             LOGGER.warn("Appointment not found for ID: {} to delete", id);
@@ -105,7 +198,7 @@ public class AppointmentDAO {
 
     // Method to check if an appointment exists by its ID
     public static boolean appointmentExists(int id) {
-        return appointmentMap.containsKey(id);
+        return appointmentStore.contains(id);
     }
 
     // Method to validate an appointment
@@ -113,6 +206,6 @@ public class AppointmentDAO {
         return appointment != null 
                 && appointment.getDate() != null && !appointment.getDate().isEmpty() 
                 && appointment.getTime() != null && !appointment.getTime().isEmpty()
-                && appointment.getPatient() != null && appointment.getDoctor() != null;
+                && appointment.getPatientId() > 0 && appointment.getDoctorId() > 0;
     }
 }
@@ -6,10 +6,12 @@
  */
 package daoClasses;
 
+import cacheClasses.ResponseCache;
 import exceptionClasses.AlreadyExistsException;
 import exceptionClasses.NotFoundException;
-import java.util.HashMap;
-import java.util.Map;
+import exceptionClasses.PreconditionFailedException;
+import java.util.Collection;
+import java.util.List;
 import java.util.concurrent.atomic.AtomicInteger;
 import modelClasses.Billing;
 //import modelClasses.Doctor;
@@ -21,8 +23,22 @@ public class BillingDAO {
     
     private static final Logger LOGGER = LoggerFactory.getLogger(BillingDAO.class);
     
-    private static Map<Integer, Billing> billMap = new HashMap<>();
-    private static AtomicInteger idCount = new AtomicInteger(0);
+    private static final AtomicInteger idCount = new AtomicInteger(0);
+    // Name of the store, also used to key its cached responses
+    public static final String STORE_NAME = "bills";
+
+    static final EntityStore<Billing> billStore = new EntityStore<>(STORE_NAME, idCount);
+    // Drop cached responses of bills when they change
+    static {
+        billStore.addIndex(ResponseCache.invalidator(STORE_NAME));
+    }
+
+    // Indexes of bills by patient and by doctor, kept up to date by the store
+    static final IdIndex<Billing> byPatient = billStore.addIndex(new IdIndex<>(Billing::getPatientId));
+    static final IdIndex<Billing> byDoctor = billStore.addIndex(new IdIndex<>(Billing::getDoctorId));
+    // Index of bills by creation time per patient, read by the patient timeline
+    static final TimeIndex<Billing> byPatientTime = billStore.addIndex(
+            TimeIndex.perGroup(Timeline::createdMinute, Billing::getPatientId));
 
 //    // Adding sample bills to the map
 //    static {
@@ -39,24 +55,96 @@ public class BillingDAO {
 //    }
 
     // Method to retrieve all bills
-    public static Map<Integer, Billing> getBills() {
-        return billMap;
+    public static Collection<Billing> getBills() {
+        return billStore.values();
+    }
+
+    // Method to retrieve a page of bills in ascending ID order, starting after the given ID
+    public static Page<Billing> getBillsPage(int after, int limit) {
+        return billStore.page(Billing.class, after, limit);
+    }
+
+    // Method to retrieve the bills of a patient, in ID order
+    public static List<Billing> getBillsByPatient(int patientId) {
+        return byPatient.find(billStore, patientId);
+    }
+
+    // Method to retrieve the unpaid bills of a patient, in ID order
+    public static List<Billing> getOutstandingBillsByPatient(int patientId) {
+        List<Billing> bills = byPatient.find(billStore, patientId);
+        bills.removeIf(Billing::isPaid);
+        return bills;
+    }
+
+    // Method to retrieve the bills of a doctor, in ID order
+    public static List<Billing> getBillsByDoctor(int doctorId) {
+        return byDoctor.find(billStore, doctorId);
     }
     
     // Method to generate a new unique reference ID
     public static int generateId() {
         return idCount.incrementAndGet();
     }
+
+    // Method to reserve a block of consecutive IDs and return the first one
+    public static int generateIds(int count) {
+        return idCount.getAndAdd(count) + 1;
+    }
   
+
+    // Method to add a batch of validated bills as one store operation, with IDs reserved in one block
+    public static void addBills(List<Billing> bills) {
+        try {
+            int firstId = generateIds(bills.size());
+            long now = System.currentTimeMillis();
+            int[] ids = new int[bills.size()];
+            for (int i = 0; i < ids.length; i++) {
+                ids[i] = firstId + i;
+                bills.get(i).setRefID(ids[i]);
+                bills.get(i).setVersion(1);
+                bills.get(i).setCreatedAt(now);
+            }
+            boolean[] inserted = billStore.insertAll(ids, bills);
+            for (int i = 0; i < ids.length; i++) {
+                // An ID restored behind the counter's back is taken; add that one with a fresh ID
+                if (!inserted[i]) {
+                    addBill(bills.get(i));
+                }
+            }
+            LOGGER.info("Added batch of {} bills successfully", bills.size());
+        } catch (Exception e) {
+            LOGGER.error("Failed to add batch of bills: {}", e.getMessage(), e);
+            throw new RuntimeException("Failed to add batch of bills", e);
+        }
+    }
+
+    // Method to import validated bills that keep their own IDs; returns which were stored
+    public static boolean[] importBills(List<Billing> bills) {
+        int[] ids = new int[bills.size()];
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = bills.get(i).getRefID();
+            bills.get(i).setVersion(1);
+            // Keep the creation time of exported rows; stamp rows without one
+            if (bills.get(i).getCreatedAt() <= 0) {
+                bills.get(i).setCreatedAt(now);
+            }
+        }
+        boolean[] inserted = billStore.insertAll(ids, bills);
+        LOGGER.info("Imported batch of {} bills", bills.size());
+        return inserted;
+    }
+
     // Method to add a new bill
     public static void addBill(Billing bill) {
         try {
-            int newId = generateId();
-            while (billMap.containsKey(newId)) {
-                newId = generateId(); 
-            }
-            bill.setRefID(newId);
-            billMap.put(newId, bill);
+            bill.setVersion(1);
+            bill.setCreatedAt(System.currentTimeMillis());
+            int newId;
+            do {
+                newId = generateId();
+                bill.setRefID(newId);
+            } while (!billStore.insert(newId, bill));
             LOGGER.info("Added new bill successfully: {}", bill);
         } catch (AlreadyExistsException e) {
             LOGGER.error("Failed to add bill: {}", e.getMessage(), e);
@@ -69,7 +157,7 @@ public class BillingDAO {
     
     // Method to retrieve a bill by its reference ID
     public static Billing getBillById(int id) {
-        Billing bill = billMap.get(id);
+        Billing bill = billStore.get(id);
         if (bill == null){
             LOGGER.warn("Bill not found for ID: {}", id);
             throw new NotFoundException("Bill not found for ID: " + id);
@@ -77,16 +165,25 @@ public class BillingDAO {
         return bill;
     }
 
+    // Method to retrieve many bills by ID in one pass; IDs not found are returned as missing
+    public static Lookup<Billing> getBillsByIds(int[] ids) {
+        return billStore.getAll(Billing.class, ids);
+    }
+
     // Method to retrieve a bill by its reference ID
     public static void updateBill(int id, Billing updatedBill) {
+        updateBill(id, updatedBill, Versioning.ANY_VERSION);
+    }
+
+    // Method to update an existing bill if it is still at the expected version (0 for any version)
+    public static void updateBill(int id, Billing updatedBill, long expectedVersion) {
         try {
-            if (billExists(id)) {
-                updatedBill.setRefID(id);
-                billMap.put(id, updatedBill);
+            updatedBill.setRefID(id);
+            if (Versioning.replace(billStore, id, updatedBill, current -> true, expectedVersion)) {
                 LOGGER.info("successfully updated bill no: " + id);
             }
-        }catch (NotFoundException e) {
-            LOGGER.warn("Bill not found for ID: {} during update", id);
+        } catch (NotFoundException | PreconditionFailedException e) {
+            LOGGER.warn("Failed to update bill no {}: {}", id, e.getMessage());
             throw e;
         }catch (Exception e){
             LOGGER.error("Failed to update bill: {}", e.getMessage(), e);
@@ -97,13 +194,12 @@ public class BillingDAO {
     // Method to delete a bill by its reference ID
     public static void deleteBill(int id) {
         try {
-            if (!billExists(id)){
+            if (billStore.remove(id) == null){
                 throw new NotFoundException("Bill not found for ID: " + id);
             }
-            billMap.remove(id);
             LOGGER.info("successfully deleted bill no: " + id);
         } catch (NotFoundException e) {
-            LOGGER.warn("Bill not found for ID: {} during update", id);
+            LOGGER.warn("Failed to update bill no {}: {}", id, e.getMessage());
             throw e;
         }catch (Exception e){
             LOGGER.error("Failed to update bill: {}", e.getMessage(), e);
@@ -113,13 +209,13 @@ public class BillingDAO {
     
     // Method to check if a bill exists by its reference ID
     public static boolean billExists(int id) {
-        return billMap.containsKey(id);
+        return billStore.contains(id);
     }
     
     // Method to validate a billing record
     public static boolean isValidBilling(Billing billing){
-        return billing.getRefID() > 0 && billing.getPatient() != null &&
-               billing.getDoctor() != null && billing.getBillingAmount() >= 0;
+        return billing.getRefID() > 0 && billing.getPatientId() > 0 &&
+               billing.getDoctorId() > 0 && billing.getBillingAmount() >= 0;
     }
     
 }
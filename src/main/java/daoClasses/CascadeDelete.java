@@ -0,0 +1,289 @@
+/**
+ * Removes the appointments, bills, prescriptions and medical records that refer to a deleted
+ * patient or doctor, found through the stores' indexes by patient and by doctor, so the work
+ * is in proportion to the number of dependents rather than the size of the stores.
+ *
+ * The person is deleted first, and the dependents are then removed in batches. The person is
+ * removed under its PersonLocks write lock, so every add that found it has stored its entities
+ * by then and every later add is rejected: one pass over the indexes finds all dependents.
+ * A cascade with few dependents runs in the calling thread; a larger one runs on a background
+ * thread, pausing between batches, and its progress can be read from getReport() meanwhile.
+ *
+ * Sizes come from system properties: health.cascade.batchSize (default 1000) and
+ * health.cascade.inlineLimit (default 1000), the most dependents removed in the calling thread.
+ * Author: Rifa
+ * IIT no: 20220701
+ */
+package daoClasses;
+
+import exceptionClasses.ConflictException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+import modelClasses.Person;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public final class CascadeDelete {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CascadeDelete.class);
+
+    public enum Status { RUNNING, COMPLETED, FAILED }
+
+    private static final int BATCH_SIZE = Integer.getInteger("health.cascade.batchSize", 1000);
+    private static final int INLINE_LIMIT = Integer.getInteger("health.cascade.inlineLimit", 1000);
+    // Finished cascades kept for their reports
+    private static final int MAX_JOBS_KEPT = 50;
+
+    // References to persons, each a store with its index by the referencing ID
+    private static final List<Reference<?>> REFERENCES = Arrays.asList(
+            new Reference<>(AppointmentDAO.STORE_NAME, AppointmentDAO.appointmentStore, AppointmentDAO.byPatient),
+            new Reference<>(AppointmentDAO.STORE_NAME, AppointmentDAO.appointmentStore, AppointmentDAO.byDoctor),
+            new Reference<>(BillingDAO.STORE_NAME, BillingDAO.billStore, BillingDAO.byPatient),
+            new Reference<>(BillingDAO.STORE_NAME, BillingDAO.billStore, BillingDAO.byDoctor),
+            new Reference<>(PrescriptionDAO.STORE_NAME, PrescriptionDAO.prescriptionStore, PrescriptionDAO.byPatient),
+            new Reference<>(PrescriptionDAO.STORE_NAME, PrescriptionDAO.prescriptionStore, PrescriptionDAO.byDoctor),
+            new Reference<>(MedicalRecordDAO.STORE_NAME, MedicalRecordDAO.medicalRecordStore, MedicalRecordDAO.byPatient));
+
+    // One thread for all background cascades, so they never compete with each other for the stores
+    private static final ExecutorService worker = Executors.newSingleThreadExecutor(task -> {
+        Thread thread = new Thread(task, "cascade-delete");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private static final AtomicInteger jobIds = new AtomicInteger();
+    private static final Map<Integer, CascadeDelete> jobs = new LinkedHashMap<Integer, CascadeDelete>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, CascadeDelete> eldest) {
+            return size() > MAX_JOBS_KEPT && eldest.getValue().status != Status.RUNNING;
+        }
+    };
+
+    private final int id;
+    private final int personId;
+    private final long startNanos = System.nanoTime();
+    // Entities removed so far, by store name
+    private final Map<String, AtomicLong> deleted = new LinkedHashMap<>();
+    private volatile Status status = Status.RUNNING;
+    private volatile boolean background;
+    private volatile long elapsedNanos;
+    private volatile Throwable failure;
+
+    private CascadeDelete(int personId) {
+        this.id = jobIds.incrementAndGet();
+        this.personId = personId;
+        for (Reference<?> reference : REFERENCES) {
+            deleted.putIfAbsent(reference.name, new AtomicLong());
+        }
+    }
+
+    /**
+     * Reject the delete of a person that entities still refer to.
+     * @param personId ID of the patient or doctor
+     * @param kind Kind of person for the message, such as "Patient"
+     * @throws ConflictException If any entity refers to the person
+     */
+    public static void checkNoDependents(int personId, String kind) {
+        Map<String, Integer> counts = countDependents(personId);
+        if (!counts.isEmpty()) {
+            throw new ConflictException(kind + " " + personId + " is still referenced by " + counts
+                    + "; delete with cascade=true to remove them too");
+        }
+    }
+
+    /**
+     * Delete a person that no entity refers to. No entity referring to the person can be
+     * added between the look for dependents and the removal (see PersonLocks).
+     * @param personId ID of the patient or doctor
+     * @param condition Checked against the stored person while its ID is locked, such as its type
+     * @param kind Kind of person for the message, such as "Patient"
+     * @return The removed person, or null if no person matched
+     * @throws ConflictException If any entity refers to the person
+     */
+    static Person removeWithoutDependents(int personId, Predicate<? super Person> condition, String kind) {
+        EntityStore<Person> store = PersonDAO.personStore;
+        return PersonLocks.whileDeleting(personId, () -> {
+            Person current = store.get(personId);
+            if (current == null || !condition.test(current)) {
+                return null;
+            }
+            checkNoDependents(personId, kind);
+            return store.remove(personId, condition);
+        });
+    }
+
+    /**
+     * Delete a person whose dependents are removed by a cascade started afterwards. Adds that
+     * found the person have stored their entities once this returns, so the cascade sees them.
+     * @param personId ID of the patient or doctor
+     * @param condition Checked against the stored person while its ID is locked, such as its type
+     * @return The removed person, or null if no person matched
+     */
+    static Person removeForCascade(int personId, Predicate<? super Person> condition) {
+        return PersonLocks.whileDeleting(personId, () -> PersonDAO.personStore.remove(personId, condition));
+    }
+
+    /**
+     * Count the entities referring to a person, in time proportional to their number.
+     * @param personId ID of the patient or doctor
+     * @return Counts by store name, only for stores with dependents
+     */
+    public static Map<String, Integer> countDependents(int personId) {
+        Map<String, Integer> counts = new LinkedHashMap<>();
+        for (Reference<?> reference : REFERENCES) {
+            int count = reference.index.count(personId);
+            if (count > 0) {
+                counts.merge(reference.name, count, Integer::sum);
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * Remove the dependents of a person that was just deleted. Returns once they are removed
+     * if there are few, or right away with the cascade running in the background otherwise.
+     * @param personId ID of the deleted patient or doctor
+     * @return The cascade, for its report
+     */
+    public static CascadeDelete start(int personId) {
+        CascadeDelete job = new CascadeDelete(personId);
+        synchronized (jobs) {
+            jobs.put(job.id, job);
+        }
+        if (hasMoreDependents(personId, INLINE_LIMIT)) {
+            job.background = true;
+            worker.execute(job::run);
+            LOGGER.info("Removing dependents of person {} in the background, cascade {}", personId, job.id);
+        } else {
+            job.run();
+        }
+        return job;
+    }
+
+    // Cascade with the given ID, or null if it is unknown or no longer kept
+    public static CascadeDelete get(int id) {
+        synchronized (jobs) {
+            return jobs.get(id);
+        }
+    }
+
+    // Reports of the running and recently finished cascades, oldest first
+    public static List<Map<String, Object>> getReports() {
+        List<CascadeDelete> all;
+        synchronized (jobs) {
+            all = new ArrayList<>(jobs.values());
+        }
+        List<Map<String, Object>> reports = new ArrayList<>(all.size());
+        for (CascadeDelete job : all) {
+            reports.add(job.getReport());
+        }
+        return reports;
+    }
+
+    // Check if more than a number of entities refer to a person, reading no more index entries than that
+    private static boolean hasMoreDependents(int personId, int limit) {
+        int seen = 0;
+        for (Reference<?> reference : REFERENCES) {
+            seen += reference.index.lookup(personId, 0, limit + 1 - seen).size();
+            if (seen > limit) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    // True if the cascade was handed to the background thread
+    public boolean isBackground() {
+        return background;
+    }
+
+    private void run() {
+        try {
+            // No dependent can be added once the person is removed, so one pass finds them all
+            for (Reference<?> reference : REFERENCES) {
+                sweep(reference);
+            }
+            status = Status.COMPLETED;
+            LOGGER.info("Removed dependents of person {}: {}", personId, deleted);
+        } catch (RuntimeException e) {
+            failure = e;
+            status = Status.FAILED;
+            LOGGER.error("Failed to remove dependents of person {}: {}", personId, e.getMessage(), e);
+        } finally {
+            elapsedNanos = System.nanoTime() - startNanos;
+        }
+    }
+
+    // Remove the entities of one reference in batches
+    private <T> void sweep(Reference<T> reference) {
+        AtomicLong counter = deleted.get(reference.name);
+        int after = 0;
+        List<Integer> ids;
+        while (!(ids = reference.index.lookup(personId, after, BATCH_SIZE)).isEmpty()) {
+            for (int entityId : ids) {
+                // Only while the entity still refers to the person; an update may have moved it
+                if (reference.store.remove(entityId, entity -> reference.index.refersTo(entity, personId)) != null) {
+                    counter.incrementAndGet();
+                }
+            }
+            after = ids.get(ids.size() - 1);
+            if (background) {
+                // Let request threads at the store between batches
+                Thread.yield();
+            }
+        }
+    }
+
+    /**
+     * Report on the cascade so far.
+     * @return Status, entities removed by store and any failure
+     */
+    public Map<String, Object> getReport() {
+        long nanos = status == Status.RUNNING ? System.nanoTime() - startNanos : elapsedNanos;
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("id", id);
+        report.put("personId", personId);
+        report.put("status", status);
+        report.put("background", background);
+        Map<String, Long> counts = new LinkedHashMap<>();
+        for (Map.Entry<String, AtomicLong> entry : deleted.entrySet()) {
+            counts.put(entry.getKey(), entry.getValue().get());
+        }
+        report.put("deleted", counts);
+        report.put("elapsedMs", nanos / 1_000_000);
+        if (failure != null) {
+            report.put("error", String.valueOf(failure.getMessage()));
+        }
+        return report;
+    }
+
+    // Store holding entities that refer to persons, with its index by the referencing ID
+    private static final class Reference<T> {
+
+        private final String name;
+        private final EntityStore<T> store;
+        private final IdIndex<T> index;
+
+        Reference(String name, EntityStore<T> store, IdIndex<T> index) {
+            this.name = name;
+            this.store = store;
+            this.index = index;
+        }
+    }
+}
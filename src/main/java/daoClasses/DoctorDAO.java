@@ -1,31 +1,89 @@
 /**
  * Data Access Object (DAO) class for managing Doctor entities.
  * This class provides methods for CRUD operations on Doctor objects.
+ * Doctors are persons with the doctor role and live in the person store, under the same ID.
  * Author: rifa
  * IIT no: 20220701
  */
 package daoClasses;
 
+import exceptionClasses.ConflictException;
 import exceptionClasses.NotFoundException;
+import exceptionClasses.PreconditionFailedException;
 import modelClasses.Doctor;
+import modelClasses.Person;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Collection;
+import java.util.List;
 
 public class DoctorDAO {
 
     // Logger for logging messages
     private static final Logger LOGGER = LoggerFactory.getLogger(DoctorDAO.class);
 
-    // In-memory storage for Doctor objects with their IDs
-    private static Map<Integer, Doctor> doctorMap = new HashMap<>();
+    // Doctors are kept in the shared person store
+    private static final EntityStore<Person> personStore = PersonDAO.personStore;
 
     /**
-     * Retrieve all Doctor objects stored in the database and return Map of Doctor objects with their IDs
+     * Retrieve all Doctor objects stored in the database and return Collection of Doctor objects
      */
-    public static Map<Integer, Doctor> getDoctors() {
-        return doctorMap;
+    public static Collection<Doctor> getDoctors() {
+        return personStore.valuesOf(Doctor.class);
+    }
+
+    /**
+     * Retrieve a page of Doctor objects in ascending ID order.
+     * @param after ID the page starts after, 0 for the first page
+     * @param limit Maximum number of Doctor objects in the page
+     * @return Page of Doctor objects
+     */
+    public static Page<Doctor> getDoctorsPage(int after, int limit) {
+        return personStore.page(Doctor.class, after, limit);
+    }
+
+    /**
+     * Add a batch of new Doctor objects to the database as one store operation.
+     * IDs are reserved in one block, so the batch gets consecutive IDs.
+     * @param doctors Doctor objects to be added, already validated
+     */
+    public static void addDoctors(List<Doctor> doctors) {
+        try {
+            int firstId = PersonDAO.generateIds(doctors.size());
+            int[] ids = new int[doctors.size()];
+            for (int i = 0; i < ids.length; i++) {
+                ids[i] = firstId + i;
+                doctors.get(i).setId(ids[i]);
+                doctors.get(i).setVersion(1);
+            }
+            boolean[] inserted = personStore.insertAll(ids, doctors);
+            for (int i = 0; i < ids.length; i++) {
+                // An ID restored behind the counter's back is taken; add that one with a fresh ID
+                if (!inserted[i]) {
+                    addDoctor(doctors.get(i));
+                }
+            }
+            LOGGER.info("Added batch of {} doctors successfully", doctors.size());
+        } catch (Exception e) {
+            LOGGER.error("Failed to add batch of doctors: {}", e.getMessage(), e);
+            throw new RuntimeException("Failed to add batch of doctors", e);
+        }
+    }
+
+    /**
+     * Import Doctor objects that keep the IDs they already have, as one store operation.
+     * @param doctors Doctor objects to be imported, already validated and with IDs above 0
+     * @return For each Doctor object, True if it was stored, False if its ID was taken
+     */
+    public static boolean[] importDoctors(List<Doctor> doctors) {
+        int[] ids = new int[doctors.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = doctors.get(i).getId();
+            doctors.get(i).setVersion(1);
+        }
+        boolean[] inserted = personStore.insertAll(ids, doctors);
+        LOGGER.info("Imported batch of {} doctors", doctors.size());
+        return inserted;
     }
 
     /**
@@ -34,11 +92,13 @@ public class DoctorDAO {
      */
     public static void addDoctor(Doctor doctor) {
         try {
-            // Generate a new ID for the doctor
-            int newId = PersonDAO.generateId();
-            doctor.setId(newId);
-            // Add the doctor to the database
-            doctorMap.put(newId, doctor);
+            // Generate a new ID for the doctor and add it to the database
+            doctor.setVersion(1);
+            int newId;
+            do {
+                newId = PersonDAO.generateId();
+                doctor.setId(newId);
+            } while (!personStore.insert(newId, doctor));
             LOGGER.info("Added new doctor successfully: {}", doctor);
         } catch (Exception e) {
             // Log any unexpected errors
@@ -54,8 +114,9 @@ public class DoctorDAO {
      */
     public static Doctor getDoctorById(int id) {
         // Check if the doctor exists in the database
-        if (doctorExists(id)) {
-            return doctorMap.get(id);
+        Doctor doctor = findDoctor(id);
+        if (doctor != null) {
+            return doctor;
         } else {
             // Log a warning if doctor not found
             LOGGER.warn("Doctor not found for ID: {}", id);
@@ -63,23 +124,50 @@ public class DoctorDAO {
         }
     }
 
+    /**
+     * Retrieve many Doctor objects by ID in one pass, without failing on the missing ones.
+     * @param ids IDs of the Doctor objects to retrieve
+     * @return Doctor objects found and the IDs not found, both in the order the IDs were given, each ID once
+     */
+    public static Lookup<Doctor> getDoctorsByIds(int[] ids) {
+        return personStore.getAll(Doctor.class, ids);
+    }
+
+    /**
+     * Look up a Doctor object by its ID without failing when it is missing.
+     * @param id ID of the Doctor to look up
+     * @return The Doctor, or null if there is none
+     */
+    public static Doctor findDoctor(int id) {
+        Person person = personStore.get(id);
+        return person instanceof Doctor ? (Doctor) person : null;
+    }
+
     /**
      * Update an existing Doctor object in the database.
      * @param id ID of the Doctor to update
      * @param updatedDoctor Updated Doctor object
      */
     public static void updateDoctor(int id, Doctor updatedDoctor) {
+        updateDoctor(id, updatedDoctor, Versioning.ANY_VERSION);
+    }
+
+    /**
+     * Update an existing Doctor object in the database if it is still at the expected version.
+     * @param id ID of the Doctor to update
+     * @param updatedDoctor Updated Doctor object, which is given the next version
+     * @param expectedVersion Version the doctor must currently have, or 0 for any version
+     */
+    public static void updateDoctor(int id, Doctor updatedDoctor, long expectedVersion) {
         try {
-            // Check if the doctor exists in the database
-            if (!doctorExists(id)) {
-                throw new NotFoundException("Doctor not found for ID: " + id);
-            }
             // Set the ID of the updated doctor
             updatedDoctor.setId(id);
-            // Update the doctor in the database
-            doctorMap.put(id, updatedDoctor);
+            // Update the doctor in the database if it exists
+            if (!Versioning.replace(personStore, id, updatedDoctor, current -> current instanceof Doctor, expectedVersion)) {
+                throw new NotFoundException("Doctor not found for ID: " + id);
+            }
             LOGGER.info("Updated doctor successfully: {}", updatedDoctor);
-        } catch (NotFoundException e) {
+        } catch (NotFoundException | PreconditionFailedException e) {
             // Log a warning if doctor not found for update
             LOGGER.warn("Doctor not found for ID: {} during update", id);
             throw e;
@@ -92,21 +180,24 @@ public class DoctorDAO {
 
     /**
      * Delete a Doctor object from the database by its ID.
+     * Rejected while appointments, bills, prescriptions or medical records refer to it.
      * @param id ID of the Doctor to delete
+     * @throws ConflictException If entities still refer to the doctor
      */
     public static void deleteDoctor(int id) {
         try {
-            // Check if the doctor exists in the database
-            if (!doctorExists(id)) {
+            // Remove the doctor if it exists, refusing to leave entities pointing at it
+            if (CascadeDelete.removeWithoutDependents(id, current -> current instanceof Doctor, "Doctor") == null) {
                 throw new NotFoundException("Doctor not found for ID: " + id);
             }
-            // Remove the doctor from the database
-            doctorMap.remove(id);
             LOGGER.info("Deleted doctor successfully with ID: {}", id);
         } catch (NotFoundException e) {
             // Log a warning if doctor not found for deletion
             LOGGER.warn("Doctor not found for ID: {}to delete", id);
             throw e;
+        } catch (ConflictException e) {
+            LOGGER.warn("Failed to delete doctor: {}", e.getMessage());
+            throw e;
         } catch (Exception e) {
             // Log any other unexpected errors
             LOGGER.error("Failed to delete doctor: {}", e.getMessage(), e);
@@ -114,13 +205,28 @@ public class DoctorDAO {
         }
     }
 
+    /**
+     * Delete a Doctor object along with the appointments, bills, prescriptions and medical
+     * records that refer to it.
+     * @param id ID of the Doctor to delete
+     * @return The cascade removing the dependents; still running in the background if there were many
+     */
+    public static CascadeDelete deleteDoctorCascade(int id) {
+        if (CascadeDelete.removeForCascade(id, current -> current instanceof Doctor) == null) {
+            LOGGER.warn("Doctor not found for ID: {} to delete", id);
+            throw new NotFoundException("Doctor not found for ID: " + id);
+        }
+        LOGGER.info("Deleted doctor with ID: {}, removing its dependents", id);
+        return CascadeDelete.start(id);
+    }
+
     /**
      * Check if a Doctor with the given ID exists in the database.
      * @param id ID of the Doctor to check
      * @return True if the doctor exists, otherwise False
      */
     public static boolean doctorExists(int id) {
-        return doctorMap.containsKey(id);
+        return findDoctor(id) != null;
     }
 
     /**
@@ -0,0 +1,498 @@
+/**
+ * Thread-safe in-memory storage shared by all DAO classes.
+ * Entities are spread over segments, each backed by a primitive IntObjectMap.
+ * Reads never take a lock, writes only lock the segment they touch, and the
+ * check-then-act operations (insert, replace, remove) are atomic.
+ * When a StoreJournal is set, every write is journaled before it returns.
+ * Registered StoreIndex objects are updated under the same lock as the write they follow.
+ * Open StoreView objects are told about each write, under that lock, before it happens.
+ * Author: Rifa
+ * IIT no: 20220701
+ */
+package daoClasses;
+
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
+public class EntityStore<T> {
+
+    // Number of independently locked segments, must be a power of two
+    private static final int SEGMENTS = 16;
+
+    // Journal shared by all stores, null while persistence is disabled
+    private static volatile StoreJournal journal;
+
+    // Name of the store, used in log messages and journal records
+    private final String name;
+
+    // Counter the owning DAO generates IDs from, kept ahead of restored IDs
+    private final AtomicInteger idCount;
+
+    // Entities keyed by their ID, split by the low bits of the ID
+    private final IntObjectMap<T>[] segments;
+
+    // Indexes kept in step with the stored entities
+    private final List<StoreIndex<? super T>> indexes = new CopyOnWriteArrayList<>();
+
+    // Open point-in-time views, which see every write before it happens
+    private final List<StoreView<T>> views = new CopyOnWriteArrayList<>();
+
+    public EntityStore(String name, AtomicInteger idCount) {
+        this.name = name;
+        this.idCount = idCount;
+        @SuppressWarnings("unchecked")
+        IntObjectMap<T>[] maps = (IntObjectMap<T>[]) new IntObjectMap<?>[SEGMENTS];
+        for (int i = 0; i < SEGMENTS; i++) {
+            maps[i] = new IntObjectMap<>();
+        }
+        this.segments = maps;
+    }
+
+    // Set the journal that all stores record their writes to
+    public static void setJournal(StoreJournal storeJournal) {
+        journal = storeJournal;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Register an index to be kept in step with this store. Register indexes before the
+     * store is written to, as entities already stored are not added to a new index.
+     * @param index Index to register
+     * @return The registered index
+     */
+    public <I extends StoreIndex<? super T>> I addIndex(I index) {
+        indexes.add(index);
+        return index;
+    }
+
+    /**
+     * Retrieve an entity by its ID.
+     * @param id ID of the entity
+     * @return The entity, or null if there is none
+     */
+    public T get(int id) {
+        return segmentFor(id).get(id);
+    }
+
+    /**
+     * Retrieve many entities of one type by ID in a single pass, without locking.
+     * An ID asked for more than once is looked up once.
+     * @param type Type of the entities, an entity of another type counts as missing
+     * @param ids IDs of the entities
+     * @return The entities found and the IDs not found, both in the order the IDs were given, each ID once
+     */
+    public <S extends T> Lookup<S> getAll(Class<S> type, int[] ids) {
+        List<S> items = new ArrayList<>(ids.length);
+        List<Integer> missing = new ArrayList<>();
+        Set<Integer> seen = new HashSet<>();
+        for (int id : ids) {
+            if (!seen.add(id)) {
+                continue;
+            }
+            T entity = get(id);
+            if (type.isInstance(entity)) {
+                items.add(type.cast(entity));
+            } else {
+                missing.add(id);
+            }
+        }
+        return new Lookup<>(items, missing);
+    }
+
+    /**
+     * Check if an entity with the given ID exists.
+     * @param id ID of the entity
+     * @return True if the entity exists, otherwise False
+     */
+    public boolean contains(int id) {
+        return get(id) != null;
+    }
+
+    /**
+     * Store an entity only if its ID is not already taken.
+     * @param id ID of the entity
+     * @param entity Entity to store
+     * @return True if the entity was stored, False if the ID was taken
+     */
+    public boolean insert(int id, T entity) {
+        return put(id, entity, current -> current == null);
+    }
+
+    /**
+     * Store a batch of entities whose IDs are not already taken, as one operation:
+     * each segment is locked once for all of its entities, and the caller waits for
+     * the journal only once, for the whole batch.
+     * @param ids IDs of the entities
+     * @param entities Entities to store, in the same order as the IDs
+     * @return For each entity, True if it was stored, False if its ID was taken
+     */
+    public boolean[] insertAll(int[] ids, List<? extends T> entities) {
+        int count = ids.length;
+        StoreJournal j = journal;
+        byte[][] encoded = new byte[count][];
+        if (j != null) {
+            for (int i = 0; i < count; i++) {
+                encoded[i] = j.encode(entities.get(i));
+            }
+        }
+        // Entities imported with their own IDs move the counter past them, as restore does.
+        // This happens before they are stored, so views never miss an ID below the counter.
+        if (idCount != null) {
+            int maxId = 0;
+            for (int id : ids) {
+                maxId = Math.max(maxId, id);
+            }
+            idCount.accumulateAndGet(maxId, Math::max);
+        }
+        boolean[] inserted = new boolean[count];
+        long lastLsn = 0;
+        for (int s = 0; s < SEGMENTS; s++) {
+            IntObjectMap<T> segment = segments[s];
+            synchronized (segment) {
+                for (int i = 0; i < count; i++) {
+                    int id = ids[i];
+                    if ((id & (SEGMENTS - 1)) != s || segment.get(id) != null) {
+                        continue;
+                    }
+                    T entity = entities.get(i);
+                    if (j != null) {
+                        lastLsn = Math.max(lastLsn, j.logPut(name, id, entity, encoded[i]));
+                    }
+                    beforeWrite(id, null);
+                    segment.put(id, entity);
+                    updateIndexes(id, null, entity);
+                    inserted[i] = true;
+                }
+            }
+        }
+        // Records become durable in sequence order, so waiting for the last covers the batch
+        if (j != null && lastLsn != 0) {
+            j.awaitDurable(lastLsn);
+        }
+        return inserted;
+    }
+
+    /**
+     * Replace an entity only if its ID exists.
+     * @param id ID of the entity
+     * @param entity New value for the entity
+     * @return True if the entity was replaced, False if it did not exist
+     */
+    public boolean replace(int id, T entity) {
+        return put(id, entity, current -> current != null);
+    }
+
+    /**
+     * Replace an entity only if it exists and its current value matches a condition.
+     * @param id ID of the entity
+     * @param entity New value for the entity
+     * @param condition Checked against the current value while the ID is locked
+     * @return True if the entity was replaced, otherwise False
+     */
+    public boolean replace(int id, T entity, Predicate<? super T> condition) {
+        return put(id, entity, current -> current != null && condition.test(current));
+    }
+
+    /**
+     * Remove an entity if it exists.
+     * @param id ID of the entity
+     * @return The removed entity, or null if it did not exist
+     */
+    public T remove(int id) {
+        return remove(id, current -> true);
+    }
+
+    /**
+     * Remove an entity only if it exists and its current value matches a condition.
+     * @param id ID of the entity
+     * @param condition Checked against the current value while the ID is locked
+     * @return The removed entity, or null if nothing was removed
+     */
+    public T remove(int id, Predicate<? super T> condition) {
+        StoreJournal j = journal;
+        IntObjectMap<T> segment = segmentFor(id);
+        T old;
+        long lsn = 0;
+        synchronized (segment) {
+            old = segment.get(id);
+            if (old == null || !condition.test(old)) {
+                return null;
+            }
+            if (j != null) {
+                lsn = j.logRemove(name, id);
+            }
+            beforeWrite(id, old);
+            segment.remove(id);
+            updateIndexes(id, old, null);
+        }
+        if (j != null) {
+            j.awaitDurable(lsn);
+        }
+        return old;
+    }
+
+    /**
+     * Store an entity read back from persistent storage, without journaling it again.
+     * @param id ID of the entity
+     * @param entity Restored entity
+     */
+    public void restore(int id, T entity) {
+        IntObjectMap<T> segment = segmentFor(id);
+        synchronized (segment) {
+            beforeWrite(id, segment.get(id));
+            updateIndexes(id, segment.put(id, entity), entity);
+        }
+        if (idCount != null) {
+            idCount.accumulateAndGet(id, Math::max);
+        }
+    }
+
+    /**
+     * Remove an entity whose deletion was read back from persistent storage.
+     * @param id ID of the entity
+     */
+    public void restoreRemove(int id) {
+        IntObjectMap<T> segment = segmentFor(id);
+        synchronized (segment) {
+            beforeWrite(id, segment.get(id));
+            T old = segment.remove(id);
+            if (old != null) {
+                updateIndexes(id, old, null);
+            }
+        }
+        if (idCount != null) {
+            idCount.accumulateAndGet(id, Math::max);
+        }
+    }
+
+    /**
+     * Move the ID counter up to a value read back from persistent storage, so IDs of
+     * entities deleted before it was saved are not handed out again.
+     * @param count Saved value of the counter
+     */
+    public void restoreIdCount(int count) {
+        if (idCount != null) {
+            idCount.accumulateAndGet(count, Math::max);
+        }
+    }
+
+    // Highest ID handed out by the store's counter, 0 if it has none
+    public int getIdCount() {
+        return idCount != null ? idCount.get() : 0;
+    }
+
+    /**
+     * Wait for the writes in progress to finish. A write is journaled and applied under
+     * its segment lock, so once this returns every write journaled before the call is
+     * in the store.
+     */
+    public void awaitWrites() {
+        for (IntObjectMap<T> segment : segments) {
+            synchronized (segment) {
+                // Nothing to do: holding the lock once means its last writer has finished
+            }
+        }
+    }
+
+    // Read-only view of all stored entities
+    public Collection<T> values() {
+        return new AbstractCollection<T>() {
+            @Override
+            public Iterator<T> iterator() {
+                return new SegmentIterator<>(segments, null);
+            }
+
+            @Override
+            public int size() {
+                return EntityStore.this.size();
+            }
+        };
+    }
+
+    /**
+     * Read-only view of the stored entities of one type, such as the patients among all persons.
+     * Its size is counted by iterating, so prefer iterating it directly.
+     * @param type Type of the entities to include
+     * @return Collection of matching entities
+     */
+    public <S extends T> Collection<S> valuesOf(Class<S> type) {
+        return new AbstractCollection<S>() {
+            @Override
+            public Iterator<S> iterator() {
+                return new SegmentIterator<>(segments, type);
+            }
+
+            @Override
+            public int size() {
+                int size = 0;
+                for (Iterator<S> it = iterator(); it.hasNext(); it.next()) {
+                    size++;
+                }
+                return size;
+            }
+        };
+    }
+
+    /**
+     * Retrieve a page of entities of one type in ascending ID order, without copying the store.
+     * IDs are probed in order from the cursor up to the highest ID handed out by the
+     * store's counter, so memory use is bounded by the page size.
+     * @param type Type of the entities to include
+     * @param after ID the page starts after, 0 for the first page
+     * @param limit Maximum number of entities in the page
+     * @return The page, with the cursor of the next page if the limit was reached
+     */
+    public <S extends T> Page<S> page(Class<S> type, int after, int limit) {
+        List<S> items = new ArrayList<>(Math.min(limit, 1024));
+        int maxId = idCount != null ? idCount.get() : Integer.MAX_VALUE;
+        int id = Math.max(after, 0);
+        while (items.size() < limit && id < maxId) {
+            id++;
+            T entity = get(id);
+            if (type.isInstance(entity)) {
+                items.add(type.cast(entity));
+            }
+        }
+        return new Page<>(items, items.size() == limit && id < maxId ? id : 0);
+    }
+
+    /**
+     * Open a point-in-time view of this store. Writers are never blocked by it, but
+     * every write does extra work while a view is open, so close it when done.
+     * @return The view, to be closed after use
+     */
+    public StoreView<T> openView() {
+        if (idCount == null) {
+            throw new IllegalStateException("Store " + name + " has no ID counter to bound a view");
+        }
+        StoreView<T> view = new StoreView<>(this);
+        views.add(view);
+        // Read the counter only once the view sees writes; IDs are counted before they are stored
+        view.setLastId(idCount.get());
+        return view;
+    }
+
+    void closeView(StoreView<T> view) {
+        views.remove(view);
+    }
+
+    /**
+     * Visit every stored entity with its ID without locking.
+     * Writes made during the visit may or may not be seen.
+     * @param visitor Receives each ID and entity
+     */
+    public void forEach(IntObjectMap.EntryVisitor<? super T> visitor) {
+        for (IntObjectMap<T> segment : segments) {
+            segment.forEach(visitor);
+        }
+    }
+
+    public int size() {
+        int size = 0;
+        for (IntObjectMap<T> segment : segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    // Shared write path for insert and replace; the condition sees the current value or null
+    private boolean put(int id, T entity, Predicate<? super T> condition) {
+        StoreJournal j = journal;
+        byte[] encoded = j != null ? j.encode(entity) : null;
+        IntObjectMap<T> segment = segmentFor(id);
+        long lsn = 0;
+        synchronized (segment) {
+            T old = segment.get(id);
+            if (!condition.test(old)) {
+                return false;
+            }
+            if (j != null) {
+                lsn = j.logPut(name, id, entity, encoded);
+            }
+            beforeWrite(id, old);
+            segment.put(id, entity);
+            updateIndexes(id, old, entity);
+        }
+        if (j != null) {
+            j.awaitDurable(lsn);
+        }
+        return true;
+    }
+
+    // Called with the segment lock for the ID held, before the entity with the ID changes
+    private void beforeWrite(int id, T current) {
+        for (StoreView<T> view : views) {
+            view.beforeWrite(id, current);
+        }
+    }
+
+    // Called with the segment lock for the ID held
+    private void updateIndexes(int id, T oldEntity, T newEntity) {
+        for (StoreIndex<? super T> index : indexes) {
+            index.update(id, oldEntity, newEntity);
+        }
+    }
+
+    private IntObjectMap<T> segmentFor(int id) {
+        return segments[id & (SEGMENTS - 1)];
+    }
+
+    // Iterates over all segments in turn, optionally skipping entities not of a given type
+    private static final class SegmentIterator<S> implements Iterator<S> {
+        private final IntObjectMap<?>[] segments;
+        private final Class<S> type;
+        private int segment = 0;
+        private Iterator<?> current;
+        private S next;
+
+        SegmentIterator(IntObjectMap<?>[] segments, Class<S> type) {
+            this.segments = segments;
+            this.type = type;
+            this.current = segments[0].values();
+            this.next = advance();
+        }
+
+        @SuppressWarnings("unchecked")
+        private S advance() {
+            while (true) {
+                while (!current.hasNext()) {
+                    if (++segment == segments.length) {
+                        return null;
+                    }
+                    current = segments[segment].values();
+                }
+                Object value = current.next();
+                if (type == null || type.isInstance(value)) {
+                    return (S) value;
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public S next() {
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            S value = next;
+            next = advance();
+            return value;
+        }
+    }
+}
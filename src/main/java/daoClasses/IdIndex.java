@@ -0,0 +1,123 @@
+/**
+ * Secondary index from a referenced ID (such as a patient ID) to the IDs of the entities
+ * that reference it, in ascending order. Lookups cost time in proportion to the result.
+ * Author: Rifa
+ * IIT no: 20220701
+ */
+package daoClasses;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.function.ToIntFunction;
+
+public class IdIndex<T> implements StoreIndex<T> {
+
+    // Extracts the referenced ID from an entity, 0 meaning no reference
+    private final ToIntFunction<? super T> key;
+
+    // Entity IDs grouped by referenced ID
+    private final ConcurrentHashMap<Integer, NavigableSet<Integer>> ids = new ConcurrentHashMap<>();
+
+    public IdIndex(ToIntFunction<? super T> key) {
+        this.key = key;
+    }
+
+    @Override
+    public void update(int id, T oldEntity, T newEntity) {
+        int oldKey = oldEntity != null ? key.applyAsInt(oldEntity) : 0;
+        int newKey = newEntity != null ? key.applyAsInt(newEntity) : 0;
+        if (oldKey == newKey) {
+            return;
+        }
+        if (oldKey != 0) {
+            // Drop the group once it is empty, atomically with respect to adds for the same key
+            ids.computeIfPresent(oldKey, (k, group) -> {
+                group.remove(id);
+                return group.isEmpty() ? null : group;
+            });
+        }
+        if (newKey != 0) {
+            ids.compute(newKey, (k, group) -> {
+                if (group == null) {
+                    group = new ConcurrentSkipListSet<>();
+                }
+                group.add(id);
+                return group;
+            });
+        }
+    }
+
+    /**
+     * Look up the IDs of the entities referencing an ID.
+     * @param referencedId Referenced ID, such as a patient ID
+     * @return Entity IDs in ascending order, possibly empty
+     */
+    public List<Integer> lookup(int referencedId) {
+        NavigableSet<Integer> group = ids.get(referencedId);
+        if (group == null) {
+            return Collections.emptyList();
+        }
+        return new ArrayList<>(group);
+    }
+
+    /**
+     * Look up the IDs of the entities referencing an ID a batch at a time, for walking
+     * a large group in steps.
+     * @param referencedId Referenced ID, such as a patient ID
+     * @param after Entity ID to continue after, 0 for the first batch
+     * @param limit Largest number of IDs to return
+     * @return Entity IDs in ascending order, empty after the last batch
+     */
+    public List<Integer> lookup(int referencedId, int after, int limit) {
+        NavigableSet<Integer> group = ids.get(referencedId);
+        if (group == null) {
+            return Collections.emptyList();
+        }
+        List<Integer> result = new ArrayList<>(Math.min(limit, 1024));
+        for (Integer id : group.tailSet(after, false)) {
+            if (result.size() == limit) {
+                break;
+            }
+            result.add(id);
+        }
+        return result;
+    }
+
+    // Check if any entity references an ID
+    public boolean isReferenced(int referencedId) {
+        return ids.containsKey(referencedId);
+    }
+
+    // Count the entities referencing an ID, in time proportional to the count
+    public int count(int referencedId) {
+        NavigableSet<Integer> group = ids.get(referencedId);
+        return group != null ? group.size() : 0;
+    }
+
+    // Check if an entity references an ID, such as a re-check of an entity read from the store
+    public boolean refersTo(T entity, int referencedId) {
+        return key.applyAsInt(entity) == referencedId;
+    }
+
+    /**
+     * Retrieve the entities referencing an ID from the store the index belongs to.
+     * The entity is re-checked against the ID, so a write racing with the lookup is never misreported.
+     * @param store Store the index is registered with
+     * @param referencedId Referenced ID, such as a patient ID
+     * @return Matching entities in ascending ID order
+     */
+    public List<T> find(EntityStore<T> store, int referencedId) {
+        List<T> result = new ArrayList<>();
+        for (int id : lookup(referencedId)) {
+            T entity = store.get(id);
+            if (entity != null && refersTo(entity, referencedId)) {
+                result.add(entity);
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,242 @@
+/**
+ * Hash map from primitive int keys to objects, used as the backing storage of EntityStore.
+ * Keys and values live in two flat arrays (open addressing with linear probing),
+ * so there is no Integer boxing and no node object per entry.
+ * Writes must be serialized by the caller; reads may run concurrently with a writer.
+ * Author: Rifa
+ * IIT no: 20220701
+ */
+package daoClasses;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+public class IntObjectMap<V> {
+
+    // Marks a slot that has never held a key; this value cannot be used as a key
+    private static final int FREE = Integer.MIN_VALUE;
+    private static final int MIN_CAPACITY = 16;
+    private static final float LOAD_FACTOR = 0.75f;
+
+    // Keys and values of one generation of the table. A removed entry keeps its key
+    // with a null value, so probe chains stay intact until the next rehash.
+    private static final class Table {
+        final AtomicIntegerArray keys;
+        final AtomicReferenceArray<Object> values;
+        final int mask;
+        final int threshold;
+
+        Table(int capacity) {
+            int[] freeKeys = new int[capacity];
+            Arrays.fill(freeKeys, FREE);
+            this.keys = new AtomicIntegerArray(freeKeys);
+            this.values = new AtomicReferenceArray<>(capacity);
+            this.mask = capacity - 1;
+            this.threshold = (int) (capacity * LOAD_FACTOR);
+        }
+    }
+
+    private volatile Table table;
+    // Number of live entries
+    private volatile int size;
+    // Number of slots holding a key, live or removed
+    private int used;
+
+    public IntObjectMap() {
+        this(MIN_CAPACITY);
+    }
+
+    public IntObjectMap(int expectedSize) {
+        this.table = new Table(capacityFor(expectedSize));
+    }
+
+    /**
+     * Retrieve the value for a key.
+     * @param key Key to look up
+     * @return The value, or null if there is none
+     */
+    @SuppressWarnings("unchecked")
+    public V get(int key) {
+        Table t = table;
+        int index = mix(key) & t.mask;
+        while (true) {
+            int k = t.keys.get(index);
+            if (k == key) {
+                return (V) t.values.get(index);
+            }
+            if (k == FREE) {
+                return null;
+            }
+            index = (index + 1) & t.mask;
+        }
+    }
+
+    /**
+     * Store a value for a key, replacing any existing value.
+     * @param key Key to store under
+     * @param value Value to store, must not be null
+     * @return The previous value, or null if there was none
+     */
+    @SuppressWarnings("unchecked")
+    public V put(int key, V value) {
+        if (key == FREE) {
+            throw new IllegalArgumentException("Unsupported key: " + key);
+        }
+        if (value == null) {
+            throw new NullPointerException("value");
+        }
+        while (true) {
+            Table t = table;
+            int index = mix(key) & t.mask;
+            while (true) {
+                int k = t.keys.get(index);
+                if (k == key) {
+                    Object old = t.values.getAndSet(index, value);
+                    if (old == null) {
+                        size++;
+                    }
+                    return (V) old;
+                }
+                if (k == FREE) {
+                    break;
+                }
+                index = (index + 1) & t.mask;
+            }
+            if (used + 1 > t.threshold) {
+                rehash();
+                continue;
+            }
+            // Publish the value before the key so readers that find the key also see the value
+            t.values.set(index, value);
+            t.keys.set(index, key);
+            used++;
+            size++;
+            return null;
+        }
+    }
+
+    /**
+     * Remove the value for a key.
+     * @param key Key to remove
+     * @return The removed value, or null if there was none
+     */
+    @SuppressWarnings("unchecked")
+    public V remove(int key) {
+        Table t = table;
+        int index = mix(key) & t.mask;
+        while (true) {
+            int k = t.keys.get(index);
+            if (k == key) {
+                Object old = t.values.getAndSet(index, null);
+                if (old != null) {
+                    size--;
+                }
+                return (V) old;
+            }
+            if (k == FREE) {
+                return null;
+            }
+            index = (index + 1) & t.mask;
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // Receives the entries visited by forEach
+    public interface EntryVisitor<V> {
+        void visit(int key, V value);
+    }
+
+    // Visit the entries of the current table; concurrent writes may or may not be seen
+    @SuppressWarnings("unchecked")
+    public void forEach(EntryVisitor<? super V> visitor) {
+        Table t = table;
+        for (int i = 0; i <= t.mask; i++) {
+            Object value = t.values.get(i);
+            if (value != null) {
+                visitor.visit(t.keys.get(i), (V) value);
+            }
+        }
+    }
+
+    // Iterate over the values of the current table; concurrent writes may or may not be seen
+    public Iterator<V> values() {
+        final Table t = table;
+        return new Iterator<V>() {
+            private int index = -1;
+            private Object next = advance();
+
+            private Object advance() {
+                while (++index <= t.mask) {
+                    Object value = t.values.get(index);
+                    if (value != null) {
+                        return value;
+                    }
+                }
+                return null;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return next != null;
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public V next() {
+                if (next == null) {
+                    throw new NoSuchElementException();
+                }
+                Object value = next;
+                next = advance();
+                return (V) value;
+            }
+        };
+    }
+
+    // Copy live entries into a new table, dropping removed slots and growing if needed
+    private void rehash() {
+        Table old = table;
+        Table fresh = new Table(capacityFor(size + 1));
+        int live = 0;
+        for (int i = 0; i <= old.mask; i++) {
+            Object value = old.values.get(i);
+            if (value == null) {
+                continue;
+            }
+            int key = old.keys.get(i);
+            int index = mix(key) & fresh.mask;
+            while (fresh.keys.get(index) != FREE) {
+                index = (index + 1) & fresh.mask;
+            }
+            fresh.values.set(index, value);
+            fresh.keys.set(index, key);
+            live++;
+        }
+        used = live;
+        table = fresh;
+    }
+
+    // Smallest power of two that keeps the given number of entries at half the load factor
+    private static int capacityFor(int expectedSize) {
+        long needed = (long) Math.ceil(expectedSize / (LOAD_FACTOR / 2));
+        int capacity = MIN_CAPACITY;
+        while (capacity < needed && capacity < (1 << 30)) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    // Spread sequential ids across the table (murmur3 finalizer)
+    private static int mix(int key) {
+        int h = key * 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        return h ^ (h >>> 16);
+    }
+}
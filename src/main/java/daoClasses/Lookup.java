@@ -0,0 +1,27 @@
+/**
+ * Entities found for a list of IDs, in the order they were asked for, with the IDs that were not found.
+ * Author: Rifa
+ * IIT no: 20220701
+ */
+package daoClasses;
+
+import java.util.List;
+
+public class Lookup<T> {
+
+    private final List<T> items;
+    private final List<Integer> missing;
+
+    public Lookup(List<T> items, List<Integer> missing) {
+        this.items = items;
+        this.missing = missing;
+    }
+
+    public List<T> getItems() {
+        return items;
+    }
+
+    public List<Integer> getMissing() {
+        return missing;
+    }
+}
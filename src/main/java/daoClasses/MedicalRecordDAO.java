@@ -6,10 +6,12 @@
  */
 package daoClasses;
 
+import cacheClasses.ResponseCache;
 import exceptionClasses.AlreadyExistsException;
 import exceptionClasses.NotFoundException;
-import java.util.HashMap;
-import java.util.Map;
+import exceptionClasses.PreconditionFailedException;
+import java.util.Collection;
+import java.util.List;
 import java.util.concurrent.atomic.AtomicInteger;
 import modelClasses.MedicalRecord;
 import org.slf4j.Logger;
@@ -19,8 +21,21 @@ public class MedicalRecordDAO {
     
     private static final Logger LOGGER = LoggerFactory.getLogger(MedicalRecordDAO.class);
 
-    private static Map<Integer, MedicalRecord> medicalRecordsMap = new HashMap<>();
-    private static AtomicInteger idCount = new AtomicInteger(0);
+    private static final AtomicInteger idCount = new AtomicInteger(0);
+    // Name of the store, also used to key its cached responses
+    public static final String STORE_NAME = "medicalRecords";
+
+    static final EntityStore<MedicalRecord> medicalRecordStore = new EntityStore<>(STORE_NAME, idCount);
+    // Drop cached responses of medicalRecords when they change
+    static {
+        medicalRecordStore.addIndex(ResponseCache.invalidator(STORE_NAME));
+    }
+
+    // Indexes of medical records by patient, kept up to date by the store
+    static final IdIndex<MedicalRecord> byPatient = medicalRecordStore.addIndex(new IdIndex<>(MedicalRecord::getPatientId));
+    // Index of medical records by creation time per patient, read by the patient timeline
+    static final TimeIndex<MedicalRecord> byPatientTime = medicalRecordStore.addIndex(
+            TimeIndex.perGroup(Timeline::createdMinute, MedicalRecord::getPatientId));
 
     // Adding sample medical records to the map
 //    static {
@@ -35,13 +50,23 @@ public class MedicalRecordDAO {
 //    }
 
     // Method to retrieve all medical records
-    public static Map<Integer, MedicalRecord> getMedicalRecords() {
-        return medicalRecordsMap;
+    public static Collection<MedicalRecord> getMedicalRecords() {
+        return medicalRecordStore.values();
+    }
+
+    // Method to retrieve a page of medical records in ascending ID order, starting after the given ID
+    public static Page<MedicalRecord> getMedicalRecordsPage(int after, int limit) {
+        return medicalRecordStore.page(MedicalRecord.class, after, limit);
+    }
+
+    // Method to retrieve the medical records of a patient, in ID order
+    public static List<MedicalRecord> getMedicalRecordsByPatient(int patientId) {
+        return byPatient.find(medicalRecordStore, patientId);
     }
 
     // Method to retrieve a medical record by its record ID
     public static MedicalRecord getMedicalRecordById(int id) {
-        MedicalRecord medical = medicalRecordsMap.get(id);
+        MedicalRecord medical = medicalRecordStore.get(id);
         if (medical == null){
             LOGGER.warn("Medical record not found for ID: {}", id);
             throw new NotFoundException("Medical record not found for ID: " + id);
@@ -49,21 +74,75 @@ public class MedicalRecordDAO {
         return medical; 
     }
 
+    // Method to retrieve many medical records by ID in one pass; IDs not found are returned as missing
+    public static Lookup<MedicalRecord> getMedicalRecordsByIds(int[] ids) {
+        return medicalRecordStore.getAll(MedicalRecord.class, ids);
+    }
+
     // Method to generate a new unique record ID
     public static int generateId() {
         return idCount.incrementAndGet();
     }
 
+    // Method to reserve a block of consecutive IDs and return the first one
+    public static int generateIds(int count) {
+        return idCount.getAndAdd(count) + 1;
+    }
+
+    // Method to add a batch of validated medical records as one store operation, with IDs reserved in one block
+    public static void addMedicalRecords(List<MedicalRecord> records) {
+        try {
+            int firstId = generateIds(records.size());
+            long now = System.currentTimeMillis();
+            int[] ids = new int[records.size()];
+            for (int i = 0; i < ids.length; i++) {
+                ids[i] = firstId + i;
+                records.get(i).setRecordId(ids[i]);
+                records.get(i).setVersion(1);
+                records.get(i).setCreatedAt(now);
+            }
+            boolean[] inserted = medicalRecordStore.insertAll(ids, records);
+            for (int i = 0; i < ids.length; i++) {
+                // An ID restored behind the counter's back is taken; add that one with a fresh ID
+                if (!inserted[i]) {
+                    addMedicalRecord(records.get(i));
+                }
+            }
+            LOGGER.info("Added batch of {} medical records successfully", records.size());
+        } catch (Exception e) {
+            LOGGER.error("Failed to add batch of medical records: {}", e.getMessage(), e);
+            throw new RuntimeException("Failed to add batch of medical records", e);
+        }
+    }
+
+    // Method to import validated medical records that keep their own IDs; returns which were stored
+    public static boolean[] importMedicalRecords(List<MedicalRecord> records) {
+        int[] ids = new int[records.size()];
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = records.get(i).getRecordId();
+            records.get(i).setVersion(1);
+            // Keep the creation time of exported rows; stamp rows without one
+            if (records.get(i).getCreatedAt() <= 0) {
+                records.get(i).setCreatedAt(now);
+            }
+        }
+        boolean[] inserted = medicalRecordStore.insertAll(ids, records);
+        LOGGER.info("Imported batch of {} medical records", records.size());
+        return inserted;
+    }
+
     // Method to add a new medical record
     public static void addMedicalRecord(MedicalRecord record) {
         try{
-            int newId = generateId();
-            // Check if the generated ID is already in use
-            while (recordExists(newId)) {
-                newId = generateId(); // Generate a new ID until it's unique
-            }
-            record.setRecordId(newId);
-            medicalRecordsMap.put(newId, record);
+            record.setVersion(1);
+            record.setCreatedAt(System.currentTimeMillis());
+            int newId;
+            // Generate a new ID until one is not already in use
+            do {
+                newId = generateId();
+                record.setRecordId(newId);
+            } while (!medicalRecordStore.insert(newId, record));
             LOGGER.info("Added new record successfully: {}", record);
         } catch (AlreadyExistsException e) {
             LOGGER.error("Failed to add medical record: {}", e.getMessage(), e);
@@ -77,14 +156,18 @@ public class MedicalRecordDAO {
 
     // Method to update an existing medical record
     public static void updateMedicalRecord(int id, MedicalRecord updatedRecord) {
-        try{
-            if (recordExists(id)) {
-                updatedRecord.setRecordId(id);
-                medicalRecordsMap.put(id, updatedRecord);
+        updateMedicalRecord(id, updatedRecord, Versioning.ANY_VERSION);
+    }
+
+    // Method to update an existing medical record if it is still at the expected version (0 for any version)
+    public static void updateMedicalRecord(int id, MedicalRecord updatedRecord, long expectedVersion) {
+        try {
+            updatedRecord.setRecordId(id);
+            if (Versioning.replace(medicalRecordStore, id, updatedRecord, current -> true, expectedVersion)) {
                 LOGGER.info("successfully updated medical record id: {}", id);
             }
-        }catch (NotFoundException e) {
-            LOGGER.warn("Medical record not found for ID: {} during update", id);
+        } catch (NotFoundException | PreconditionFailedException e) {
+            LOGGER.warn("Failed to update medical record {}: {}", id, e.getMessage());
             throw e;
         }catch (Exception e) {
             LOGGER.error("Failed to update medical record: {}", e.getMessage());
@@ -96,10 +179,9 @@ public class MedicalRecordDAO {
     // Method to delete a medical record by its record ID
     public static void deleteMedicalRecord(int id) {
         try{
-            if (!recordExists(id)){
+            if (medicalRecordStore.remove(id) == null){
                 throw new NotFoundException("Medical record not found for ID: " + id);
             }
-            medicalRecordsMap.remove(id);
             LOGGER.info("successfully deleted medical record no: {}", id);
         }catch (NotFoundException e) {
             LOGGER.warn("Medical record not found for ID: {} to delete", id);
@@ -112,12 +194,12 @@ public class MedicalRecordDAO {
     
     // Method to check if a medical record exists by its record ID
     public static boolean recordExists(int id) {
-        return medicalRecordsMap.containsKey(id);
+        return medicalRecordStore.contains(id);
     }
 
      // Method to validate a medical record
     public static boolean isValidRecord(MedicalRecord medicalRecord) {
-        return medicalRecord != null && medicalRecord.getPatient() != null 
+        return medicalRecord != null && medicalRecord.getPatientId() > 0 
                 && medicalRecord.getDiagnosis() != null 
                 && !medicalRecord.getTreatment().isEmpty();
     }
@@ -0,0 +1,32 @@
+/**
+ * One page of entities in ascending ID order, with the cursor to fetch the next page from.
+ * Author: Rifa
+ * IIT no: 20220701
+ */
+package daoClasses;
+
+import java.util.List;
+
+public class Page<T> {
+
+    private final List<T> items;
+    // ID to pass as "after" for the next page, or 0 when this is the last page
+    private final int nextCursor;
+
+    public Page(List<T> items, int nextCursor) {
+        this.items = items;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<T> getItems() {
+        return items;
+    }
+
+    public int getNextCursor() {
+        return nextCursor;
+    }
+
+    public boolean hasNext() {
+        return nextCursor != 0;
+    }
+}
@@ -1,33 +1,91 @@
 /**
  * Data Access Object (DAO) class for managing Patient entities.
  * This class provides methods for CRUD operations on patient objects.
+ * Patients are persons with the patient role and live in the person store, under the same ID.
  * Author: Rifa
  * IIT no: 20220701
  */
 package daoClasses;
 
+import exceptionClasses.ConflictException;
 import exceptionClasses.NotFoundException;
+import exceptionClasses.PreconditionFailedException;
 import modelClasses.Patient;
+import modelClasses.Person;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Collection;
+import java.util.List;
 
 public class PatientDAO {
 
     // Logger for logging messages
     private static final Logger LOGGER = LoggerFactory.getLogger(PatientDAO.class);
 
-    // In-memory storage for Patient objects with their IDs
-    private static Map<Integer, Patient> patientMap = new HashMap<>();
+    // Patients are kept in the shared person store
+    private static final EntityStore<Person> personStore = PersonDAO.personStore;
 
     /**
      * Retrieve all Patient objects stored in the database.
-     * @return Map of Patient objects with their IDs
+     * @return Collection of Patient objects
      */
-    public static Map<Integer, Patient> getPatients() {
-        return patientMap;
+    public static Collection<Patient> getPatients() {
+        return personStore.valuesOf(Patient.class);
+    }
+
+    /**
+     * Retrieve a page of Patient objects in ascending ID order.
+     * @param after ID the page starts after, 0 for the first page
+     * @param limit Maximum number of Patient objects in the page
+     * @return Page of Patient objects
+     */
+    public static Page<Patient> getPatientsPage(int after, int limit) {
+        return personStore.page(Patient.class, after, limit);
+    }
+
+    /**
+     * Add a batch of new Patient objects to the database as one store operation.
+     * IDs are reserved in one block, so the batch gets consecutive IDs.
+     * @param patients Patient objects to be added, already validated
+     */
+    public static void addPatients(List<Patient> patients) {
+        try {
+            int firstId = PersonDAO.generateIds(patients.size());
+            int[] ids = new int[patients.size()];
+            for (int i = 0; i < ids.length; i++) {
+                ids[i] = firstId + i;
+                patients.get(i).setId(ids[i]);
+                patients.get(i).setVersion(1);
+            }
+            boolean[] inserted = personStore.insertAll(ids, patients);
+            for (int i = 0; i < ids.length; i++) {
+                // An ID restored behind the counter's back is taken; add that one with a fresh ID
+                if (!inserted[i]) {
+                    addPatient(patients.get(i));
+                }
+            }
+            LOGGER.info("Added batch of {} patients successfully", patients.size());
+        } catch (Exception e) {
+            LOGGER.error("Failed to add batch of patients: {}", e.getMessage(), e);
+            throw new RuntimeException("Failed to add batch of patients", e);
+        }
+    }
+
+    /**
+     * Import Patient objects that keep the IDs they already have, as one store operation.
+     * @param patients Patient objects to be imported, already validated and with IDs above 0
+     * @return For each Patient object, True if it was stored, False if its ID was taken
+     */
+    public static boolean[] importPatients(List<Patient> patients) {
+        int[] ids = new int[patients.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = patients.get(i).getId();
+            patients.get(i).setVersion(1);
+        }
+        boolean[] inserted = personStore.insertAll(ids, patients);
+        LOGGER.info("Imported batch of {} patients", patients.size());
+        return inserted;
     }
 
     /**
@@ -36,11 +94,13 @@ public class PatientDAO {
      */
     public static void addPatient(Patient patient) {
         try {
-            // Generate a new ID for the patient
-            int newId = PersonDAO.generateId();
-            patient.setId(newId);
-            // Add the patient to the database
-            patientMap.put(newId, patient);
+            // Generate a new ID for the patient and add it to the database
+            patient.setVersion(1);
+            int newId;
+            do {
+                newId = PersonDAO.generateId();
+                patient.setId(newId);
+            } while (!personStore.insert(newId, patient));
             LOGGER.info("Added new patient successfully: {}", patient);
         } catch (Exception e) {
             // Log any unexpected errors
@@ -56,8 +116,9 @@ public class PatientDAO {
      */
     public static Patient getPatientById(int id) {
         // Check if the patient exists in the database
-        if (patientExists(id)) {
-            return patientMap.get(id);
+        Patient patient = findPatient(id);
+        if (patient != null) {
+            return patient;
         } else {
             // Log a warning if patient not found
             LOGGER.warn("Patient not found for ID: {}", id);
@@ -65,23 +126,50 @@ public class PatientDAO {
         }
     }
 
+    /**
+     * Retrieve many Patient objects by ID in one pass, without failing on the missing ones.
+     * @param ids IDs of the Patient objects to retrieve
+     * @return Patient objects found and the IDs not found, both in the order the IDs were given, each ID once
+     */
+    public static Lookup<Patient> getPatientsByIds(int[] ids) {
+        return personStore.getAll(Patient.class, ids);
+    }
+
+    /**
+     * Look up a Patient object by its ID without failing when it is missing.
+     * @param id ID of the Patient to look up
+     * @return The Patient, or null if there is none
+     */
+    public static Patient findPatient(int id) {
+        Person person = personStore.get(id);
+        return person instanceof Patient ? (Patient) person : null;
+    }
+
     /**
      * Update an existing Patient object in the database.
      * @param id ID of the Patient to update
      * @param updatedPatient Updated Patient object
      */
     public static void updatePatient(int id, Patient updatedPatient) {
+        updatePatient(id, updatedPatient, Versioning.ANY_VERSION);
+    }
+
+    /**
+     * Update an existing Patient object in the database if it is still at the expected version.
+     * @param id ID of the Patient to update
+     * @param updatedPatient Updated Patient object, which is given the next version
+     * @param expectedVersion Version the patient must currently have, or 0 for any version
+     */
+    public static void updatePatient(int id, Patient updatedPatient, long expectedVersion) {
         try {
-            // Check if the patient exists in the database
-            if (!patientExists(id)) {
-                throw new NotFoundException("Patient not found for ID: " + id);
-            }
             // Set the ID of the updated patient
             updatedPatient.setId(id);
-            // Update the patient in the database
-            patientMap.put(id, updatedPatient);
+            // Update the patient in the database if it exists
+            if (!Versioning.replace(personStore, id, updatedPatient, current -> current instanceof Patient, expectedVersion)) {
+                throw new NotFoundException("Patient not found for ID: " + id);
+            }
             LOGGER.info("Updated patient successfully: {}", updatedPatient);
-        } catch (NotFoundException e) {
+        } catch (NotFoundException | PreconditionFailedException e) {
             // Log a warning if patient not found for update
             LOGGER.warn("Failed to update patient: {}", e.getMessage(), e);
             throw e;
@@ -94,21 +182,24 @@ public class PatientDAO {
 
     /**
      * Delete a Patient object from the database by its ID.
+     * Rejected while appointments, bills, prescriptions or medical records refer to it.
      * @param id ID of the Patient to delete
+     * @throws ConflictException If entities still refer to the patient
      */
     public static void deletePatient(int id) {
         try {
-            // Check if the patient exists in the database
-            if (!patientExists(id)) {
+            // Remove the patient if it exists, refusing to leave entities pointing at it
+            if (CascadeDelete.removeWithoutDependents(id, current -> current instanceof Patient, "Patient") == null) {
                 throw new NotFoundException("Patient not found for ID: " + id);
             }
-            // Remove the patient from the database
-            patientMap.remove(id);
             LOGGER.info("Deleted patient successfully with ID: {}", id);
         } catch (NotFoundException e) {
             // Log a warning if patient not found for deletion
             LOGGER.warn("Failed to delete patient: {}", e.getMessage(), e);
             throw e;
+        } catch (ConflictException e) {
+            LOGGER.warn("Failed to delete patient: {}", e.getMessage());
+            throw e;
         } catch (Exception e) {
             // Log any other unexpected errors
             LOGGER.error("Failed to delete patient: {}", e.getMessage(), e);
@@ -117,21 +208,27 @@ public class PatientDAO {
     }
 
     /**
-     * Check if a Patient with the given ID exists in the database.
-     * @param id ID of the Patient to check
-     * @return True if the patient exists, otherwise False
+     * Delete a Patient object along with the appointments, bills, prescriptions and medical
+     * records that refer to it.
+     * @param id ID of the Patient to delete
+     * @return The cascade removing the dependents; still running in the background if there were many
      */
-    public static boolean patientExists(int id) {
-        return patientMap.containsKey(id);
+    public static CascadeDelete deletePatientCascade(int id) {
+        if (CascadeDelete.removeForCascade(id, current -> current instanceof Patient) == null) {
+            LOGGER.warn("Patient not found for ID: {} to delete", id);
+            throw new NotFoundException("Patient not found for ID: " + id);
+        }
+        LOGGER.info("Deleted patient with ID: {}, removing its dependents", id);
+        return CascadeDelete.start(id);
     }
 
     /**
-     * Check if a Person with the given ID exists in the database.
-     * @param id ID of the Person to check
-     * @return True if the person exists, otherwise False
+     * Check if a Patient with the given ID exists in the database.
+     * @param id ID of the Patient to check
+     * @return True if the patient exists, otherwise False
      */
-    public static boolean patientIsPerson(int id) {
-        return PersonDAO.personExists(id);
+    public static boolean patientExists(int id) {
+        return findPatient(id) != null;
     }
 
     /**
@@ -1,33 +1,57 @@
 /**
  * Data Access Object (DAO) class for managing Person entities.
  * This class provides methods for CRUD operations on person objects.
+ * Patients and doctors are persons too and share this store, so every person has one ID
+ * whatever its role; PatientDAO and DoctorDAO are views over the same store.
  * Author: Rifa
  * IIT no: 20220701
  */
 package daoClasses;
 
+import cacheClasses.ResponseCache;
 import exceptionClasses.AlreadyExistsException;
+import exceptionClasses.ConflictException;
 import exceptionClasses.NotFoundException;
+import exceptionClasses.PreconditionFailedException;
+import modelClasses.Doctor;
+import modelClasses.Patient;
 import modelClasses.Person;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Collection;
+import java.util.List;
 import java.util.concurrent.atomic.AtomicInteger;
 
 public class PersonDAO {
 
     // Logger for logging messages
     private static final Logger LOGGER = LoggerFactory.getLogger(PersonDAO.class);
-    // In-memory storage for Person objects with their IDs
-    private static Map<Integer, Person> personMap = new HashMap<>();
-    // Counter for generating unique IDs
-    private static AtomicInteger idCount = new AtomicInteger(0);
+    // Counter for generating unique IDs, shared with PatientDAO and DoctorDAO
+    static final AtomicInteger idCount = new AtomicInteger(0);
+    // Name of the store, also used to key its cached responses
+    public static final String STORE_NAME = "persons";
 
-    // Retrieve all Person objects stored in the database and return Map of Person objects with their IDs
-    public static Map<Integer, Person> getPersons() {
-        return personMap;
+    // In-memory storage for Person, Patient and Doctor objects with their IDs
+    static final EntityStore<Person> personStore = new EntityStore<>(STORE_NAME, idCount);
+    // Drop cached responses of persons when they change
+    static {
+        personStore.addIndex(ResponseCache.invalidator(STORE_NAME));
+    }
+
+    // Retrieve all Person objects stored in the database
+    public static Collection<Person> getPersons() {
+        return personStore.values();
+    }
+
+    /**
+     * Retrieve a page of Person objects in ascending ID order.
+     * @param after ID the page starts after, 0 for the first page
+     * @param limit Maximum number of Person objects in the page
+     * @return Page of Person objects
+     */
+    public static Page<Person> getPersonsPage(int after, int limit) {
+        return personStore.page(Person.class, after, limit);
     }
     
     // Generate a unique ID for a new Person object and return Unique ID.
@@ -35,7 +59,57 @@ public class PersonDAO {
         int newId = idCount.incrementAndGet();
         return newId;
     }
+
+    // Method to reserve a block of consecutive IDs and return the first one
+    public static int generateIds(int count) {
+        return idCount.getAndAdd(count) + 1;
+    }
     
+
+    /**
+     * Add a batch of new Person objects to the database as one store operation.
+     * IDs are reserved in one block, so the batch gets consecutive IDs.
+     * @param persons Person objects to be added, already validated
+     */
+    public static void addPersons(List<Person> persons) {
+        try {
+            int firstId = generateIds(persons.size());
+            int[] ids = new int[persons.size()];
+            for (int i = 0; i < ids.length; i++) {
+                ids[i] = firstId + i;
+                persons.get(i).setId(ids[i]);
+                persons.get(i).setVersion(1);
+            }
+            boolean[] inserted = personStore.insertAll(ids, persons);
+            for (int i = 0; i < ids.length; i++) {
+                // An ID restored behind the counter's back is taken; add that one with a fresh ID
+                if (!inserted[i]) {
+                    insertWithNewId(persons.get(i));
+                }
+            }
+            LOGGER.info("Added batch of {} persons successfully", persons.size());
+        } catch (Exception e) {
+            LOGGER.error("Failed to add batch of persons: {}", e.getMessage(), e);
+            throw new RuntimeException("Failed to add batch of persons", e);
+        }
+    }
+
+    /**
+     * Import Person objects that keep the IDs they already have, as one store operation.
+     * @param persons Person objects to be imported, already validated and with IDs above 0
+     * @return For each Person object, True if it was stored, False if its ID was taken
+     */
+    public static boolean[] importPersons(List<Person> persons) {
+        int[] ids = new int[persons.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = persons.get(i).getId();
+            persons.get(i).setVersion(1);
+        }
+        boolean[] inserted = personStore.insertAll(ids, persons);
+        LOGGER.info("Imported batch of {} persons", persons.size());
+        return inserted;
+    }
+
     /**
      * Add a new Person object to the database.
      * @param person Person object to be added
@@ -47,12 +121,8 @@ public class PersonDAO {
             if (personExists(person.getId())) {
                 throw new AlreadyExistsException("Person with ID " + person.getId() + " already exists");
             }
-            // Generate a new ID for the person
-            int newId = generateId();
-            person.setId(newId);
-            
-            // Add the person to the database
-            personMap.put(newId, person);
+            // Generate a new ID for the person and add it to the database
+            insertWithNewId(person);
             LOGGER.info("Added new person successfully: {}", person);
         } catch (AlreadyExistsException e) {
             // error handling if person already exists
@@ -65,6 +135,16 @@ public class PersonDAO {
         }
     }
 
+    // Store a Person object under the next free ID, whatever ID it came with
+    private static void insertWithNewId(Person person) {
+        person.setVersion(1);
+        int newId;
+        do {
+            newId = generateId();
+            person.setId(newId);
+        } while (!personStore.insert(newId, person));
+    }
+
      /**
      * Retrieve a Person object by its ID.
      * @param id ID of the Person to retrieve
@@ -72,30 +152,61 @@ public class PersonDAO {
      */
     public static Person getPersonById(int id) {
         //check if person exists
-        if (personExists(id)) {
-            return personMap.get(id);
+        Person person = personStore.get(id);
+        if (person != null) {
+            return person;
         } else {
             LOGGER.warn("Could not find person: {}", id);
             throw new NotFoundException("Person not found for ID: " + id);
         }
     }
 
+    /**
+     * Retrieve many Person objects by ID in one pass, without failing on the missing ones.
+     * @param ids IDs of the Person objects to retrieve
+     * @return Person objects found and the IDs not found, both in the order the IDs were given, each ID once
+     */
+    public static Lookup<Person> getPersonsByIds(int[] ids) {
+        return personStore.getAll(Person.class, ids);
+    }
+
     /**
      * Update an existing Person object in the database.
      * @param id ID of the Person to update
      * @param updatedPerson Updated Person object
      */
     public static void updatePerson(int id, Person updatedPerson) {
+        updatePerson(id, updatedPerson, Versioning.ANY_VERSION);
+    }
+
+    /**
+     * Update an existing Person object in the database if it is still at the expected version.
+     * @param id ID of the Person to update
+     * @param updatedPerson Updated Person object, which is given the next version
+     * @param expectedVersion Version the person must currently have, or 0 for any version
+     */
+    public static void updatePerson(int id, Person updatedPerson, long expectedVersion) {
         try {
-            //check if person exists
-            if (!personExists(id)) {
-                throw new NotFoundException("Person not found for ID: " + id);
-            }
-            //set id and udate in map
+            //set id and update in map if the person exists, keeping any patient or doctor details
             updatedPerson.setId(id);
-            personMap.put(id, updatedPerson);
+            Person existing;
+            Person merged;
+            do {
+                existing = personStore.get(id);
+                if (existing == null) {
+                    throw new NotFoundException("Person not found for ID: " + id);
+                }
+                Versioning.checkVersion(id, existing, expectedVersion);
+                merged = withRole(existing, updatedPerson);
+                merged.setVersion(existing.getVersion() + 1);
+                final Person expected = existing;
+                if (personStore.replace(id, merged, current -> current == expected)) {
+                    break;
+                }
+            } while (true);
+            updatedPerson.setVersion(merged.getVersion());
             LOGGER.info("Updated person successfully: {}", updatedPerson);
-        } catch (NotFoundException e) {
+        } catch (NotFoundException | PreconditionFailedException e) {
             //error handling for not found
             LOGGER.warn("Failed to update person: {}", e.getMessage(), e);
             throw e;
@@ -107,31 +218,66 @@ public class PersonDAO {
 
     /**
      * Delete a Person object from the database by its ID.
+     * Rejected while appointments, bills, prescriptions or medical records refer to it.
      * @param id ID of the Person to delete
+     * @throws ConflictException If entities still refer to the person
      */
     public static void deletePerson(int id) {
         try {
-            if (!personExists(id)) {
+            // Remove the person if it exists, refusing to leave entities pointing at it
+            if (CascadeDelete.removeWithoutDependents(id, current -> true, "Person") == null) {
                 throw new NotFoundException("Person not found for ID: " + id);
             }
-            personMap.remove(id);
             LOGGER.info("Deleted person successfully with ID: {}", id);
         } catch (NotFoundException e) {
             LOGGER.warn("Person not found for Id: {} to delete", id);
             throw e;
+        } catch (ConflictException e) {
+            LOGGER.warn("Failed to delete person: {}", e.getMessage());
+            throw e;
         } catch (Exception e) {
             LOGGER.error("Failed to delete person: {}", e.getMessage(), e);
             throw new RuntimeException("Failed to delete person", e);
         }
     }
 
+    /**
+     * Delete a Person object along with the appointments, bills, prescriptions and medical
+     * records that refer to it.
+     * @param id ID of the Person to delete
+     * @return The cascade removing the dependents; still running in the background if there were many
+     */
+    public static CascadeDelete deletePersonCascade(int id) {
+        if (CascadeDelete.removeForCascade(id, current -> true) == null) {
+            LOGGER.warn("Person not found for ID: {} to delete", id);
+            throw new NotFoundException("Person not found for ID: " + id);
+        }
+        LOGGER.info("Deleted person with ID: {}, removing its dependents", id);
+        return CascadeDelete.start(id);
+    }
+
+    // Method to copy the person fields of an update onto a new object with the role of the existing person
+    private static Person withRole(Person existing, Person updated) {
+        if (existing instanceof Patient && !(updated instanceof Patient)) {
+            Patient patient = (Patient) existing;
+            return new Patient(updated.getId(), updated.getName(), updated.getContact(), updated.getAddress(),
+                    patient.getMedicalHistory(), patient.getHealthStatus());
+        }
+        if (existing instanceof Doctor && !(updated instanceof Doctor)) {
+            Doctor doctor = (Doctor) existing;
+            return new Doctor(updated.getId(), updated.getName(), updated.getContact(), updated.getAddress(),
+                    doctor.getSpecialization());
+        }
+        return updated;
+    }
+
     /**
      * Check if a Person with the given ID exists in the database.
      * @param id ID of the Person to check
      * @return True if the person exists, otherwise False
      */
     public static boolean personExists(int id) {
-        return personMap.containsKey(id);
+        return personStore.contains(id);
     }
 
     /**
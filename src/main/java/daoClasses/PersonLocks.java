@@ -0,0 +1,111 @@
+/**
+ * Locks that keep a patient or doctor from being deleted while entities that refer to it
+ * are being added.
+ *
+ * An add holds the read locks of the persons it refers to from its check that they exist
+ * until its entities are stored; a delete holds the write lock of the person from its look
+ * for dependents until the person is removed. So an add either finishes before the delete
+ * looks, and its entities are seen as dependents, or checks after the person is gone and
+ * is rejected. Adds never wait for each other.
+ *
+ * Persons share a fixed set of striped locks: a delete only delays the adds that refer to
+ * a person on its stripe, and only for the length of the delete. An add takes its stripes
+ * in ascending order, so adds that refer to several persons cannot deadlock with deletes.
+ * Author: Rifa
+ * IIT no: 20220701
+ */
+package daoClasses;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
+
+public final class PersonLocks {
+
+    // Number of striped locks; a power of two
+    private static final int STRIPES = 64;
+
+    private static final ReentrantReadWriteLock[] LOCKS = new ReentrantReadWriteLock[STRIPES];
+
+    static {
+        for (int i = 0; i < STRIPES; i++) {
+            LOCKS[i] = new ReentrantReadWriteLock();
+        }
+    }
+
+    private PersonLocks() {
+    }
+
+    /**
+     * Run an add that checks the persons it refers to exist and then stores its entities,
+     * so none of those persons can be deleted in between.
+     * @param add Checks the persons and stores the entities
+     * @param personIds IDs of the patients and doctors referred to; IDs of 0 or below are ignored
+     */
+    public static void whileReferenced(Runnable add, int... personIds) {
+        // Distinct stripes in ascending order
+        boolean[] needed = new boolean[STRIPES];
+        for (int id : personIds) {
+            if (id > 0) {
+                needed[stripe(id)] = true;
+            }
+        }
+        int[] stripes = new int[STRIPES];
+        int count = 0;
+        for (int s = 0; s < STRIPES; s++) {
+            if (needed[s]) {
+                stripes[count++] = s;
+            }
+        }
+        int locked = 0;
+        try {
+            for (; locked < count; locked++) {
+                LOCKS[stripes[locked]].readLock().lock();
+            }
+            add.run();
+        } finally {
+            while (locked > 0) {
+                LOCKS[stripes[--locked]].readLock().unlock();
+            }
+        }
+    }
+
+    /**
+     * Run the delete of a person, from its look for dependents to its removal, while no
+     * entities referring to the person are being added.
+     * @param personId ID of the patient or doctor
+     * @param delete Checks for dependents and removes the person
+     * @return The result of the delete
+     */
+    static <R> R whileDeleting(int personId, Supplier<R> delete) {
+        ReentrantReadWriteLock.WriteLock lock = LOCKS[stripe(personId)].writeLock();
+        lock.lock();
+        try {
+            return delete.get();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Patient and doctor IDs of many entities, for whileReferenced; null entities are skipped
+    public static <T> int[] idsOf(Iterable<T> entities, ToIntFunction<T> patientId, ToIntFunction<T> doctorId) {
+        int[] ids = new int[16];
+        int count = 0;
+        for (T entity : entities) {
+            if (entity == null) {
+                continue;
+            }
+            if (count + 2 > ids.length) {
+                ids = Arrays.copyOf(ids, ids.length * 2);
+            }
+            ids[count++] = patientId.applyAsInt(entity);
+            ids[count++] = doctorId.applyAsInt(entity);
+        }
+        return Arrays.copyOf(ids, count);
+    }
+
+    private static int stripe(int personId) {
+        return personId & (STRIPES - 1);
+    }
+}
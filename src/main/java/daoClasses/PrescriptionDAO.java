@@ -7,10 +7,12 @@
 
 package daoClasses;
 
+import cacheClasses.ResponseCache;
 import exceptionClasses.AlreadyExistsException;
 import exceptionClasses.NotFoundException;
-import java.util.HashMap;
-import java.util.Map;
+import exceptionClasses.PreconditionFailedException;
+import java.util.Collection;
+import java.util.List;
 import java.util.concurrent.atomic.AtomicInteger;
 //import modelClasses.Doctor;
 //import modelClasses.Patient;
@@ -22,8 +24,22 @@ public class PrescriptionDAO {
     
     private static final Logger LOGGER = LoggerFactory.getLogger(PrescriptionDAO.class);
 
-    private static Map<Integer, Prescription> prescriptionMap = new HashMap<>();
-    private static AtomicInteger idCount = new AtomicInteger(0);
+    private static final AtomicInteger idCount = new AtomicInteger(0);
+    // Name of the store, also used to key its cached responses
+    public static final String STORE_NAME = "prescriptions";
+
+    static final EntityStore<Prescription> prescriptionStore = new EntityStore<>(STORE_NAME, idCount);
+    // Drop cached responses of prescriptions when they change
+    static {
+        prescriptionStore.addIndex(ResponseCache.invalidator(STORE_NAME));
+    }
+
+    // Indexes of prescriptions by patient and by doctor, kept up to date by the store
+    static final IdIndex<Prescription> byPatient = prescriptionStore.addIndex(new IdIndex<>(Prescription::getPatientId));
+    static final IdIndex<Prescription> byDoctor = prescriptionStore.addIndex(new IdIndex<>(Prescription::getDoctorId));
+    // Index of prescriptions by creation time per patient, read by the patient timeline
+    static final TimeIndex<Prescription> byPatientTime = prescriptionStore.addIndex(
+            TimeIndex.perGroup(Timeline::createdMinute, Prescription::getPatientId));
 
 //    // Adding sample prescriptions to the map
 //    static {
@@ -45,22 +61,86 @@ public class PrescriptionDAO {
     public static int generateId() {
         return idCount.incrementAndGet();
     }
+
+    // Method to reserve a block of consecutive IDs and return the first one
+    public static int generateIds(int count) {
+        return idCount.getAndAdd(count) + 1;
+    }
     
     // Method to retrieve all prescriptions
-    public static Map<Integer, Prescription> getPrescriptions() {
-        return prescriptionMap;
+    public static Collection<Prescription> getPrescriptions() {
+        return prescriptionStore.values();
+    }
+
+    // Method to retrieve a page of prescriptions in ascending ID order, starting after the given ID
+    public static Page<Prescription> getPrescriptionsPage(int after, int limit) {
+        return prescriptionStore.page(Prescription.class, after, limit);
+    }
+
+    // Method to retrieve the prescriptions of a patient, in ID order
+    public static List<Prescription> getPrescriptionsByPatient(int patientId) {
+        return byPatient.find(prescriptionStore, patientId);
+    }
+
+    // Method to retrieve the prescriptions of a doctor, in ID order
+    public static List<Prescription> getPrescriptionsByDoctor(int doctorId) {
+        return byDoctor.find(prescriptionStore, doctorId);
+    }
+
+    // Method to add a batch of validated prescriptions as one store operation, with IDs reserved in one block
+    public static void addPrescriptions(List<Prescription> prescriptions) {
+        try {
+            int firstId = generateIds(prescriptions.size());
+            long now = System.currentTimeMillis();
+            int[] ids = new int[prescriptions.size()];
+            for (int i = 0; i < ids.length; i++) {
+                ids[i] = firstId + i;
+                prescriptions.get(i).setPrescriptionId(ids[i]);
+                prescriptions.get(i).setVersion(1);
+                prescriptions.get(i).setCreatedAt(now);
+            }
+            boolean[] inserted = prescriptionStore.insertAll(ids, prescriptions);
+            for (int i = 0; i < ids.length; i++) {
+                // An ID restored behind the counter's back is taken; add that one with a fresh ID
+                if (!inserted[i]) {
+                    addPrescription(prescriptions.get(i));
+                }
+            }
+            LOGGER.info("Added batch of {} prescriptions successfully", prescriptions.size());
+        } catch (Exception e) {
+            LOGGER.error("Failed to add batch of prescriptions: {}", e.getMessage(), e);
+            throw new RuntimeException("Failed to add batch of prescriptions", e);
+        }
+    }
+
+    // Method to import validated prescriptions that keep their own IDs; returns which were stored
+    public static boolean[] importPrescriptions(List<Prescription> prescriptions) {
+        int[] ids = new int[prescriptions.size()];
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = prescriptions.get(i).getPrescriptionId();
+            prescriptions.get(i).setVersion(1);
+            // Keep the creation time of exported rows; stamp rows without one
+            if (prescriptions.get(i).getCreatedAt() <= 0) {
+                prescriptions.get(i).setCreatedAt(now);
+            }
+        }
+        boolean[] inserted = prescriptionStore.insertAll(ids, prescriptions);
+        LOGGER.info("Imported batch of {} prescriptions", prescriptions.size());
+        return inserted;
     }
 
     // Method to add a new prescription
     public static void addPrescription(Prescription prescription) {
         try {
-            int newId = generateId();
-            // Check if the generated ID is already in use
-            while (prescriptionMap.containsKey(newId)) {
-                newId = generateId(); // Generate a new ID until it's unique
-            }
-            prescription.setPrescriptionId(newId);
-            prescriptionMap.put(newId, prescription);
+            prescription.setVersion(1);
+            prescription.setCreatedAt(System.currentTimeMillis());
+            int newId;
+            // Generate a new ID until one is not already in use
+            do {
+                newId = generateId();
+                prescription.setPrescriptionId(newId);
+            } while (!prescriptionStore.insert(newId, prescription));
             LOGGER.info("Added new prescription successfully: {}", prescription);
         } catch (AlreadyExistsException e) {
             LOGGER.error("Failed to add prescription: {}", e.getMessage(), e);
@@ -73,7 +153,7 @@ public class PrescriptionDAO {
     
     // Method to retrieve a prescription by its ID
     public static Prescription getPrescriptionById(int id) {
-        Prescription prescription = prescriptionMap.get(id);
+        Prescription prescription = prescriptionStore.get(id);
         if (prescription == null){
             LOGGER.warn("Prescription not found for ID: {}", id);
             throw new NotFoundException("Prescription not found for ID: " + id);
@@ -81,16 +161,25 @@ public class PrescriptionDAO {
         return prescription;
     }
 
+    // Method to retrieve many prescriptions by ID in one pass; IDs not found are returned as missing
+    public static Lookup<Prescription> getPrescriptionsByIds(int[] ids) {
+        return prescriptionStore.getAll(Prescription.class, ids);
+    }
+
     // Method to update an existing prescription
     public static void updatePrescription(int id, Prescription updatedPrescription) {
+        updatePrescription(id, updatedPrescription, Versioning.ANY_VERSION);
+    }
+
+    // Method to update an existing prescription if it is still at the expected version (0 for any version)
+    public static void updatePrescription(int id, Prescription updatedPrescription, long expectedVersion) {
         try {
-            if (prescriptionExists(id)) {
-                updatedPrescription.setPrescriptionId(id);
-                prescriptionMap.put(id, updatedPrescription);
+            updatedPrescription.setPrescriptionId(id);
+            if (Versioning.replace(prescriptionStore, id, updatedPrescription, current -> true, expectedVersion)) {
                 LOGGER.info("successfully updated prescription no: " + id);
-            } 
-        } catch (NotFoundException e) {
-            LOGGER.warn("Prescription not found for ID: {} during update", id);
+            }
+        } catch (NotFoundException | PreconditionFailedException e) {
+            LOGGER.warn("Failed to update prescription no {}: {}", id, e.getMessage());
             throw e;
         }catch (Exception e){
             LOGGER.error("Failed to update prescription: {}", e.getMessage(), e);
@@ -101,10 +190,9 @@ public class PrescriptionDAO {
     // Method to delete a prescription by its ID
     public static void deletePrescription(int id) {
         try {
-            if( !prescriptionExists(id)){
+            if (prescriptionStore.remove(id) == null){
                 throw new NotFoundException("Prescription not found for ID: " + id);
             }
-            prescriptionMap.remove(id);
             LOGGER.info("successfully deleted prescription no: {}", id);
         }catch (NotFoundException e){
             LOGGER.warn("Prescription not found for ID: {} to delete", id);
@@ -118,13 +206,13 @@ public class PrescriptionDAO {
     
     // Method to check if a prescription exists by its ID
     public static boolean prescriptionExists(int id) {
-        return prescriptionMap.containsKey(id);
+        return prescriptionStore.contains(id);
     }
     
     // Method to validate a prescription
     public static boolean isValidPrescription(Prescription prescription){
     return prescription.getPrescriptionId() > 0 &&
-               prescription.getDoctor() != null &&prescription.getPatient() != null &&
+               prescription.getDoctorId() > 0 && prescription.getPatientId() > 0 &&
                prescription.getMedication() != null && !prescription.getMedication().isEmpty() &&
                prescription.getDosage() != null && !prescription.getDosage().isEmpty();
     }
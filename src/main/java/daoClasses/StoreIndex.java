@@ -0,0 +1,19 @@
+/**
+ * Index kept in step with an EntityStore, such as the appointments of each patient.
+ * Author: Rifa
+ * IIT no: 20220701
+ */
+package daoClasses;
+
+public interface StoreIndex<T> {
+
+    /**
+     * Apply one change to the index. Called while the store holds the lock for the ID,
+     * for normal writes as well as for entities restored from persistent storage,
+     * so changes to the same ID arrive in the order they were applied to the store.
+     * @param id ID of the entity
+     * @param oldEntity Previous value, or null if the entity was added
+     * @param newEntity New value, or null if the entity was removed
+     */
+    void update(int id, T oldEntity, T newEntity);
+}
@@ -0,0 +1,35 @@
+/**
+ * Journal that records every write made to an EntityStore, so the stores can be rebuilt after a restart.
+ * Author: Rifa
+ * IIT no: 20220701
+ */
+package daoClasses;
+
+public interface StoreJournal {
+
+    /**
+     * Encode an entity for the journal. Called outside any store lock.
+     * @param entity Entity about to be written
+     * @return Encoded form of the entity
+     */
+    byte[] encode(Object entity);
+
+    /**
+     * Record that an entity was stored. Called while the store holds the lock for the ID,
+     * so records for the same ID are journaled in the order they are applied.
+     * @return Log sequence number of the record
+     */
+    long logPut(String store, int id, Object entity, byte[] encoded);
+
+    /**
+     * Record that an entity was removed. Called while the store holds the lock for the ID.
+     * @return Log sequence number of the record
+     */
+    long logRemove(String store, int id);
+
+    /**
+     * Wait until the record with the given sequence number is durable. Called outside any store lock.
+     * @param lsn Log sequence number returned by logPut or logRemove
+     */
+    void awaitDurable(long lsn);
+}
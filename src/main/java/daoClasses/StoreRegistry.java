@@ -0,0 +1,44 @@
+/**
+ * Registry of the EntityStore behind every DAO, used by persistence to replay and snapshot them.
+ * Author: Rifa
+ * IIT no: 20220701
+ */
+package daoClasses;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class StoreRegistry {
+
+    private StoreRegistry() {
+    }
+
+    // All stores, in the order they should be restored
+    public static List<EntityStore<?>> getStores() {
+        return Collections.unmodifiableList(Arrays.<EntityStore<?>>asList(
+                PersonDAO.personStore,
+                AppointmentDAO.appointmentStore,
+                BillingDAO.billStore,
+                PrescriptionDAO.prescriptionStore,
+                MedicalRecordDAO.medicalRecordStore));
+    }
+
+    /**
+     * Retrieve a store by its name.
+     * @param name Name of the store
+     * @return The store, or null if there is none with that name
+     */
+    public static EntityStore<?> getStore(String name) {
+        // Patients and doctors were kept in stores of their own before sharing the person store
+        if ("patients".equals(name) || "doctors".equals(name)) {
+            return PersonDAO.personStore;
+        }
+        for (EntityStore<?> store : getStores()) {
+            if (store.getName().equals(name)) {
+                return store;
+            }
+        }
+        return null;
+    }
+}
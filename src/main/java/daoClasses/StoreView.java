@@ -0,0 +1,77 @@
+/**
+ * Point-in-time view of an EntityStore, for reading a whole store consistently while it
+ * keeps being written, without copying it and without blocking writers.
+ *
+ * While a view is open, a write that changes an ID the view has not visited yet first
+ * saves the value the ID had when the view was opened (or that it had none). The view
+ * visits IDs in ascending order and prefers a saved value over the current one, so it
+ * sees every entity exactly as it was when opened. A saved value is dropped once its ID
+ * is visited, so memory only grows with the writes made ahead of the visit.
+ * Views must be closed, as open views make every write save values.
+ * Author: Rifa
+ * IIT no: 20220701
+ */
+package daoClasses;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+public final class StoreView<T> implements AutoCloseable {
+
+    // Saved in place of a value for IDs that had no entity when the view was opened
+    private static final Object ABSENT = new Object();
+
+    private final EntityStore<T> store;
+    // Values as of opening, for IDs written since and not visited yet
+    private final ConcurrentHashMap<Integer, Object> saved = new ConcurrentHashMap<>();
+    // Highest ID visited so far; writes to these IDs no longer need to save anything
+    private volatile int visited;
+    // Highest ID handed out when the view was opened; higher IDs did not exist then
+    private volatile int lastId = Integer.MAX_VALUE;
+
+    StoreView(EntityStore<T> store) {
+        this.store = store;
+    }
+
+    // Set by the store once the view receives writes, so no ID can be missed in between
+    void setLastId(int lastId) {
+        this.lastId = lastId;
+    }
+
+    // Highest ID handed out when the view was opened, the value of the store's ID counter then
+    public int getLastId() {
+        return lastId;
+    }
+
+    // Called by the store under the segment lock, before a write changes the entity with this ID
+    void beforeWrite(int id, T current) {
+        if (id > visited && id <= lastId) {
+            saved.putIfAbsent(id, current != null ? current : ABSENT);
+        }
+    }
+
+    /**
+     * Visit the entities as they were when the view was opened, in ascending ID order.
+     * A view can be visited once.
+     * @param visitor Receives each ID and entity
+     */
+    @SuppressWarnings("unchecked")
+    public void forEach(IntObjectMap.EntryVisitor<? super T> visitor) {
+        for (int id = visited + 1; id <= lastId; id++) {
+            // Read the current value before the saved one: a write saves before it stores
+            T current = store.get(id);
+            Object before = saved.remove(id);
+            visited = id;
+            T value = before == null ? current : before == ABSENT ? null : (T) before;
+            if (value != null) {
+                visitor.visit(id, value);
+            }
+        }
+    }
+
+    // Stop saving values for this view
+    @Override
+    public void close() {
+        store.closeView(this);
+        saved.clear();
+    }
+}
@@ -0,0 +1,203 @@
+/**
+ * Sorted index of entities by a start time in minutes, kept for all entities and per group
+ * (such as per doctor). Each entry packs the minute and the entity ID into one long,
+ * so a range query is a sub-set view of a skip list: logarithmic time plus the result size.
+ * An index built with perGroup keeps only the groups, for indexes only ever read by group.
+ * Author: Rifa
+ * IIT no: 20220701
+ */
+package daoClasses;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.function.ToIntFunction;
+
+public class TimeIndex<T> implements StoreIndex<T> {
+
+    // Time value of entities that are left out of the index
+    public static final int NO_TIME = Integer.MIN_VALUE;
+
+    // Extracts the start minute, NO_TIME when the entity has none
+    private final ToIntFunction<? super T> time;
+    // Extracts the group, 0 meaning no group
+    private final ToIntFunction<? super T> group;
+
+    // Entries of all entities, or null when only groups are kept
+    private final NavigableSet<Long> all;
+    private final ConcurrentHashMap<Integer, NavigableSet<Long>> groups = new ConcurrentHashMap<>();
+
+    public TimeIndex(ToIntFunction<? super T> time, ToIntFunction<? super T> group) {
+        this(time, group, true);
+    }
+
+    private TimeIndex(ToIntFunction<? super T> time, ToIntFunction<? super T> group, boolean keepAll) {
+        this.time = time;
+        this.group = group;
+        this.all = keepAll ? new ConcurrentSkipListSet<>() : null;
+    }
+
+    // Index that keeps only the groups, such as the records of each patient
+    public static <T> TimeIndex<T> perGroup(ToIntFunction<? super T> time, ToIntFunction<? super T> group) {
+        return new TimeIndex<>(time, group, false);
+    }
+
+    @Override
+    public void update(int id, T oldEntity, T newEntity) {
+        int oldTime = oldEntity != null ? time.applyAsInt(oldEntity) : NO_TIME;
+        int newTime = newEntity != null ? time.applyAsInt(newEntity) : NO_TIME;
+        int oldGroup = oldEntity != null ? group.applyAsInt(oldEntity) : 0;
+        int newGroup = newEntity != null ? group.applyAsInt(newEntity) : 0;
+        if (oldTime == newTime && oldGroup == newGroup) {
+            return;
+        }
+        if (oldTime != NO_TIME) {
+            long entry = entry(oldTime, id);
+            if (all != null) {
+                all.remove(entry);
+            }
+            if (oldGroup != 0) {
+                groups.computeIfPresent(oldGroup, (k, entries) -> {
+                    entries.remove(entry);
+                    return entries.isEmpty() ? null : entries;
+                });
+            }
+        }
+        if (newTime != NO_TIME) {
+            long entry = entry(newTime, id);
+            if (all != null) {
+                all.add(entry);
+            }
+            if (newGroup != 0) {
+                groups.compute(newGroup, (k, entries) -> {
+                    if (entries == null) {
+                        entries = new ConcurrentSkipListSet<>();
+                    }
+                    entries.add(entry);
+                    return entries;
+                });
+            }
+        }
+    }
+
+    /**
+     * Retrieve the entities starting in a time range from the store the index belongs to.
+     * Entities are re-checked against the range and group, so a racing write is never misreported.
+     * @param store Store the index is registered with
+     * @param from First minute of the range, inclusive
+     * @param to Last minute of the range, exclusive
+     * @param groupId Group to restrict to, or 0 for all entities
+     * @return Matching entities ordered by start time, then ID
+     */
+    public List<T> find(EntityStore<T> store, int from, int to, int groupId) {
+        List<T> result = new ArrayList<>();
+        if (from >= to) {
+            return result;
+        }
+        NavigableSet<Long> entries = groupId != 0 ? groups.get(groupId) : all;
+        if (entries == null) {
+            return result;
+        }
+        for (long entry : entries.subSet(entry(from, 0), true, entry(to, 0), false)) {
+            int id = (int) entry;
+            T entity = store.get(id);
+            if (entity == null) {
+                continue;
+            }
+            if (matches(entity, entry, groupId)) {
+                result.add(entity);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Walk the entities of a group in time order from a position. Each entity is read from the
+     * store only when the walk reaches it, so a caller that stops early touches no more entries
+     * than it used; entries left behind by racing writes are skipped.
+     * @param store Store the index is registered with
+     * @param groupId Group to walk, not 0
+     * @param from Position to start at, see position()
+     * @param inclusive True to include the entity at exactly that position
+     * @param descending True to walk towards earlier times
+     * @return The walk, positioned before its first entity
+     */
+    public Walk walk(EntityStore<T> store, int groupId, long from, boolean inclusive, boolean descending) {
+        NavigableSet<Long> entries = groups.get(groupId);
+        if (entries == null) {
+            entries = Collections.emptyNavigableSet();
+        }
+        NavigableSet<Long> range = descending
+                ? entries.headSet(from, inclusive).descendingSet()
+                : entries.tailSet(from, inclusive);
+        return new Walk(store, groupId, range.iterator());
+    }
+
+    // Position of an entity in the index; positions order by minute, then ID
+    public static long position(int minute, int id) {
+        return entry(minute, id);
+    }
+
+    // Minute of a position
+    public static int minuteOf(long position) {
+        return (int) (position >> 32);
+    }
+
+    // Check an entity read from the store against the entry that led to it
+    private boolean matches(T entity, long entry, int groupId) {
+        return time.applyAsInt(entity) == minuteOf(entry)
+                && (groupId == 0 || group.applyAsInt(entity) == groupId);
+    }
+
+    // Minute in the high half so entries sort by time; IDs are positive so they sort within a minute
+    private static long entry(int minute, int id) {
+        return ((long) minute << 32) | (id & 0xffffffffL);
+    }
+
+    /**
+     * Cursor over the entities of one group, see walk().
+     */
+    public final class Walk {
+
+        private final EntityStore<T> store;
+        private final int groupId;
+        private final Iterator<Long> entries;
+        private long position;
+        private T entity;
+
+        private Walk(EntityStore<T> store, int groupId, Iterator<Long> entries) {
+            this.store = store;
+            this.groupId = groupId;
+            this.entries = entries;
+        }
+
+        // Move to the next entity; false once there is none
+        public boolean advance() {
+            while (entries.hasNext()) {
+                long entry = entries.next();
+                T value = store.get((int) entry);
+                if (value != null && matches(value, entry, groupId)) {
+                    position = entry;
+                    entity = value;
+                    return true;
+                }
+            }
+            entity = null;
+            return false;
+        }
+
+        // Position of the current entity
+        public long getPosition() {
+            return position;
+        }
+
+        // Current entity, or null before the first advance and after the last
+        public T getEntity() {
+            return entity;
+        }
+    }
+}
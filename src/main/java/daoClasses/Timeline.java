@@ -0,0 +1,232 @@
+/**
+ * Chronological feed of a patient's appointments, medical records, prescriptions and bills.
+ *
+ * Each store keeps a per-patient time index (appointments by their start time, the others
+ * by the time they were added). A page is a lazy k-way merge of walks over those indexes
+ * from a cursor, so it reads the entries it returns plus one waiting entry per store,
+ * however long the patient's history is. The feed runs newest first; entries at the same
+ * minute order by ID, then by store.
+ * Author: Rifa
+ * IIT no: 20220701
+ */
+package daoClasses;
+
+import exceptionClasses.InvalidDataException;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import modelClasses.Appointment;
+import modelClasses.Timestamped;
+
+public final class Timeline {
+
+    // Minute of entries with no known time, such as records added before creation times were kept;
+    // they sort before all others
+    public static final int UNDATED = TimeIndex.NO_TIME + 1;
+
+    // Stores merged into the timeline; the position in this list breaks ties between stores
+    private static final List<Source<?>> SOURCES = Arrays.asList(
+            new Source<>("appointment", AppointmentDAO.appointmentStore, AppointmentDAO.byPatientTime),
+            new Source<>("medicalRecord", MedicalRecordDAO.medicalRecordStore, MedicalRecordDAO.byPatientTime),
+            new Source<>("prescription", PrescriptionDAO.prescriptionStore, PrescriptionDAO.byPatientTime),
+            new Source<>("bill", BillingDAO.billStore, BillingDAO.byPatientTime));
+
+    // Order of the walks' current entries from oldest to newest
+    private static final Comparator<Head> OLDEST_FIRST = Comparator
+            .comparingLong((Head head) -> head.walk.getPosition())
+            .thenComparingInt(head -> head.source);
+
+    private Timeline() {
+    }
+
+    // Time an appointment sorts at in the timeline
+    static int startMinute(Appointment appointment) {
+        int minute = appointment.getStartMinute();
+        return minute != TimeIndex.NO_TIME ? minute : UNDATED;
+    }
+
+    // Time an entity with a creation time sorts at in the timeline
+    static int createdMinute(Timestamped entity) {
+        long createdAt = entity.getCreatedAt();
+        return createdAt > 0 ? (int) (createdAt / 60_000) : UNDATED;
+    }
+
+    /**
+     * Retrieve one page of a patient's timeline.
+     * @param patientId ID of the patient
+     * @param cursor Cursor of an entry to page from, or null for the newest page
+     * @param newer True for the entries newer than the cursor, False for those older
+     * @param limit Largest number of entries to return
+     * @return The entries, newest first, with the cursors of the neighbouring pages
+     * @throws InvalidDataException If the cursor is malformed
+     */
+    public static Slice getSlice(int patientId, String cursor, boolean newer, int limit) {
+        long from;
+        int fromSource;
+        if (cursor == null) {
+            // Start past the newest entry, or before the oldest one when walking forwards
+            from = newer ? Long.MIN_VALUE : Long.MAX_VALUE;
+            fromSource = newer ? -1 : SOURCES.size();
+        } else {
+            long[] parsed = parseCursor(cursor);
+            from = parsed[0];
+            fromSource = (int) parsed[1];
+        }
+        boolean descending = !newer;
+        PriorityQueue<Head> heads = new PriorityQueue<>(SOURCES.size(),
+                descending ? OLDEST_FIRST.reversed() : OLDEST_FIRST);
+        for (int i = 0; i < SOURCES.size(); i++) {
+            // At the cursor's own position, stores listed before it sort older and those after it newer
+            boolean inclusive = descending ? i < fromSource : i > fromSource;
+            Head head = new Head(i, SOURCES.get(i).walk(patientId, from, inclusive, descending));
+            if (head.walk.advance()) {
+                heads.add(head);
+            }
+        }
+        List<Entry> entries = new ArrayList<>(Math.min(limit, 1024));
+        while (entries.size() < limit && !heads.isEmpty()) {
+            Head head = heads.poll();
+            entries.add(new Entry(SOURCES.get(head.source).type, head.source,
+                    head.walk.getPosition(), head.walk.getEntity()));
+            if (head.walk.advance()) {
+                heads.add(head);
+            }
+        }
+        boolean more = !heads.isEmpty();
+        if (newer) {
+            Collections.reverse(entries);
+        }
+        if (entries.isEmpty()) {
+            return new Slice(entries, null, null);
+        }
+        String first = entries.get(0).getCursor();
+        String last = entries.get(entries.size() - 1).getCursor();
+        if (newer) {
+            return new Slice(entries, more ? first : null, last);
+        }
+        return new Slice(entries, cursor != null ? first : null, more ? last : null);
+    }
+
+    // Cursor of an entry: minute, ID and store, which together place it in the timeline
+    private static String toCursor(long position, int source) {
+        return TimeIndex.minuteOf(position) + "." + (int) position + "." + source;
+    }
+
+    private static long[] parseCursor(String cursor) {
+        String[] parts = cursor.split("\\.");
+        try {
+            if (parts.length == 3) {
+                int minute = Integer.parseInt(parts[0]);
+                int id = Integer.parseInt(parts[1]);
+                int source = Integer.parseInt(parts[2]);
+                if (id > 0 && source >= 0 && source < SOURCES.size()) {
+                    return new long[] {TimeIndex.position(minute, id), source};
+                }
+            }
+        } catch (NumberFormatException e) {
+            // Reported below like any other malformed cursor
+        }
+        throw new InvalidDataException("Invalid timeline cursor: " + cursor);
+    }
+
+    /**
+     * One entry of the timeline.
+     */
+    public static final class Entry {
+
+        private final String type;
+        private final int source;
+        private final long position;
+        private final Object item;
+
+        private Entry(String type, int source, long position, Object item) {
+            this.type = type;
+            this.source = source;
+            this.position = position;
+            this.item = item;
+        }
+
+        // Kind of entity, such as "appointment"
+        public String getType() {
+            return type;
+        }
+
+        // Time of the entry as an ISO local date-time, or null if not known
+        public String getTime() {
+            int minute = TimeIndex.minuteOf(position);
+            return minute != UNDATED ? LocalDateTime.ofEpochSecond(minute * 60L, 0, ZoneOffset.UTC).toString() : null;
+        }
+
+        public String getCursor() {
+            return toCursor(position, source);
+        }
+
+        public Object getItem() {
+            return item;
+        }
+    }
+
+    /**
+     * One page of the timeline, newest entry first.
+     */
+    public static final class Slice {
+
+        private final List<Entry> entries;
+        // Cursors to pass as "before" and "after" for the neighbouring pages, or null at either end
+        private final String newerCursor;
+        private final String olderCursor;
+
+        private Slice(List<Entry> entries, String newerCursor, String olderCursor) {
+            this.entries = entries;
+            this.newerCursor = newerCursor;
+            this.olderCursor = olderCursor;
+        }
+
+        public List<Entry> getEntries() {
+            return entries;
+        }
+
+        public String getNewerCursor() {
+            return newerCursor;
+        }
+
+        public String getOlderCursor() {
+            return olderCursor;
+        }
+    }
+
+    // Store and per-patient index merged into the timeline
+    private static final class Source<T> {
+
+        private final String type;
+        private final EntityStore<T> store;
+        private final TimeIndex<T> index;
+
+        Source(String type, EntityStore<T> store, TimeIndex<T> index) {
+            this.type = type;
+            this.store = store;
+            this.index = index;
+        }
+
+        TimeIndex<T>.Walk walk(int patientId, long from, boolean inclusive, boolean descending) {
+            return index.walk(store, patientId, from, inclusive, descending);
+        }
+    }
+
+    // Walk of one store with its place in SOURCES
+    private static final class Head {
+
+        private final int source;
+        private final TimeIndex<?>.Walk walk;
+
+        Head(int source, TimeIndex<?>.Walk walk) {
+            this.source = source;
+            this.walk = walk;
+        }
+    }
+}
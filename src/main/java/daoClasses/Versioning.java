@@ -0,0 +1,59 @@
+/**
+ * Version-checked updates shared by the DAO classes.
+ * Author: Rifa
+ * IIT no: 20220701
+ */
+package daoClasses;
+
+import exceptionClasses.PreconditionFailedException;
+import java.util.function.Predicate;
+import modelClasses.Timestamped;
+import modelClasses.Versioned;
+
+public final class Versioning {
+
+    // Expected version meaning the update applies to whatever version is current
+    public static final long ANY_VERSION = 0;
+
+    private Versioning() {
+    }
+
+    /**
+     * Replace an entity with the next version of it. The new value only replaces the exact
+     * value whose version it was numbered from, so concurrent updates never lose each other:
+     * one wins and the other retries against the new current value.
+     * @param store Store holding the entity
+     * @param id ID of the entity
+     * @param entity New value; its version is set by this method, and its creation time
+     *               is carried over from the current value
+     * @param accept Whether the current value may be replaced, e.g. that it is a patient
+     * @param expectedVersion Version the current value must have, or ANY_VERSION
+     * @return True if replaced, False if there is no accepted entity with that ID
+     * @throws PreconditionFailedException If the current version is not the expected one
+     */
+    static <T extends Versioned> boolean replace(EntityStore<T> store, int id, T entity,
+            Predicate<? super T> accept, long expectedVersion) {
+        while (true) {
+            T current = store.get(id);
+            if (current == null || !accept.test(current)) {
+                return false;
+            }
+            checkVersion(id, current, expectedVersion);
+            entity.setVersion(current.getVersion() + 1);
+            if (entity instanceof Timestamped) {
+                ((Timestamped) entity).setCreatedAt(((Timestamped) current).getCreatedAt());
+            }
+            if (store.replace(id, entity, value -> value == current)) {
+                return true;
+            }
+        }
+    }
+
+    // Fail if the current value is not at the version the caller based its update on
+    static void checkVersion(int id, Versioned current, long expectedVersion) {
+        if (expectedVersion != ANY_VERSION && current.getVersion() != expectedVersion) {
+            throw new PreconditionFailedException("Version mismatch for ID " + id + ": expected "
+                    + expectedVersion + " but current version is " + current.getVersion());
+        }
+    }
+}
@@ -0,0 +1,27 @@
+/**
+ * @author rifad 20220701
+ */
+package exceptionClasses;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.ext.ExceptionMapper;
+import javax.ws.rs.ext.Provider;
+
+@Provider
+public class ConflictExceptionMapper implements ExceptionMapper<ConflictException> {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ConflictExceptionMapper.class);
+
+    @Override
+    public Response toResponse(ConflictException exception) {
+        LOGGER.warn("ConflictException caught: {}", exception.getMessage());
+
+        return Response.status(Response.Status.CONFLICT)
+                .entity(exception.getMessage())
+                .type(MediaType.TEXT_PLAIN)
+                .build();
+    }
+}
@@ -0,0 +1,14 @@
+/**
+ * @author rifa 20220701
+ */
+package exceptionClasses;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Response;
+
+public class PreconditionFailedException extends WebApplicationException {
+
+    public PreconditionFailedException(String message) {
+        super(Response.status(Response.Status.PRECONDITION_FAILED).entity(message).build());
+    }
+}
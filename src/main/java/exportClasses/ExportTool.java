@@ -0,0 +1,82 @@
+/**
+ * Command line export of the persisted data to NDJSON files, for nightly dumps.
+ *
+ * Loads the stores from a data directory (newest snapshot plus the log after it) without
+ * changing any file, so it can run next to the server, then writes one file per store
+ * from point-in-time views. Each file is written under a temporary name and renamed
+ * when complete, so readers never pick up a partial dump.
+ *
+ * Usage: java -cp "WEB-INF/classes:WEB-INF/lib/*" exportClasses.ExportTool
+ *            dataDir outDir [--gzip] [store ...]
+ * Stores default to appointments, bills and medicalRecords.
+ * Author: Rifa
+ * IIT no: 20220701
+ */
+package exportClasses;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import persistenceClasses.Persistence;
+
+public class ExportTool {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ExportTool.class);
+
+    private static final List<String> DEFAULT_STORES = Arrays.asList("appointments", "bills", "medicalRecords");
+
+    private ExportTool() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        List<String> stores = new ArrayList<>();
+        List<String> paths = new ArrayList<>();
+        boolean gzip = false;
+        for (String arg : args) {
+            if ("--gzip".equals(arg)) {
+                gzip = true;
+            } else if (paths.size() < 2) {
+                paths.add(arg);
+            } else {
+                stores.add(arg);
+            }
+        }
+        if (stores.isEmpty()) {
+            stores.addAll(DEFAULT_STORES);
+        }
+        for (String store : stores) {
+            if (!NdjsonExport.isExportable(store)) {
+                paths.clear();
+                System.err.println("Unknown store: " + store + " (one of " + NdjsonExport.getNames() + ")");
+            }
+        }
+        if (paths.size() < 2) {
+            System.err.println("Usage: ExportTool dataDir outDir [--gzip] [store ...]");
+            System.exit(1);
+        }
+        Path dataDir = Paths.get(paths.get(0));
+        Path outDir = Files.createDirectories(Paths.get(paths.get(1)));
+
+        Persistence.load(dataDir);
+        try (NdjsonExport export = NdjsonExport.open(stores)) {
+            for (String store : stores) {
+                Path file = outDir.resolve(store + (gzip ? ".ndjson.gz" : ".ndjson"));
+                Path partial = outDir.resolve(file.getFileName() + ".part");
+                long written;
+                try (OutputStream out = Files.newOutputStream(partial)) {
+                    written = export.writeTo(store, out, gzip);
+                }
+                Files.move(partial, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                LOGGER.info("Wrote {} {} to {}", written, store, file);
+            }
+        }
+    }
+}
@@ -0,0 +1,141 @@
+/**
+ * Exports stores as NDJSON, one entity per line, from point-in-time views.
+ *
+ * The views of all stores in an export are opened together, before any is written, and
+ * are read without copying the stores and without blocking writers, so memory use does
+ * not depend on the store sizes. Entities are written in the storage form (related
+ * patients and doctors as patientId and doctorId), which keeps every line consistent
+ * with its view and can be read back by the bulk import.
+ * Author: Rifa
+ * IIT no: 20220701
+ */
+package exportClasses;
+
+import daoClasses.StoreRegistry;
+import daoClasses.StoreView;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+import modelClasses.Appointment;
+import modelClasses.Billing;
+import modelClasses.Doctor;
+import modelClasses.MedicalRecord;
+import modelClasses.Patient;
+import modelClasses.Person;
+import modelClasses.Prescription;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import persistenceClasses.EntityCodec;
+
+public final class NdjsonExport implements AutoCloseable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(NdjsonExport.class);
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    // Exportable stores by name, with the type of entity each one holds;
+    // patients and doctors are the entities of that type in the person store
+    private static final Map<String, Class<?>> TYPES = new LinkedHashMap<>();
+
+    static {
+        TYPES.put("persons", Person.class);
+        TYPES.put("patients", Patient.class);
+        TYPES.put("doctors", Doctor.class);
+        TYPES.put("appointments", Appointment.class);
+        TYPES.put("bills", Billing.class);
+        TYPES.put("prescriptions", Prescription.class);
+        TYPES.put("medicalRecords", MedicalRecord.class);
+    }
+
+    private final Map<String, StoreView<?>> views = new LinkedHashMap<>();
+
+    private NdjsonExport() {
+    }
+
+    // Check if a store can be exported under this name
+    public static boolean isExportable(String name) {
+        return TYPES.containsKey(name);
+    }
+
+    // Names of all exportable stores
+    public static List<String> getNames() {
+        return new ArrayList<>(TYPES.keySet());
+    }
+
+    /**
+     * Open point-in-time views of the named stores, one right after the other.
+     * @param names Names of the stores to export
+     * @return The export, to be closed once written
+     * @throws IllegalArgumentException If a name is not an exportable store
+     */
+    public static NdjsonExport open(Collection<String> names) {
+        for (String name : names) {
+            if (!isExportable(name)) {
+                throw new IllegalArgumentException("Not an exportable store: " + name);
+            }
+        }
+        NdjsonExport export = new NdjsonExport();
+        for (String name : names) {
+            export.views.put(name, StoreRegistry.getStore(name).openView());
+        }
+        return export;
+    }
+
+    /**
+     * Write one of the opened stores as NDJSON.
+     * @param name Name of the store, one of those the export was opened with
+     * @param out Stream to write to; it is flushed but not closed
+     * @param gzip True to gzip the output
+     * @return Number of entities written
+     */
+    public long writeTo(String name, OutputStream out, boolean gzip) throws IOException {
+        StoreView<?> view = views.get(name);
+        if (view == null) {
+            throw new IllegalArgumentException("Store not opened for this export: " + name);
+        }
+        Class<?> type = TYPES.get(name);
+        long started = System.nanoTime();
+        long[] written = new long[1];
+        GZIPOutputStream zip = gzip ? new GZIPOutputStream(out, BUFFER_SIZE) : null;
+        OutputStream buffered = new BufferedOutputStream(zip != null ? zip : out, BUFFER_SIZE);
+        try {
+            view.forEach((id, entity) -> {
+                if (!type.isInstance(entity)) {
+                    return;
+                }
+                try {
+                    buffered.write(EntityCodec.encode(entity));
+                    buffered.write('\n');
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                written[0]++;
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        buffered.flush();
+        if (zip != null) {
+            zip.finish();
+        }
+        out.flush();
+        LOGGER.info("Exported {} {} in {} ms", written[0], name, (System.nanoTime() - started) / 1_000_000);
+        return written[0];
+    }
+
+    // Close the views, so writes stop saving values for them
+    @Override
+    public void close() {
+        for (StoreView<?> view : views.values()) {
+            view.close();
+        }
+        views.clear();
+    }
+}
@@ -0,0 +1,452 @@
+/**
+ * Generates a synthetic clinical dataset for benchmarking at scale: doctors with
+ * specializations, patients, and the appointments, prescriptions, medical records and
+ * bills between them, either straight into the DAOs or as NDJSON files in the export
+ * format, which the bulk import reads back with keepIds=true.
+ *
+ * The data is skewed the way a clinic's is: a few patients account for many visits and a
+ * few doctors for much of the workload (both Zipf), common drugs and diagnoses dominate,
+ * appointments fall on weekdays and mornings, bill amounts are log-normal and old bills are
+ * mostly paid. Everything falls within the two years up to a fixed day.
+ *
+ * Work is cut into chunks of 10,000 entities with a random stream of their own, derived
+ * from the seed, the kind of entity and the chunk number. Chunks are generated in parallel
+ * and written in order, so a seed always gives the same data, byte for byte, whatever the
+ * number of threads. IDs are consecutive per kind: doctors first, then patients, in the
+ * person ID space.
+ * Author: Rifa
+ * IIT no: 20220701
+ */
+package generatorClasses;
+
+import daoClasses.AppointmentDAO;
+import daoClasses.BillingDAO;
+import daoClasses.DoctorDAO;
+import daoClasses.MedicalRecordDAO;
+import daoClasses.PatientDAO;
+import daoClasses.PersonDAO;
+import daoClasses.PrescriptionDAO;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
+import modelClasses.Appointment;
+import modelClasses.Billing;
+import modelClasses.Doctor;
+import modelClasses.MedicalRecord;
+import modelClasses.Patient;
+import modelClasses.Prescription;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import persistenceClasses.EntityCodec;
+
+public final class DatasetGenerator {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DatasetGenerator.class);
+
+    private enum Kind {
+        DOCTORS("doctors"), PATIENTS("patients"), APPOINTMENTS("appointments"),
+        PRESCRIPTIONS("prescriptions"), MEDICAL_RECORDS("medicalRecords"), BILLS("bills");
+
+        // Store name, as used by the bulk import and the export
+        private final String storeName;
+
+        Kind(String storeName) {
+            this.storeName = storeName;
+        }
+    }
+
+    // Entities per chunk, each chunk with its own random stream
+    private static final int CHUNK_SIZE = 10_000;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    // Last day of the generated history, fixed so a seed gives the same data on any day
+    private static final long LAST_DAY = LocalDate.of(2025, 12, 31).toEpochDay();
+    private static final int HISTORY_DAYS = 730;
+    private static final long MILLIS_PER_DAY = 86_400_000L;
+    // Bills older than this are mostly paid
+    private static final int RECENT_DAYS = 60;
+
+    // Lists are ordered from most to least common and drawn from with Zipf samplers
+    private static final String[] FIRST_NAMES = {"Nimal", "Kamal", "Ayesha", "Saman", "Fathima", "Dilshan",
+        "Nadeesha", "Ruwan", "Tharushi", "Mohamed", "Priya", "Kasun", "Ishara", "Anjali", "Chamara", "Sithara",
+        "Ravi", "Hashini", "Lahiru", "Zainab", "Dinuka", "Malini", "Arjun", "Sanduni", "Imran", "Kavindi"};
+    private static final String[] LAST_NAMES = {"Perera", "Fernando", "Silva", "Jayasinghe", "Bandara",
+        "Dissanayake", "Wickramasinghe", "Rajapaksa", "Gunawardena", "Herath", "Kumara", "Rathnayake",
+        "Mendis", "Weerasinghe", "Rahman", "Nair", "Pillai", "Senanayake", "Ekanayake", "Abeysekara"};
+    private static final String[] CITIES = {"Colombo", "Kandy", "Galle", "Negombo", "Jaffna", "Kurunegala",
+        "Matara", "Anuradhapura", "Ratnapura", "Badulla", "Trincomalee", "Batticaloa", "Nuwara Eliya"};
+    private static final String[] SPECIALIZATIONS = {"General Practice", "Pediatrics", "Gynecology",
+        "Cardiology", "Dermatology", "Orthopedics", "ENT", "Ophthalmology", "Psychiatry", "Neurology",
+        "Oncology", "Endocrinology"};
+    private static final String[] HISTORIES = {"None", "Hypertension", "Diabetes", "Asthma", "High cholesterol",
+        "Arthritis", "Thyroid disorder", "Heart disease", "Kidney disease", "Epilepsy"};
+    private static final String[] STATUSES = {"Stable", "Recovering", "Under observation", "Critical"};
+    private static final String[] MEDICATIONS = {"Paracetamol", "Amoxicillin", "Metformin", "Amlodipine",
+        "Omeprazole", "Atorvastatin", "Salbutamol", "Losartan", "Cetirizine", "Ibuprofen", "Levothyroxine",
+        "Azithromycin", "Prednisolone", "Insulin glargine", "Warfarin"};
+    // Dosage of each medication, by the same index
+    private static final String[] DOSAGES = {"500mg", "250mg", "500mg", "5mg", "20mg", "10mg", "100mcg",
+        "50mg", "10mg", "400mg", "50mcg", "500mg", "5mg", "10 units", "5mg"};
+    private static final String[] INSTRUCTIONS = {"After meals", "Twice daily", "Before meals", "At bedtime",
+        "When needed", "Three times daily", "With plenty of water"};
+    private static final int[] DURATIONS = {7, 5, 14, 30, 3, 10, 90, 60};
+    private static final String[] DIAGNOSES = {"Upper respiratory infection", "Hypertension", "Type 2 diabetes",
+        "Gastritis", "Dengue fever", "Asthma", "Back pain", "Migraine", "Urinary tract infection",
+        "Dermatitis", "Anxiety", "Fracture", "Anemia", "Pneumonia"};
+    // Treatment of each diagnosis, by the same index
+    private static final String[] TREATMENTS = {"Rest and fluids", "Medication and diet", "Medication and exercise",
+        "Antacids", "Fluids and monitoring", "Inhaler", "Physiotherapy", "Pain relief", "Antibiotics",
+        "Topical cream", "Counselling", "Cast and rest", "Iron supplements", "Antibiotics and rest"};
+    // Relative number of appointments in each hour from 08:00 to 17:00
+    private static final int[] HOUR_WEIGHTS = {10, 14, 15, 13, 6, 9, 12, 11, 9, 5};
+    private static final int[] HOUR_CUMULATIVE = cumulative(HOUR_WEIGHTS);
+
+    private static final ZipfSampler FIRST_NAME = new ZipfSampler(FIRST_NAMES.length, 0.6);
+    private static final ZipfSampler CITY = new ZipfSampler(CITIES.length, 1.1);
+    private static final ZipfSampler SPECIALIZATION = new ZipfSampler(SPECIALIZATIONS.length, 0.9);
+    private static final ZipfSampler HISTORY = new ZipfSampler(HISTORIES.length, 1.2);
+    private static final ZipfSampler STATUS = new ZipfSampler(STATUSES.length, 1.8);
+    private static final ZipfSampler MEDICATION = new ZipfSampler(MEDICATIONS.length, 1.0);
+    private static final ZipfSampler INSTRUCTION = new ZipfSampler(INSTRUCTIONS.length, 1.0);
+    private static final ZipfSampler DURATION = new ZipfSampler(DURATIONS.length, 1.2);
+    private static final ZipfSampler DIAGNOSIS = new ZipfSampler(DIAGNOSES.length, 1.0);
+
+    private final GeneratorConfig config;
+    // Who the clinical entities belong to: patients mildly skewed, doctors more so
+    private final ZipfSampler patientActivity;
+    private final ZipfSampler doctorWorkload;
+
+    // First ID of each kind, set before each run
+    private final int[] firstIds = new int[Kind.values().length];
+
+    public DatasetGenerator(GeneratorConfig config) {
+        this.config = config;
+        this.patientActivity = new ZipfSampler(config.getPatients(), 0.8);
+        this.doctorWorkload = new ZipfSampler(config.getDoctors(), 1.0);
+    }
+
+    /**
+     * Generate the dataset into the DAOs, under newly reserved IDs.
+     * @return Number of entities stored, by store name
+     */
+    public Map<String, Long> populate() {
+        int firstPersonId = PersonDAO.generateIds(config.getDoctors() + config.getPatients());
+        firstIds[Kind.DOCTORS.ordinal()] = firstPersonId;
+        firstIds[Kind.PATIENTS.ordinal()] = firstPersonId + config.getDoctors();
+        firstIds[Kind.APPOINTMENTS.ordinal()] = AppointmentDAO.generateIds(config.getAppointments());
+        firstIds[Kind.PRESCRIPTIONS.ordinal()] = PrescriptionDAO.generateIds(config.getPrescriptions());
+        firstIds[Kind.MEDICAL_RECORDS.ordinal()] = MedicalRecordDAO.generateIds(config.getMedicalRecords());
+        firstIds[Kind.BILLS.ordinal()] = BillingDAO.generateIds(config.getBills());
+
+        Map<String, Long> stored = new LinkedHashMap<>();
+        ExecutorService pool = newPool();
+        try {
+            for (Kind kind : Kind.values()) {
+                long started = System.nanoTime();
+                long[] taken = new long[1];
+                try {
+                    generate(pool, kind, entities -> countTaken(store(kind, entities)), count -> taken[0] += count);
+                } catch (IOException e) {
+                    // Only writing files can fail with IOException
+                    throw new UncheckedIOException(e);
+                }
+                if (taken[0] > 0) {
+                    LOGGER.warn("{} generated {} had IDs that were already taken and were not stored", taken[0], kind.storeName);
+                }
+                stored.put(kind.storeName, count(kind) - taken[0]);
+                LOGGER.info("Generated {} {} in {} ms", count(kind), kind.storeName, (System.nanoTime() - started) / 1_000_000);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        return stored;
+    }
+
+    /**
+     * Generate the dataset as one NDJSON file per store, such as patients.ndjson. IDs start at 1.
+     * Each file is written under a temporary name and renamed when complete.
+     * @param directory Directory to write to, created if missing
+     * @param gzip True to gzip the files
+     * @return Number of entities written, by store name
+     */
+    public Map<String, Long> writeTo(Path directory, boolean gzip) throws IOException {
+        Files.createDirectories(directory);
+        firstIds[Kind.DOCTORS.ordinal()] = 1;
+        firstIds[Kind.PATIENTS.ordinal()] = 1 + config.getDoctors();
+        for (Kind kind : new Kind[] {Kind.APPOINTMENTS, Kind.PRESCRIPTIONS, Kind.MEDICAL_RECORDS, Kind.BILLS}) {
+            firstIds[kind.ordinal()] = 1;
+        }
+
+        Map<String, Long> written = new LinkedHashMap<>();
+        ExecutorService pool = newPool();
+        try {
+            for (Kind kind : Kind.values()) {
+                long started = System.nanoTime();
+                Path file = directory.resolve(kind.storeName + (gzip ? ".ndjson.gz" : ".ndjson"));
+                Path partial = directory.resolve(file.getFileName() + ".part");
+                try (OutputStream out = Files.newOutputStream(partial)) {
+                    GZIPOutputStream zip = gzip ? new GZIPOutputStream(out, BUFFER_SIZE) : null;
+                    OutputStream buffered = new BufferedOutputStream(zip != null ? zip : out, BUFFER_SIZE);
+                    generate(pool, kind, DatasetGenerator::encode, bytes -> buffered.write(bytes));
+                    buffered.flush();
+                    if (zip != null) {
+                        zip.finish();
+                    }
+                }
+                Files.move(partial, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                written.put(kind.storeName, (long) count(kind));
+                LOGGER.info("Wrote {} {} to {} in {} ms", count(kind), kind.storeName, file,
+                        (System.nanoTime() - started) / 1_000_000);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        return written;
+    }
+
+    private ExecutorService newPool() {
+        AtomicInteger threadIds = new AtomicInteger();
+        return Executors.newFixedThreadPool(config.getThreads(), task -> {
+            Thread thread = new Thread(task, "generator-" + threadIds.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    private int count(Kind kind) {
+        switch (kind) {
+            case DOCTORS: return config.getDoctors();
+            case PATIENTS: return config.getPatients();
+            case APPOINTMENTS: return config.getAppointments();
+            case PRESCRIPTIONS: return config.getPrescriptions();
+            case MEDICAL_RECORDS: return config.getMedicalRecords();
+            default: return config.getBills();
+        }
+    }
+
+    // Work done on a chunk in the pool, such as encoding it
+    private interface ChunkTask<R> {
+        R apply(List<Object> entities) throws IOException;
+    }
+
+    // Work done on a chunk's result in the calling thread, in chunk order
+    private interface ChunkConsumer<R> {
+        void accept(R result) throws IOException;
+    }
+
+    // Generate the chunks of one kind in the pool, keeping a bounded number in flight
+    private <R> void generate(ExecutorService pool, Kind kind, ChunkTask<R> task, ChunkConsumer<R> consumer)
+            throws IOException {
+        int count = count(kind);
+        int chunks = (count + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        Deque<Future<R>> inFlight = new ArrayDeque<>();
+        for (int chunk = 0; chunk < chunks; chunk++) {
+            int first = chunk * CHUNK_SIZE;
+            int last = Math.min(count, first + CHUNK_SIZE);
+            long streamSeed = config.getSeed() * 31 + kind.ordinal() * 1_000_003L + chunk;
+            Callable<R> work = () -> task.apply(createChunk(kind, first, last, new SplittableRandom(streamSeed)));
+            inFlight.add(pool.submit(work));
+            if (inFlight.size() >= 2 * config.getThreads()) {
+                consumer.accept(await(inFlight.poll()));
+            }
+        }
+        while (!inFlight.isEmpty()) {
+            consumer.accept(await(inFlight.poll()));
+        }
+    }
+
+    private static <R> R await(Future<R> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while generating", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IllegalStateException("Failed to generate: " + e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    private List<Object> createChunk(Kind kind, int first, int last, SplittableRandom random) {
+        List<Object> entities = new ArrayList<>(last - first);
+        int firstId = firstIds[kind.ordinal()];
+        for (int i = first; i < last; i++) {
+            entities.add(create(kind, firstId + i, random));
+        }
+        return entities;
+    }
+
+    private Object create(Kind kind, int id, SplittableRandom random) {
+        switch (kind) {
+            case DOCTORS:
+                return new Doctor(id, "Dr. " + name(random), contact(random), pick(CITIES, CITY, random),
+                        pick(SPECIALIZATIONS, SPECIALIZATION, random));
+            case PATIENTS:
+                return new Patient(id, name(random), contact(random), pick(CITIES, CITY, random),
+                        pick(HISTORIES, HISTORY, random), pick(STATUSES, STATUS, random));
+            case APPOINTMENTS: {
+                Appointment appointment = new Appointment();
+                appointment.setAppointmentNo(id);
+                long day = day(random);
+                int minute = minuteOfDay(random);
+                appointment.setDate(LocalDate.ofEpochDay(day).toString());
+                appointment.setTime(String.format("%02d:%02d", minute / 60, minute % 60));
+                appointment.setPatientId(patient(random));
+                appointment.setDoctorId(doctor(random));
+                return appointment;
+            }
+            case PRESCRIPTIONS: {
+                Prescription prescription = new Prescription();
+                int medication = MEDICATION.sample(random) - 1;
+                prescription.setPrescriptionId(id);
+                prescription.setPatientId(patient(random));
+                prescription.setDoctorId(doctor(random));
+                prescription.setMedication(MEDICATIONS[medication]);
+                prescription.setDosage(DOSAGES[medication]);
+                prescription.setInstructions(pick(INSTRUCTIONS, INSTRUCTION, random));
+                prescription.setDuration(DURATIONS[DURATION.sample(random) - 1]);
+                prescription.setCreatedAt(timestamp(day(random), random));
+                return prescription;
+            }
+            case MEDICAL_RECORDS: {
+                MedicalRecord record = new MedicalRecord();
+                int diagnosis = DIAGNOSIS.sample(random) - 1;
+                record.setRecordId(id);
+                record.setPatientId(patient(random));
+                record.setDiagnosis(DIAGNOSES[diagnosis]);
+                record.setTreatment(TREATMENTS[diagnosis]);
+                record.setCreatedAt(timestamp(day(random), random));
+                return record;
+            }
+            default: {
+                Billing bill = new Billing();
+                long day = day(random);
+                bill.setRefID(id);
+                bill.setPatientId(patient(random));
+                bill.setDoctorId(doctor(random));
+                // Log-normal around a median of 2,500
+                double amount = Math.exp(Math.log(2500) + 0.9 * gaussian(random));
+                bill.setBillingAmount(Math.round(amount * 100) / 100.0);
+                bill.setPaid(random.nextInt(100) < (LAST_DAY - day > RECENT_DAYS ? 95 : 45));
+                bill.setCreatedAt(timestamp(day, random));
+                return bill;
+            }
+        }
+    }
+
+    private int patient(SplittableRandom random) {
+        return firstIds[Kind.PATIENTS.ordinal()] + patientActivity.sampleSpread(random);
+    }
+
+    private int doctor(SplittableRandom random) {
+        return firstIds[Kind.DOCTORS.ordinal()] + doctorWorkload.sampleSpread(random);
+    }
+
+    private static String pick(String[] values, ZipfSampler sampler, SplittableRandom random) {
+        return values[sampler.sample(random) - 1];
+    }
+
+    private static String name(SplittableRandom random) {
+        return pick(FIRST_NAMES, FIRST_NAME, random) + " " + LAST_NAMES[random.nextInt(LAST_NAMES.length)];
+    }
+
+    private static String contact(SplittableRandom random) {
+        return "07" + (10_000_000 + random.nextInt(90_000_000));
+    }
+
+    // Day of the history as an epoch day, mostly on weekdays
+    private static long day(SplittableRandom random) {
+        while (true) {
+            long day = LAST_DAY - random.nextInt(HISTORY_DAYS);
+            // 1970-01-01 was a Thursday, so this gives 0 for Monday
+            int weekday = (int) Math.floorMod(day + 3, 7L);
+            if (weekday < 5 || random.nextInt(10) < (weekday == 5 ? 3 : 1)) {
+                return day;
+            }
+        }
+    }
+
+    // Start of an appointment within opening hours, on the quarter hour, in minutes after midnight
+    private static int minuteOfDay(SplittableRandom random) {
+        int ticket = random.nextInt(HOUR_CUMULATIVE[HOUR_CUMULATIVE.length - 1]);
+        int hour = 0;
+        while (ticket >= HOUR_CUMULATIVE[hour]) {
+            hour++;
+        }
+        return (8 + hour) * 60 + random.nextInt(4) * 15;
+    }
+
+    private static long timestamp(long day, SplittableRandom random) {
+        return day * MILLIS_PER_DAY + minuteOfDay(random) * 60_000L + random.nextInt(60_000);
+    }
+
+    // Standard normal value, by the Box-Muller transform
+    private static double gaussian(SplittableRandom random) {
+        return Math.sqrt(-2 * Math.log(1 - random.nextDouble())) * Math.cos(2 * Math.PI * random.nextDouble());
+    }
+
+    private static int[] cumulative(int[] weights) {
+        int[] totals = new int[weights.length];
+        int total = 0;
+        for (int i = 0; i < weights.length; i++) {
+            total += weights[i];
+            totals[i] = total;
+        }
+        return totals;
+    }
+
+    // Encode a chunk as NDJSON lines
+    private static byte[] encode(List<Object> entities) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(entities.size() * 160);
+        for (Object entity : entities) {
+            out.write(EntityCodec.encode(entity));
+            out.write('\n');
+        }
+        return out.toByteArray();
+    }
+
+    // Store a chunk under its own IDs through the DAO of its kind
+    @SuppressWarnings("unchecked")
+    private static boolean[] store(Kind kind, List<?> entities) {
+        switch (kind) {
+            case DOCTORS: return DoctorDAO.importDoctors((List<Doctor>) entities);
+            case PATIENTS: return PatientDAO.importPatients((List<Patient>) entities);
+            case APPOINTMENTS: return AppointmentDAO.importAppointments((List<Appointment>) entities);
+            case PRESCRIPTIONS: return PrescriptionDAO.importPrescriptions((List<Prescription>) entities);
+            case MEDICAL_RECORDS: return MedicalRecordDAO.importMedicalRecords((List<MedicalRecord>) entities);
+            default: return BillingDAO.importBills((List<Billing>) entities);
+        }
+    }
+
+    private static long countTaken(boolean[] inserted) {
+        long taken = 0;
+        for (boolean stored : inserted) {
+            if (!stored) {
+                taken++;
+            }
+        }
+        return taken;
+    }
+}
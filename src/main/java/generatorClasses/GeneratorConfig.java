@@ -0,0 +1,83 @@
+/**
+ * How much synthetic data to generate, from which seed and on how many threads.
+ * The same counts and seed always give the same data, whatever the number of threads.
+ * Author: Rifa
+ * IIT no: 20220701
+ */
+package generatorClasses;
+
+public class GeneratorConfig {
+
+    private final int patients;
+    private final int doctors;
+    private final int appointments;
+    private final int prescriptions;
+    private final int medicalRecords;
+    private final int bills;
+    private final long seed;
+    private final int threads;
+
+    public GeneratorConfig(int patients, int doctors, int appointments, int prescriptions, int medicalRecords,
+            int bills, long seed, int threads) {
+        if (patients < 1 || doctors < 1) {
+            throw new IllegalArgumentException("At least one patient and one doctor are needed");
+        }
+        if (appointments < 0 || prescriptions < 0 || medicalRecords < 0 || bills < 0 || threads < 1) {
+            throw new IllegalArgumentException("Counts must not be negative and threads must be at least 1");
+        }
+        this.patients = patients;
+        this.doctors = doctors;
+        this.appointments = appointments;
+        this.prescriptions = prescriptions;
+        this.medicalRecords = medicalRecords;
+        this.bills = bills;
+        this.seed = seed;
+        this.threads = threads;
+    }
+
+    /**
+     * Settings with the other counts in proportion to the patients, as in a clinic's records:
+     * a doctor per 500 patients (at least 10), and per patient 5 appointments, 3 prescriptions,
+     * 2 medical records and 4 bills. 3.3 million patients come to about 50 million records.
+     * @param patients Number of patients
+     * @param seed Seed of the data
+     * @param threads Generating threads
+     * @return The settings
+     */
+    public static GeneratorConfig scaled(int patients, long seed, int threads) {
+        return new GeneratorConfig(patients, Math.max(10, patients / 500), 5 * patients, 3 * patients,
+                2 * patients, 4 * patients, seed, threads);
+    }
+
+    public int getPatients() {
+        return patients;
+    }
+
+    public int getDoctors() {
+        return doctors;
+    }
+
+    public int getAppointments() {
+        return appointments;
+    }
+
+    public int getPrescriptions() {
+        return prescriptions;
+    }
+
+    public int getMedicalRecords() {
+        return medicalRecords;
+    }
+
+    public int getBills() {
+        return bills;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+}
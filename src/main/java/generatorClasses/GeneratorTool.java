@@ -0,0 +1,107 @@
+/**
+ * Command line generation of a synthetic dataset, for benchmarking at scale.
+ *
+ * Writes one NDJSON file per store (doctors, patients, appointments, prescriptions,
+ * medicalRecords, bills) for POST /bulk/{store}?keepIds=true, in that order. With
+ * --snapshot, outDir is instead a data directory holding a snapshot of the generated
+ * stores, ready to be served with -Dhealth.persistence.dir=outDir.
+ *
+ * Usage: java -cp "WEB-INF/classes:WEB-INF/lib/*" generatorClasses.GeneratorTool
+ *            outDir [--patients=N] [--doctors=N] [--appointments=N] [--prescriptions=N]
+ *            [--medicalRecords=N] [--bills=N] [--seed=N] [--threads=N] [--gzip] [--snapshot]
+ * Counts not given are in proportion to the patients (default 100000), see GeneratorConfig.scaled.
+ * Author: Rifa
+ * IIT no: 20220701
+ */
+package generatorClasses;
+
+import daoClasses.StoreRegistry;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.stream.Stream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import persistenceClasses.Snapshot;
+
+public class GeneratorTool {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(GeneratorTool.class);
+
+    private GeneratorTool() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        Map<String, String> options = new HashMap<>();
+        String outDir = null;
+        for (String arg : args) {
+            if (arg.startsWith("--")) {
+                int equals = arg.indexOf('=');
+                options.put(equals > 0 ? arg.substring(2, equals) : arg.substring(2), equals > 0 ? arg.substring(equals + 1) : "");
+            } else if (outDir == null) {
+                outDir = arg;
+            } else {
+                outDir = null;
+                break;
+            }
+        }
+        if (outDir == null) {
+            System.err.println("Usage: GeneratorTool outDir [--patients=N] [--doctors=N] [--appointments=N]"
+                    + " [--prescriptions=N] [--medicalRecords=N] [--bills=N] [--seed=N] [--threads=N] [--gzip] [--snapshot]");
+            System.exit(1);
+        }
+
+        int patients = Integer.parseInt(options.getOrDefault("patients", "100000"));
+        long seed = Long.parseLong(options.getOrDefault("seed", "1"));
+        int threads = Integer.parseInt(options.getOrDefault("threads",
+                String.valueOf(Runtime.getRuntime().availableProcessors())));
+        GeneratorConfig scaled = GeneratorConfig.scaled(patients, seed, threads);
+        GeneratorConfig config = new GeneratorConfig(patients,
+                count(options, "doctors", scaled.getDoctors()),
+                count(options, "appointments", scaled.getAppointments()),
+                count(options, "prescriptions", scaled.getPrescriptions()),
+                count(options, "medicalRecords", scaled.getMedicalRecords()),
+                count(options, "bills", scaled.getBills()),
+                seed, threads);
+        DatasetGenerator generator = new DatasetGenerator(config);
+        Path out = Paths.get(outDir);
+
+        long started = System.nanoTime();
+        Map<String, Long> counts;
+        if (options.containsKey("snapshot")) {
+            checkEmpty(out);
+            counts = generator.populate();
+            snapshot(out);
+        } else {
+            counts = generator.writeTo(out, options.containsKey("gzip"));
+        }
+        long total = counts.values().stream().mapToLong(Long::longValue).sum();
+        LOGGER.info("Generated {} entities {} in {} s to {}", total, counts,
+                (System.nanoTime() - started) / 1_000_000_000, out);
+    }
+
+    private static int count(Map<String, String> options, String name, int scaled) {
+        return options.containsKey(name) ? Integer.parseInt(options.get(name)) : scaled;
+    }
+
+    // A snapshot is only written to a new data directory, never over a server's data
+    private static void checkEmpty(Path dataDir) throws IOException {
+        if (Files.isDirectory(dataDir)) {
+            try (Stream<Path> files = Files.list(dataDir)) {
+                if (files.findAny().isPresent()) {
+                    throw new IllegalArgumentException("Data directory is not empty: " + dataDir);
+                }
+            }
+        }
+    }
+
+    // Write the populated stores as the data directory's only snapshot, with no log to replay after it
+    private static void snapshot(Path dataDir) throws IOException {
+        Files.createDirectories(dataDir);
+        long entities = Snapshot.write(dataDir, 1, StoreRegistry.getStores());
+        LOGGER.info("Wrote snapshot of {} entities to {}", entities, dataDir);
+    }
+}
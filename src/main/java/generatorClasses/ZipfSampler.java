@@ -0,0 +1,93 @@
+/**
+ * Draws ranks 1..n with probability in proportion to 1 / rank^exponent, the skew of who
+ * books most appointments or which drugs are prescribed most. Uses rejection-inversion
+ * (Hörmann and Derflinger), so sampling takes constant time and no tables, whatever n is.
+ * Samplers are immutable and can be shared between threads.
+ * Author: Rifa
+ * IIT no: 20220701
+ */
+package generatorClasses;
+
+import java.util.SplittableRandom;
+
+public final class ZipfSampler {
+
+    // Large prime, for spreading ranks over indexes without collisions
+    private static final long SPREAD = 2_147_483_629L;
+
+    private final int n;
+    private final double exponent;
+    private final double hIntegralX1;
+    private final double hIntegralN;
+    private final double s;
+
+    /**
+     * @param n Number of ranks, at least 1
+     * @param exponent Skew; 0 is uniform, 1 is the classic Zipf law
+     */
+    public ZipfSampler(int n, double exponent) {
+        if (n < 1 || exponent < 0) {
+            throw new IllegalArgumentException("Zipf needs n >= 1 and exponent >= 0, got " + n + " and " + exponent);
+        }
+        this.n = n;
+        this.exponent = exponent;
+        this.hIntegralX1 = hIntegral(1.5) - 1;
+        this.hIntegralN = hIntegral(n + 0.5);
+        this.s = 2 - hIntegralInverse(hIntegral(2.5) - h(2));
+    }
+
+    // Draw a rank from 1 (most likely) to n
+    public int sample(SplittableRandom random) {
+        while (true) {
+            double u = hIntegralN + random.nextDouble() * (hIntegralX1 - hIntegralN);
+            double x = hIntegralInverse(u);
+            int k = (int) (x + 0.5);
+            if (k < 1) {
+                k = 1;
+            } else if (k > n) {
+                k = n;
+            }
+            if (k - x <= s || u >= hIntegral(k + 0.5) - h(k)) {
+                return k;
+            }
+        }
+    }
+
+    /**
+     * Draw an index from 0 to n - 1, with the likely ones spread over the range rather than
+     * at its start, so the busiest patients are not simply the first ones added.
+     * @param random Source of randomness
+     * @return Index of the chosen item
+     */
+    public int sampleSpread(SplittableRandom random) {
+        return (int) ((sample(random) - 1) * SPREAD % n);
+    }
+
+    private double h(double x) {
+        return Math.exp(-exponent * Math.log(x));
+    }
+
+    private double hIntegral(double x) {
+        double logX = Math.log(x);
+        return expm1OverX((1 - exponent) * logX) * logX;
+    }
+
+    private double hIntegralInverse(double x) {
+        double t = x * (1 - exponent);
+        if (t < -1) {
+            // Guards against rounding just past the domain
+            t = -1;
+        }
+        return Math.exp(log1pOverX(t) * x);
+    }
+
+    // log(1 + x) / x, accurate near 0
+    private static double log1pOverX(double x) {
+        return Math.abs(x) > 1e-8 ? Math.log1p(x) / x : 1 - x * (0.5 - x * (1.0 / 3 - 0.25 * x));
+    }
+
+    // (e^x - 1) / x, accurate near 0
+    private static double expm1OverX(double x) {
+        return Math.abs(x) > 1e-8 ? Math.expm1(x) / x : 1 + x * 0.5 * (1 + x / 3 * (1 + 0.25 * x));
+    }
+}
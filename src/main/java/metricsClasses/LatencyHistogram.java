@@ -0,0 +1,119 @@
+/**
+ * Lock-free histogram of latencies in nanoseconds, for percentiles of request times.
+ *
+ * Buckets are log-linear: every power of two is split into 16 equal buckets, so a value
+ * is placed with at most about 6% error over any range, from nanoseconds to hours, in a
+ * fixed array of counters. Recording is a bit scan and one atomic increment; reading walks
+ * the counters, which is cheap at scrape intervals. Values are kept since the start.
+ * Author: Rifa
+ * IIT no: 20220701
+ */
+package metricsClasses;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+public final class LatencyHistogram {
+
+    // Buckets per power of two, as a number of bits
+    private static final int SUB_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    private static final int BUCKETS = (64 - SUB_BITS + 1) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder sum = new LongAdder();
+
+    // Record one value; negative values count as 0
+    public void record(long nanos) {
+        long value = Math.max(nanos, 0);
+        counts.incrementAndGet(bucketOf(value));
+        sum.add(value);
+    }
+
+    // Total of the recorded values, in nanoseconds
+    public long getSum() {
+        return sum.sum();
+    }
+
+    /**
+     * Take a consistent-enough copy of the counters for reading several values from.
+     * Writers are not stopped, so a snapshot may miss values recorded while it is taken.
+     * @return The snapshot
+     */
+    public Snapshot snapshot() {
+        long[] copy = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            copy[i] = counts.get(i);
+            total += copy[i];
+        }
+        return new Snapshot(copy, total, sum.sum());
+    }
+
+    // Values below SUB_BUCKETS get a bucket each; above, the top SUB_BITS + 1 bits pick the bucket
+    static int bucketOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int sub = (int) (value >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    // Smallest value placed in a bucket
+    static long lowerBound(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int exponent = bucket / SUB_BUCKETS + SUB_BITS - 1;
+        long sub = bucket % SUB_BUCKETS;
+        return (SUB_BUCKETS + sub) << (exponent - SUB_BITS);
+    }
+
+    /**
+     * Counters of a histogram at one moment.
+     */
+    public static final class Snapshot {
+
+        private final long[] counts;
+        private final long count;
+        private final long sum;
+
+        private Snapshot(long[] counts, long count, long sum) {
+            this.counts = counts;
+            this.count = count;
+            this.sum = sum;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        // Total of the values, in nanoseconds
+        public long getSum() {
+            return sum;
+        }
+
+        /**
+         * Estimate a quantile as the middle of the bucket it falls in.
+         * @param quantile Quantile between 0 and 1, such as 0.99
+         * @return Value in nanoseconds, or 0 if nothing was recorded
+         */
+        public long getValue(double quantile) {
+            if (count == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(quantile * count));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    long lower = lowerBound(i);
+                    long upper = i + 1 < BUCKETS ? lowerBound(i + 1) : Long.MAX_VALUE;
+                    return lower + (upper - lower) / 2;
+                }
+            }
+            return lowerBound(counts.length - 1);
+        }
+    }
+}
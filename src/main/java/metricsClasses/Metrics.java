@@ -0,0 +1,151 @@
+/**
+ * Registry of the request metrics, written out in the Prometheus text format:
+ *
+ * - http_request_duration_seconds: latency of each route as a summary with p50, p99 and p999
+ * - http_requests_total: requests of each route by status class, such as "2xx"
+ * - http_exceptions_total: exceptions thrown while handling requests, by exception class
+ *
+ * Routes are registered once, on their first request; after that recording a request is a
+ * map lookup and a few atomic increments, without locks or allocation.
+ * Author: Rifa
+ * IIT no: 20220701
+ */
+package metricsClasses;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+public final class Metrics {
+
+    // Content type of the Prometheus text format
+    public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private static final double[] QUANTILES = {0.5, 0.99, 0.999};
+
+    // Routes by the key they are looked up with, such as the matched resource method
+    private static final ConcurrentHashMap<Object, Route> routes = new ConcurrentHashMap<>();
+    // The same routes by their labels; keys with the same labels share a route
+    private static final ConcurrentHashMap<String, Route> routesByLabels = new ConcurrentHashMap<>();
+    private static final ConcurrentHashMap<String, LongAdder> exceptions = new ConcurrentHashMap<>();
+
+    private Metrics() {
+    }
+
+    /**
+     * Look up the metrics of a route, registering it on first use.
+     * @param key Identity of the route, looked up on every request
+     * @param describe Builds the method and path labels of a new route, as {method, path}
+     * @return The route's metrics
+     */
+    public static <K> Route route(K key, Function<? super K, String[]> describe) {
+        Route route = routes.get(key);
+        if (route == null) {
+            route = routes.computeIfAbsent(key, k -> {
+                String[] labels = describe.apply(key);
+                return routesByLabels.computeIfAbsent("method=" + quote(labels[0]) + ",route=" + quote(labels[1]),
+                        Route::new);
+            });
+        }
+        return route;
+    }
+
+    // Count an exception thrown while handling a request; each exception class has its own mapper
+    public static void countException(Class<?> type) {
+        LongAdder count = exceptions.get(type.getName());
+        if (count == null) {
+            count = exceptions.computeIfAbsent(type.getName(), name -> new LongAdder());
+        }
+        count.increment();
+    }
+
+    /**
+     * Write all metrics in the Prometheus text format.
+     * @return The exposition, one sample per line
+     */
+    public static String scrape() {
+        // Sort by labels so scrapes are stable
+        Map<String, Route> sorted = new TreeMap<>(routesByLabels);
+        StringBuilder out = new StringBuilder(4096);
+        out.append("# HELP http_request_duration_seconds Time from receiving a request to its response being ready.\n");
+        out.append("# TYPE http_request_duration_seconds summary\n");
+        for (Route route : sorted.values()) {
+            LatencyHistogram.Snapshot snapshot = route.latency.snapshot();
+            for (double quantile : QUANTILES) {
+                out.append("http_request_duration_seconds{").append(route.labels)
+                        .append(",quantile=\"").append(quantile).append("\"} ")
+                        .append(seconds(snapshot.getValue(quantile))).append('\n');
+            }
+            out.append("http_request_duration_seconds_sum{").append(route.labels).append("} ")
+                    .append(seconds(snapshot.getSum())).append('\n');
+            out.append("http_request_duration_seconds_count{").append(route.labels).append("} ")
+                    .append(snapshot.getCount()).append('\n');
+        }
+        out.append("# HELP http_requests_total Requests by route and status class.\n");
+        out.append("# TYPE http_requests_total counter\n");
+        for (Route route : sorted.values()) {
+            for (int statusClass = 1; statusClass < Route.STATUS_CLASSES; statusClass++) {
+                long count = route.statuses[statusClass].sum();
+                if (count > 0) {
+                    out.append("http_requests_total{").append(route.labels)
+                            .append(",status=\"").append(statusClass).append("xx\"} ")
+                            .append(count).append('\n');
+                }
+            }
+        }
+        out.append("# HELP http_exceptions_total Exceptions thrown while handling requests, by exception class.\n");
+        out.append("# TYPE http_exceptions_total counter\n");
+        for (Map.Entry<String, LongAdder> entry : new TreeMap<>(exceptions).entrySet()) {
+            out.append("http_exceptions_total{exception=\"").append(entry.getKey()).append("\"} ")
+                    .append(entry.getValue().sum()).append('\n');
+        }
+        return out.toString();
+    }
+
+    private static String seconds(long nanos) {
+        return Double.toString(nanos / 1e9);
+    }
+
+    // Quote a label value as the text format requires
+    private static String quote(String value) {
+        return '"' + value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n") + '"';
+    }
+
+    /**
+     * Metrics of one route.
+     */
+    public static final class Route {
+
+        // Status classes 1xx to 5xx, by their first digit
+        private static final int STATUS_CLASSES = 6;
+
+        // Labels as written in the exposition, such as method="GET",route="/patients/{id}"
+        private final String labels;
+        private final LatencyHistogram latency;
+        private final LongAdder[] statuses;
+
+        private Route(String labels) {
+            this.labels = labels;
+            this.latency = new LatencyHistogram();
+            this.statuses = new LongAdder[STATUS_CLASSES];
+            for (int i = 0; i < STATUS_CLASSES; i++) {
+                statuses[i] = new LongAdder();
+            }
+        }
+
+        /**
+         * Record one request.
+         * @param nanos Time taken, in nanoseconds
+         * @param status HTTP status of the response
+         */
+        public void record(long nanos, int status) {
+            latency.record(nanos);
+            int statusClass = status / 100;
+            if (statusClass > 0 && statusClass < STATUS_CLASSES) {
+                statuses[statusClass].increment();
+            }
+        }
+    }
+}
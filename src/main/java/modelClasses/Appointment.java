@@ -3,13 +3,47 @@
  */
 package modelClasses;
 
-public class Appointment {
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonView;
+import daoClasses.DoctorDAO;
+import daoClasses.PatientDAO;
+import daoClasses.TimeIndex;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.TemporalQuery;
+import java.util.Locale;
+
+public class Appointment implements Versioned {
+
+    // Start minute of an appointment whose date or time could not be parsed
+    public static final int NO_TIME = TimeIndex.NO_TIME;
+
+    // Accepted spellings of the free-form date and time fields
+    private static final DateTimeFormatter[] DATE_FORMATS = {
+        DateTimeFormatter.ISO_LOCAL_DATE,
+        DateTimeFormatter.ofPattern("d/M/yyyy"),
+        DateTimeFormatter.ofPattern("d-M-yyyy"),
+        DateTimeFormatter.ofPattern("d.M.yyyy")
+    };
+    private static final DateTimeFormatter[] TIME_FORMATS = {
+        DateTimeFormatter.ofPattern("H:mm[:ss]"),
+        DateTimeFormatter.ofPattern("h:mm[:ss][ ]a", Locale.ENGLISH),
+        DateTimeFormatter.ofPattern("H.mm")
+    };
     
     private int appointmentNo;
     private String date;
     private String time;
-    private Patient patient;
-    private Doctor doctor;
+    private int patientId;
+    private int doctorId;
+    // Raised by the DAO on every update
+    private long version;
+    // Date and time parsed once into minutes since the epoch, kept in step by the setters
+    private int startMinute = NO_TIME;
 
     public Appointment() {
     }
@@ -18,8 +52,9 @@ public class Appointment {
         this.appointmentNo = appointmentNo;
         this.date = date;
         this.time = time;
-        this.patient = patient;
-        this.doctor = doctor;
+        this.startMinute = toEpochMinute(date, time);
+        setPatient(patient);
+        setDoctor(doctor);
     }
 
     public String getDate() {
@@ -28,6 +63,7 @@ public class Appointment {
 
     public void setDate(String date) {
         this.date = date;
+        this.startMinute = toEpochMinute(date, time);
     }
 
     public String getTime() {
@@ -36,6 +72,42 @@ public class Appointment {
 
     public void setTime(String time) {
         this.time = time;
+        this.startMinute = toEpochMinute(date, time);
+    }
+
+    // Start of the appointment in minutes since the epoch (wall-clock time), or NO_TIME
+    @JsonIgnore
+    public int getStartMinute() {
+        return startMinute;
+    }
+
+    /**
+     * Parse a free-form date and time into minutes since the epoch, reading them as wall-clock time.
+     * @param date Date such as 2024-03-05 or 5/3/2024
+     * @param time Time such as 09:30 or 9:30 AM, or null for the start of the day
+     * @return Minutes since the epoch, or NO_TIME if either part cannot be parsed
+     */
+    public static int toEpochMinute(String date, String time) {
+        LocalDate day = parse(date, DATE_FORMATS, LocalDate::from);
+        LocalTime clock = time == null ? LocalTime.MIDNIGHT : parse(time, TIME_FORMATS, LocalTime::from);
+        if (day == null || clock == null) {
+            return NO_TIME;
+        }
+        return (int) (LocalDateTime.of(day, clock).toEpochSecond(ZoneOffset.UTC) / 60);
+    }
+
+    private static <V> V parse(String text, DateTimeFormatter[] formats, TemporalQuery<V> query) {
+        if (text == null) {
+            return null;
+        }
+        for (DateTimeFormatter format : formats) {
+            try {
+                return format.parse(text.trim().toUpperCase(Locale.ENGLISH), query);
+            } catch (DateTimeParseException e) {
+                // try the next format
+            }
+        }
+        return null;
     }
 
     public int getAppointmentNo() {
@@ -46,19 +118,51 @@ public class Appointment {
         this.appointmentNo = appointmentNo;
     }
 
+    // Patient is stored by ID and looked up when serialized
+    @JsonView(Views.Public.class)
     public Patient getPatient() {
-        return patient;
+        return PatientDAO.findPatient(patientId);
     }
 
+    // Accepts a full patient or just {"id": ...}; only the ID is kept
     public void setPatient(Patient patient) {
-        this.patient = patient;
+        this.patientId = patient != null ? patient.getId() : 0;
+    }
+
+    @JsonView(Views.Storage.class)
+    public int getPatientId() {
+        return patientId;
     }
 
+    public void setPatientId(int patientId) {
+        this.patientId = patientId;
+    }
+
+    // Doctor is stored by ID and looked up when serialized
+    @JsonView(Views.Public.class)
     public Doctor getDoctor() {
-        return doctor;
+        return DoctorDAO.findDoctor(doctorId);
     }
 
+    // Accepts a full doctor or just {"id": ...}; only the ID is kept
     public void setDoctor(Doctor doctor) {
-        this.doctor = doctor;
+        this.doctorId = doctor != null ? doctor.getId() : 0;
+    }
+
+    @JsonView(Views.Storage.class)
+    public int getDoctorId() {
+        return doctorId;
+    }
+
+    public void setDoctorId(int doctorId) {
+        this.doctorId = doctorId;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public void setVersion(long version) {
+        this.version = version;
     }
 }
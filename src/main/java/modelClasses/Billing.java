@@ -4,12 +4,20 @@
 
 package modelClasses;
 
-public class Billing {
+import com.fasterxml.jackson.annotation.JsonView;
+import daoClasses.DoctorDAO;
+import daoClasses.PatientDAO;
+
+public class Billing implements Versioned, Timestamped {
     private int refID;
-    private Patient patient;
-    private Doctor doctor;
+    private int patientId;
+    private int doctorId;
     private double billingAmount;
     private boolean paid;
+    // Raised by the DAO on every update
+    private long version;
+    // Set by the DAO when added, in milliseconds since the epoch
+    private long createdAt;
 
     //default constructor
     public Billing() {
@@ -18,8 +26,8 @@ public class Billing {
     //constructor
     public Billing(int refID, Patient patient, Doctor doctor, double billingAmount, boolean paid) {
         this.refID = refID;
-        this.patient = patient;
-        this.doctor = doctor;
+        setPatient(patient);
+        setDoctor(doctor);
         this.billingAmount = billingAmount;
         this.paid = paid;
     }
@@ -33,20 +41,44 @@ public class Billing {
         this.refID = refID;
     }
 
+    // Patient is stored by ID and looked up when serialized
+    @JsonView(Views.Public.class)
     public Patient getPatient() {
-        return patient;
+        return PatientDAO.findPatient(patientId);
     }
 
+    // Accepts a full patient or just {"id": ...}; only the ID is kept
     public void setPatient(Patient patient) {
-        this.patient = patient;
+        this.patientId = patient != null ? patient.getId() : 0;
+    }
+
+    @JsonView(Views.Storage.class)
+    public int getPatientId() {
+        return patientId;
+    }
+
+    public void setPatientId(int patientId) {
+        this.patientId = patientId;
     }
 
+    // Doctor is stored by ID and looked up when serialized
+    @JsonView(Views.Public.class)
     public Doctor getDoctor() {
-        return doctor;
+        return DoctorDAO.findDoctor(doctorId);
     }
 
+    // Accepts a full doctor or just {"id": ...}; only the ID is kept
     public void setDoctor(Doctor doctor) {
-        this.doctor = doctor;
+        this.doctorId = doctor != null ? doctor.getId() : 0;
+    }
+
+    @JsonView(Views.Storage.class)
+    public int getDoctorId() {
+        return doctorId;
+    }
+
+    public void setDoctorId(int doctorId) {
+        this.doctorId = doctorId;
     }
 
     public double getBillingAmount() {
@@ -64,5 +96,20 @@ public class Billing {
     public void setPaid(boolean paid) {
         this.paid = paid;
     }
- 
+
+    public long getVersion() {
+        return version;
+    }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
+    public long getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(long createdAt) {
+        this.createdAt = createdAt;
+    }
 }
@@ -3,12 +3,19 @@
  */
 package modelClasses;
 
-public class MedicalRecord {
+import com.fasterxml.jackson.annotation.JsonView;
+import daoClasses.PatientDAO;
+
+public class MedicalRecord implements Versioned, Timestamped {
    
     private int recordId;
-    private Patient patient;
+    private int patientId;
     private String diagnosis;
     private String treatment;
+    // Raised by the DAO on every update
+    private long version;
+    // Set by the DAO when added, in milliseconds since the epoch
+    private long createdAt;
 
     //default constructor
     public MedicalRecord() {
@@ -17,7 +24,7 @@ public class MedicalRecord {
     //constructor
     public MedicalRecord(int recordId, Patient patient, String diagnosis, String treatment) {
         this.recordId = recordId;
-        this.patient = patient;
+        setPatient(patient);
         this.diagnosis = diagnosis;
         this.treatment = treatment;
     }
@@ -31,12 +38,24 @@ public class MedicalRecord {
         this.recordId = recordId;
     }
 
+    // Patient is stored by ID and looked up when serialized
+    @JsonView(Views.Public.class)
     public Patient getPatient() {
-        return patient;
+        return PatientDAO.findPatient(patientId);
     }
 
+    // Accepts a full patient or just {"id": ...}; only the ID is kept
     public void setPatient(Patient patient) {
-        this.patient = patient;
+        this.patientId = patient != null ? patient.getId() : 0;
+    }
+
+    @JsonView(Views.Storage.class)
+    public int getPatientId() {
+        return patientId;
+    }
+
+    public void setPatientId(int patientId) {
+        this.patientId = patientId;
     }
 
     public String getDiagnosis() {
@@ -54,5 +73,20 @@ public class MedicalRecord {
     public void setTreatment(String treatment) {
         this.treatment = treatment;
     }
-      
+
+    public long getVersion() {
+        return version;
+    }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
+    public long getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(long createdAt) {
+        this.createdAt = createdAt;
+    }
 }
@@ -4,11 +4,13 @@
 
 package modelClasses;
 
-public class Person {
+public class Person implements Versioned {
     private int id;
     private String name;
     private String contact;
     private String address;
+    // Raised by the DAO on every update
+    private long version;
 
     //default constructor
     public Person() {
@@ -53,5 +55,13 @@ public class Person {
 
     public void setAddress(String address) {
         this.address = address;
-    }  
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
 }
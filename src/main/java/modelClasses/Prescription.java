@@ -4,15 +4,23 @@
 
 package modelClasses;
 
-public class Prescription {
+import com.fasterxml.jackson.annotation.JsonView;
+import daoClasses.DoctorDAO;
+import daoClasses.PatientDAO;
+
+public class Prescription implements Versioned, Timestamped {
     
     private int prescriptionId;
-    private Patient patient;
-    private Doctor doctor;
+    private int patientId;
+    private int doctorId;
     private String medication;
     private String dosage;
     private String instructions;
     private int duration;
+    // Raised by the DAO on every update
+    private long version;
+    // Set by the DAO when added, in milliseconds since the epoch
+    private long createdAt;
 
     //default constructor
     public Prescription() {
@@ -21,8 +29,8 @@ public class Prescription {
     //constructor
     public Prescription(int precriptionId, Patient patient, Doctor doctor, String medication, String dosage, String instructions, int duration) {
         this.prescriptionId = precriptionId;
-        this.patient = patient;
-        this.doctor = doctor;
+        setPatient(patient);
+        setDoctor(doctor);
         this.medication = medication;
         this.dosage = dosage;
         this.instructions = instructions;
@@ -38,20 +46,44 @@ public class Prescription {
         this.prescriptionId = precriptionId;
     }
 
+    // Patient is stored by ID and looked up when serialized
+    @JsonView(Views.Public.class)
     public Patient getPatient() {
-        return patient;
+        return PatientDAO.findPatient(patientId);
     }
 
+    // Accepts a full patient or just {"id": ...}; only the ID is kept
     public void setPatient(Patient patient) {
-        this.patient = patient;
+        this.patientId = patient != null ? patient.getId() : 0;
+    }
+
+    @JsonView(Views.Storage.class)
+    public int getPatientId() {
+        return patientId;
+    }
+
+    public void setPatientId(int patientId) {
+        this.patientId = patientId;
     }
 
+    // Doctor is stored by ID and looked up when serialized
+    @JsonView(Views.Public.class)
     public Doctor getDoctor() {
-        return doctor;
+        return DoctorDAO.findDoctor(doctorId);
     }
 
+    // Accepts a full doctor or just {"id": ...}; only the ID is kept
     public void setDoctor(Doctor doctor) {
-        this.doctor = doctor;
+        this.doctorId = doctor != null ? doctor.getId() : 0;
+    }
+
+    @JsonView(Views.Storage.class)
+    public int getDoctorId() {
+        return doctorId;
+    }
+
+    public void setDoctorId(int doctorId) {
+        this.doctorId = doctorId;
     }
 
     public String getMedication() {
@@ -85,5 +117,20 @@ public class Prescription {
     public void setDuration(int duration) {
         this.duration = duration;
     }
-  
+
+    public long getVersion() {
+        return version;
+    }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
+    public long getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(long createdAt) {
+        this.createdAt = createdAt;
+    }
 }
@@ -0,0 +1,13 @@
+/**
+ * Entity carrying the time it was added, which its DAO sets once and keeps across updates.
+ * @author rifad 20220701
+ */
+package modelClasses;
+
+public interface Timestamped {
+
+    // Milliseconds since the epoch, or 0 if not known
+    long getCreatedAt();
+
+    void setCreatedAt(long createdAt);
+}
@@ -0,0 +1,13 @@
+/**
+ * Entity carrying a version number that its DAO raises on every update.
+ * The version starts at 1 when the entity is added; resources expose it as an ETag.
+ * @author rifad 20220701
+ */
+package modelClasses;
+
+public interface Versioned {
+
+    long getVersion();
+
+    void setVersion(long version);
+}
@@ -0,0 +1,14 @@
+/**
+ * @author rifad 20220701
+ */
+package modelClasses;
+
+// JSON views: Public is what the REST API reads and writes, Storage is what persistence writes
+public class Views {
+
+    public static class Public {
+    }
+
+    public static class Storage {
+    }
+}
@@ -0,0 +1,61 @@
+/**
+ * Encodes entities to JSON bytes for the write-ahead log and snapshots, and decodes them on restore.
+ * Uses the Storage view, so related entities are written as IDs rather than as copies.
+ * Author: Rifa
+ * IIT no: 20220701
+ */
+package persistenceClasses;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import modelClasses.Views;
+
+public class EntityCodec {
+
+    // Only classes from this package may be decoded
+    private static final String MODEL_PACKAGE = "modelClasses.";
+
+    private static final ObjectMapper MAPPER = new ObjectMapper()
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+    private static final ObjectWriter WRITER = MAPPER.writerWithView(Views.Storage.class);
+    private static final ObjectReader READER = MAPPER.readerWithView(Views.Storage.class);
+
+    private EntityCodec() {
+    }
+
+    /**
+     * Encode an entity as JSON.
+     * @param entity Entity to encode
+     * @return JSON bytes
+     */
+    public static byte[] encode(Object entity) {
+        try {
+            return WRITER.writeValueAsBytes(entity);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to encode " + entity.getClass().getSimpleName(), e);
+        }
+    }
+
+    /**
+     * Decode an entity from JSON.
+     * @param className Fully qualified name of the entity class
+     * @param data JSON bytes
+     * @return The decoded entity
+     */
+    public static Object decode(String className, byte[] data) {
+        if (!className.startsWith(MODEL_PACKAGE)) {
+            throw new IllegalArgumentException("Not an entity class: " + className);
+        }
+        try {
+            return READER.forType(Class.forName(className)).readValue(data);
+        } catch (ClassNotFoundException e) {
+            throw new IllegalArgumentException("Unknown entity class: " + className, e);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to decode " + className, e);
+        }
+    }
+}
@@ -0,0 +1,27 @@
+/**
+ * When the write-ahead log forces its records to disk.
+ * Author: Rifa
+ * IIT no: 20220701
+ */
+package persistenceClasses;
+
+public enum FsyncPolicy {
+
+    // Force after every record; each write waits for its own fsync
+    PER_WRITE,
+
+    // Force once per batch of queued records; writes wait for the batch (group commit)
+    PER_BATCH,
+
+    // Force at a fixed interval; writes do not wait and may lose the last interval on a crash
+    PER_INTERVAL;
+
+    /**
+     * Parse a policy name such as "per-batch" or "PER_BATCH".
+     * @param value Policy name
+     * @return The matching policy
+     */
+    public static FsyncPolicy fromString(String value) {
+        return valueOf(value.trim().toUpperCase().replace('-', '_'));
+    }
+}
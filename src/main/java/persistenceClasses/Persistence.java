@@ -0,0 +1,194 @@
+/**
+ * Starts and stops persistence of the entity stores.
+ * On start the newest snapshot is loaded and the write-ahead log written after it is
+ * replayed into the stores (which also moves the DAO ID counters past every restored ID).
+ * A new log file is then opened for writes, and snapshots are taken periodically on a
+ * background thread so only a short log tail has to be replayed on the next start.
+ * Author: Rifa
+ * IIT no: 20220701
+ */
+package persistenceClasses;
+
+import configFiles.PersistenceConfig;
+import daoClasses.EntityStore;
+import daoClasses.StoreRegistry;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class Persistence {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(Persistence.class);
+
+    // Snapshots kept on disk; the log is kept from the oldest of them so it can serve as a fallback
+    private static final int SNAPSHOTS_KEPT = 2;
+
+    // Open log, null while persistence is stopped
+    private static WriteAheadLog wal;
+    private static Path directory;
+    private static ScheduledExecutorService snapshotScheduler;
+    // Sequence number of the last snapshot, guarded by the snapshot lock
+    private static long lastSnapshotLsn;
+    private static final Object SNAPSHOT_LOCK = new Object();
+
+    private Persistence() {
+    }
+
+    /**
+     * Restore the stores from disk and start journaling writes. Does nothing if already started.
+     * @param config Persistence settings
+     */
+    public static synchronized void start(PersistenceConfig config) {
+        if (wal != null || !config.isEnabled()) {
+            return;
+        }
+        try {
+            directory = config.getDirectory();
+            Files.createDirectories(directory);
+            long[] lsns = restore(directory, true);
+
+            lastSnapshotLsn = lsns[0];
+            wal = new WriteAheadLog(directory, lsns[1], config.getFsyncPolicy(), config.getFsyncIntervalMillis());
+            EntityStore.setJournal(wal);
+
+            long interval = config.getSnapshotIntervalMinutes();
+            if (interval > 0) {
+                snapshotScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                    Thread thread = new Thread(runnable, "snapshot-writer");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+                snapshotScheduler.scheduleWithFixedDelay(Persistence::snapshotQuietly, interval, interval, TimeUnit.MINUTES);
+            }
+        } catch (IOException e) {
+            LOGGER.error("Failed to start persistence: {}", e.getMessage(), e);
+            throw new RuntimeException("Failed to start persistence", e);
+        }
+    }
+
+    /**
+     * Load the stores from a data directory without journaling writes and without changing
+     * any file, so tools can read the data of a server that may still be running.
+     * @param dataDirectory Directory holding the snapshots and log files
+     */
+    public static synchronized void load(Path dataDirectory) throws IOException {
+        if (wal != null) {
+            throw new IllegalStateException("Persistence is running; the stores are already loaded");
+        }
+        restore(dataDirectory, false);
+    }
+
+    // Load the newest snapshot and replay the log after it; returns its LSN and the next LSN
+    private static long[] restore(Path dataDirectory, boolean repair) throws IOException {
+        long started = System.nanoTime();
+        long[] restored = new long[2];
+        long snapshotLsn = Snapshot.loadLatest(dataDirectory, new Snapshot.EntityHandler() {
+            @Override
+            public void apply(String store, int id, String className, byte[] data) {
+                Persistence.apply(WriteAheadLog.OP_PUT, store, id, className, data);
+                restored[0]++;
+            }
+
+            @Override
+            public void idCount(String store, int idCount) {
+                EntityStore<?> entityStore = StoreRegistry.getStore(store);
+                if (entityStore != null) {
+                    entityStore.restoreIdCount(idCount);
+                }
+            }
+        });
+        long nextLsn = WriteAheadLog.replay(dataDirectory, snapshotLsn, repair, (lsn, op, store, id, className, data) -> {
+            apply(op, store, id, className, data);
+            restored[1]++;
+        });
+        LOGGER.info("Restored {} snapshot entities and replayed {} log records in {} ms",
+                restored[0], restored[1], (System.nanoTime() - started) / 1_000_000);
+        return new long[] {snapshotLsn, nextLsn};
+    }
+
+    // Stop journaling writes and close the log
+    public static synchronized void stop() {
+        if (wal == null) {
+            return;
+        }
+        if (snapshotScheduler != null) {
+            snapshotScheduler.shutdown();
+            try {
+                snapshotScheduler.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            snapshotScheduler = null;
+        }
+        EntityStore.setJournal(null);
+        try {
+            wal.close();
+        } catch (IOException e) {
+            LOGGER.error("Failed to close write-ahead log: {}", e.getMessage(), e);
+        }
+        wal = null;
+    }
+
+    /**
+     * Write a snapshot of all stores now, without blocking writers, and drop log files it makes redundant.
+     * Does nothing if nothing was written since the last snapshot.
+     */
+    public static void takeSnapshot() throws IOException {
+        synchronized (SNAPSHOT_LOCK) {
+            WriteAheadLog log = wal;
+            if (log == null) {
+                return;
+            }
+            long lsn = log.roll();
+            if (lsn == lastSnapshotLsn) {
+                return;
+            }
+            // A write logged before the roll may not be in its store yet; the snapshot must
+            // hold it, as replay starts after it and its log file is deleted below
+            for (EntityStore<?> store : StoreRegistry.getStores()) {
+                store.awaitWrites();
+            }
+            long started = System.nanoTime();
+            long entities = Snapshot.write(directory, lsn, StoreRegistry.getStores());
+            lastSnapshotLsn = lsn;
+            LOGGER.info("Wrote snapshot of {} entities at LSN {} in {} ms",
+                    entities, lsn, (System.nanoTime() - started) / 1_000_000);
+            long oldestKept = Snapshot.deleteOlder(directory, SNAPSHOTS_KEPT);
+            log.deleteFilesBefore(oldestKept);
+        }
+    }
+
+    private static void snapshotQuietly() {
+        try {
+            takeSnapshot();
+        } catch (IOException | RuntimeException e) {
+            LOGGER.error("Failed to write snapshot: {}", e.getMessage(), e);
+        }
+    }
+
+    // Apply one restored record to its store
+    private static void apply(byte op, String storeName, int id, String className, byte[] data) {
+        EntityStore<?> store = StoreRegistry.getStore(storeName);
+        if (store == null) {
+            LOGGER.warn("Skipping record for unknown store {}", storeName);
+            return;
+        }
+        if (op == WriteAheadLog.OP_PUT) {
+            restore(store, id, EntityCodec.decode(className, data));
+        } else if (op == WriteAheadLog.OP_REMOVE) {
+            store.restoreRemove(id);
+        } else {
+            LOGGER.warn("Skipping log record with unknown operation {}", op);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> void restore(EntityStore<T> store, int id, Object entity) {
+        store.restore(id, (T) entity);
+    }
+}
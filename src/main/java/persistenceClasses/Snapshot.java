@@ -0,0 +1,321 @@
+/**
+ * Point-in-time snapshot files of all entity stores.
+ *
+ * A snapshot is written while request threads keep writing, through a point-in-time
+ * view of each store (StoreView), so writers are never blocked and each store is written
+ * as it was when its view was opened. It records the sequence number at which the
+ * write-ahead log was rolled before the views were opened, and the caller waits for the
+ * writes in progress at the roll (EntityStore.awaitWrites) so every write logged before
+ * that number is in the views. Writes made between the roll and a view's opening are
+ * included as well; they are logged at or after that number, so replaying the log from
+ * it on top of the snapshot brings every entity to its latest state: each record carries
+ * the full entity, and replaying a write the snapshot already contains is harmless.
+ * Each store's ID counter as of its view is saved too, so IDs of deleted entities are
+ * never reused once the log files that recorded them are gone.
+ *
+ * File layout: [int magic][int version][long lsn] followed by tagged sections
+ * ([TAG_STORE][string name][int idCount], [TAG_CLASS][byte code][string className],
+ * [TAG_ENTITY][int id][byte classCode][int length][entity JSON]) and finally
+ * [TAG_END][long crc32 of all preceding bytes]. Snapshots are read back through
+ * memory-mapped windows so large files load without copying them onto the heap.
+ * Author: Rifa
+ * IIT no: 20220701
+ */
+package persistenceClasses;
+
+import daoClasses.EntityStore;
+import daoClasses.StoreView;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class Snapshot {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(Snapshot.class);
+
+    private static final int MAGIC = 0x48534e50; // "HSNP"
+    private static final int VERSION = 2;
+    // Version 1 files have no ID counter after the store name
+    private static final int VERSION_WITHOUT_ID_COUNT = 1;
+    private static final byte TAG_END = 0;
+    private static final byte TAG_STORE = 1;
+    private static final byte TAG_CLASS = 2;
+    private static final byte TAG_ENTITY = 3;
+
+    private static final String FILE_PREFIX = "snapshot-";
+    private static final String FILE_SUFFIX = ".snap";
+    // Size of each memory-mapped window used when reading
+    private static final int WINDOW = 256 * 1024 * 1024;
+
+    // Receives the entities read back from a snapshot
+    public interface EntityHandler {
+        void apply(String store, int id, String className, byte[] data);
+
+        // Receives a store's ID counter, before the store's entities
+        default void idCount(String store, int idCount) {
+        }
+    }
+
+    private Snapshot() {
+    }
+
+    /**
+     * Write a snapshot of the given stores.
+     * @param directory Directory holding the snapshot files
+     * @param lsn Sequence number the write-ahead log must be replayed from on top of this snapshot
+     * @param stores Stores to write
+     * @return Number of entities written
+     */
+    public static long write(Path directory, long lsn, List<EntityStore<?>> stores) throws IOException {
+        Path temp = directory.resolve(fileName(lsn) + ".tmp");
+        long[] count = new long[1];
+        try (FileOutputStream file = new FileOutputStream(temp.toFile())) {
+            CheckedOutputStream checked = new CheckedOutputStream(file, new CRC32());
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(checked, 1 << 16));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(lsn);
+            Map<Class<?>, Integer> classCodes = new HashMap<>();
+            for (EntityStore<?> store : stores) {
+                count[0] += writeStore(out, store, classCodes);
+            }
+            out.writeByte(TAG_END);
+            out.flush();
+            out.writeLong(checked.getChecksum().getValue());
+            out.flush();
+            file.getChannel().force(true);
+        } catch (UncheckedIOException e) {
+            Files.deleteIfExists(temp);
+            throw e.getCause();
+        } catch (IOException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        Files.move(temp, directory.resolve(fileName(lsn)), StandardCopyOption.ATOMIC_MOVE);
+        return count[0];
+    }
+
+    // Write one store's section from a view opened for it; returns the number of entities written
+    private static <T> long writeStore(DataOutputStream out, EntityStore<T> store, Map<Class<?>, Integer> classCodes)
+            throws IOException {
+        long[] count = new long[1];
+        try (StoreView<T> view = store.openView()) {
+            out.writeByte(TAG_STORE);
+            writeString(out, store.getName());
+            out.writeInt(view.getLastId());
+            view.forEach((id, entity) -> {
+                try {
+                    Integer code = classCodes.get(entity.getClass());
+                    if (code == null) {
+                        code = classCodes.size();
+                        classCodes.put(entity.getClass(), code);
+                        out.writeByte(TAG_CLASS);
+                        out.writeByte(code);
+                        writeString(out, entity.getClass().getName());
+                    }
+                    byte[] data = EntityCodec.encode(entity);
+                    out.writeByte(TAG_ENTITY);
+                    out.writeInt(id);
+                    out.writeByte(code);
+                    out.writeInt(data.length);
+                    out.write(data);
+                    count[0]++;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        }
+        return count[0];
+    }
+
+    /**
+     * Load the newest valid snapshot in the directory.
+     * A snapshot that fails its checksum is skipped in favour of the next older one.
+     * @param directory Directory holding the snapshot files
+     * @param handler Receives each entity
+     * @return Sequence number to replay the write-ahead log from, or 1 if there is no snapshot
+     */
+    public static long loadLatest(Path directory, EntityHandler handler) throws IOException {
+        List<Path> files = listFiles(directory);
+        for (int i = files.size() - 1; i >= 0; i--) {
+            Path file = files.get(i);
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                if (!verify(channel)) {
+                    LOGGER.warn("Skipping snapshot {} with a bad checksum", file.getFileName());
+                    continue;
+                }
+                long lsn = read(channel, handler);
+                LOGGER.info("Loaded snapshot {}", file.getFileName());
+                return lsn;
+            }
+        }
+        return 1;
+    }
+
+    /**
+     * Delete all but the newest snapshots.
+     * @param directory Directory holding the snapshot files
+     * @param keep Number of snapshots to keep
+     * @return Sequence number of the oldest kept snapshot, or 1 if there is none
+     */
+    public static long deleteOlder(Path directory, int keep) throws IOException {
+        List<Path> files = listFiles(directory);
+        for (int i = 0; i < files.size() - keep; i++) {
+            Files.deleteIfExists(files.get(i));
+        }
+        if (files.isEmpty()) {
+            return 1;
+        }
+        return parseLsn(files.get(Math.max(0, files.size() - keep)));
+    }
+
+    // Check the trailing checksum against the rest of the file
+    private static boolean verify(FileChannel channel) throws IOException {
+        long size = channel.size();
+        if (size < 25) {
+            return false;
+        }
+        long body = size - 8;
+        CRC32 crc = new CRC32();
+        for (long position = 0; position < body; position += WINDOW) {
+            crc.update(channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(WINDOW, body - position)));
+        }
+        return channel.map(FileChannel.MapMode.READ_ONLY, body, 8).getLong() == crc.getValue();
+    }
+
+    private static long read(FileChannel channel, EntityHandler handler) throws IOException {
+        MappedInput in = new MappedInput(channel);
+        int version = in.readInt() == MAGIC ? in.readInt() : -1;
+        if (version != VERSION && version != VERSION_WITHOUT_ID_COUNT) {
+            throw new IOException("Not a snapshot file of a supported version");
+        }
+        long lsn = in.readLong();
+        Map<Integer, String> classNames = new HashMap<>();
+        String store = null;
+        while (true) {
+            byte tag = in.readByte();
+            if (tag == TAG_END) {
+                return lsn;
+            } else if (tag == TAG_STORE) {
+                store = in.readString();
+                if (version != VERSION_WITHOUT_ID_COUNT) {
+                    handler.idCount(store, in.readInt());
+                }
+            } else if (tag == TAG_CLASS) {
+                int code = in.readByte() & 0xff;
+                classNames.put(code, in.readString());
+            } else if (tag == TAG_ENTITY) {
+                int id = in.readInt();
+                String className = classNames.get(in.readByte() & 0xff);
+                byte[] data = in.readBytes(in.readInt());
+                handler.apply(store, id, className, data);
+            } else {
+                throw new IOException("Unknown snapshot section " + tag);
+            }
+        }
+    }
+
+    static List<Path> listFiles(Path directory) throws IOException {
+        List<Path> files = new ArrayList<>();
+        if (!Files.isDirectory(directory)) {
+            return files;
+        }
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, FILE_PREFIX + "*" + FILE_SUFFIX)) {
+            for (Path file : stream) {
+                files.add(file);
+            }
+        }
+        files.sort((a, b) -> Long.compare(parseLsn(a), parseLsn(b)));
+        return files;
+    }
+
+    private static long parseLsn(Path file) {
+        String name = file.getFileName().toString();
+        return Long.parseLong(name.substring(FILE_PREFIX.length(), name.length() - FILE_SUFFIX.length()));
+    }
+
+    private static String fileName(long lsn) {
+        return String.format("%s%020d%s", FILE_PREFIX, lsn, FILE_SUFFIX);
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeShort(bytes.length);
+        out.write(bytes);
+    }
+
+    // Sequential reader over a file mapped in windows, remapping when a read crosses a window
+    private static final class MappedInput {
+        private final FileChannel channel;
+        private final long size;
+        private long windowStart;
+        private MappedByteBuffer window;
+
+        MappedInput(FileChannel channel) throws IOException {
+            this.channel = channel;
+            this.size = channel.size();
+            map(0, 1);
+        }
+
+        byte readByte() throws IOException {
+            ensure(1);
+            return window.get();
+        }
+
+        int readInt() throws IOException {
+            ensure(4);
+            return window.getInt();
+        }
+
+        long readLong() throws IOException {
+            ensure(8);
+            return window.getLong();
+        }
+
+        String readString() throws IOException {
+            ensure(2);
+            return new String(readBytes(window.getShort() & 0xffff), StandardCharsets.UTF_8);
+        }
+
+        byte[] readBytes(int length) throws IOException {
+            ensure(length);
+            byte[] bytes = new byte[length];
+            window.get(bytes);
+            return bytes;
+        }
+
+        private void ensure(int length) throws IOException {
+            if (window.remaining() < length) {
+                map(windowStart + window.position(), length);
+            }
+        }
+
+        private void map(long position, int length) throws IOException {
+            long mapped = Math.min(Math.max(WINDOW, length), size - position);
+            if (mapped < length) {
+                throw new EOFException("Snapshot ends unexpectedly at offset " + position);
+            }
+            windowStart = position;
+            window = channel.map(FileChannel.MapMode.READ_ONLY, position, mapped);
+        }
+    }
+}
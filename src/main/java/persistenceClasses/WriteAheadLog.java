@@ -0,0 +1,450 @@
+/**
+ * Append-only, checksummed log of every write made to the entity stores.
+ * Writers queue records and a single flusher thread writes them to disk, forcing
+ * according to the configured FsyncPolicy. Records queued while a force is in
+ * progress are written and forced together (group commit).
+ *
+ * Every record is framed as [int length][int crc32][payload], where the payload is
+ * [byte op][utf store][int id][utf className][int dataLength][data]. Records carry no
+ * sequence number: the first record of a file has the sequence number in the file name
+ * and each following record the next one.
+ * Author: Rifa
+ * IIT no: 20220701
+ */
+package persistenceClasses;
+
+import daoClasses.StoreJournal;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class WriteAheadLog implements StoreJournal, Closeable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(WriteAheadLog.class);
+
+    public static final byte OP_PUT = 1;
+    public static final byte OP_REMOVE = 2;
+
+    private static final String FILE_PREFIX = "wal-";
+    private static final String FILE_SUFFIX = ".log";
+    private static final int FRAME_HEADER = 8;
+    // Upper bound on a single record, used to detect garbage lengths on replay
+    private static final int MAX_RECORD = 64 * 1024 * 1024;
+
+    // Receives the records read back by replay
+    public interface RecordHandler {
+        void apply(long lsn, byte op, String store, int id, String className, byte[] data);
+    }
+
+    // Queued in place of a frame to make the flusher start a new file
+    private static final ByteBuffer ROLL = ByteBuffer.allocate(0);
+
+    private final Path directory;
+    private final FsyncPolicy policy;
+    private final long intervalMillis;
+    private final Thread flusher;
+
+    // File currently written by the flusher, only touched by the flusher after construction
+    private FileChannel channel;
+    private long currentFirstLsn;
+
+    // Records waiting for the flusher, guarded by appendLock
+    private final Object appendLock = new Object();
+    private List<ByteBuffer> pending = new ArrayList<>();
+    private long nextLsn;
+    private boolean running = true;
+
+    // Progress of the flusher, waited on through durableLock
+    private final Object durableLock = new Object();
+    private volatile long writtenLsn;
+    private volatile long durableLsn;
+    private volatile IOException failure;
+
+    // Counters for the log written at close
+    private long batches;
+    private long records;
+
+    /**
+     * Open a new log file in the given directory.
+     * @param directory Directory holding the log files
+     * @param firstLsn Sequence number of the first record written to the new file
+     * @param policy When to force records to disk
+     * @param intervalMillis Force interval for FsyncPolicy.PER_INTERVAL
+     */
+    public WriteAheadLog(Path directory, long firstLsn, FsyncPolicy policy, long intervalMillis) throws IOException {
+        this.directory = directory;
+        this.policy = policy;
+        this.intervalMillis = Math.max(1, intervalMillis);
+        this.nextLsn = firstLsn;
+        this.writtenLsn = firstLsn - 1;
+        this.durableLsn = firstLsn - 1;
+        this.channel = openFile(firstLsn);
+        this.currentFirstLsn = firstLsn;
+        this.flusher = new Thread(this::flushLoop, "wal-flusher");
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+        LOGGER.info("Opened write-ahead log at {} starting from LSN {} with policy {}", directory, firstLsn, policy);
+    }
+
+    @Override
+    public byte[] encode(Object entity) {
+        return EntityCodec.encode(entity);
+    }
+
+    @Override
+    public long logPut(String store, int id, Object entity, byte[] encoded) {
+        return enqueue(frame(OP_PUT, store, id, entity.getClass().getName(), encoded));
+    }
+
+    @Override
+    public long logRemove(String store, int id) {
+        return enqueue(frame(OP_REMOVE, store, id, "", new byte[0]));
+    }
+
+    @Override
+    public void awaitDurable(long lsn) {
+        // Writes under the interval policy are acknowledged before they are forced
+        if (policy == FsyncPolicy.PER_INTERVAL) {
+            return;
+        }
+        if (durableLsn >= lsn) {
+            return;
+        }
+        synchronized (durableLock) {
+            while (durableLsn < lsn) {
+                if (failure != null) {
+                    throw new UncheckedIOException("Write-ahead log failed", failure);
+                }
+                try {
+                    durableLock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted while waiting for the write-ahead log", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Start a new log file for the records written from now on.
+     * Records with a lower sequence number than the returned one are all in older files.
+     * @return Sequence number of the first record in the new file
+     */
+    public long roll() {
+        synchronized (appendLock) {
+            if (!running) {
+                throw new IllegalStateException("Write-ahead log is closed");
+            }
+            pending.add(ROLL);
+            if (pending.size() == 1) {
+                appendLock.notifyAll();
+            }
+            return nextLsn;
+        }
+    }
+
+    /**
+     * Delete log files whose records all have a lower sequence number than the given one.
+     * Only files the flusher has moved past are deleted.
+     * @param lsn Sequence number below which records are no longer needed
+     */
+    public void deleteFilesBefore(long lsn) throws IOException {
+        List<Path> files = listFiles(directory);
+        for (int i = 0; i + 1 < files.size(); i++) {
+            if (parseLsn(files.get(i + 1)) <= lsn) {
+                Files.deleteIfExists(files.get(i));
+                LOGGER.info("Deleted write-ahead log file {}", files.get(i).getFileName());
+            }
+        }
+    }
+
+    // Sequence number of the last record that has been forced to disk
+    public long getDurableLsn() {
+        return durableLsn;
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (appendLock) {
+            running = false;
+            appendLock.notifyAll();
+        }
+        try {
+            flusher.join(TimeUnit.SECONDS.toMillis(30));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        channel.close();
+        LOGGER.info("Closed write-ahead log after {} records in {} batches", records, batches);
+    }
+
+    /**
+     * Read back all records from log files in the given directory.
+     * A torn or corrupt record ends its file; a torn tail is truncated so new records follow valid ones.
+     * @param directory Directory holding the log files
+     * @param fromLsn Records with a lower sequence number are skipped
+     * @param handler Receives each record in order
+     * @return Sequence number to use for the next record
+     */
+    public static long replay(Path directory, long fromLsn, RecordHandler handler) throws IOException {
+        return replay(directory, fromLsn, true, handler);
+    }
+
+    /**
+     * Read back all records from log files in the given directory.
+     * A torn or corrupt record ends its file.
+     * @param directory Directory holding the log files
+     * @param fromLsn Records with a lower sequence number are skipped
+     * @param repair True to truncate a torn tail, False to leave the files untouched,
+     *                 as when reading the log of a server that may still be appending to it
+     * @param handler Receives each record in order
+     * @return Sequence number to use for the next record
+     */
+    public static long replay(Path directory, long fromLsn, boolean repair, RecordHandler handler) throws IOException {
+        long nextLsn = fromLsn;
+        for (Path file : listFiles(directory)) {
+            long lsn = parseLsn(file);
+            long validBytes = 0;
+            try (InputStream in = Files.newInputStream(file);
+                    DataInputStream data = new DataInputStream(new BufferedInputStream(in, 1 << 16))) {
+                while (true) {
+                    int length;
+                    try {
+                        length = data.readInt();
+                    } catch (EOFException e) {
+                        break;
+                    }
+                    if (length <= 0 || length > MAX_RECORD) {
+                        LOGGER.warn("Invalid record length {} in {} at offset {}", length, file, validBytes);
+                        break;
+                    }
+                    byte[] payload = new byte[length];
+                    int checksum;
+                    try {
+                        checksum = data.readInt();
+                        data.readFully(payload);
+                    } catch (EOFException e) {
+                        LOGGER.warn("Torn record in {} at offset {}", file, validBytes);
+                        break;
+                    }
+                    CRC32 crc = new CRC32();
+                    crc.update(payload, 0, payload.length);
+                    if ((int) crc.getValue() != checksum) {
+                        LOGGER.warn("Checksum mismatch in {} at offset {}", file, validBytes);
+                        break;
+                    }
+                    if (lsn >= fromLsn) {
+                        apply(lsn, payload, handler);
+                    }
+                    validBytes += FRAME_HEADER + length;
+                    lsn++;
+                }
+            }
+            if (repair && validBytes < Files.size(file)) {
+                try (FileChannel truncate = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                    truncate.truncate(validBytes);
+                }
+            }
+            nextLsn = Math.max(nextLsn, lsn);
+        }
+        return nextLsn;
+    }
+
+    // Log files in the directory, ordered by their first sequence number
+    static List<Path> listFiles(Path directory) throws IOException {
+        List<Path> files = new ArrayList<>();
+        if (!Files.isDirectory(directory)) {
+            return files;
+        }
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, FILE_PREFIX + "*" + FILE_SUFFIX)) {
+            for (Path file : stream) {
+                files.add(file);
+            }
+        }
+        files.sort((a, b) -> Long.compare(parseLsn(a), parseLsn(b)));
+        return files;
+    }
+
+    static long parseLsn(Path file) {
+        String name = file.getFileName().toString();
+        return Long.parseLong(name.substring(FILE_PREFIX.length(), name.length() - FILE_SUFFIX.length()));
+    }
+
+    static String fileName(long firstLsn) {
+        return String.format("%s%020d%s", FILE_PREFIX, firstLsn, FILE_SUFFIX);
+    }
+
+    private static void apply(long lsn, byte[] payload, RecordHandler handler) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        byte op = in.readByte();
+        String store = in.readUTF();
+        int id = in.readInt();
+        String className = in.readUTF();
+        byte[] data = new byte[in.readInt()];
+        in.readFully(data);
+        handler.apply(lsn, op, store, id, className, data);
+    }
+
+    // Build a checksummed frame for one record
+    private static ByteBuffer frame(byte op, String store, int id, String className, byte[] data) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(FRAME_HEADER + 32 + data.length);
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeLong(0); // placeholder for length and checksum
+            out.writeByte(op);
+            out.writeUTF(store);
+            out.writeInt(id);
+            out.writeUTF(className);
+            out.writeInt(data.length);
+            out.write(data);
+            byte[] frame = bytes.toByteArray();
+            CRC32 crc = new CRC32();
+            crc.update(frame, FRAME_HEADER, frame.length - FRAME_HEADER);
+            ByteBuffer buffer = ByteBuffer.wrap(frame);
+            buffer.putInt(0, frame.length - FRAME_HEADER);
+            buffer.putInt(4, (int) crc.getValue());
+            return buffer;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Queue a frame for the flusher and assign it the next sequence number
+    private long enqueue(ByteBuffer frame) {
+        synchronized (appendLock) {
+            if (!running) {
+                throw new IllegalStateException("Write-ahead log is closed");
+            }
+            if (failure != null) {
+                throw new UncheckedIOException("Write-ahead log failed", failure);
+            }
+            pending.add(frame);
+            if (pending.size() == 1) {
+                appendLock.notifyAll();
+            }
+            return nextLsn++;
+        }
+    }
+
+    private void flushLoop() {
+        long lastForce = System.nanoTime();
+        // Sequence number of the next frame the flusher writes
+        long lsn = currentFirstLsn;
+        try {
+            while (true) {
+                List<ByteBuffer> batch;
+                synchronized (appendLock) {
+                    while (pending.isEmpty() && running && !forceDue(lastForce)) {
+                        appendLock.wait(policy == FsyncPolicy.PER_INTERVAL ? intervalMillis : 0);
+                    }
+                    if (pending.isEmpty() && !running) {
+                        break;
+                    }
+                    batch = pending;
+                    pending = new ArrayList<>();
+                }
+                int frames = 0;
+                for (ByteBuffer frame : batch) {
+                    if (frame == ROLL) {
+                        rollTo(lsn);
+                        continue;
+                    }
+                    write(frame);
+                    if (policy == FsyncPolicy.PER_WRITE) {
+                        channel.force(false);
+                        markDurable(lsn);
+                    }
+                    lsn++;
+                    frames++;
+                }
+                writtenLsn = lsn - 1;
+                if (policy == FsyncPolicy.PER_BATCH || forceDue(lastForce)) {
+                    channel.force(false);
+                    lastForce = System.nanoTime();
+                    markDurable(lsn - 1);
+                }
+                batches++;
+                records += frames;
+            }
+            // Force whatever the interval policy has not forced yet
+            if (writtenLsn > durableLsn) {
+                channel.force(false);
+                markDurable(writtenLsn);
+            }
+        } catch (IOException e) {
+            LOGGER.error("Write-ahead log failed: {}", e.getMessage(), e);
+            fail(e);
+        } catch (InterruptedException e) {
+            // Without a flusher nothing becomes durable again, so fail waiting and later writers
+            LOGGER.error("Write-ahead log flusher was interrupted");
+            InterruptedIOException failed = new InterruptedIOException("Write-ahead log flusher was interrupted");
+            failed.initCause(e);
+            fail(failed);
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Record the failure and wake every writer waiting for durability, so they throw it
+    private void fail(IOException e) {
+        synchronized (durableLock) {
+            failure = e;
+            durableLock.notifyAll();
+        }
+    }
+
+    // Force and close the current file and continue in a new one starting at the given sequence number
+    private void rollTo(long firstLsn) throws IOException {
+        if (firstLsn == currentFirstLsn) {
+            return;
+        }
+        channel.force(false);
+        markDurable(firstLsn - 1);
+        channel.close();
+        channel = openFile(firstLsn);
+        currentFirstLsn = firstLsn;
+    }
+
+    private boolean forceDue(long lastForce) {
+        return policy == FsyncPolicy.PER_INTERVAL && writtenLsn > durableLsn
+                && System.nanoTime() - lastForce >= TimeUnit.MILLISECONDS.toNanos(intervalMillis);
+    }
+
+    private FileChannel openFile(long firstLsn) throws IOException {
+        return FileChannel.open(directory.resolve(fileName(firstLsn)),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    private void write(ByteBuffer frame) throws IOException {
+        while (frame.hasRemaining()) {
+            channel.write(frame);
+        }
+    }
+
+    private void markDurable(long lsn) {
+        synchronized (durableLock) {
+            writtenLsn = Math.max(writtenLsn, lsn);
+            durableLsn = lsn;
+            durableLock.notifyAll();
+        }
+    }
+}
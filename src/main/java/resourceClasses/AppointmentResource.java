@@ -9,11 +9,15 @@ package resourceClasses;
 
 import daoClasses.AppointmentDAO;
 import daoClasses.DoctorDAO;
+import daoClasses.Lookup;
 import daoClasses.PatientDAO;
+import daoClasses.PersonLocks;
 import exceptionClasses.AlreadyExistsException;
 import exceptionClasses.InvalidDataException;
 import exceptionClasses.NotFoundException;
 import modelClasses.Appointment;
+import java.util.ArrayList;
+import java.util.List;
 import javax.ws.rs.Consumes;
 import javax.ws.rs.DELETE;
 import javax.ws.rs.GET;
@@ -22,9 +26,14 @@ import javax.ws.rs.PUT;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
 import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.UriInfo;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -37,10 +46,20 @@ public class AppointmentResource {
     @GET
     @Path("/all")
     @Produces(MediaType.APPLICATION_JSON)
-    public Response getAllAppointments() {
+    public Response getAllAppointments(@QueryParam("limit") Integer limit, @QueryParam("after") int after,
+            @QueryParam("stream") boolean stream, @Context UriInfo uriInfo) {
+        // Page through in ID order when a limit or cursor is given
+        int pageSize = Pagination.pageSize(limit, after);
+        if (pageSize > 0) {
+            return Pagination.ok(AppointmentDAO.getAppointmentsPage(after, pageSize), pageSize, uriInfo);
+        }
+        // Stream the whole collection one entity at a time for bulk consumers
+        if (stream) {
+            return JsonStreaming.ok(AppointmentDAO.getAppointments());
+        }
         try {
             return Response.status(Response.Status.OK)
-                    .entity(AppointmentDAO.getAppointments().values())
+                    .entity(AppointmentDAO.getAppointments())
                     .build();
         } catch (Exception e) {
             LOGGER.error("Failed to retrieve all appointments: {}", e.getMessage(), e);
@@ -49,18 +68,79 @@ public class AppointmentResource {
         }
     }
 
+    // Retrieve appointments by patient, doctor and/or start time range, using the DAO indexes
+    // from and to are dates with an optional time, such as 2024-03-05 or 2024-03-05T09:00
+    @GET
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response findAppointments(@QueryParam("ids") String ids,
+            @QueryParam("patientId") int patientId, @QueryParam("doctorId") int doctorId,
+            @QueryParam("from") String from, @QueryParam("to") String to) {
+        // Many appointments by ID in one call; IDs not found are listed as missing
+        if (ids != null) {
+            int[] idList = MultiGet.parse(ids);
+            Lookup<Appointment> found = AppointmentDAO.getAppointmentsByIds(idList);
+            LOGGER.info("Found {} of {} appointments by ID", found.getItems().size(), idList.length);
+            return MultiGet.ok(found);
+        }
+        List<Appointment> result;
+        if (from != null || to != null) {
+            int fromMinute = from != null ? parseMinute("from", from) : Integer.MIN_VALUE + 1;
+            int toMinute = to != null ? parseMinute("to", to) : Integer.MAX_VALUE;
+            result = AppointmentDAO.getAppointmentsBetween(fromMinute, toMinute, Math.max(doctorId, 0));
+            if (patientId > 0) {
+                result.removeIf(item -> item.getPatientId() != patientId);
+            }
+        } else if (patientId > 0) {
+            result = AppointmentDAO.getAppointmentsByPatient(patientId);
+            if (doctorId > 0) {
+                result.removeIf(item -> item.getDoctorId() != doctorId);
+            }
+        } else if (doctorId > 0) {
+            result = AppointmentDAO.getAppointmentsByDoctor(doctorId);
+        } else {
+            throw new InvalidDataException("patientId, doctorId, from or to is required");
+        }
+        LOGGER.info("Found {} appointments for patient {}, doctor {}, from {} to {}",
+                result.size(), patientId, doctorId, from, to);
+        return Response.status(Response.Status.OK)
+                .entity(result)
+                .build();
+    }
+
+    // Retrieve many appointments by ID when the list is too long for ?ids=; the body is a JSON array of IDs
+    @POST
+    @Path("/ids")
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response lookupAppointments(List<Integer> ids) {
+        Lookup<Appointment> found = AppointmentDAO.getAppointmentsByIds(MultiGet.of(ids));
+        LOGGER.info("Found {} of {} appointments by ID", found.getItems().size(), ids.size());
+        return MultiGet.ok(found);
+    }
+
+    // Parse a range bound into minutes since the epoch
+    private static int parseMinute(String name, String value) {
+        int separator = value.indexOf('T');
+        int minute = separator < 0
+                ? Appointment.toEpochMinute(value, null)
+                : Appointment.toEpochMinute(value.substring(0, separator), value.substring(separator + 1));
+        if (minute == Appointment.NO_TIME) {
+            throw new InvalidDataException("Invalid " + name + " date: " + value);
+        }
+        return minute;
+    }
+
     //retrieve appointment by Id
     @GET
     @Path("/{id}")
     @Produces(MediaType.APPLICATION_JSON)
-    public Response getAppointmentById(@PathParam("id") int id) {
+    public Response getAppointmentById(@PathParam("id") int id, @Context Request request) {
         try {
             Appointment appointment = AppointmentDAO.getAppointmentById(id);
             if (appointment != null){
                 LOGGER.info("Appointment no. "+ id + " is found");
-                return Response.status(Response.Status.OK)
-                        .entity(appointment)
-                        .build();
+                // 304 without serializing when the client already has this version
+                return EntityTags.ok(request, AppointmentDAO.STORE_NAME, id, appointment, appointment.getPatient(), appointment.getDoctor());
             } 
             else{ 
                 LOGGER.error("Failed to retrieve appointment by number{}: {}", id);
@@ -83,30 +163,33 @@ public class AppointmentResource {
     @Produces(MediaType.APPLICATION_JSON)
        public Response addAppointment(Appointment appointment) {
         try {
-            //check if the doctor exists
-            int docId  = appointment.getDoctor().getId();
-            if (!DoctorDAO.doctorExists(docId)){
-                LOGGER.warn("Doctor not found for ID: " + docId);
-                throw new NotFoundException("Doctor not found for ID: " + docId);
-            }
-            //check if the patient exists
-            int patId  = appointment.getPatient().getId();
-            if (!PatientDAO.patientExists(patId)){
-                LOGGER.warn("Patient not found for ID: " + patId);
-                throw new NotFoundException("Patient not found for ID: " + patId);
-            }
-            //check if an appointment already exist
-            if (AppointmentDAO.appointmentExists(appointment.getAppointmentNo())){
-                LOGGER.warn("Appointment no. already exists", appointment.getAppointmentNo());
-                throw new AlreadyExistsException("Appointment no. " + appointment.getAppointmentNo() + " already exists");
-            }
-            //check if appointment data is valid
-            if (!AppointmentDAO.isValidAppointment(appointment)) {
-                LOGGER.warn("Invalid data for appointment");
-                throw new InvalidDataException("Invalid data for appointment");
-            }
-            //add the appointment
-            AppointmentDAO.addAppointment(appointment);
+            int docId  = appointment.getDoctorId();
+            int patId  = appointment.getPatientId();
+            // The patient and doctor cannot be deleted between these checks and the add
+            PersonLocks.whileReferenced(() -> {
+                //check if the doctor exists
+                if (!DoctorDAO.doctorExists(docId)){
+                    LOGGER.warn("Doctor not found for ID: " + docId);
+                    throw new NotFoundException("Doctor not found for ID: " + docId);
+                }
+                //check if the patient exists
+                if (!PatientDAO.patientExists(patId)){
+                    LOGGER.warn("Patient not found for ID: " + patId);
+                    throw new NotFoundException("Patient not found for ID: " + patId);
+                }
+                //check if an appointment already exist
+                if (AppointmentDAO.appointmentExists(appointment.getAppointmentNo())){
+                    LOGGER.warn("Appointment no. already exists", appointment.getAppointmentNo());
+                    throw new AlreadyExistsException("Appointment no. " + appointment.getAppointmentNo() + " already exists");
+                }
+                //check if appointment data is valid
+                if (!AppointmentDAO.isValidAppointment(appointment)) {
+                    LOGGER.warn("Invalid data for appointment");
+                    throw new InvalidDataException("Invalid data for appointment");
+                }
+                //add the appointment
+                AppointmentDAO.addAppointment(appointment);
+            }, docId, patId);
             
             LOGGER.info("Appointment added successfully: {}", appointment);
             return Response.status(Response.Status.CREATED)
@@ -117,13 +200,47 @@ public class AppointmentResource {
             throw e;
         }
     }
+
+    // Create many appointments in one request; each item is checked like /add and gets its own result
+    @POST
+    @Path("/batch")
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response addAppointments(List<Appointment> appointments) {
+        Batch<Appointment> batch = new Batch<>(appointments);
+        // Checked and added as one, so no patient or doctor is deleted in between
+        List<Appointment> accepted = new ArrayList<>();
+        PersonLocks.whileReferenced(() -> {
+            for (int i = 0; i < appointments.size(); i++) {
+                Appointment item = appointments.get(i);
+                if (item == null || !AppointmentDAO.isValidAppointment(item)) {
+                    batch.reject(i, Response.Status.BAD_REQUEST, "Invalid data for appointment");
+                } else if (!DoctorDAO.doctorExists(item.getDoctorId())) {
+                    batch.reject(i, Response.Status.NOT_FOUND, "Doctor not found for ID: " + item.getDoctorId());
+                } else if (!PatientDAO.patientExists(item.getPatientId())) {
+                    batch.reject(i, Response.Status.NOT_FOUND, "Patient not found for ID: " + item.getPatientId());
+                } else if (AppointmentDAO.appointmentExists(item.getAppointmentNo())) {
+                    batch.reject(i, Response.Status.CONFLICT, "Appointment no. " + item.getAppointmentNo() + " already exists");
+                }
+            }
+            accepted.addAll(batch.accepted());
+            if (!accepted.isEmpty()) {
+                AppointmentDAO.addAppointments(accepted);
+            }
+        }, PersonLocks.idsOf(appointments, Appointment::getPatientId, Appointment::getDoctorId));
+        LOGGER.info("Added batch of {} appointments, {} rejected", accepted.size(), appointments.size() - accepted.size());
+        return batch.toResponse(Appointment::getAppointmentNo);
+    }
      
      //update appointment  
     @PUT
     @Path("/update/{id}")
     @Consumes(MediaType.APPLICATION_JSON)
     @Produces(MediaType.APPLICATION_JSON)
-    public Response updateAppointment(@PathParam("id") int id, Appointment appointment) {
+    public Response updateAppointment(@PathParam("id") int id, Appointment appointment,
+            @Context HttpHeaders headers) {
+        // Only update the version the client last saw when it sends If-Match
+        long expectedVersion = EntityTags.expectedVersion(headers, id);
         try {
             //check if the appointment no already exists
             if (AppointmentDAO.appointmentExists(appointment.getAppointmentNo())){
@@ -137,11 +254,12 @@ public class AppointmentResource {
             }
             
             //update the appointment
-            AppointmentDAO.updateAppointment(id, appointment);
+            AppointmentDAO.updateAppointment(id, appointment, expectedVersion);
             
             LOGGER.info("Updated appointment successfully: {}", appointment);
             return Response.status(Response.Status.OK)
                     .entity("Appointment with appointment no: " + appointment.getAppointmentNo() + " updated successfully ")
+                    .tag(EntityTags.of(id, appointment.getVersion()))
                     .build();
         } catch (NotFoundException | InvalidDataException e) {
             LOGGER.error("Failed to update appointment: {}", e.getMessage(), e);
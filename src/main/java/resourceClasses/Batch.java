@@ -0,0 +1,88 @@
+/**
+ * Per-item bookkeeping for the POST /{resource}/batch endpoints: items are validated
+ * one by one, the accepted ones are added in a single DAO call, and every item gets
+ * its own result in the response.
+ * Author: Rifa
+ * IIT No: 20220701
+ */
+
+package resourceClasses;
+
+import exceptionClasses.InvalidDataException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.ToIntFunction;
+import javax.ws.rs.core.Response;
+
+final class Batch<T> {
+
+    // Largest number of items accepted in one request
+    static final int MAX_SIZE = 10000;
+
+    private final List<T> items;
+    // Rejection of each item, null while it is accepted
+    private final Map<String, Object>[] rejections;
+
+    Batch(List<T> items) {
+        if (items == null || items.isEmpty()) {
+            throw new InvalidDataException("Batch must contain at least one item");
+        }
+        if (items.size() > MAX_SIZE) {
+            throw new InvalidDataException("Batch must not contain more than " + MAX_SIZE + " items");
+        }
+        this.items = items;
+        @SuppressWarnings("unchecked")
+        Map<String, Object>[] rejections = (Map<String, Object>[]) new Map<?, ?>[items.size()];
+        this.rejections = rejections;
+    }
+
+    // Reject one item with the status and message a single add would have failed with
+    void reject(int index, Response.Status status, String error) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("index", index);
+        result.put("status", status.getStatusCode());
+        result.put("error", error);
+        rejections[index] = result;
+    }
+
+    // Items not rejected, in request order
+    List<T> accepted() {
+        List<T> accepted = new ArrayList<>(items.size());
+        for (int i = 0; i < items.size(); i++) {
+            if (rejections[i] == null) {
+                accepted.add(items.get(i));
+            }
+        }
+        return accepted;
+    }
+
+    /**
+     * Build the response once the accepted items were added.
+     * @param id Reads the ID an added item was given
+     * @return 200 with the number of created and rejected items and a result per item
+     */
+    Response toResponse(ToIntFunction<T> id) {
+        List<Map<String, Object>> results = new ArrayList<>(items.size());
+        int created = 0;
+        for (int i = 0; i < items.size(); i++) {
+            Map<String, Object> result = rejections[i];
+            if (result == null) {
+                result = new LinkedHashMap<>();
+                result.put("index", i);
+                result.put("status", Response.Status.CREATED.getStatusCode());
+                result.put("id", id.applyAsInt(items.get(i)));
+                created++;
+            }
+            results.add(result);
+        }
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("created", created);
+        body.put("rejected", items.size() - created);
+        body.put("results", results);
+        return Response.status(Response.Status.OK)
+                .entity(body)
+                .build();
+    }
+}
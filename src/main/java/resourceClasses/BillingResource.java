@@ -9,10 +9,14 @@ package resourceClasses;
 
 import daoClasses.BillingDAO;
 import daoClasses.DoctorDAO;
+import daoClasses.Lookup;
 import daoClasses.PatientDAO;
+import daoClasses.PersonLocks;
 import exceptionClasses.AlreadyExistsException;
 import exceptionClasses.InvalidDataException;
 import exceptionClasses.NotFoundException;
+import java.util.ArrayList;
+import java.util.List;
 import javax.ws.rs.Consumes;
 import javax.ws.rs.DELETE;
 import javax.ws.rs.GET;
@@ -21,9 +25,14 @@ import javax.ws.rs.PUT;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
 import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.UriInfo;
 import modelClasses.Billing;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -38,11 +47,21 @@ public class BillingResource {
     @GET
     @Path("/all")
     @Produces(MediaType.APPLICATION_JSON)
-    public Response getAllBillings() {
+    public Response getAllBillings(@QueryParam("limit") Integer limit, @QueryParam("after") int after,
+            @QueryParam("stream") boolean stream, @Context UriInfo uriInfo) {
+        // Page through in ID order when a limit or cursor is given
+        int pageSize = Pagination.pageSize(limit, after);
+        if (pageSize > 0) {
+            return Pagination.ok(BillingDAO.getBillsPage(after, pageSize), pageSize, uriInfo);
+        }
+        // Stream the whole collection one entity at a time for bulk consumers
+        if (stream) {
+            return JsonStreaming.ok(BillingDAO.getBills());
+        }
         try {
             LOGGER.info("Retrieved all bills");
             return Response.status(Response.Status.OK)
-                    .entity(BillingDAO.getBills().values())
+                    .entity(BillingDAO.getBills())
                     .build();
         } catch (Exception e) {
             LOGGER.error("Failed to retrieve all bills: {}", e.getMessage(), e);
@@ -51,18 +70,58 @@ public class BillingResource {
         }
     }
 
+    // Retrieve the bills of a patient and/or a doctor, using the DAO indexes
+    @GET
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response findBillings(@QueryParam("ids") String ids,
+            @QueryParam("patientId") int patientId, @QueryParam("doctorId") int doctorId) {
+        // Many bills by ID in one call; IDs not found are listed as missing
+        if (ids != null) {
+            int[] idList = MultiGet.parse(ids);
+            Lookup<Billing> found = BillingDAO.getBillsByIds(idList);
+            LOGGER.info("Found {} of {} bills by ID", found.getItems().size(), idList.length);
+            return MultiGet.ok(found);
+        }
+        if (patientId <= 0 && doctorId <= 0) {
+            throw new InvalidDataException("patientId or doctorId is required");
+        }
+        List<Billing> result;
+        if (patientId > 0) {
+            result = BillingDAO.getBillsByPatient(patientId);
+            if (doctorId > 0) {
+                result.removeIf(item -> item.getDoctorId() != doctorId);
+            }
+        } else {
+            result = BillingDAO.getBillsByDoctor(doctorId);
+        }
+        LOGGER.info("Found {} bills for patient {} and doctor {}", result.size(), patientId, doctorId);
+        return Response.status(Response.Status.OK)
+                .entity(result)
+                .build();
+    }
+
+    // Retrieve many bills by ID when the list is too long for ?ids=; the body is a JSON array of IDs
+    @POST
+    @Path("/ids")
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response lookupBills(List<Integer> ids) {
+        Lookup<Billing> found = BillingDAO.getBillsByIds(MultiGet.of(ids));
+        LOGGER.info("Found {} of {} bills by ID", found.getItems().size(), ids.size());
+        return MultiGet.ok(found);
+    }
+
     // Retrieve bill by Id
     @GET
     @Path("/{id}")
     @Produces(MediaType.APPLICATION_JSON)
-    public Response getBillingById(@PathParam("id") int id) {
+    public Response getBillingById(@PathParam("id") int id, @Context Request request) {
         try {
             Billing billing = BillingDAO.getBillById(id);
             if (billing != null) {
                 LOGGER.info("Bill with Id "+ id + " is found");
-                return Response.status(Response.Status.OK)
-                        .entity(billing)
-                        .build();
+                // 304 without serializing when the client already has this version
+                return EntityTags.ok(request, BillingDAO.STORE_NAME, id, billing, billing.getPatient(), billing.getDoctor());
             } else {
                 LOGGER.error("Failed to retrieve bill by ID {}: {}", id);
                 throw new NotFoundException("Bill with id " + id + " not found");
@@ -84,30 +143,33 @@ public class BillingResource {
     @Produces(MediaType.APPLICATION_JSON)
     public Response addBilling(Billing billing) {
         try {
-            // Check if the doctor exists
-            int docId  = billing.getDoctor().getId();
-            if (!DoctorDAO.doctorExists(docId)){
-                LOGGER.warn("Doctor not found for ID: " + docId);
-                throw new NotFoundException("Doctor not found for ID: " + docId);
-            }
-            // Check if the patient exists
-            int patId  = billing.getPatient().getId();
-            if (!PatientDAO.patientExists(patId)){
-                LOGGER.warn("Patient not found for ID: " + patId);
-                throw new NotFoundException("Patient not found for ID: " + patId);
-            }
-            // Check if the bill exists
-            if (BillingDAO.billExists(billing.getRefID())) {
-                LOGGER.warn("Bill with ref ID {} already exists", billing.getRefID());
-                throw new AlreadyExistsException("Bill with ref ID " + billing.getRefID()+ " already exists");
-            }
-            // Check if the billing data is valid
-            if (!BillingDAO.isValidBilling(billing)) {
-                LOGGER.warn("Invalid data for person: {}", billing);
-                throw new InvalidDataException("Invalid data for person");
-            }
-            // Add the billing
-            BillingDAO.addBill(billing);
+            int docId  = billing.getDoctorId();
+            int patId  = billing.getPatientId();
+            // The patient and doctor cannot be deleted between these checks and the add
+            PersonLocks.whileReferenced(() -> {
+                // Check if the doctor exists
+                if (!DoctorDAO.doctorExists(docId)){
+                    LOGGER.warn("Doctor not found for ID: " + docId);
+                    throw new NotFoundException("Doctor not found for ID: " + docId);
+                }
+                // Check if the patient exists
+                if (!PatientDAO.patientExists(patId)){
+                    LOGGER.warn("Patient not found for ID: " + patId);
+                    throw new NotFoundException("Patient not found for ID: " + patId);
+                }
+                // Check if the bill exists
+                if (BillingDAO.billExists(billing.getRefID())) {
+                    LOGGER.warn("Bill with ref ID {} already exists", billing.getRefID());
+                    throw new AlreadyExistsException("Bill with ref ID " + billing.getRefID()+ " already exists");
+                }
+                // Check if the billing data is valid
+                if (!BillingDAO.isValidBilling(billing)) {
+                    LOGGER.warn("Invalid data for person: {}", billing);
+                    throw new InvalidDataException("Invalid data for person");
+                }
+                // Add the billing
+                BillingDAO.addBill(billing);
+            }, docId, patId);
             LOGGER.info("Added new billing successfully: {}", billing);
             return Response.status(Response.Status.CREATED).entity("Billing created successfully: " + billing).build();
         } catch (AlreadyExistsException | InvalidDataException  e) {
@@ -115,13 +177,47 @@ public class BillingResource {
             throw e;
         }
     }
+
+    // Create many bills in one request; each item is checked like /add and gets its own result
+    @POST
+    @Path("/batch")
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response addBills(List<Billing> bills) {
+        Batch<Billing> batch = new Batch<>(bills);
+        // Checked and added as one, so no patient or doctor is deleted in between
+        List<Billing> accepted = new ArrayList<>();
+        PersonLocks.whileReferenced(() -> {
+            for (int i = 0; i < bills.size(); i++) {
+                Billing item = bills.get(i);
+                if (item == null || !BillingDAO.isValidBilling(item)) {
+                    batch.reject(i, Response.Status.BAD_REQUEST, "Invalid data for billing");
+                } else if (!DoctorDAO.doctorExists(item.getDoctorId())) {
+                    batch.reject(i, Response.Status.NOT_FOUND, "Doctor not found for ID: " + item.getDoctorId());
+                } else if (!PatientDAO.patientExists(item.getPatientId())) {
+                    batch.reject(i, Response.Status.NOT_FOUND, "Patient not found for ID: " + item.getPatientId());
+                } else if (BillingDAO.billExists(item.getRefID())) {
+                    batch.reject(i, Response.Status.CONFLICT, "Bill with ref ID " + item.getRefID() + " already exists");
+                }
+            }
+            accepted.addAll(batch.accepted());
+            if (!accepted.isEmpty()) {
+                BillingDAO.addBills(accepted);
+            }
+        }, PersonLocks.idsOf(bills, Billing::getPatientId, Billing::getDoctorId));
+        LOGGER.info("Added batch of {} bills, {} rejected", accepted.size(), bills.size() - accepted.size());
+        return batch.toResponse(Billing::getRefID);
+    }
     
     //update billing
     @PUT
     @Path("/update/{id}")
     @Consumes(MediaType.APPLICATION_JSON)
     @Produces(MediaType.APPLICATION_JSON)
-    public Response updateBilling(@PathParam("id") int id, Billing updatedBilling) {
+    public Response updateBilling(@PathParam("id") int id, Billing updatedBilling,
+            @Context HttpHeaders headers) {
+        // Only update the version the client last saw when it sends If-Match
+        long expectedVersion = EntityTags.expectedVersion(headers, id);
         try {
             //check if bill exists
             if (!BillingDAO.billExists(id)) {
@@ -134,11 +230,12 @@ public class BillingResource {
                 throw new InvalidDataException("Invalid data for billing");
             }
             // Update the billing
-            BillingDAO.updateBill(id, updatedBilling);
+            BillingDAO.updateBill(id, updatedBilling, expectedVersion);
             
             LOGGER.info("Updated bill successfully: {}", updatedBilling);
             return Response.status(Response.Status.OK)
                     .entity("Billing with ref ID " + id + " was updated")
+                    .tag(EntityTags.of(id, updatedBilling.getVersion()))
                     .build();
         } catch (NotFoundException | InvalidDataException e) {
             LOGGER.error("Failed to update bill: {}", e.getMessage(), e);
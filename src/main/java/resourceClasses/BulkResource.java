@@ -0,0 +1,92 @@
+/**
+ * Resource class for bulk imports of NDJSON or CSV rows.
+ * Author: Rifa
+ * IIT No: 20220701
+ */
+
+package resourceClasses;
+
+import bulkClasses.BulkEntity;
+import bulkClasses.BulkFormat;
+import bulkClasses.BulkImport;
+import exceptionClasses.InvalidDataException;
+import exceptionClasses.NotFoundException;
+import java.io.InputStream;
+import java.util.Map;
+import javax.ws.rs.Consumes;
+import javax.ws.rs.GET;
+import javax.ws.rs.POST;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+@Path("/bulk")
+public class BulkResource {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(BulkResource.class);
+
+    /**
+     * Import rows into one of the stores, e.g. POST /bulk/patients with a text/csv body.
+     * The request returns when the whole body has been imported; its progress can be
+     * followed meanwhile under /bulk/jobs.
+     * @param name Entity to import, named like its resource path
+     * @param keepIds True to keep the IDs in the rows, so later files can refer to them
+     * @param headers Headers holding the content type of the body
+     * @param body Rows, one JSON object per line or CSV with a header row
+     * @return The import report, 200 when the input was read to the end, 500 otherwise
+     */
+    @POST
+    @Path("/{entity}")
+    @Consumes({"application/x-ndjson", "text/csv"})
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response importRows(@PathParam("entity") String name, @QueryParam("keepIds") boolean keepIds,
+            @Context HttpHeaders headers, InputStream body) {
+        BulkEntity<?> entity = BulkEntity.forName(name);
+        if (entity == null) {
+            LOGGER.warn("No bulk import for: {}", name);
+            throw new NotFoundException("No bulk import for: " + name);
+        }
+        BulkFormat format = BulkFormat.forMediaType(headers.getMediaType());
+        if (format == null) {
+            throw new InvalidDataException("Unsupported bulk format: " + headers.getMediaType());
+        }
+        BulkImport job = BulkImport.create(entity, format, keepIds);
+        Map<String, Object> report = job.run(body);
+        Response.Status status = job.getStatus() == BulkImport.Status.COMPLETED
+                ? Response.Status.OK : Response.Status.INTERNAL_SERVER_ERROR;
+        return Response.status(status)
+                .entity(report)
+                .build();
+    }
+
+    // Retrieve the reports of running and recent imports
+    @GET
+    @Path("/jobs")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response getJobs() {
+        return Response.status(Response.Status.OK)
+                .entity(BulkImport.getReports())
+                .build();
+    }
+
+    // Retrieve the report of one import, also while it runs
+    @GET
+    @Path("/jobs/{id}")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response getJob(@PathParam("id") int id) {
+        BulkImport job = BulkImport.get(id);
+        if (job == null) {
+            throw new NotFoundException("Bulk import not found for ID: " + id);
+        }
+        return Response.status(Response.Status.OK)
+                .entity(job.getReport())
+                .build();
+    }
+}
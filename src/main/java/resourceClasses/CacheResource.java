@@ -0,0 +1,28 @@
+/**
+ * Resource class exposing the response cache counters.
+ * Author: Rifa
+ * IIT No: 20220701
+ */
+
+package resourceClasses;
+
+import cacheClasses.ResponseCache;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+
+@Path("/cache")
+public class CacheResource {
+
+    // Retrieve hit, miss and eviction counts and the current size of the response cache
+    @GET
+    @Path("/stats")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response getStats() {
+        return Response.status(Response.Status.OK)
+                .entity(ResponseCache.getStats())
+                .build();
+    }
+}
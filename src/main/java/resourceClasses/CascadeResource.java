@@ -0,0 +1,63 @@
+/**
+ * Resource class reporting on the cascading deletes of patients and doctors.
+ * Author: Rifa
+ * IIT No: 20220701
+ */
+
+package resourceClasses;
+
+import daoClasses.CascadeDelete;
+import exceptionClasses.NotFoundException;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.UriInfo;
+
+@Path("/cascades")
+public class CascadeResource {
+
+    // Retrieve the reports of running and recent cascades
+    @GET
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response getCascades() {
+        return Response.status(Response.Status.OK)
+                .entity(CascadeDelete.getReports())
+                .build();
+    }
+
+    // Retrieve the report of one cascade, also while it runs
+    @GET
+    @Path("/{id}")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response getCascade(@PathParam("id") int id) {
+        CascadeDelete cascade = CascadeDelete.get(id);
+        if (cascade == null) {
+            throw new NotFoundException("Cascade not found for ID: " + id);
+        }
+        return Response.status(Response.Status.OK)
+                .entity(cascade.getReport())
+                .build();
+    }
+
+    // Build the response to a cascading delete: 200 with the report once done,
+    // or 202 with a link to follow the report while it runs in the background
+    static Response accepted(CascadeDelete cascade, UriInfo uriInfo) {
+        if (!cascade.isBackground()) {
+            return Response.status(Response.Status.OK)
+                    .entity(cascade.getReport())
+                    .type(MediaType.APPLICATION_JSON)
+                    .build();
+        }
+        return Response.status(Response.Status.ACCEPTED)
+                .entity(cascade.getReport())
+                .type(MediaType.APPLICATION_JSON)
+                .location(uriInfo.getBaseUriBuilder()
+                        .path(CascadeResource.class)
+                        .path(String.valueOf(cascade.getId()))
+                        .build())
+                .build();
+    }
+}
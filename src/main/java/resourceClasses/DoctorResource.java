@@ -7,11 +7,14 @@
 
 package resourceClasses;
 
-import daoClasses.DoctorDAO;
+import daoClasses.Lookup;
 import daoClasses.PersonDAO;
+import daoClasses.DoctorDAO;
 import exceptionClasses.AlreadyExistsException;
+import exceptionClasses.ConflictException;
 import exceptionClasses.InvalidDataException;
 import exceptionClasses.NotFoundException;
+import java.util.List;
 import javax.ws.rs.Consumes;
 import javax.ws.rs.DELETE;
 import javax.ws.rs.GET;
@@ -20,11 +23,15 @@ import javax.ws.rs.PUT;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
 import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.UriInfo;
 import modelClasses.Doctor;
-import modelClasses.Person;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -37,11 +44,21 @@ public class DoctorResource {
     @GET
     @Path("/all")
     @Produces(MediaType.APPLICATION_JSON)
-    public Response getAllDoctors() {
+    public Response getAllDoctors(@QueryParam("limit") Integer limit, @QueryParam("after") int after,
+            @QueryParam("stream") boolean stream, @Context UriInfo uriInfo) {
+        // Page through in ID order when a limit or cursor is given
+        int pageSize = Pagination.pageSize(limit, after);
+        if (pageSize > 0) {
+            return Pagination.ok(DoctorDAO.getDoctorsPage(after, pageSize), pageSize, uriInfo);
+        }
+        // Stream the whole collection one entity at a time for bulk consumers
+        if (stream) {
+            return JsonStreaming.ok(DoctorDAO.getDoctors());
+        }
         try {
             LOGGER.info("Retrieved all doctors");
             return Response.status(Response.Status.OK)
-                    .entity(DoctorDAO.getDoctors().values())
+                    .entity(DoctorDAO.getDoctors())
                     .build();
         } catch (Exception e) {
             LOGGER.error("Failed to retrieve all doctors: {}", e.getMessage(), e);
@@ -50,18 +67,41 @@ public class DoctorResource {
         }
     }
 
+    // Retrieve many doctors by ID in one call, e.g. GET ?ids=1,2,3; IDs not found are listed as missing
+    @GET
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response getDoctorsByIds(@QueryParam("ids") String ids) {
+        if (ids == null) {
+            throw new InvalidDataException("ids is required");
+        }
+        int[] idList = MultiGet.parse(ids);
+        Lookup<Doctor> found = DoctorDAO.getDoctorsByIds(idList);
+        LOGGER.info("Found {} of {} doctors by ID", found.getItems().size(), idList.length);
+        return MultiGet.ok(found);
+    }
+
+    // Retrieve many doctors by ID when the list is too long for ?ids=; the body is a JSON array of IDs
+    @POST
+    @Path("/ids")
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response lookupDoctors(List<Integer> ids) {
+        Lookup<Doctor> found = DoctorDAO.getDoctorsByIds(MultiGet.of(ids));
+        LOGGER.info("Found {} of {} doctors by ID", found.getItems().size(), ids.size());
+        return MultiGet.ok(found);
+    }
+
     //get doctor by Id
     @GET
     @Path("/{id}")
     @Produces(MediaType.APPLICATION_JSON)
-    public Response getDoctorById(@PathParam("id") int id) {
+    public Response getDoctorById(@PathParam("id") int id, @Context Request request) {
         try {
             Doctor doctor = DoctorDAO.getDoctorById(id);
             if (doctor != null) {
                 LOGGER.info("Doctor found for ID: " + id);
-                return Response.status(Response.Status.OK)
-                        .entity(doctor)
-                        .build();
+                // 304 without serializing when the client already has this version
+                return EntityTags.ok(request, PersonDAO.STORE_NAME, id, doctor);
             } else {
                 LOGGER.error("Failed to retrieve doctor by ID {}: {}", id);
                 throw new NotFoundException("Doctor not found for ID: " + id);
@@ -94,21 +134,9 @@ public class DoctorResource {
                 throw new InvalidDataException("Invalid data for doctor");
             }
             
-            //add doctor
+            //add doctor, which also makes it visible as a person
             DoctorDAO.addDoctor(doctor);
 
-            // Check if the doctor is already added as a person
-            if (!PersonDAO.personExists(doctor.getId())) {
-                // Create a corresponding person
-                Person person = new Person();
-                person.setId(doctor.getId());
-                person.setName(doctor.getName());
-                person.setContact(doctor.getContact());
-                person.setAddress(doctor.getAddress());
-                // Add the person
-                PersonDAO.addPerson(person);
-            }
-
             LOGGER.info("Added new doctor successfully: {}", doctor);
             return Response.status(Response.Status.CREATED).entity("Doctor with id " + doctor.getId() + " was created successfully").build();
 
@@ -118,12 +146,38 @@ public class DoctorResource {
         }
     }
 
+    // Create many doctors in one request; each item is checked like /add and gets its own result
+    @POST
+    @Path("/batch")
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response addDoctors(List<Doctor> doctors) {
+        Batch<Doctor> batch = new Batch<>(doctors);
+        for (int i = 0; i < doctors.size(); i++) {
+            Doctor item = doctors.get(i);
+            if (item == null || !DoctorDAO.isValidDoctor(item)) {
+                batch.reject(i, Response.Status.BAD_REQUEST, "Invalid data for doctor");
+            } else if (DoctorDAO.doctorExists(item.getId())) {
+                batch.reject(i, Response.Status.CONFLICT, "Doctor with ID " + item.getId() + " already exists");
+            }
+        }
+        List<Doctor> accepted = batch.accepted();
+        if (!accepted.isEmpty()) {
+            DoctorDAO.addDoctors(accepted);
+        }
+        LOGGER.info("Added batch of {} doctors, {} rejected", accepted.size(), doctors.size() - accepted.size());
+        return batch.toResponse(Doctor::getId);
+    }
+
     //update doctor
     @PUT
     @Path("/update/{id}")
     @Consumes(MediaType.APPLICATION_JSON)
     @Produces(MediaType.APPLICATION_JSON)
-    public Response updateDoctor(@PathParam("id") int id, Doctor updatedDoctor) {
+    public Response updateDoctor(@PathParam("id") int id, Doctor updatedDoctor,
+            @Context HttpHeaders headers) {
+        // Only update the version the client last saw when it sends If-Match
+        long expectedVersion = EntityTags.expectedVersion(headers, id);
         try {
             //check if doctor exists
             if (!DoctorDAO.doctorExists(id)) {
@@ -137,27 +191,11 @@ public class DoctorResource {
             }
 
             //update
-            DoctorDAO.updateDoctor(id, updatedDoctor);
-
-            // Update the corresponding person
-            if (PersonDAO.personExists(id+1)) {
-                Person person = PersonDAO.getPersonById(id+1);
-                person.setName(updatedDoctor.getName());
-                person.setContact(updatedDoctor.getContact());
-                person.setAddress(updatedDoctor.getAddress());
-                PersonDAO.updatePerson(id+1, person);
-            } else {
-                // Create a new person if not found
-                Person person = new Person();
-                person.setId(updatedDoctor.getId());
-                person.setName(updatedDoctor.getName());
-                person.setContact(updatedDoctor.getContact());
-                person.setAddress(updatedDoctor.getAddress());
-                PersonDAO.addPerson(person);
-            }
+            DoctorDAO.updateDoctor(id, updatedDoctor, expectedVersion);
 
             LOGGER.info("Updated doctor successfully: {}", updatedDoctor);
-            return Response.status(Response.Status.OK).entity("Doctor with ID " + id + " was updated").build();
+            return Response.status(Response.Status.OK).entity("Doctor with ID " + id + " was updated")
+                    .tag(EntityTags.of(id, updatedDoctor.getVersion())).build();
         } catch (NotFoundException | InvalidDataException e) {
             LOGGER.error("Failed to update doctor: {}", e.getMessage(), e);
             throw e;
@@ -167,19 +205,22 @@ public class DoctorResource {
     //dete doctors
     @DELETE
     @Path("/delete/{id}")
-    public Response deleteDoctor(@PathParam("id") int id) {
+    public Response deleteDoctor(@PathParam("id") int id, @QueryParam("cascade") boolean cascade,
+            @Context UriInfo uriInfo) {
+        // Remove the doctor's appointments, bills and prescriptions too; 409 without cascade while they exist
+        if (cascade) {
+            return CascadeResource.accepted(DoctorDAO.deleteDoctorCascade(id), uriInfo);
+        }
         try {
             Doctor existingDoctor = DoctorDAO.getDoctorById(id);
             if (existingDoctor != null) {
                 DoctorDAO.deleteDoctor(id);
-                
-                // Delete the corresponding person
-                PersonDAO.deletePerson(id);
-            
                 return Response.status(Response.Status.OK).entity("Doctor deleted successfully: " + existingDoctor).build();
             } else {
                 return Response.status(Response.Status.NOT_FOUND).entity("Doctor not found").build();
             }
+        } catch (NotFoundException | ConflictException e) {
+            throw e;
         } catch (Exception e) {
             return Response.status(Response.Status.INTERNAL_SERVER_ERROR).entity("Internal Server Error").build();
         }
@@ -0,0 +1,88 @@
+/**
+ * Strong ETags built from entity versions, for conditional GET (If-None-Match)
+ * and optimistic concurrency on PUT (If-Match).
+ * Author: Rifa
+ * IIT No: 20220701
+ */
+
+package resourceClasses;
+
+import cacheClasses.CachedJson;
+import daoClasses.Versioning;
+import exceptionClasses.PreconditionFailedException;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
+import javax.ws.rs.core.Response;
+import modelClasses.Versioned;
+
+final class EntityTags {
+
+    private EntityTags() {
+    }
+
+    // ETag of one version of an entity; IDs are never reused, so the pair is unique
+    static EntityTag of(int id, long version) {
+        return new EntityTag(id + "-" + version);
+    }
+
+    // ETag of an entity whose JSON includes nested entities, which change the tag too: "id-version.v1.v2"
+    static EntityTag of(int id, long version, Object... related) {
+        if (related.length == 0) {
+            return of(id, version);
+        }
+        StringBuilder tag = new StringBuilder().append(id).append('-').append(version);
+        for (Object entity : related) {
+            tag.append('.').append(entity instanceof Versioned ? ((Versioned) entity).getVersion() : 0);
+        }
+        return new EntityTag(tag.toString());
+    }
+
+    /**
+     * Build the response for a GET of one entity, serving its JSON from the response cache when possible.
+     * @param store Name of the store the entity lives in
+     * @param related Nested entities included in the entity's JSON, such as its patient and doctor
+     * @return 304 without a body if the client's If-None-Match matches, otherwise 200 with the entity
+     */
+    static Response ok(Request request, String store, int id, Versioned entity, Object... related) {
+        EntityTag tag = of(id, entity.getVersion(), related);
+        Response.ResponseBuilder notModified = request.evaluatePreconditions(tag);
+        if (notModified != null) {
+            return notModified.tag(tag).build();
+        }
+        return Response.status(Response.Status.OK)
+                .entity(new CachedJson(store, id, entity, related))
+                .type(MediaType.APPLICATION_JSON)
+                .tag(tag)
+                .build();
+    }
+
+    /**
+     * Read the version a PUT is conditional on from its If-Match header.
+     * @return The expected version, or Versioning.ANY_VERSION if there is no header or it is "*"
+     * @throws PreconditionFailedException If no tag in the header can belong to the entity
+     */
+    static long expectedVersion(HttpHeaders headers, int id) {
+        String ifMatch = headers.getHeaderString(HttpHeaders.IF_MATCH);
+        if (ifMatch == null || ifMatch.trim().isEmpty() || ifMatch.trim().equals("*")) {
+            return Versioning.ANY_VERSION;
+        }
+        String prefix = "\"" + id + "-";
+        for (String tag : ifMatch.split(",")) {
+            tag = tag.trim();
+            // Weak tags never match under the strong comparison If-Match requires
+            if (tag.startsWith(prefix) && tag.endsWith("\"")) {
+                // Versions of nested entities after the first dot do not matter for the update
+                String version = tag.substring(prefix.length(), tag.length() - 1);
+                int dot = version.indexOf('.');
+                try {
+                    return Long.parseLong(dot < 0 ? version : version.substring(0, dot));
+                } catch (NumberFormatException e) {
+                    // not one of our tags
+                }
+            }
+        }
+        throw new PreconditionFailedException("If-Match does not match the current version of ID " + id);
+    }
+}
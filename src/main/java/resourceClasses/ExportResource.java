@@ -0,0 +1,58 @@
+/**
+ * Resource class streaming whole stores as NDJSON from point-in-time views.
+ * Author: Rifa
+ * IIT No: 20220701
+ */
+
+package resourceClasses;
+
+import exceptionClasses.NotFoundException;
+import exportClasses.NdjsonExport;
+import java.util.Collections;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+@Path("/export")
+public class ExportResource {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ExportResource.class);
+
+    private static final String NDJSON = "application/x-ndjson";
+    private static final String GZIP = "application/gzip";
+
+    /**
+     * Stream a store as NDJSON, e.g. GET /export/appointments?gzip=true.
+     * The view is opened when the body starts streaming and closed when it ends, so the
+     * export holds the store as of that moment while writes carry on.
+     * @param name Store to export, named like its resource path
+     * @param gzip True to send the body as a .ndjson.gz file
+     * @return 200 with the streaming body
+     */
+    @GET
+    @Path("/{store}")
+    @Produces({NDJSON, GZIP})
+    public Response exportStore(@PathParam("store") String name, @QueryParam("gzip") boolean gzip) {
+        if (!NdjsonExport.isExportable(name)) {
+            LOGGER.warn("No export for: {}", name);
+            throw new NotFoundException("No export for: " + name);
+        }
+        StreamingOutput body = output -> {
+            try (NdjsonExport export = NdjsonExport.open(Collections.singletonList(name))) {
+                export.writeTo(name, output, gzip);
+            }
+        };
+        String fileName = name + (gzip ? ".ndjson.gz" : ".ndjson");
+        return Response.status(Response.Status.OK)
+                .entity(body)
+                .type(gzip ? GZIP : NDJSON)
+                .header("Content-Disposition", "attachment; filename=\"" + fileName + "\"")
+                .build();
+    }
+}
@@ -0,0 +1,85 @@
+/**
+ * Writes large collections as a JSON array one entity at a time, straight to the response
+ * stream, so memory use and time to first byte do not depend on the collection size.
+ * Author: Rifa
+ * IIT No: 20220701
+ */
+
+package resourceClasses;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import configFiles.ObjectMapperProvider;
+import java.util.Map;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+
+final class JsonStreaming {
+
+    private JsonStreaming() {
+    }
+
+    /**
+     * Build a response that streams the given entities as a JSON array.
+     * The collection is iterated while the response is written, not before.
+     * @param items Entities to write, typically a live view over a DAO store
+     * @return 200 response with a streaming body
+     */
+    static Response ok(Iterable<?> items) {
+        return Response.status(Response.Status.OK)
+                .entity(array(items))
+                .type(MediaType.APPLICATION_JSON)
+                .build();
+    }
+
+    /**
+     * Build a response that streams one JSON object made of named parts, such as an
+     * entity and the lists of entities related to it. Each part is written in turn,
+     * and the entities of a list part one at a time.
+     * @param parts Values of the object's fields, in the order they are written
+     * @return 200 response with a streaming body
+     */
+    static Response ok(Map<String, ?> parts) {
+        return Response.status(Response.Status.OK)
+                .entity(object(parts))
+                .type(MediaType.APPLICATION_JSON)
+                .build();
+    }
+
+    // Body writing the parts as fields of one object, with the shared mapper
+    static StreamingOutput object(Map<String, ?> parts) {
+        return output -> {
+            ObjectMapper mapper = ObjectMapperProvider.getMapper();
+            ObjectWriter writer = mapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+            try (JsonGenerator generator = mapper.getFactory().createGenerator(output)) {
+                generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+                generator.writeStartObject();
+                for (Map.Entry<String, ?> part : parts.entrySet()) {
+                    generator.writeFieldName(part.getKey());
+                    writer.writeValue(generator, part.getValue());
+                }
+                generator.writeEndObject();
+            }
+        };
+    }
+
+    // Body writing the entities with the shared mapper, so the output matches the buffered responses
+    static StreamingOutput array(Iterable<?> items) {
+        return output -> {
+            ObjectMapper mapper = ObjectMapperProvider.getMapper();
+            // Leave flushing to the generator's buffer instead of flushing after every entity
+            ObjectWriter writer = mapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+            try (JsonGenerator generator = mapper.getFactory().createGenerator(output)) {
+                generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+                generator.writeStartArray();
+                for (Object item : items) {
+                    writer.writeValue(generator, item);
+                }
+                generator.writeEndArray();
+            }
+        };
+    }
+}
@@ -7,11 +7,15 @@
 
 package resourceClasses;
 
+import daoClasses.Lookup;
 import daoClasses.MedicalRecordDAO;
 import daoClasses.PatientDAO;
+import daoClasses.PersonLocks;
 import exceptionClasses.AlreadyExistsException;
 import exceptionClasses.InvalidDataException;
 import exceptionClasses.NotFoundException;
+import java.util.ArrayList;
+import java.util.List;
 import javax.ws.rs.Consumes;
 import javax.ws.rs.DELETE;
 import javax.ws.rs.GET;
@@ -20,9 +24,14 @@ import javax.ws.rs.PUT;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
 import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.UriInfo;
 import modelClasses.MedicalRecord;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -37,11 +46,21 @@ public class MedicalRecordResource {
     @GET
     @Path("/all")
     @Produces(MediaType.APPLICATION_JSON)
-    public Response getAllMedicalRecords() {
+    public Response getAllMedicalRecords(@QueryParam("limit") Integer limit, @QueryParam("after") int after,
+            @QueryParam("stream") boolean stream, @Context UriInfo uriInfo) {
+        // Page through in ID order when a limit or cursor is given
+        int pageSize = Pagination.pageSize(limit, after);
+        if (pageSize > 0) {
+            return Pagination.ok(MedicalRecordDAO.getMedicalRecordsPage(after, pageSize), pageSize, uriInfo);
+        }
+        // Stream the whole collection one entity at a time for bulk consumers
+        if (stream) {
+            return JsonStreaming.ok(MedicalRecordDAO.getMedicalRecords());
+        }
         try {
             LOGGER.info("Retrieved all medical records");
             return Response.status(Response.Status.OK)
-                    .entity(MedicalRecordDAO.getMedicalRecords().values())
+                    .entity(MedicalRecordDAO.getMedicalRecords())
                     .build();
         } catch (Exception e) {
             LOGGER.error("Failed to retrieve all medical records: {}", e.getMessage(), e);
@@ -49,17 +68,49 @@ public class MedicalRecordResource {
         }
     }
 
+    // Retrieve the medical records of a patient, using the DAO index
+    @GET
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response findMedicalRecords(@QueryParam("ids") String ids,
+            @QueryParam("patientId") int patientId) {
+        // Many medical records by ID in one call; IDs not found are listed as missing
+        if (ids != null) {
+            int[] idList = MultiGet.parse(ids);
+            Lookup<MedicalRecord> found = MedicalRecordDAO.getMedicalRecordsByIds(idList);
+            LOGGER.info("Found {} of {} medical records by ID", found.getItems().size(), idList.length);
+            return MultiGet.ok(found);
+        }
+        if (patientId <= 0) {
+            throw new InvalidDataException("patientId is required");
+        }
+        List<MedicalRecord> result = MedicalRecordDAO.getMedicalRecordsByPatient(patientId);
+        LOGGER.info("Found {} medical records for patient {}", result.size(), patientId);
+        return Response.status(Response.Status.OK)
+                .entity(result)
+                .build();
+    }
+
+    // Retrieve many medical records by ID when the list is too long for ?ids=; the body is a JSON array of IDs
+    @POST
+    @Path("/ids")
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response lookupMedicalRecords(List<Integer> ids) {
+        Lookup<MedicalRecord> found = MedicalRecordDAO.getMedicalRecordsByIds(MultiGet.of(ids));
+        LOGGER.info("Found {} of {} medical records by ID", found.getItems().size(), ids.size());
+        return MultiGet.ok(found);
+    }
+
     //retrieve medical record by id
     @GET
     @Path("/{id}")
     @Produces(MediaType.APPLICATION_JSON)
-    public Response getMedicalRecordById(@PathParam("id") int id) {
+    public Response getMedicalRecordById(@PathParam("id") int id, @Context Request request) {
         try {
             MedicalRecord medicalRecord = MedicalRecordDAO.getMedicalRecordById(id);
             if(medicalRecord != null){
-            return Response.status(Response.Status.OK)
-                    .entity(medicalRecord)
-                    .build();
+            // 304 without serializing when the client already has this version
+            return EntityTags.ok(request, MedicalRecordDAO.STORE_NAME, id, medicalRecord, medicalRecord.getPatient());
             }else {
             LOGGER.error("Failed to retrieve medical record by ID{}: {}", id);
             throw new NotFoundException("Medical record with Id " + id + " not found");
@@ -81,24 +132,27 @@ public class MedicalRecordResource {
     @Produces(MediaType.APPLICATION_JSON)
     public Response addMedicalRecord(MedicalRecord medicalRecord) {
         try {
-            //check if patient exists
-            int patientId  = medicalRecord.getPatient().getId();
-            if (!PatientDAO.patientExists(patientId)){
-                throw new NotFoundException("Patient not found for ID: " + patientId);
-            }
-            //check if medical record exists for that id
-            if (MedicalRecordDAO.recordExists(medicalRecord.getRecordId())){
-                LOGGER.warn("Medical record Id already exists", medicalRecord.getRecordId());
-                throw new AlreadyExistsException("Medical record Id " + medicalRecord.getRecordId() + " already exists");
-            }
-            //check if data is valid
-            if (!MedicalRecordDAO.isValidRecord(medicalRecord)) {
-                LOGGER.warn("Invalid data for medical record: {}", medicalRecord.getRecordId());
-                throw new InvalidDataException("Invalid data for medical record");
-            }
+            int patientId  = medicalRecord.getPatientId();
+            // The patient cannot be deleted between these checks and the add
+            PersonLocks.whileReferenced(() -> {
+                //check if patient exists
+                if (!PatientDAO.patientExists(patientId)){
+                    throw new NotFoundException("Patient not found for ID: " + patientId);
+                }
+                //check if medical record exists for that id
+                if (MedicalRecordDAO.recordExists(medicalRecord.getRecordId())){
+                    LOGGER.warn("Medical record Id already exists", medicalRecord.getRecordId());
+                    throw new AlreadyExistsException("Medical record Id " + medicalRecord.getRecordId() + " already exists");
+                }
+                //check if data is valid
+                if (!MedicalRecordDAO.isValidRecord(medicalRecord)) {
+                    LOGGER.warn("Invalid data for medical record: {}", medicalRecord.getRecordId());
+                    throw new InvalidDataException("Invalid data for medical record");
+                }
     
-            //add medical record
-            MedicalRecordDAO.addMedicalRecord(medicalRecord);
+                //add medical record
+                MedicalRecordDAO.addMedicalRecord(medicalRecord);
+            }, patientId);
            
             LOGGER.info("Medical record added successfully: {}", medicalRecord);
             return Response.status(Response.Status.CREATED)
@@ -110,12 +164,44 @@ public class MedicalRecordResource {
         }
     }
 
+    // Create many medical records in one request; each item is checked like /add and gets its own result
+    @POST
+    @Path("/batch")
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response addMedicalRecords(List<MedicalRecord> records) {
+        Batch<MedicalRecord> batch = new Batch<>(records);
+        // Checked and added as one, so no patient is deleted in between
+        List<MedicalRecord> accepted = new ArrayList<>();
+        PersonLocks.whileReferenced(() -> {
+            for (int i = 0; i < records.size(); i++) {
+                MedicalRecord item = records.get(i);
+                if (item == null || !MedicalRecordDAO.isValidRecord(item)) {
+                    batch.reject(i, Response.Status.BAD_REQUEST, "Invalid data for medical record");
+                } else if (!PatientDAO.patientExists(item.getPatientId())) {
+                    batch.reject(i, Response.Status.NOT_FOUND, "Patient not found for ID: " + item.getPatientId());
+                } else if (MedicalRecordDAO.recordExists(item.getRecordId())) {
+                    batch.reject(i, Response.Status.CONFLICT, "Medical record Id " + item.getRecordId() + " already exists");
+                }
+            }
+            accepted.addAll(batch.accepted());
+            if (!accepted.isEmpty()) {
+                MedicalRecordDAO.addMedicalRecords(accepted);
+            }
+        }, PersonLocks.idsOf(records, MedicalRecord::getPatientId, record -> 0));
+        LOGGER.info("Added batch of {} medical records, {} rejected", accepted.size(), records.size() - accepted.size());
+        return batch.toResponse(MedicalRecord::getRecordId);
+    }
+
     //update medical record
     @PUT
     @Path("/update/{id}")
     @Consumes(MediaType.APPLICATION_JSON)
     @Produces(MediaType.APPLICATION_JSON)
-    public Response updateMedicalRecord(@PathParam("id") int id, MedicalRecord medicalRecord) {
+    public Response updateMedicalRecord(@PathParam("id") int id, MedicalRecord medicalRecord,
+            @Context HttpHeaders headers) {
+        // Only update the version the client last saw when it sends If-Match
+        long expectedVersion = EntityTags.expectedVersion(headers, id);
         try {
             //check if medical record Id exists
             if (MedicalRecordDAO.recordExists(medicalRecord.getRecordId())){
@@ -129,11 +215,12 @@ public class MedicalRecordResource {
             }
     
             //update medical record
-            MedicalRecordDAO.updateMedicalRecord(id,medicalRecord);
+            MedicalRecordDAO.updateMedicalRecord(id,medicalRecord, expectedVersion);
            
             LOGGER.info("Medical record updated successfully: {}", medicalRecord);
             return Response.status(Response.Status.OK)
                     .entity("Medical Record with Id: " + medicalRecord.getRecordId() + "updated successfully")
+                    .tag(EntityTags.of(id, medicalRecord.getVersion()))
                     .build();
         } catch (NotFoundException | InvalidDataException e) {
             LOGGER.error("Failed to update record: {}", e.getMessage(), e);
@@ -0,0 +1,26 @@
+/**
+ * Resource class exposing the request metrics for Prometheus to scrape.
+ * Author: Rifa
+ * IIT No: 20220701
+ */
+
+package resourceClasses;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.Response;
+import metricsClasses.Metrics;
+
+@Path("/metrics")
+public class MetricsResource {
+
+    // Retrieve all metrics in the Prometheus text format
+    @GET
+    @Produces(Metrics.CONTENT_TYPE)
+    public Response getMetrics() {
+        return Response.status(Response.Status.OK)
+                .entity(Metrics.scrape())
+                .build();
+    }
+}
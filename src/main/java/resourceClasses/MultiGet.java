@@ -0,0 +1,72 @@
+/**
+ * Helpers for the multi-get endpoints that fetch many entities by ID in one call,
+ * as GET ?ids=1,2,3 or, for long lists, as POST /ids with a JSON array of IDs.
+ * Author: Rifa
+ * IIT No: 20220701
+ */
+
+package resourceClasses;
+
+import daoClasses.Lookup;
+import exceptionClasses.InvalidDataException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import javax.ws.rs.core.Response;
+
+final class MultiGet {
+
+    // Most IDs accepted in a query string; longer lists go in a POST body
+    static final int MAX_QUERY_IDS = 1000;
+    // Most IDs accepted in a POST body
+    static final int MAX_BODY_IDS = 10000;
+
+    private MultiGet() {
+    }
+
+    /**
+     * Parse the ids query parameter.
+     * @param ids Comma-separated IDs, such as "1,2,3"
+     * @return The IDs in the order given
+     */
+    static int[] parse(String ids) {
+        String[] parts = ids.split(",");
+        if (ids.trim().isEmpty() || parts.length > MAX_QUERY_IDS) {
+            throw new InvalidDataException("ids must list between 1 and " + MAX_QUERY_IDS + " IDs");
+        }
+        int[] result = new int[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            try {
+                result[i] = Integer.parseInt(parts[i].trim());
+            } catch (NumberFormatException e) {
+                throw new InvalidDataException("Invalid ID in ids: " + parts[i]);
+            }
+        }
+        return result;
+    }
+
+    // Check the IDs of a POST body
+    static int[] of(List<Integer> ids) {
+        if (ids == null || ids.isEmpty() || ids.size() > MAX_BODY_IDS) {
+            throw new InvalidDataException("Body must list between 1 and " + MAX_BODY_IDS + " IDs");
+        }
+        int[] result = new int[ids.size()];
+        for (int i = 0; i < result.length; i++) {
+            if (ids.get(i) == null) {
+                throw new InvalidDataException("IDs must not be null");
+            }
+            result[i] = ids.get(i);
+        }
+        return result;
+    }
+
+    // Build the response: 200 with the entities found and the IDs that were not, even when none were found
+    static Response ok(Lookup<?> lookup) {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("items", lookup.getItems());
+        body.put("missing", lookup.getMissing());
+        return Response.status(Response.Status.OK)
+                .entity(body)
+                .build();
+    }
+}
@@ -0,0 +1,105 @@
+/**
+ * Helpers for the limit/after cursor pagination shared by the /all endpoints,
+ * and for the before/after cursors of the patient timeline.
+ * Author: Rifa
+ * IIT No: 20220701
+ */
+
+package resourceClasses;
+
+import daoClasses.Page;
+import daoClasses.Timeline;
+import exceptionClasses.InvalidDataException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.UriInfo;
+
+final class Pagination {
+
+    // Page size used when only a cursor is given
+    static final int DEFAULT_LIMIT = 100;
+    // Largest page a client may ask for
+    static final int MAX_LIMIT = 1000;
+    // Response header carrying the cursor of the next page
+    static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    // Response header carrying the cursor of the previous page, where pages go both ways
+    static final String PREV_CURSOR_HEADER = "X-Prev-Cursor";
+
+    private Pagination() {
+    }
+
+    /**
+     * Work out the page size of a request.
+     * @param limit Requested page size, or null
+     * @param after Requested cursor, 0 for the first page
+     * @return Page size, or 0 if the request did not ask for a page
+     */
+    static int pageSize(Integer limit, int after) {
+        if (limit == null && after == 0) {
+            return 0;
+        }
+        if (after < 0) {
+            throw new InvalidDataException("after must not be negative");
+        }
+        if (limit == null) {
+            return DEFAULT_LIMIT;
+        }
+        if (limit < 1 || limit > MAX_LIMIT) {
+            throw new InvalidDataException("limit must be between 1 and " + MAX_LIMIT);
+        }
+        return limit;
+    }
+
+    // Build the response for a page: the items as the body, the next cursor as headers
+    static Response ok(Page<?> page, int limit, UriInfo uriInfo) {
+        Response.ResponseBuilder response = Response.status(Response.Status.OK).entity(page.getItems());
+        if (page.hasNext()) {
+            response.header(NEXT_CURSOR_HEADER, page.getNextCursor())
+                    .link(uriInfo.getRequestUriBuilder()
+                            .replaceQueryParam("after", page.getNextCursor())
+                            .replaceQueryParam("limit", limit)
+                            .build(), "next");
+        }
+        return response.build();
+    }
+
+    // Work out the page size of a request that always returns a page
+    static int pageSize(Integer limit) {
+        return limit != null ? pageSize(limit, 0) : DEFAULT_LIMIT;
+    }
+
+    // Build the response for a timeline page: the entries as the body, the cursors of the
+    // older ("next") and newer ("prev") pages as headers
+    static Response ok(Timeline.Slice slice, int limit, UriInfo uriInfo) {
+        List<Map<String, Object>> body = new ArrayList<>(slice.getEntries().size());
+        for (Timeline.Entry entry : slice.getEntries()) {
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("type", entry.getType());
+            item.put("time", entry.getTime());
+            item.put("cursor", entry.getCursor());
+            item.put("item", entry.getItem());
+            body.add(item);
+        }
+        Response.ResponseBuilder response = Response.status(Response.Status.OK).entity(body);
+        if (slice.getOlderCursor() != null) {
+            response.header(NEXT_CURSOR_HEADER, slice.getOlderCursor())
+                    .link(uriInfo.getRequestUriBuilder()
+                            .replaceQueryParam("before")
+                            .replaceQueryParam("after", slice.getOlderCursor())
+                            .replaceQueryParam("limit", limit)
+                            .build(), "next");
+        }
+        if (slice.getNewerCursor() != null) {
+            response.header(PREV_CURSOR_HEADER, slice.getNewerCursor())
+                    .link(uriInfo.getRequestUriBuilder()
+                            .replaceQueryParam("after")
+                            .replaceQueryParam("before", slice.getNewerCursor())
+                            .replaceQueryParam("limit", limit)
+                            .build(), "prev");
+        }
+        return response.build();
+    }
+}
@@ -7,11 +7,21 @@
 
 package resourceClasses;
 
-import daoClasses.PatientDAO;
+import daoClasses.AppointmentDAO;
+import daoClasses.BillingDAO;
+import daoClasses.Lookup;
+import daoClasses.MedicalRecordDAO;
 import daoClasses.PersonDAO;
+import daoClasses.PatientDAO;
+import daoClasses.PrescriptionDAO;
+import daoClasses.Timeline;
 import exceptionClasses.AlreadyExistsException;
+import exceptionClasses.ConflictException;
 import exceptionClasses.InvalidDataException;
 import exceptionClasses.NotFoundException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import javax.ws.rs.Consumes;
 import javax.ws.rs.DELETE;
 import javax.ws.rs.GET;
@@ -20,11 +30,15 @@ import javax.ws.rs.PUT;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
 import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.UriInfo;
 import modelClasses.Patient;
-import modelClasses.Person;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -38,11 +52,21 @@ public class PatientResource {
     @GET
     @Path("/all")
     @Produces(MediaType.APPLICATION_JSON)
-    public Response getAllPatients() {
+    public Response getAllPatients(@QueryParam("limit") Integer limit, @QueryParam("after") int after,
+            @QueryParam("stream") boolean stream, @Context UriInfo uriInfo) {
+        // Page through in ID order when a limit or cursor is given
+        int pageSize = Pagination.pageSize(limit, after);
+        if (pageSize > 0) {
+            return Pagination.ok(PatientDAO.getPatientsPage(after, pageSize), pageSize, uriInfo);
+        }
+        // Stream the whole collection one entity at a time for bulk consumers
+        if (stream) {
+            return JsonStreaming.ok(PatientDAO.getPatients());
+        }
          try {
             LOGGER.info("Retrieved all patients");
             return Response.status(Response.Status.OK)
-                    .entity(PatientDAO.getPatients().values())
+                    .entity(PatientDAO.getPatients())
                     .build();
         } catch (Exception e) {
             LOGGER.error("Failed to retrieve all patients: {}", e.getMessage(), e);
@@ -50,19 +74,42 @@ public class PatientResource {
                     Response.Status.INTERNAL_SERVER_ERROR);
         }
     }
+
+    // Retrieve many patients by ID in one call, e.g. GET ?ids=1,2,3; IDs not found are listed as missing
+    @GET
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response getPatientsByIds(@QueryParam("ids") String ids) {
+        if (ids == null) {
+            throw new InvalidDataException("ids is required");
+        }
+        int[] idList = MultiGet.parse(ids);
+        Lookup<Patient> found = PatientDAO.getPatientsByIds(idList);
+        LOGGER.info("Found {} of {} patients by ID", found.getItems().size(), idList.length);
+        return MultiGet.ok(found);
+    }
+
+    // Retrieve many patients by ID when the list is too long for ?ids=; the body is a JSON array of IDs
+    @POST
+    @Path("/ids")
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response lookupPatients(List<Integer> ids) {
+        Lookup<Patient> found = PatientDAO.getPatientsByIds(MultiGet.of(ids));
+        LOGGER.info("Found {} of {} patients by ID", found.getItems().size(), ids.size());
+        return MultiGet.ok(found);
+    }
     
     //get patient by id
     @GET
     @Path("{id}")
     @Produces(MediaType.APPLICATION_JSON)
-    public Response getPatientById(@PathParam("id") int id) {
+    public Response getPatientById(@PathParam("id") int id, @Context Request request) {
         try {
             Patient patient = PatientDAO.getPatientById(id);
             if (patient != null) {
                 LOGGER.info("Patient with Id "+ id + " is found");
-                return Response.status(Response.Status.OK)
-                        .entity(patient)
-                        .build();
+                // 304 without serializing when the client already has this version
+                return EntityTags.ok(request, PersonDAO.STORE_NAME, id, patient);
             } else {
                 LOGGER.error("Failed to retrieve patient by ID {}: {}", id);
                 throw new NotFoundException("Patient not found for ID: " + id);
@@ -77,6 +124,59 @@ public class PatientResource {
         }
     }
     
+    /**
+     * Retrieve a patient's chart: the patient with their appointments, medical records,
+     * prescriptions and unpaid bills, each read from the store's index by patient.
+     * The chart is streamed as one JSON object, e.g. GET /patients/1/chart?fields=appointmentNo
+     * @param id ID of the patient
+     * @return 200 with the chart, 404 when there is no such patient
+     */
+    @GET
+    @Path("{id}/chart")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response getPatientChart(@PathParam("id") int id) {
+        // 404 from the DAO when there is no such patient
+        Patient patient = PatientDAO.getPatientById(id);
+        Map<String, Object> chart = new LinkedHashMap<>();
+        chart.put("patient", patient);
+        chart.put("appointments", AppointmentDAO.getAppointmentsByPatient(id));
+        chart.put("medicalRecords", MedicalRecordDAO.getMedicalRecordsByPatient(id));
+        chart.put("prescriptions", PrescriptionDAO.getPrescriptionsByPatient(id));
+        chart.put("outstandingBills", BillingDAO.getOutstandingBillsByPatient(id));
+        LOGGER.info("Retrieved chart of patient {}", id);
+        return JsonStreaming.ok(chart);
+    }
+
+    /**
+     * Retrieve a page of a patient's timeline: appointments, medical records, prescriptions
+     * and bills merged newest first, e.g. GET /patients/1/timeline?limit=50.
+     * Pass a cursor from the X-Next-Cursor header as "after" for older entries, or one from
+     * X-Prev-Cursor as "before" for newer ones.
+     * @param id ID of the patient
+     * @param limit Page size, 100 by default
+     * @param after Cursor to continue after, towards older entries
+     * @param before Cursor to continue before, towards newer entries
+     * @param uriInfo Request URI, to build the links to the neighbouring pages
+     * @return 200 with the entries, 404 when there is no such patient
+     */
+    @GET
+    @Path("{id}/timeline")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response getPatientTimeline(@PathParam("id") int id, @QueryParam("limit") Integer limit,
+            @QueryParam("after") String after, @QueryParam("before") String before, @Context UriInfo uriInfo) {
+        if (after != null && before != null) {
+            throw new InvalidDataException("Pass either after or before, not both");
+        }
+        int pageSize = Pagination.pageSize(limit);
+        // 404 from the DAO when there is no such patient
+        PatientDAO.getPatientById(id);
+        Timeline.Slice slice = before != null
+                ? Timeline.getSlice(id, before, true, pageSize)
+                : Timeline.getSlice(id, after, false, pageSize);
+        LOGGER.info("Retrieved {} timeline entries of patient {}", slice.getEntries().size(), id);
+        return Pagination.ok(slice, pageSize, uriInfo);
+    }
+
     //create patient
     @POST
     @Path("/add")
@@ -95,20 +195,9 @@ public class PatientResource {
                 throw new InvalidDataException("Invalid data for patient");
             }
             
-            //add patient
+            //add patient, which also makes it visible as a person
             PatientDAO.addPatient(patient);
 
-            // Check if the patient is already added as a person
-            if (!PatientDAO.patientIsPerson(patient.getId())) {
-                // Create a corresponding person
-                Person person = new Person();
-                person.setName(patient.getName());
-                person.setContact(patient.getContact());
-                person.setAddress(patient.getAddress());
-                // Add the person
-                PersonDAO.addPerson(person);
-            }
-
             LOGGER.info("Added new patient successfully: {}", patient);
             return Response.status(Response.Status.CREATED)
                     .entity("Patient with id " + patient.getId() + " was created successfully")
@@ -118,13 +207,39 @@ public class PatientResource {
             throw e;
         }
     }
+
+    // Create many patients in one request; each item is checked like /add and gets its own result
+    @POST
+    @Path("/batch")
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response addPatients(List<Patient> patients) {
+        Batch<Patient> batch = new Batch<>(patients);
+        for (int i = 0; i < patients.size(); i++) {
+            Patient item = patients.get(i);
+            if (item == null || !PatientDAO.isValidPatient(item)) {
+                batch.reject(i, Response.Status.BAD_REQUEST, "Invalid data for patient");
+            } else if (PatientDAO.patientExists(item.getId())) {
+                batch.reject(i, Response.Status.CONFLICT, "Patient with ID " + item.getId() + " already exists");
+            }
+        }
+        List<Patient> accepted = batch.accepted();
+        if (!accepted.isEmpty()) {
+            PatientDAO.addPatients(accepted);
+        }
+        LOGGER.info("Added batch of {} patients, {} rejected", accepted.size(), patients.size() - accepted.size());
+        return batch.toResponse(Patient::getId);
+    }
     
     //update patient
     @PUT
     @Path("/update/{id}")
     @Consumes(MediaType.APPLICATION_JSON)
     @Produces(MediaType.APPLICATION_JSON)
-    public Response updatePatient(@PathParam("id") int id, Patient updatedPatient) {
+    public Response updatePatient(@PathParam("id") int id, Patient updatedPatient,
+            @Context HttpHeaders headers) {
+        // Only update the version the client last saw when it sends If-Match
+        long expectedVersion = EntityTags.expectedVersion(headers, id);
         try {
             //check if person exists
             if (!PatientDAO.patientExists(id)) {
@@ -139,28 +254,12 @@ public class PatientResource {
             
             
             //update
-            PatientDAO.updatePatient(id, updatedPatient);
-
-            // Update the corresponding person
-            if (PersonDAO.personExists(id+1)) {
-                Person person = PersonDAO.getPersonById(id+1);
-                person.setName(updatedPatient.getName());
-                person.setContact(updatedPatient.getContact());
-                person.setAddress(updatedPatient.getAddress());
-                PersonDAO.updatePerson(id+1, person);
-            } else {
-                // Create a new person if not found
-                Person person = new Person();
-                person.setId(updatedPatient.getId());
-                person.setName(updatedPatient.getName());
-                person.setContact(updatedPatient.getContact());
-                person.setAddress(updatedPatient.getAddress());
-                  PersonDAO.addPerson(person);
-            }
+            PatientDAO.updatePatient(id, updatedPatient, expectedVersion);
 
             LOGGER.info("Updated patient successfully: {}", updatedPatient);
             return Response.status(Response.Status.OK)
                     .entity("Patient with ID " + id + " was updated")
+                    .tag(EntityTags.of(id, updatedPatient.getVersion()))
                     .build();
         } catch (NotFoundException | InvalidDataException e) {
             LOGGER.error("Failed to update patient: {}", e.getMessage(), e);
@@ -171,17 +270,20 @@ public class PatientResource {
     //delete patients
     @DELETE
     @Path("/delete/{id}")
-    public Response deletePatient(@PathParam("id") int id) {
+    public Response deletePatient(@PathParam("id") int id, @QueryParam("cascade") boolean cascade,
+            @Context UriInfo uriInfo) {
+        // Remove the patient's appointments, bills, prescriptions and records too; 409 without cascade while they exist
+        if (cascade) {
+            return CascadeResource.accepted(PatientDAO.deletePatientCascade(id), uriInfo);
+        }
         try {          
             // Delete the patient
             PatientDAO.deletePatient(id);
-            // Delete the corresponding person
-            PersonDAO.deletePerson(id);
             LOGGER.info("Patient with Id " + id + " deleted successfully" );
             return Response.status(Response.Status.OK)
                 .entity("Patient with ID " + id + " deleted successfully")
                 .build();
-        } catch(NotFoundException e){
+        } catch(NotFoundException | ConflictException e){
             LOGGER.error("Failed to delete patient: {}", e.getMessage(), e);
             throw e;
         } catch (Exception e) {
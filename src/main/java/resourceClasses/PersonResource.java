@@ -8,11 +8,14 @@
 package resourceClasses;
 
 
+import daoClasses.Lookup;
 import daoClasses.PersonDAO;
 import exceptionClasses.AlreadyExistsException;
+import exceptionClasses.ConflictException;
 import exceptionClasses.InvalidDataException;
 import exceptionClasses.NotFoundException;
 import modelClasses.Person;
+import java.util.List;
 import javax.ws.rs.Consumes;
 import javax.ws.rs.DELETE;
 import javax.ws.rs.GET;
@@ -21,9 +24,14 @@ import javax.ws.rs.PUT;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
 import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.UriInfo;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -37,11 +45,21 @@ public class PersonResource {
     @GET
     @Path("/all")
     @Produces(MediaType.APPLICATION_JSON)
-    public Response getAllPersons() {
+    public Response getAllPersons(@QueryParam("limit") Integer limit, @QueryParam("after") int after,
+            @QueryParam("stream") boolean stream, @Context UriInfo uriInfo) {
+        // Page through in ID order when a limit or cursor is given
+        int pageSize = Pagination.pageSize(limit, after);
+        if (pageSize > 0) {
+            return Pagination.ok(PersonDAO.getPersonsPage(after, pageSize), pageSize, uriInfo);
+        }
+        // Stream the whole collection one entity at a time for bulk consumers
+        if (stream) {
+            return JsonStreaming.ok(PersonDAO.getPersons());
+        }
         try {
             LOGGER.info("Retrieved all persons");
             return Response.status(Response.Status.OK)
-                           .entity(PersonDAO.getPersons().values())
+                           .entity(PersonDAO.getPersons())
                            .build();
         } catch (Exception e) {
             LOGGER.error("Failed to retrieve all persons: {}", e.getMessage(), e);
@@ -50,19 +68,42 @@ public class PersonResource {
         }
     }
 
+    // Retrieve many persons by ID in one call, e.g. GET ?ids=1,2,3; IDs not found are listed as missing
+    @GET
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response getPersonsByIds(@QueryParam("ids") String ids) {
+        if (ids == null) {
+            throw new InvalidDataException("ids is required");
+        }
+        int[] idList = MultiGet.parse(ids);
+        Lookup<Person> found = PersonDAO.getPersonsByIds(idList);
+        LOGGER.info("Found {} of {} persons by ID", found.getItems().size(), idList.length);
+        return MultiGet.ok(found);
+    }
+
+    // Retrieve many persons by ID when the list is too long for ?ids=; the body is a JSON array of IDs
+    @POST
+    @Path("/ids")
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response lookupPersons(List<Integer> ids) {
+        Lookup<Person> found = PersonDAO.getPersonsByIds(MultiGet.of(ids));
+        LOGGER.info("Found {} of {} persons by ID", found.getItems().size(), ids.size());
+        return MultiGet.ok(found);
+    }
+
     // Retrieve person by ID
     @GET
     @Path("/{id}")
     @Produces(MediaType.APPLICATION_JSON)
-    public Response getPersonById(@PathParam("id") int id) {
+    public Response getPersonById(@PathParam("id") int id, @Context Request request) {
         try {
             // Retrieve person from DAO layer by ID
             Person person = PersonDAO.getPersonById(id);
             if(person != null){
                 LOGGER.info("Person with Id "+ id + " is found");
-                return Response.status(Response.Status.OK)
-                        .entity(person)
-                        .build();
+                // 304 without serializing when the client already has this version
+                return EntityTags.ok(request, PersonDAO.STORE_NAME, id, person);
             }else{
                  // If person is not found, throw NotFoundException
                 LOGGER.error("Failed to retrieve person by ID {}: {}", id);
@@ -108,12 +149,38 @@ public class PersonResource {
         }
     }
 
+    // Create many persons in one request; each item is checked like /add and gets its own result
+    @POST
+    @Path("/batch")
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response addPersons(List<Person> persons) {
+        Batch<Person> batch = new Batch<>(persons);
+        for (int i = 0; i < persons.size(); i++) {
+            Person item = persons.get(i);
+            if (item == null || !PersonDAO.isValidPerson(item)) {
+                batch.reject(i, Response.Status.BAD_REQUEST, "Invalid data for person");
+            } else if (PersonDAO.personExists(item.getId())) {
+                batch.reject(i, Response.Status.CONFLICT, "Person with ID " + item.getId() + " already exists");
+            }
+        }
+        List<Person> accepted = batch.accepted();
+        if (!accepted.isEmpty()) {
+            PersonDAO.addPersons(accepted);
+        }
+        LOGGER.info("Added batch of {} persons, {} rejected", accepted.size(), persons.size() - accepted.size());
+        return batch.toResponse(Person::getId);
+    }
+
     // Update an existing person
     @PUT
     @Path("/update/{id}")
     @Consumes(MediaType.APPLICATION_JSON)
     @Produces(MediaType.APPLICATION_JSON)
-    public Response updatePerson(@PathParam("id") int id, Person updatedPerson) {
+    public Response updatePerson(@PathParam("id") int id, Person updatedPerson,
+            @Context HttpHeaders headers) {
+        // Only update the version the client last saw when it sends If-Match
+        long expectedVersion = EntityTags.expectedVersion(headers, id);
         try {
             
             // Check if the person exists
@@ -128,11 +195,12 @@ public class PersonResource {
             }
             
             // Update the person in the DAO layer
-            PersonDAO.updatePerson(id, updatedPerson);
+            PersonDAO.updatePerson(id, updatedPerson, expectedVersion);
             
             LOGGER.info("Updated person successfully: {}", updatedPerson);
             return Response.status(Response.Status.OK)
                     .entity("Person with ID " + id + " was updated")
+                    .tag(EntityTags.of(id, updatedPerson.getVersion()))
                     .build();
         } catch (NotFoundException | InvalidDataException e) {
             LOGGER.error("Failed to update person: {}", e.getMessage(), e);
@@ -143,14 +211,19 @@ public class PersonResource {
     // Delete a person
     @DELETE
     @Path("/delete/{id}")
-    public Response deletePerson(@PathParam("id") int id) {
+    public Response deletePerson(@PathParam("id") int id, @QueryParam("cascade") boolean cascade,
+            @Context UriInfo uriInfo) {
+        // A person may be a patient or doctor; remove what refers to them too, or 409 while anything does
+        if (cascade) {
+            return CascadeResource.accepted(PersonDAO.deletePersonCascade(id), uriInfo);
+        }
         try {
             PersonDAO.deletePerson(id);
             LOGGER.info("Deleted person successfully with ID: {}", id);
             return Response.status(Response.Status.OK)
                            .entity("Person with ID " + id + " deleted successfully")
                            .build();
-        } catch (NotFoundException e) {
+        } catch (NotFoundException | ConflictException e) {
             LOGGER.error("Failed to delete person: {}", e.getMessage(), e);
             throw e;
         } catch (Exception e) {
@@ -8,12 +8,16 @@
 package resourceClasses;
 
 import daoClasses.DoctorDAO;
+import daoClasses.Lookup;
 import daoClasses.PatientDAO;
+import daoClasses.PersonLocks;
 import daoClasses.PrescriptionDAO;
 import exceptionClasses.AlreadyExistsException;
 import exceptionClasses.InvalidDataException;
 import exceptionClasses.NotFoundException;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 import javax.ws.rs.Consumes;
 import javax.ws.rs.DELETE;
 import javax.ws.rs.GET;
@@ -22,9 +26,14 @@ import javax.ws.rs.PUT;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
 import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.UriInfo;
 import modelClasses.Prescription;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -39,10 +48,20 @@ public class PrescriptionResource {
     @GET
     @Path("/all")
     @Produces(MediaType.APPLICATION_JSON)
-    public Response getAllPrescriptions() {
+    public Response getAllPrescriptions(@QueryParam("limit") Integer limit, @QueryParam("after") int after,
+            @QueryParam("stream") boolean stream, @Context UriInfo uriInfo) {
+        // Page through in ID order when a limit or cursor is given
+        int pageSize = Pagination.pageSize(limit, after);
+        if (pageSize > 0) {
+            return Pagination.ok(PrescriptionDAO.getPrescriptionsPage(after, pageSize), pageSize, uriInfo);
+        }
+        // Stream the whole collection one entity at a time for bulk consumers
+        if (stream) {
+            return JsonStreaming.ok(PrescriptionDAO.getPrescriptions());
+        }
         try {
             LOGGER.info("Retrieved all prescriptions");
-            Collection<Prescription> prescriptions = PrescriptionDAO.getPrescriptions().values();
+            Collection<Prescription> prescriptions = PrescriptionDAO.getPrescriptions();
             return Response.status(Response.Status.OK)
                     .entity(prescriptions)
                     .build();
@@ -52,18 +71,58 @@ public class PrescriptionResource {
         }
     }
 
+    // Retrieve the prescriptions of a patient and/or a doctor, using the DAO indexes
+    @GET
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response findPrescriptions(@QueryParam("ids") String ids,
+            @QueryParam("patientId") int patientId, @QueryParam("doctorId") int doctorId) {
+        // Many prescriptions by ID in one call; IDs not found are listed as missing
+        if (ids != null) {
+            int[] idList = MultiGet.parse(ids);
+            Lookup<Prescription> found = PrescriptionDAO.getPrescriptionsByIds(idList);
+            LOGGER.info("Found {} of {} prescriptions by ID", found.getItems().size(), idList.length);
+            return MultiGet.ok(found);
+        }
+        if (patientId <= 0 && doctorId <= 0) {
+            throw new InvalidDataException("patientId or doctorId is required");
+        }
+        List<Prescription> result;
+        if (patientId > 0) {
+            result = PrescriptionDAO.getPrescriptionsByPatient(patientId);
+            if (doctorId > 0) {
+                result.removeIf(item -> item.getDoctorId() != doctorId);
+            }
+        } else {
+            result = PrescriptionDAO.getPrescriptionsByDoctor(doctorId);
+        }
+        LOGGER.info("Found {} prescriptions for patient {} and doctor {}", result.size(), patientId, doctorId);
+        return Response.status(Response.Status.OK)
+                .entity(result)
+                .build();
+    }
+
+    // Retrieve many prescriptions by ID when the list is too long for ?ids=; the body is a JSON array of IDs
+    @POST
+    @Path("/ids")
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response lookupPrescriptions(List<Integer> ids) {
+        Lookup<Prescription> found = PrescriptionDAO.getPrescriptionsByIds(MultiGet.of(ids));
+        LOGGER.info("Found {} of {} prescriptions by ID", found.getItems().size(), ids.size());
+        return MultiGet.ok(found);
+    }
+
     //retrieve prescription by id
     @GET
     @Path("/{id}")
     @Produces(MediaType.APPLICATION_JSON)
-    public Response getPrescriptionById(@PathParam("id") int id) {
+    public Response getPrescriptionById(@PathParam("id") int id, @Context Request request) {
         try {
             Prescription prescription = PrescriptionDAO.getPrescriptionById(id);
             if (prescription != null) {
                 LOGGER.info("Prescription with Id "+ id + " is found");
-                return Response.status(Response.Status.OK)
-                        .entity(prescription)
-                        .build();
+                // 304 without serializing when the client already has this version
+                return EntityTags.ok(request, PrescriptionDAO.STORE_NAME, id, prescription, prescription.getPatient(), prescription.getDoctor());
             } else {
                 LOGGER.error("Failed to retrieve prescription by ID {}: {}", id);
                 throw new NotFoundException("Prescription with id " + id + " not found");
@@ -84,30 +143,33 @@ public class PrescriptionResource {
     @Produces(MediaType.APPLICATION_JSON)
     public Response addPrescription(Prescription prescription) {
         try {
-            //check if doctor exists
-            int docId  = prescription.getDoctor().getId();
-            if (!DoctorDAO.doctorExists(docId)){
-                LOGGER.warn("Doctor not found for ID: " + docId);
-                throw new NotFoundException("Doctor not found for ID: " + docId);
-            }
-            //check if patient exists
-            int patId  = prescription.getPatient().getId();
-            if (!PatientDAO.patientExists(patId)){
-                LOGGER.warn("Patient not found for ID: " + patId);
-                throw new NotFoundException("Patient not found for ID: " + patId);
-            }
-            //check if a prescription exists
-            if (PrescriptionDAO.prescriptionExists(prescription.getPrescriptionId())){
-                LOGGER.warn("Prescription no. already exists", prescription.getPrescriptionId());
-                throw new AlreadyExistsException("Prescription no. " +prescription.getPrescriptionId()+ " already exists");
-            }
-            //check if data is valid
-            if (!PrescriptionDAO.isValidPrescription(prescription)) {
-                LOGGER.warn("Invalid data for prescription");
-                throw new InvalidDataException("Invalid data for prescription");
-            }
-            //add prescription
-            PrescriptionDAO.addPrescription(prescription);
+            int docId  = prescription.getDoctorId();
+            int patId  = prescription.getPatientId();
+            // The patient and doctor cannot be deleted between these checks and the add
+            PersonLocks.whileReferenced(() -> {
+                //check if doctor exists
+                if (!DoctorDAO.doctorExists(docId)){
+                    LOGGER.warn("Doctor not found for ID: " + docId);
+                    throw new NotFoundException("Doctor not found for ID: " + docId);
+                }
+                //check if patient exists
+                if (!PatientDAO.patientExists(patId)){
+                    LOGGER.warn("Patient not found for ID: " + patId);
+                    throw new NotFoundException("Patient not found for ID: " + patId);
+                }
+                //check if a prescription exists
+                if (PrescriptionDAO.prescriptionExists(prescription.getPrescriptionId())){
+                    LOGGER.warn("Prescription no. already exists", prescription.getPrescriptionId());
+                    throw new AlreadyExistsException("Prescription no. " +prescription.getPrescriptionId()+ " already exists");
+                }
+                //check if data is valid
+                if (!PrescriptionDAO.isValidPrescription(prescription)) {
+                    LOGGER.warn("Invalid data for prescription");
+                    throw new InvalidDataException("Invalid data for prescription");
+                }
+                //add prescription
+                PrescriptionDAO.addPrescription(prescription);
+            }, docId, patId);
             return Response.status(Response.Status.CREATED)
                     .entity("Prescription created successfully: " + prescription)
                     .build();
@@ -117,12 +179,46 @@ public class PrescriptionResource {
         }
     }
 
+    // Create many prescriptions in one request; each item is checked like /add and gets its own result
+    @POST
+    @Path("/batch")
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response addPrescriptions(List<Prescription> prescriptions) {
+        Batch<Prescription> batch = new Batch<>(prescriptions);
+        // Checked and added as one, so no patient or doctor is deleted in between
+        List<Prescription> accepted = new ArrayList<>();
+        PersonLocks.whileReferenced(() -> {
+            for (int i = 0; i < prescriptions.size(); i++) {
+                Prescription item = prescriptions.get(i);
+                if (item == null || !PrescriptionDAO.isValidPrescription(item)) {
+                    batch.reject(i, Response.Status.BAD_REQUEST, "Invalid data for prescription");
+                } else if (!DoctorDAO.doctorExists(item.getDoctorId())) {
+                    batch.reject(i, Response.Status.NOT_FOUND, "Doctor not found for ID: " + item.getDoctorId());
+                } else if (!PatientDAO.patientExists(item.getPatientId())) {
+                    batch.reject(i, Response.Status.NOT_FOUND, "Patient not found for ID: " + item.getPatientId());
+                } else if (PrescriptionDAO.prescriptionExists(item.getPrescriptionId())) {
+                    batch.reject(i, Response.Status.CONFLICT, "Prescription no. " + item.getPrescriptionId() + " already exists");
+                }
+            }
+            accepted.addAll(batch.accepted());
+            if (!accepted.isEmpty()) {
+                PrescriptionDAO.addPrescriptions(accepted);
+            }
+        }, PersonLocks.idsOf(prescriptions, Prescription::getPatientId, Prescription::getDoctorId));
+        LOGGER.info("Added batch of {} prescriptions, {} rejected", accepted.size(), prescriptions.size() - accepted.size());
+        return batch.toResponse(Prescription::getPrescriptionId);
+    }
+
     //update prescription
     @PUT
     @Path("/update/{id}")
     @Consumes(MediaType.APPLICATION_JSON)
     @Produces(MediaType.APPLICATION_JSON)
-    public Response updatePrescription(@PathParam("id") int id, Prescription prescription) {
+    public Response updatePrescription(@PathParam("id") int id, Prescription prescription,
+            @Context HttpHeaders headers) {
+        // Only update the version the client last saw when it sends If-Match
+        long expectedVersion = EntityTags.expectedVersion(headers, id);
         try {
             //check if prescription exists
             if (PrescriptionDAO. prescriptionExists(prescription.getPrescriptionId())){
@@ -134,11 +230,12 @@ public class PrescriptionResource {
                 LOGGER.warn("Invalid data for prescription during update: {}", prescription);
                 throw new InvalidDataException("Invalid data for prescription");
             }
-            PrescriptionDAO.updatePrescription(id, prescription);
+            PrescriptionDAO.updatePrescription(id, prescription, expectedVersion);
             
             LOGGER.info("Updated prescription successfully: {}", prescription);
             return Response.status(Response.Status.OK)
                     .entity("Prescription with prescription no: " + prescription.getPrescriptionId() + " updated successfully ")
+                    .tag(EntityTags.of(id, prescription.getVersion()))
                     .build();
         } catch (NotFoundException | InvalidDataException e) {
             LOGGER.error("Failed to update prescription: {}", e.getMessage(), e);